@@ -33,6 +33,65 @@ package object configuration extends VitalsPropertyRegistry {
     default = Some(12) // for now...
   )
 
+  /////////////////////////////////////////////////////////////////////////////////////////////////////////////
+  // SCANNING
+  /////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+  /**
+   * cut regions into ranges of items and let worker threads steal ranges from each other instead of binding
+   * a single worker thread to each region for the entire slice scan
+   */
+  val burstFabricScanStealEnableProperty: VitalsPropertySpecification[Boolean] = VitalsPropertySpecification[Boolean](
+    key = "burst.fabric.scan.steal.enable",
+    description = "use work stealing across item ranges when scanning the regions in a slice",
+    default = Some(false)
+  )
+
+  /**
+   * the number of items in each stealable range when work stealing is enabled
+   */
+  val burstFabricScanStealRangeItemsProperty: VitalsPropertySpecification[Int] = VitalsPropertySpecification[Int](
+    key = "burst.fabric.scan.steal.range.items",
+    description = "how many items are in a single stealable range of a region",
+    default = Some(256)
+  )
+
+  /**
+   * reuse the gather (and its collectors) from the previous item scanned on a thread for the next item instead of
+   * grabbing a new gather per item and releasing it after the region merge
+   */
+  val burstFabricScanGatherReuseProperty: VitalsPropertySpecification[Boolean] = VitalsPropertySpecification[Boolean](
+    key = "burst.fabric.scan.gather.reuse.enable",
+    description = "reuse per thread item gathers across all the items scanned in a region",
+    default = Some(false)
+  )
+
+  /**
+   * merge region results on the worker and slice results on the supervisor as a pairwise tree with
+   * independent merges running concurrently on the worker pool instead of serially into a single accumulator
+   */
+  val burstFabricMergeTreeEnableProperty: VitalsPropertySpecification[Boolean] = VitalsPropertySpecification[Boolean](
+    key = "burst.fabric.merge.tree.enable",
+    description = "use a concurrent pairwise tree merge for region and slice results",
+    default = Some(false)
+  )
+
+  /**
+   * the tesla part memory a slice scan reserves against the tesla memory budget before it starts. Scans that
+   * do not fit in the budget are delayed (up to the wait below) rather than failed
+   */
+  val burstFabricScanMemoryReservationProperty: VitalsPropertySpecification[Long] = VitalsPropertySpecification[Long](
+    key = "burst.fabric.scan.memory.reservation.bytes",
+    description = "tesla memory budget reserved by each slice scan",
+    default = Some(256L * 1024 * 1024)
+  )
+
+  val burstFabricScanMemoryWaitProperty: VitalsPropertySpecification[Duration] = VitalsPropertySpecification[Duration](
+    key = "burst.fabric.scan.memory.wait.duration",
+    description = "how long a slice scan waits for its memory reservation before running over budget",
+    default = Some(60.seconds)
+  )
+
   /////////////////////////////////////////////////////////////////////////////////////////////////////////////
   // REGIONS
   /////////////////////////////////////////////////////////////////////////////////////////////////////////////
@@ -98,6 +157,17 @@ package object configuration extends VitalsPropertyRegistry {
     default = Some(true)
   )
 
+  /**
+   * at boot re-register the snaps whose region files are still on disk (with recorded checksums) as warm
+   * so they are served without a reload. Region files are validated against their checksums the first time they
+   * are loaded into memory. Takes precedence over `burst.fabric.cache.boot.flush`.
+   */
+  val burstFabricCacheBootRecoverProperty: VitalsPropertySpecification[Boolean] = VitalsPropertySpecification[Boolean](
+    key = "burst.fabric.cache.boot.recover",
+    description = "recover on disk slice generations at boot instead of flushing them",
+    default = Some(false)
+  )
+
   val burstFabricCacheTendMinutesProperty: VitalsPropertySpecification[Long] = VitalsPropertySpecification[Long](
     key = "burst.fabric.cache.tend.period.minutes",
     description = "how often to tend the cache",
@@ -140,6 +210,84 @@ package object configuration extends VitalsPropertyRegistry {
     default = Some(50.0)
   )
 
+  /**
+   * an upper bound on the bytes of mmapped region files. When exceeded the tender evicts snaps until it is not.
+   */
+  val burstFabricCacheMappedBytesBudgetProperty: VitalsPropertySpecification[Long] = VitalsPropertySpecification[Long](
+    key = "burst.fabric.cache.memory.mapped.budget.bytes",
+    description = "max mapped bytes before evictions start (no budget if not set)",
+    default = None
+  )
+
+  /**
+   * the policy used to choose which snaps to evict or flush when resources are constrained
+   * (`lru`, `tinylfu` or `cost`)
+   */
+  val burstFabricCacheEvictPolicyProperty: VitalsPropertySpecification[String] = VitalsPropertySpecification[String](
+    key = "burst.fabric.cache.evict.policy",
+    description = "the policy to choose resource constrained evict/flush candidates: lru, tinylfu or cost",
+    default = Some("lru")
+  )
+
+  /**
+   * the number of (slice hashed) lock stripes that guard snap cache map updates
+   */
+  val burstFabricCacheLockStripesProperty: VitalsPropertySpecification[Int] = VitalsPropertySpecification[Int](
+    key = "burst.fabric.cache.lock.stripes",
+    description = "number of slice hashed locks guarding the snap cache (rounded up to a power of two)",
+    default = Some(64)
+  )
+
+  /**
+   * touch the pages of mmapped region files on a background pool as a slice is loaded into memory so that
+   * the first scan does not take its page faults serially
+   */
+  val burstFabricCacheRegionPrefetchProperty: VitalsPropertySpecification[Boolean] = VitalsPropertySpecification[Boolean](
+    key = "burst.fabric.cache.region.prefetch.enable",
+    description = "prefetch mmapped region file pages when slices are loaded into memory",
+    default = Some(false)
+  )
+
+  val burstFabricCacheRegionPrefetchThreadsProperty: VitalsPropertySpecification[Int] = VitalsPropertySpecification[Int](
+    key = "burst.fabric.cache.region.prefetch.threads",
+    description = "number of threads in the region prefetch pool",
+    default = Some(4)
+  )
+
+  val burstFabricCacheRegionPrefetchWaitProperty: VitalsPropertySpecification[Boolean] = VitalsPropertySpecification[Boolean](
+    key = "burst.fabric.cache.region.prefetch.wait",
+    description = "wait for region prefetch to finish before a slice is considered in memory",
+    default = Some(true)
+  )
+
+  /**
+   * when disk usage is above the high water mark the tender first compacts (snappy compresses) the region files of
+   * the least valuable warm snaps and only flushes snaps if that does not free enough disk. Compacted region files are
+   * inflated into tesla blocks when they are loaded instead of being mmapped.
+   */
+  val burstFabricCacheRegionCompactProperty: VitalsPropertySpecification[Boolean] = VitalsPropertySpecification[Boolean](
+    key = "burst.fabric.cache.region.compact.enable",
+    description = "compress the region files of warm snaps on disk before flushing them",
+    default = Some(false)
+  )
+
+  /**
+   * the disk write backend for region hoses. `async` writes through an [[java.nio.channels.AsynchronousFileChannel]]
+   * and the page cache, `direct` writes batched, block aligned buffers with O_DIRECT and bypasses the page cache.
+   * Selecting `direct` also routes region writes through the hose.
+   */
+  val burstFabricCacheHoseIoProperty: VitalsPropertySpecification[String] = VitalsPropertySpecification[String](
+    key = "burst.fabric.cache.hose.io",
+    description = "region hose write backend (when the hose is switched on): async or direct",
+    default = Some("async")
+  )
+
+  val burstFabricCacheHoseDirectBatchBytesProperty: VitalsPropertySpecification[Int] = VitalsPropertySpecification[Int](
+    key = "burst.fabric.cache.hose.direct.batch.bytes",
+    description = "size of the aligned buffer that direct region hose writes are batched into",
+    default = Some(4 * 1024 * 1024)
+  )
+
   val burstViewCacheFaultHealProperty: VitalsPropertySpecification[Duration] = VitalsPropertySpecification[Duration](
     key = "burst.fabric.cache.fault.heal.duration",
     description = "how long before a dataset should attempt a reload from the remote store",
@@ -4,6 +4,7 @@ package org.burstsys.fabric.wave.data.model.limits
 import java.util.concurrent.TimeUnit
 
 import org.burstsys.fabric.wave.configuration._
+import org.burstsys.vitals.reporter.instrument.prettyByteSizeString
 
 import scala.concurrent.duration._
 import scala.language.postfixOps
@@ -57,6 +58,13 @@ trait FabricSnapCacheLimits extends Any {
    */
   def diskUsageAboveHighWater: Boolean
 
+  /**
+   * are the mapped bytes of the cache above the configured budget (always false if there is no budget)
+   *
+   * @return
+   */
+  def mappedBytesAboveBudget: Boolean = false
+
   /**
    * make sure we have adequate resources to start up the cache (for now just prints out current resources)
    */
@@ -75,6 +83,7 @@ class FabricSnapCacheLimitsContext() extends AnyRef with FabricSnapCacheLimits {
   private val lowWaterMemoryMark: Double = burstFabricCacheMemoryLowMarkPercentProperty.get
   private val highWaterDiskMark: Double = burstFabricCacheDiskHighMarkPercentProperty.get
   private val lowWaterDiskMark: Double = burstFabricCacheDiskLowMarkPercentProperty.get
+  private val mappedBytesBudget: Option[Long] = burstFabricCacheMappedBytesBudgetProperty.asOption
 
   ///////////////////////////////////////////////////////////////////////////////////////////////////////
   // API
@@ -84,6 +93,7 @@ class FabricSnapCacheLimitsContext() extends AnyRef with FabricSnapCacheLimits {
   def validateResourceMinimums(): Unit = {
     log info s"CACHE_MEMORY_RESOURCE highWaterMemoryMark=$highWaterMemoryMark (%), lowWaterMemoryMark=$lowWaterMemoryMark (%)"
     log info s"CACHE_DISK_RESOURCE highWaterDiskMark=$highWaterDiskMark (%), lowWaterDiskMark=$lowWaterDiskMark (%)"
+    log info s"CACHE_MAPPED_RESOURCE mappedBytesBudget=${mappedBytesBudget.map(b => prettyByteSizeString(b)).getOrElse("NONE")}"
   }
 
   override
@@ -92,6 +102,9 @@ class FabricSnapCacheLimitsContext() extends AnyRef with FabricSnapCacheLimits {
   override
   def memoryUsageAboveHighWater: Boolean = memoryPercentUsed > highWaterMemoryMark
 
+  override
+  def mappedBytesAboveBudget: Boolean = mappedBytesBudget.exists(mappedBytesUsed > _)
+
   override
   def diskUsageBelowLowWater: Boolean = diskPercentUsed < lowWaterDiskMark
 
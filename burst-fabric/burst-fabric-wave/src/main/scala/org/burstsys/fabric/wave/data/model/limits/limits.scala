@@ -19,6 +19,13 @@ package object limits extends VitalsLogger {
    */
   def memoryPercentUsed: Double = percentUsed("memory", offheap.nativeMemoryMax, used = host.mappedMemoryUsed)
 
+  /**
+   * the number of bytes currently in mapped (mmap) buffers in this JVM e.g. hot region files
+   *
+   * @return
+   */
+  def mappedBytesUsed: Long = host.mappedMemoryUsed
+
   /**
    * return a floating point number between 0.0 and 100.0 that represents the
    * amount of snap folder allocated disk in use (this is currently for the 'os' or entire node but should
@@ -1,6 +1,8 @@
 /* Copyright Yahoo, Licensed under the terms of the Apache 2.0 license. See LICENSE file in project root for terms. */
 package org.burstsys.fabric.wave.data.model.slice.data
 
+import java.nio.file.Path
+
 import com.esotericsoftware.kryo.KryoSerializable
 import org.burstsys.brio.blob.BrioSlice
 import org.burstsys.fabric.wave.data.model.slice.FabricSliceKey
@@ -20,6 +22,17 @@ trait FabricSliceData extends AnyRef with BrioSlice with FabricSnapComponent wit
    */
   def regionCount: Int
 
+  /**
+   * @return the paths of the region files in this slice
+   */
+  def regionFiles: Array[Path]
+
+  /**
+   * @return true if all the region files of this slice are on disk with a recorded checksum i.e. the slice
+   *         can be recovered after a restart without reloading it
+   */
+  def regionsRecoverable: Boolean
+
   /**
    * @return simple ratio of fastest/slowest hose time
    */
@@ -1,11 +1,11 @@
 /* Copyright Yahoo, Licensed under the terms of the Apache 2.0 license. See LICENSE file in project root for terms. */
 package org.burstsys.fabric.wave.data.model.slice.data
 
-import java.nio.file.{FileSystems, Path, Paths}
+import java.nio.file.{FileSystems, Files, Path, Paths}
 
 import com.esotericsoftware.kryo.io.{Input, Output}
 import com.esotericsoftware.kryo.{Kryo, KryoSerializable}
-import org.burstsys.fabric.wave.data.model.slice.region.{FabricRegion, regionFolders}
+import org.burstsys.fabric.wave.data.model.slice.region.{FabricRegion, NoRegionChecksum, regionFolders}
 import org.burstsys.fabric.wave.data.model.slice.sliceToFilePath
 import org.burstsys.fabric.wave.data.model.snap.FabricSnap
 import org.burstsys.vitals.errors.VitalsException
@@ -67,6 +67,13 @@ trait FabricSliceImage extends AnyRef with KryoSerializable {
   final override
   def regionCount: Int = _regionList.length
 
+  final override
+  def regionFiles: Array[Path] = _regionList.map(_.filePath).toArray
+
+  final override
+  def regionsRecoverable: Boolean =
+    _regionList.forall(r => r.regionChecksum != NoRegionChecksum && Files.exists(r.filePath))
+
   final protected
   def -=(r: FabricRegion): Unit = _regionList -= r
 
@@ -92,11 +99,11 @@ trait FabricSliceImage extends AnyRef with KryoSerializable {
 
   /**
    * Creates a [[FabricRegion]] for each path in _regionPaths. If we are restoring a slice from disk
-   * _regionPaths contains only non-empty regions. For a new slice _regionPaths contains a path in
-   * each region folder.
+   * _regionPaths contains only non-empty regions. For a new slice (or a fresh write of a
+   * restored one) _regionPaths contains a path in each region folder.
    */
-  final def initializeRegions(): Unit = {
-    if (_regionPaths.isEmpty) {
+  final def initializeRegions(fresh: Boolean = false): Unit = {
+    if (fresh || _regionPaths.isEmpty) {
       _regionPaths = regionFolders.map {
         p => FileSystems.getDefault.getPath(p.toAbsolutePath.toString, sliceToFilePath(snap.metadata))
       }
@@ -119,20 +126,24 @@ trait FabricSliceImage extends AnyRef with KryoSerializable {
     output.writeInt(magicNumber)
     output.writeInt(version)
     output.writeInt(_nextRegion)
-    output.writeInt(_regionPaths.length)
+    output.writeInt(regionCount)
     regions.foreach(r => output.writeString(r.filePath.toFile.getAbsolutePath))
+    regions.foreach(r => output.writeLong(r.regionChecksum))
   }
 
   final override
   def read(kryo: Kryo, input: Input): Unit = {
     if(input.readInt != magicNumber)
       throw VitalsException(s"SLICE_DATA_BAD_MAGIC ${parameters}")
-    if(input.readInt != version)
+    val readVersion = input.readInt
+    if(readVersion != version && readVersion != 1)
       throw VitalsException(s"SLICE_DATA_BAD_VERSION ${parameters}")
     _nextRegion = input.readInt()
     val regionCount = input.readInt()
     _regionPaths = (for (_ <- 0 until regionCount) yield Paths.get(input.readString())).toArray
     initializeRegions()
+    if (readVersion >= 2)
+      _regionList.take(regionCount).foreach(_.restoreRegionChecksum(input.readLong()))
   }
 
 }
@@ -3,9 +3,17 @@ package org.burstsys.fabric.wave.data.model.slice.data
 
 import org.burstsys.brio.blob.BrioBlob
 import org.burstsys.brio.blob.BrioBlob._
+import org.burstsys.fabric.wave.configuration.{burstFabricCacheRegionPrefetchProperty, burstFabricCacheRegionPrefetchWaitProperty}
 import org.burstsys.fabric.wave.data.model.slice.state.{FabricDataHot, FabricDataNoData, FabricDataWarm, FabricDataCold}
+import org.burstsys.tesla.TeslaTypes.TeslaMemorySize
+import org.burstsys.tesla.parcel.TeslaParcel
+import org.burstsys.tesla.thread.TeslaNuma
 import org.burstsys.vitals.errors._
 import org.burstsys.vitals.logging._
+import org.burstsys.vitals.reporter.instrument.prettyTimeFromNanos
+
+import scala.concurrent.Await
+import scala.concurrent.duration.Duration
 
 /**
  * read operations associated with a Fabric slice
@@ -27,9 +35,19 @@ trait FabricSliceReader extends AnyRef {
 
     val start = System.currentTimeMillis
     synchronized {
+      var loaded = 0
       try {
 
-        regions.foreach(_.loadRegionIntoMemory())
+        regions.foreach { region =>
+          region.loadRegionIntoMemory()
+          loaded += 1
+        }
+
+        if (burstFabricCacheRegionPrefetchProperty.get) {
+          val prefetches = regions.zipWithIndex.map { case (region, i) => region.prefetchRegion(TeslaNuma.homeNode(i)) }
+          if (burstFabricCacheRegionPrefetchWaitProperty.get)
+            prefetches.foreach(Await.result(_, Duration.Inf))
+        }
 
         // mark this in memory to ensure descriptor management doesn't mess with it until eviction...
         snap.metadata.state = FabricDataHot
@@ -39,6 +57,12 @@ trait FabricSliceReader extends AnyRef {
         case t: Throwable =>
           val msg = s"FAB_SLICE_READ_FAIL $t $tag"
           log error(burstStdMsg(msg, t), t)
+          // do not leave the regions that did load mapped
+          regions.take(loaded).foreach { region =>
+            try region.evictRegionFromMemory() catch safely {
+              case e: Throwable => log warn burstStdMsg(s"FAB_SLICE_READ_FAIL_EVICT $e $tag", e)
+            }
+          }
           throw VitalsException(msg, t)
       }
     }
@@ -88,6 +112,26 @@ trait FabricSliceReader extends AnyRef {
     }
   }
 
+  final override
+  def compactSliceOnDisk(): Long = {
+    lazy val tag = s"FabricSliceReader.compactSliceOnDisk($parameters)"
+    synchronized {
+      if (sliceInMemory)
+        throw VitalsException(s"FAB_SLICE_COMPACT_IN_MEMORY $tag")
+      try {
+        regions.map(_.compactRegionOnDisk()).sum
+      } catch safely {
+        case t: Throwable =>
+          val msg = s"FAB_SLICE_COMPACT_FAIL $t $tag"
+          log error(burstStdMsg(msg, t), t)
+          throw VitalsException(msg, t)
+      }
+    }
+  }
+
+  final override
+  def sliceCompactedOnDisk: Boolean = !regions.exists(_.regionCompactable)
+
   //////////////////////////////////////////
   // Data Access
   //////////////////////////////////////////
@@ -114,4 +158,28 @@ trait FabricSliceReader extends AnyRef {
     }
   }
 
+  final override
+  def shipSlice(parcelSize: TeslaMemorySize, stripe: Int, stripes: Int)(ship: TeslaParcel => Unit): Long = {
+    lazy val tag = s"FabricSliceReader.shipSlice($parameters, stripe=$stripe, stripes=$stripes)"
+    val start = System.nanoTime
+    if (stripes < 1 || stripe < 0 || stripe >= stripes)
+      throw VitalsException(s"FAB_SLICE_SHIP_BAD_STRIPE $tag")
+    try {
+      if (snap.metadata.state == FabricDataNoData) 0L
+      else {
+        if (!sliceInMemory) throw VitalsException(s"FAB_SLICE_NOT_IN_MEM $tag")
+        val itemCount = regions.zipWithIndex.collect {
+          case (region, i) if i % stripes == stripe => region.shipRegion(parcelSize)(ship)
+        }.sum
+        log info s"FAB_SLICE_SHIP items=$itemCount elapsed=${prettyTimeFromNanos(System.nanoTime - start)} $tag"
+        itemCount
+      }
+    } catch safely {
+      case t: Throwable =>
+        val msg = s"FAB_SLICE_SHIP_FAIL $t $tag"
+        log error(burstStdMsg(msg, t), t)
+        throw VitalsException(msg, t)
+    }
+  }
+
 }
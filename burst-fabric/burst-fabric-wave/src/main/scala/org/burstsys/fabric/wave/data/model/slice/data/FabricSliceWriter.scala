@@ -70,7 +70,7 @@ trait FabricSliceWriter extends AnyRef with FabricWriteMetrics {
     synchronized {
       if (isOpenForWrites) throw VitalsException(s"ALREADY_OPEN_FOR_WRITE! $tag")
       try {
-        initializeRegions()
+        initializeRegions(fresh = true)
         regions.foreach(_.openRegionForWrites())
         log info s"SLICE_OPEN_WRITER regionCount=$regionCount, firstRegion=${nextRegion.regionIndex} $tag"
       } catch safely {
@@ -141,6 +141,14 @@ trait FabricSliceWriter extends AnyRef with FabricWriteMetrics {
     }
   }
 
+  /**
+   * parcels are spread round robin across the regions so the fullest region write queue limits the whole slice
+   */
+  final override
+  def freeWriteCapacity: Int = {
+    if (!isOpenForWrites || regions.isEmpty) 0 else regions.map(_.freeWriteCapacity).min * regions.length
+  }
+
   /**
    * queue up a mem buffer to be written to a region.
    * note that this buffer is released somewhere down the road
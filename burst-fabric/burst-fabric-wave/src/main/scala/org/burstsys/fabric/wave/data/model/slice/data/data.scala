@@ -2,6 +2,7 @@
 package org.burstsys.fabric.wave.data.model.slice
 
 import org.burstsys.brio.blob.BrioBlob.BrioRegionIterator
+import org.burstsys.tesla.TeslaTypes.TeslaMemorySize
 import org.burstsys.tesla.parcel.TeslaParcel
 import org.burstsys.vitals.logging._
 
@@ -16,7 +17,10 @@ package object data extends VitalsLogger {
 
   final val magicNumber:Int = 123210999
 
-  final val version:Int = 1
+  /**
+   * version 2 adds region checksums
+   */
+  final val version:Int = 2
 
   /**
    * API for writing to a slice.
@@ -44,6 +48,11 @@ package object data extends VitalsLogger {
      */
     def queueParcelForWrite(parcel: TeslaParcel): Unit
 
+    /**
+     * how many more parcels can be queued for write right now without waiting on a full region write queue
+     */
+    def freeWriteCapacity: Int
+
     /**
      * wait for all writes in pipeline to complete, this must be called after all parcels have been queued
      *
@@ -71,6 +80,18 @@ package object data extends VitalsLogger {
      */
     def iterators: Array[BrioRegionIterator]
 
+    /**
+     * copy the contents of this (in memory) slice into inflated parcels so it can be shipped
+     * to a peer worker instead of being reloaded from its source
+     *
+     * @param parcelSize the target size of each parcel
+     * @param stripe     ship only the regions of this stripe...
+     * @param stripes    ...of this many (regions are striped round robin)
+     * @param ship       takes ownership of each parcel
+     * @return the number of items shipped
+     */
+    def shipSlice(parcelSize: TeslaMemorySize, stripe: Int = 0, stripes: Int = 1)(ship: TeslaParcel => Unit): Long
+
   }
 
   /**
@@ -104,6 +125,21 @@ package object data extends VitalsLogger {
      */
     def flushSliceFromDisk(): Unit
 
+    /**
+     * rewrite the region files of this slice on disk in compacted (snappy compressed) form. Compacted
+     * regions are inflated into memory when the slice is loaded. The slice must not be in memory.
+     *
+     * @return the number of disk bytes freed
+     */
+    def compactSliceOnDisk(): Long
+
+    /**
+     * are all the region files of this slice compacted on disk (or known to not compress)?
+     *
+     * @return
+     */
+    def sliceCompactedOnDisk: Boolean
+
     /**
      * is this slice currently on disk??
      *
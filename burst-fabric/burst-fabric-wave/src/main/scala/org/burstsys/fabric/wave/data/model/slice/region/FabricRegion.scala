@@ -1,7 +1,9 @@
 /* Copyright Yahoo, Licensed under the terms of the Apache 2.0 license. See LICENSE file in project root for terms. */
 package org.burstsys.fabric.wave.data.model.slice.region
 
+import java.nio.ByteBuffer
 import java.nio.file.Path
+import java.util.zip.CRC32C
 
 import org.burstsys.brio.blob.BrioBlob.BrioRegionIterator
 import org.burstsys.brio.blob.BrioRegion
@@ -11,9 +13,13 @@ import org.burstsys.fabric.wave.data.model.slice.region.hose.{FabricRegionHose,
 import org.burstsys.fabric.wave.data.model.slice.region.reader.FabricRegionReader
 import org.burstsys.fabric.wave.data.model.slice.region.writer.FabricRegionWriter
 import org.burstsys.fabric.wave.data.model.snap.{FabricSnap, FabricSnapComponent}
+import org.burstsys.tesla.TeslaTypes.TeslaMemorySize
 import org.burstsys.tesla.parcel.TeslaParcel
+import org.burstsys.vitals.errors.VitalsException
+import org.burstsys.vitals.logging.burstStdMsg
+import org.burstsys.vitals.reporter.instrument.prettyTimeFromNanos
 
-import scala.concurrent.Await
+import scala.concurrent.{Await, Future}
 import scala.concurrent.duration.Duration
 
 /**
@@ -40,6 +46,14 @@ trait FabricRegion extends AnyRef
    */
   def loadRegionIntoMemory(): Unit
 
+  /**
+   * make the pages of a region open for reads memory resident (in the background)
+   *
+   * @param numaNode the NUMA node the region is scanned on (the pages are first touched there)
+   * @return a future that completes when the prefetch is done
+   */
+  def prefetchRegion(numaNode: Int): Future[Unit]
+
   /**
    * close the region which was open for reads
    *
@@ -47,11 +61,58 @@ trait FabricRegion extends AnyRef
    */
   def evictRegionFromMemory(): Unit
 
+  /**
+   * copy the blocks of the loaded region into inflated parcels (to ship the region to a peer worker)
+   *
+   * @param parcelSize the target size of each parcel
+   * @param ship       takes ownership of each parcel
+   * @return the number of items shipped
+   */
+  def shipRegion(parcelSize: TeslaMemorySize)(ship: TeslaParcel => Unit): Long
+
   /**
    * delete a single region file
    */
   def flushRegionFromDisk(): Unit
 
+  /**
+   * @return true if the region file is compacted (snappy compressed) on disk
+   */
+  def regionCompressed: Boolean
+
+  /**
+   * @return true if compacting the region file might free disk space
+   */
+  def regionCompactable: Boolean
+
+  /**
+   * compact (snappy compress) a region file that is not loaded into memory
+   *
+   * @return the number of disk bytes freed
+   */
+  def compactRegionOnDisk(): Long
+
+  /////////////////////////////////////////////////////////////
+  // INTEGRITY
+  /////////////////////////////////////////////////////////////
+
+  /**
+   * @return the CRC32C of the region file contents as written, or [[NoRegionChecksum]] if not known
+   */
+  def regionChecksum: Long
+
+  /**
+   * add the remaining bytes of a buffer about to be written to the region file to the region checksum
+   * (does not change the buffer position)
+   */
+  def recordRegionWrite(buffer: ByteBuffer): Unit
+
+  /**
+   * restore the checksum of a region file written by an earlier process. The file is validated
+   * against it the first time the region is loaded into memory.
+   */
+  def restoreRegionChecksum(checksum: Long): Unit
+
   /////////////////////////////////////////////////////////////
   // WRITES
   /////////////////////////////////////////////////////////////
@@ -73,6 +134,11 @@ trait FabricRegion extends AnyRef
    */
   def queueParcelForWrite(parcel: TeslaParcel): Unit
 
+  /**
+   * how many more parcels can be queued for the write subsystem without waiting
+   */
+  def freeWriteCapacity: Int
+
   /**
    * indicate that all parcels have been queued for writing
    */
@@ -130,7 +196,27 @@ class FabricRegionContext(var snap: FabricSnap, regionIndex: Int, regionTag: Fab
   private[this]
   val _regionHose = FabricRegionHose(snap, this, regionIndex, regionTag, filePath)
 
-  private lazy val metricsSource: FabricWriteMetrics = if (useHose) _regionHose else _regionWriter
+  /**
+   * the hose is only used if it is switched on - its write backend (async or direct IO) is configured separately
+   */
+  private lazy val hosed: Boolean = useHose
+
+  private lazy val metricsSource: FabricWriteMetrics = if (hosed) _regionHose else _regionWriter
+
+  /**
+   * the running checksum of the writes to the region file
+   */
+  private[this]
+  val _writeChecksum = new CRC32C
+
+  @volatile private[this]
+  var _checksum: Long = NoRegionChecksum
+
+  /**
+   * a restored checksum that has not yet been validated against the region file
+   */
+  @volatile private[this]
+  var _checksumPending: Boolean = false
 
   /////////////////////////////////////////////////////////////////////////////////////////////////////////////
   // API
@@ -151,6 +237,12 @@ class FabricRegionContext(var snap: FabricSnap, regionIndex: Int, regionTag: Fab
   override
   def loadRegionIntoMemory(): Unit = {
     _regionReader.loadRegionIntoMemory()
+    if (_checksumPending) validateChecksum()
+  }
+
+  override
+  def prefetchRegion(numaNode: Int): Future[Unit] = {
+    _regionReader.prefetchRegion(numaNode)
   }
 
   override
@@ -163,11 +255,65 @@ class FabricRegionContext(var snap: FabricSnap, regionIndex: Int, regionTag: Fab
     _regionReader.iterator
   }
 
+  override
+  def shipRegion(parcelSize: TeslaMemorySize)(ship: TeslaParcel => Unit): Long = {
+    _regionReader.shipRegion(parcelSize)(ship)
+  }
+
   override
   def flushRegionFromDisk(): Unit = {
     _regionReader.flushRegionFromDisk()
   }
 
+  override
+  def regionCompressed: Boolean = {
+    _regionReader.regionCompressed
+  }
+
+  override
+  def regionCompactable: Boolean = {
+    _regionReader.regionCompactable
+  }
+
+  override
+  def compactRegionOnDisk(): Long = {
+    _regionReader.compactRegionOnDisk()
+  }
+
+  // ----------------------------------- INTEGRITY -----------------------------------
+
+  override def regionChecksum: Long = _checksum
+
+  override
+  def recordRegionWrite(buffer: ByteBuffer): Unit = _writeChecksum synchronized {
+    _writeChecksum.update(buffer.duplicate())
+    _checksum = _writeChecksum.getValue
+  }
+
+  override
+  def restoreRegionChecksum(checksum: Long): Unit = {
+    _checksum = checksum
+    _checksumPending = checksum != NoRegionChecksum
+  }
+
+  /**
+   * compare the restored checksum to that of the (just loaded) region file
+   */
+  private
+  def validateChecksum(): Unit = {
+    lazy val tag = s"FabricRegion.validateChecksum($parameters)"
+    val start = System.nanoTime
+    val actual = _regionReader.readChecksum
+    if (actual != _checksum) {
+      _regionReader.evictRegionFromMemory()
+      val msg = s"REGION_CHECKSUM_MISMATCH expected=${_checksum} actual=$actual $tag"
+      log error burstStdMsg(msg)
+      throw VitalsException(msg)
+    }
+    _checksumPending = false
+    log info s"REGION_CHECKSUM_VALID elapsed=${prettyTimeFromNanos(System.nanoTime - start)} $tag"
+  }
+
   // ----------------------------------- WRITING -----------------------------------
 
   /**
@@ -176,43 +322,56 @@ class FabricRegionContext(var snap: FabricSnap, regionIndex: Int, regionTag: Fab
    * @return is the region empty
    */
   override def regionIsRunt: Boolean = {
-    if (useHose)
+    if (hosed)
       _regionHose.regionIsRunt
     else
       _regionWriter.regionIsRunt
   }
 
   override def openRegionForWrites(): Unit = {
-    if (useHose)
+    _writeChecksum synchronized {
+      _writeChecksum.reset()
+      _checksum = NoRegionChecksum
+      _checksumPending = false
+    }
+    _regionReader.regionFileRewritten()
+    if (hosed)
       _regionHose.open()
     else
       _regionWriter.openForWrites()
   }
 
   override def queueParcelForWrite(parcel: TeslaParcel): Unit = {
-    if (useHose)
+    if (hosed)
       _regionHose.putParcel(parcel)
     else
       _regionWriter queueParcelForWrite parcel
   }
 
+  override def freeWriteCapacity: Int = {
+    if (hosed)
+      _regionHose.freeWriteCapacity
+    else
+      _regionWriter.freeWriteCapacity
+  }
+
   override def markAllParcelsQueued(): Unit = {
-    if (useHose)
-      Await.ready(_regionHose.close, Duration.Inf)
+    if (hosed)
+      Await.result(_regionHose.close, Duration.Inf) // the hose close completes when all writes are on disk
     else
       _regionWriter.allParcelsQueuedForWrite()
   }
 
   override def waitForWritesToComplete(): Unit = {
-    if (useHose)
-      ???
+    if (hosed)
+      () // waited for in markAllParcelsQueued
     else
       _regionWriter.waitForWritesToComplete()
   }
 
   override def closeRegionForWrites(): Unit = {
-    if (useHose)
-      Await.ready(_regionHose.close, Duration.Inf)
+    if (hosed)
+      () // the hose releases its channel when its close completes
     else
       _regionWriter.closeForWrites()
   }
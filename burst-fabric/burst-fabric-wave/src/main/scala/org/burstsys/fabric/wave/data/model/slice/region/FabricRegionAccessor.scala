@@ -4,8 +4,10 @@ package org.burstsys.fabric.wave.data.model.slice.region
 import org.burstsys.brio.blob.BrioBlob.BrioRegionIterator
 import org.burstsys.brio.blob.{BrioBlob, BrioBlockAnyVal, BrioStaticBlobAnyVal}
 import org.burstsys.fabric.wave.data.model.slice.region.reader.{FabricRegionReader, FabricRegionReaderContext}
-import org.burstsys.tesla.TeslaTypes.{TeslaMemoryOffset, TeslaMemorySize}
-import org.burstsys.vitals.errors.VitalsException
+import org.burstsys.tesla
+import org.burstsys.tesla.TeslaTypes.{TeslaMemoryOffset, TeslaMemoryPtr, TeslaMemorySize, TeslaNullMemoryPtr}
+import org.burstsys.tesla.parcel.TeslaParcel
+import org.burstsys.vitals.errors.{VitalsException, safely}
 
 /**
  * access to the data in a region
@@ -48,4 +50,42 @@ trait FabricRegionAccessor extends FabricRegionReader {
     }
   }
 
+  final override
+  def shipRegion(parcelSize: TeslaMemorySize)(ship: TeslaParcel => Unit): Long = synchronized {
+    lazy val tag = s"FabricRegionAccessor.shipRegion($parameters)"
+    if (readMemoryPtr == TeslaNullMemoryPtr)
+      throw VitalsException(s"REGION_SHIP_NOT_IN_MEMORY $tag")
+    val eofPtr: TeslaMemoryPtr = readMemoryPtr + readFileSize
+    var runPtr: TeslaMemoryPtr = readMemoryPtr + SizeOfRegionHeader
+    var itemCount = 0L
+    while (runPtr < eofPtr) {
+      // gather a run of whole blocks that fits in a parcel
+      var endPtr = runPtr
+      var blockCount = 0
+      var continue = true
+      while (continue && endPtr < eofPtr) {
+        val blockSize = BrioBlockAnyVal(endPtr).totalBlockSize
+        if (blockSize <= 0 || endPtr + blockSize > eofPtr)
+          throw VitalsException(s"REGION_SHIP_BAD_BLOCK blockSize=$blockSize offset=${endPtr - readMemoryPtr} $tag")
+        if (blockCount > 0 && endPtr + blockSize - runPtr > parcelSize)
+          continue = false
+        else {
+          endPtr += blockSize
+          blockCount += 1
+        }
+      }
+      val runSize = (endPtr - runPtr).toInt
+      val parcel = tesla.parcel.factory.grabParcel(runSize)
+      try parcel.fromInflatedMemoryPtr(blockCount, runSize, runPtr) catch safely {
+        case t: Throwable =>
+          tesla.parcel.factory.releaseParcel(parcel)
+          throw t
+      }
+      ship(parcel)
+      itemCount += blockCount
+      runPtr = endPtr
+    }
+    itemCount
+  }
+
 }
@@ -37,6 +37,18 @@ object FabricRegionReporter extends VitalsReporter {
   private[this]
   val _inflateParcelsMetric = VitalsReporterUnitOpMetric("region_parcel_inflate")
 
+  private[this]
+  val _readPrefetchMetric = VitalsReporterUnitOpMetric("region_read_prefetch")
+
+  private[this]
+  val _compactMetric = VitalsReporterUnitOpMetric("region_compact")
+
+  private[this]
+  val _compactCompressionMetric = VitalsReporterPercentValueMetric("region_compact_compression")
+
+  private[this]
+  val _readInflateMetric = VitalsReporterUnitOpMetric("region_read_inflate")
+
   private[this]
   val _parcelCompressionMetric = VitalsReporterPercentValueMetric("region_parcel_compression")
 
@@ -87,6 +99,31 @@ object FabricRegionReporter extends VitalsReporter {
     _currentRegionsOpenCounter.add(1)
   }
 
+  /**
+   * record a region prefetch (page touch) pass with its time and byte size
+   */
+  final
+  def recordReadPrefetch(ns: Long, byteSize: Long): Unit = {
+    _readPrefetchMetric.recordOpWithTimeAndSize(ns, byteSize)
+  }
+
+  /**
+   * record the compaction of a region file with its time and inflated/deflated byte sizes
+   */
+  final
+  def recordCompact(ns: Long, inflatedSize: Long, deflatedSize: Long): Unit = {
+    _compactCompressionMetric.record(inflatedSize.toDouble / deflatedSize.toDouble)
+    _compactMetric.recordOpWithTimeAndSize(ns, deflatedSize)
+  }
+
+  /**
+   * record the inflation of a compacted region file into memory with its time and inflated byte size
+   */
+  final
+  def recordReadInflate(ns: Long, inflatedSize: Long): Unit = {
+    _readInflateMetric.recordOpWithTimeAndSize(ns, inflatedSize)
+  }
+
   final
   def countReadClose(): Unit = {
     _readClosesMetric.recordOp()
@@ -0,0 +1,201 @@
+/* Copyright Yahoo, Licensed under the terms of the Apache 2.0 license. See LICENSE file in project root for terms. */
+package org.burstsys.fabric.wave.data.model.slice.region.hose
+
+import com.sun.nio.file.ExtendedOpenOption
+import org.burstsys.fabric.wave.configuration.{burstFabricCacheHoseDirectBatchBytesProperty, burstFabricCacheHoseIoProperty}
+import org.burstsys.tesla.offheap
+import org.burstsys.vitals.errors.{VitalsException, safely}
+import org.burstsys.vitals.logging._
+
+import java.nio.ByteBuffer
+import java.nio.channels.{AsynchronousFileChannel, CompletionHandler, FileChannel}
+import java.nio.file.{FileAlreadyExistsException, Files, Path, StandardOpenOption}
+import scala.concurrent.{Future, Promise}
+
+/**
+ * the append only disk write backend of a [[FabricRegionHose]]. Appends are issued one at a time
+ * i.e. the next append is not issued until the previous one completes.
+ */
+trait FabricHoseChannel extends Any {
+
+  /**
+   * append the remaining bytes of a buffer to the file
+   *
+   * @return a future that completes with the number of bytes appended once the buffer can be reused
+   */
+  def append(buffer: ByteBuffer): Future[Int]
+
+  /**
+   * @return the number of bytes appended so far
+   */
+  def size: Long
+
+  /**
+   * make sure all appended bytes are in the file (called after the last append completes)
+   */
+  def flush(): Unit
+
+  /**
+   * release the file and any buffers
+   */
+  def close(): Unit
+
+}
+
+object FabricHoseChannel {
+
+  final val asyncIo = "async"
+
+  final val directIo = "direct"
+
+  /**
+   * create a new file and open the configured backend on it. If direct IO is configured but is
+   * not supported by the file system (e.g. tmpfs) we fall back to async IO.
+   */
+  def apply(path: Path): FabricHoseChannel = {
+    lazy val tag = s"FabricHoseChannel($path)"
+    burstFabricCacheHoseIoProperty.get.trim.toLowerCase match {
+      case `asyncIo` => FabricHoseAsyncChannelContext(path)
+      case `directIo` =>
+        try FabricHoseDirectChannelContext(path, burstFabricCacheHoseDirectBatchBytesProperty.get) catch safely {
+          // not a file system limitation - don't delete someone else's file
+          case t: FileAlreadyExistsException => throw t
+          case t: Throwable =>
+            log warn burstStdMsg(s"HOSE_DIRECT_IO_UNSUPPORTED (using async...) $t $tag")
+            Files.deleteIfExists(path)
+            FabricHoseAsyncChannelContext(path)
+        }
+      case io => throw VitalsException(s"HOSE_IO_UNKNOWN io='$io' $tag")
+    }
+  }
+
+}
+
+/**
+ * writes through an [[AsynchronousFileChannel]] (and the page cache)
+ */
+private final case
+class FabricHoseAsyncChannelContext(path: Path) extends FabricHoseChannel {
+
+  private[this]
+  val _channel: AsynchronousFileChannel = AsynchronousFileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW)
+
+  private[this]
+  var _writePtr: Long = 0
+
+  override def size: Long = _channel.size
+
+  override
+  def append(buffer: ByteBuffer): Future[Int] = {
+    val promise = Promise[Int]()
+    _channel.write(buffer, _writePtr, buffer, new CompletionHandler[Integer, ByteBuffer] {
+      override def completed(bytesWritten: Integer, buffer: ByteBuffer): Unit = {
+        if (buffer.hasRemaining) {
+          promise.failure(VitalsException(s"BUFFER_NOT_EMPTY! FabricHoseChannel.append($path)"))
+        } else {
+          _writePtr += bytesWritten
+          promise.success(bytesWritten)
+        }
+      }
+
+      override def failed(t: Throwable, attachment: ByteBuffer): Unit = promise.failure(t)
+    })
+    promise.future
+  }
+
+  override def flush(): Unit = {}
+
+  override def close(): Unit = _channel.close()
+
+}
+
+/**
+ * writes with O_DIRECT, bypassing the page cache. Appends are copied into an aligned batch buffer
+ * that is written to the file as a single aligned IO whenever it fills. The final partial batch is padded to
+ * the file system block size on flush and the file is then truncated back to the appended size.
+ *
+ * @param batchSize the size of the aligned batch buffer (rounded up to the file system block size)
+ */
+private final case
+class FabricHoseDirectChannelContext(path: Path, batchSize: Int) extends FabricHoseChannel {
+
+  private[this]
+  val _channel: FileChannel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW, ExtendedOpenOption.DIRECT)
+
+  private[this]
+  val _alignment: Int = try math.max(512, Files.getFileStore(path).getBlockSize.toInt) catch safely {
+    case t: Throwable =>
+      _channel.close()
+      throw t
+  }
+
+  /**
+   * the allocated buffer - needed to release the memory
+   */
+  private[this]
+  val _allocation: ByteBuffer = ByteBuffer.allocateDirect(roundUp(math.max(batchSize, _alignment)) + _alignment)
+
+  private[this]
+  val _batch: ByteBuffer = _allocation.alignedSlice(_alignment)
+
+  /**
+   * the (aligned) file offset of the start of the current batch
+   */
+  private[this]
+  var _batchPtr: Long = 0
+
+  private[this]
+  var _size: Long = 0
+
+  override def size: Long = _size
+
+  override
+  def append(buffer: ByteBuffer): Future[Int] = {
+    try {
+      val bytes = buffer.remaining
+      while (buffer.hasRemaining) {
+        if (!_batch.hasRemaining)
+          writeBatch(_batch.capacity)
+        val n = math.min(buffer.remaining, _batch.remaining)
+        val slice = buffer.duplicate()
+        slice.limit(slice.position + n)
+        _batch.put(slice)
+        buffer.position(buffer.position + n)
+      }
+      _size += bytes
+      Future.successful(bytes)
+    } catch safely {
+      case t: Throwable => Future.failed(t)
+    }
+  }
+
+  override
+  def flush(): Unit = {
+    if (_batch.position > 0)
+      writeBatch(roundUp(_batch.position))
+    _channel.truncate(_size)
+  }
+
+  override
+  def close(): Unit = {
+    try _channel.close() finally offheap.releaseBuffer(_allocation)
+  }
+
+  /**
+   * write the first `length` (aligned) bytes of the batch buffer at the batch file offset and start a new batch
+   */
+  private
+  def writeBatch(length: Int): Unit = {
+    _batch.position(0)
+    _batch.limit(length)
+    var written = 0
+    while (_batch.hasRemaining)
+      written += _channel.write(_batch, _batchPtr + written)
+    _batchPtr += length
+    _batch.clear()
+  }
+
+  private
+  def roundUp(bytes: Int): Int = (bytes + _alignment - 1) / _alignment * _alignment
+
+}
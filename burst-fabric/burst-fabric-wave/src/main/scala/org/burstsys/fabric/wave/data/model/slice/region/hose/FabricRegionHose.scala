@@ -2,8 +2,8 @@
 package org.burstsys.fabric.wave.data.model.slice.region.hose
 
 import java.nio.ByteBuffer
-import java.nio.channels.{AsynchronousFileChannel, CompletionHandler}
-import java.nio.file.{Files, NoSuchFileException, Path, StandardOpenOption}
+import java.nio.channels.AsynchronousFileChannel
+import java.nio.file.{Files, NoSuchFileException, Path}
 import java.util.concurrent.atomic.{AtomicBoolean, LongAdder}
 import java.util.concurrent.{ArrayBlockingQueue, TimeUnit}
 
@@ -27,7 +27,8 @@ import scala.util.{Failure, Success}
 trait FabricRegionHose extends Any with FabricWriteMetrics with FabricSnapComponent {
 
   /**
-   * open a [[AsynchronousFileChannel]] for the write and start up pipeline processing thread.
+   * open a [[FabricHoseChannel]] (by default an [[AsynchronousFileChannel]]) for the write and start up pipeline
+   * processing thread.
    * Deletes a pre existing file of the same name.
    */
   def open(): Unit
@@ -42,6 +43,11 @@ trait FabricRegionHose extends Any with FabricWriteMetrics with FabricSnapCompon
    */
   def putParcel(parcel: TeslaParcel): Unit
 
+  /**
+   * the free slots in the put queue
+   */
+  def freeWriteCapacity: Int
+
   /**
    *
    * @return
@@ -75,10 +81,7 @@ class FabricRegionHoseContext(var snap: FabricSnap, region: FabricRegion, region
   /////////////////////////////////////////////////////////////////////////////////////////////////////////////
 
   private[this]
-  var _writePtr: Int = _
-
-  private[this]
-  var _channel: AsynchronousFileChannel = _
+  var _channel: FabricHoseChannel = _
 
   private[this]
   val _queue = new ArrayBlockingQueue[TeslaParcel](queuePutSize)
@@ -138,6 +141,8 @@ class FabricRegionHoseContext(var snap: FabricSnap, region: FabricRegion, region
 
   override def regionIsRunt: Boolean = _itemCount.sum() == 0
 
+  override def freeWriteCapacity: Int = _queue.remainingCapacity
+
   /////////////////////////////////////////////////////////////////////////////////////////////////////////////
   // LIFECYCLE
   /////////////////////////////////////////////////////////////////////////////////////////////////////////////
@@ -151,12 +156,11 @@ class FabricRegionHoseContext(var snap: FabricSnap, region: FabricRegion, region
         log info s"ALREADY_EXTENT_REGION_FILE (deleting...) $tag"
         Files.deleteIfExists(regionPath)
       }
-      _channel = AsynchronousFileChannel.open(
-        regionPath,
-        StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW
-      )
+      _channel = FabricHoseChannel(regionPath)
       // write the header synchronously
-      _writePtr = _channel.write(ByteBuffer.wrap(Array(RegionMagic, RegionVersion)), 0).get()
+      val header = ByteBuffer.wrap(Array(RegionMagic, RegionVersion))
+      region recordRegionWrite header
+      Await.result(_channel.append(header), Duration.Inf)
       _isOpen.set(true)
       _moreParcelsComing.set(true)
       processor()
@@ -251,8 +255,16 @@ class FabricRegionHoseContext(var snap: FabricSnap, region: FabricRegion, region
             _finish = System.nanoTime()
             _finalPromise.failure(t)
           case Success(()) =>
-            _finish = System.nanoTime()
-            _finalPromise.success((): Unit)
+            try {
+              _channel.flush()
+              _finish = System.nanoTime()
+              _finalPromise.success((): Unit)
+            } catch safely {
+              case t: Throwable =>
+                log error burstStdMsg(s"FAIL $t $tag", t)
+                _finish = System.nanoTime()
+                _finalPromise.failure(t)
+            }
         }
         if (debugHose) log info s"$tag done"
       } catch safely {
@@ -326,21 +338,17 @@ class FabricRegionHoseContext(var snap: FabricSnap, region: FabricRegion, region
     checkOpen()
     // make sure our async disk IO is on a request thread
     val ioStart = System.nanoTime()
-    _channel.write(buffer, _writePtr, buffer, new CompletionHandler[Integer, ByteBuffer] {
-      override def completed(bytesWritten: Integer, buffer: ByteBuffer): Unit = {
-        if (buffer.hasRemaining) throw VitalsException(s"BUFFER_NOT_EMPTY! $tag")
-        _writePtr += bytesWritten
+    region recordRegionWrite buffer
+    _channel.append(buffer) onComplete {
+      case Failure(t) =>
+        log error burstStdMsg(s"FAIL $t $tag", t)
+        promise.failure(t)
+      case Success(bytesWritten) =>
         val ioElapsed = System.nanoTime - ioStart
         FabricHoseReporter.sampleParcelWrite(ioElapsed, bytesWritten)
         _ioWait add ioElapsed
         promise.success((): Unit)
-      }
-
-      override def failed(t: Throwable, attachment: ByteBuffer): Unit = {
-        log error burstStdMsg(s"FAIL $t $tag", t)
-        promise.failure(t)
-      }
-    })
+    }
     promise.future
   }
 
@@ -2,19 +2,25 @@
 package org.burstsys.fabric.wave.data.model.slice.region.reader
 
 import java.io.RandomAccessFile
-import java.nio.MappedByteBuffer
+import java.nio.{ByteBuffer, MappedByteBuffer}
 import java.nio.channels.FileChannel
-import java.nio.file.{Files, Path}
+import java.nio.file.{Files, Path, StandardCopyOption, StandardOpenOption}
+import java.util.zip.CRC32C
 import org.burstsys.brio.blob.BrioBlob.BrioRegionIterator
 import org.burstsys.fabric.wave.data.model.slice.region._
 import org.burstsys.fabric.wave.data.model.snap.{FabricSnap, FabricSnapComponent}
 import org.burstsys.tesla
 import org.burstsys.tesla.TeslaTypes._
 import org.burstsys.tesla.offheap
+import org.burstsys.tesla.parcel.TeslaParcel
+import org.burstsys.tesla.part.factory.TeslaMemoryBudget
 import org.burstsys.vitals.errors._
 import org.burstsys.vitals.logging._
+import org.burstsys.tesla.parcel.codec.TeslaParcelCodec
 import sun.nio.ch.DirectBuffer
 
+import scala.concurrent.Future
+
 /**
  * read operations for a fabric region file
  */
@@ -28,7 +34,7 @@ trait FabricRegionReader extends FabricRegionIdentity with FabricSnapComponent {
   def readFileSize: Long
 
   /**
-   * mmap memory ptr
+   * mmap memory ptr (or the inflated memory ptr of a compacted region file)
    *
    * @return
    */
@@ -42,6 +48,16 @@ trait FabricRegionReader extends FabricRegionIdentity with FabricSnapComponent {
    */
   def iterator: BrioRegionIterator
 
+  /**
+   * copy the blocks of the loaded region into inflated parcels, each holding a run of whole blocks. A block larger
+   * than the parcel size is shipped in a parcel of its own.
+   *
+   * @param parcelSize the target size of each parcel
+   * @param ship       takes ownership of each parcel
+   * @return the number of items shipped
+   */
+  def shipRegion(parcelSize: TeslaMemorySize)(ship: TeslaParcel => Unit): Long
+
   /**
    * remove region files from local disk cache
    */
@@ -52,6 +68,46 @@ trait FabricRegionReader extends FabricRegionIdentity with FabricSnapComponent {
    */
   def loadRegionIntoMemory(): Unit
 
+  /**
+   * touch every page of the loaded (mmapped) region file on the prefetch pool so it is memory resident
+   * before the first scan. A prefetch in progress stops early if the region is evicted.
+   *
+   * @param numaNode the NUMA node to touch the pages from
+   * @return a future that completes when the prefetch is done
+   */
+  def prefetchRegion(numaNode: Int): Future[Unit]
+
+  /**
+   * @return the CRC32C of the loaded (mmapped or inflated) region file contents
+   */
+  def readChecksum: Long
+
+  /**
+   * @return true if the region file on disk is compacted i.e. snappy compressed
+   */
+  def regionCompressed: Boolean
+
+  /**
+   * @return true if compacting the region file on disk might free space i.e. it is on disk, not already compacted
+   *         and not known to not compress
+   */
+  def regionCompactable: Boolean
+
+  /**
+   * the region file is being rewritten - forget what is known about it on disk
+   */
+  def regionFileRewritten(): Unit
+
+  /**
+   * rewrite the region file on disk in compacted (snappy compressed) form. A compacted region file is
+   * inflated into an off heap allocation of its exact size when it is loaded into memory instead of being mmapped. This is a NOOP if
+   * the region file is already compacted or if compression does not make it smaller. The region must not be
+   * loaded into memory.
+   *
+   * @return the number of disk bytes freed
+   */
+  def compactRegionOnDisk(): Long
+
   /**
    * close the region read subsystem
    */
@@ -60,6 +116,16 @@ trait FabricRegionReader extends FabricRegionIdentity with FabricSnapComponent {
 }
 
 object FabricRegionReader {
+
+  /**
+   * what a reader knows about its region file on disk
+   */
+  private[reader] final val RegionFileUnprobed = 0
+  private[reader] final val RegionFileAbsent = 1
+  private[reader] final val RegionFilePlain = 2
+  private[reader] final val RegionFileCompacted = 3
+  private[reader] final val RegionFileIncompressible = 4
+
   def apply(snap: FabricSnap, region: FabricRegion, regionIndex: Int, regionTag: FabricRegionTag, filePath: Path): FabricRegionReader =
     FabricRegionReaderContext(snap: FabricSnap, region: FabricRegion, regionIndex: Int, regionTag: FabricRegionTag, filePath: Path)
 }
@@ -68,6 +134,8 @@ private[region] final case
 class FabricRegionReaderContext(var snap: FabricSnap, region: FabricRegion, regionIndex: Int, regionTag: FabricRegionTag, filePath: Path)
   extends AnyRef with FabricRegionReader with FabricRegionAccessor {
 
+  import FabricRegionReader._
+
   lazy val parameters = s"guid=${snap.guid}, regionIndex=${region.regionIndex}, file=${filePath}"
 
   /////////////////////////////////////////////////////////////////////////////////////////////////////////////
@@ -83,15 +151,41 @@ class FabricRegionReaderContext(var snap: FabricSnap, region: FabricRegion, regi
   @transient private[this]
   var _readMappedByteBuffer: MappedByteBuffer = _
 
+  /**
+   * the off heap allocation a compacted region file is inflated into. This is sized exactly rather than taken
+   * from the block pools since a region can be larger than the largest block size class
+   */
+  @transient private[this]
+  var _inflatedPtr: TeslaMemoryPtr = TeslaNullMemoryPtr
+
+  @transient private[this]
+  var _readPtr: TeslaMemoryPtr = TeslaNullMemoryPtr
+
+  @transient private[this]
+  var _readSize: Long = 0
+
+  /**
+   * the sum of the bytes read during prefetch - kept so the reads are not optimized away
+   */
+  @volatile private[this]
+  var _prefetchSum: Long = 0
+
+  /**
+   * what we know about the region file on disk. It is probed from the file header at most once and then kept
+   * up to date as the file is loaded, compacted, flushed and rewritten - the cache tender asks on every cycle
+   */
+  @volatile private[this]
+  var _fileState: Int = RegionFileUnprobed
+
   /////////////////////////////////////////////////////////////////////////////////////////////////////////////
   // API
   /////////////////////////////////////////////////////////////////////////////////////////////////////////////
 
   override def wireSnap(s: FabricSnap): Unit = snap = s
 
-  override def readMemoryPtr: TeslaMemoryPtr = _readMappedByteBuffer.asInstanceOf[DirectBuffer].address
+  override def readMemoryPtr: TeslaMemoryPtr = _readPtr
 
-  override def readFileSize: Long = _file.length
+  override def readFileSize: Long = _readSize
 
   ///////////////////////////////////////////////////////////////////////////////////////////////////////////////
   // Lifecycle
@@ -107,6 +201,8 @@ class FabricRegionReaderContext(var snap: FabricSnap, region: FabricRegion, regi
         _channel = _file.getChannel
         _readMappedByteBuffer = _channel.map(FileChannel.MapMode.READ_ONLY, 0, _file.length)
         _readMappedByteBuffer.order(TeslaByteOrder)
+        _readPtr = _readMappedByteBuffer.asInstanceOf[DirectBuffer].address
+        _readSize = _file.length
       } catch safely {
         case t: Throwable =>
           val msg = s"REGION_LOAD_INTO_MEMORY_FAIL $t $tag"
@@ -123,27 +219,49 @@ class FabricRegionReaderContext(var snap: FabricSnap, region: FabricRegion, regi
         throw VitalsException(msg)
       }
 
-      if (rv != RegionVersion) {
+      if (rv == RegionCompressedVersion || rv == RegionCompressedCodecVersion) {
+        _fileState = RegionFileCompacted
+        inflateRegion(rv)
+      } else if (rv != RegionVersion) {
         val msg = s"REGION_LOAD_BAD_VERSION $RegionVersion but was $rv $tag "
         log error burstStdMsg(msg)
         throw VitalsException(msg)
-      }
-      FabricRegionReporter.countReadOpen(_file.length)
+      } else if (_fileState != RegionFileIncompressible)
+        _fileState = RegionFilePlain
+      FabricRegionReporter.countReadOpen(_readSize)
     }
   }
 
   override
-  def evictRegionFromMemory(): Unit = {
+  def prefetchRegion(numaNode: Int): Future[Unit] = {
+    val buffer = synchronized(_readMappedByteBuffer)
+    if (buffer == null)
+      return Future.unit
+    Future(touchPages(buffer))(prefetchExecutor(numaNode))
+  }
+
+  override
+  def readChecksum: Long = synchronized {
+    val checksum = new CRC32C
+    checksum.update(offheap.directBuffer(_readPtr, _readSize.toInt))
+    checksum.getValue
+  }
+
+  override
+  def evictRegionFromMemory(): Unit = synchronized {
     lazy val tag = s"FabricRegionReader.evictFromMemory($parameters)"
     try {
       log debug s"REGION_EVICT_START $tag"
-      _readMappedByteBuffer.force()
-      offheap.releaseBuffer(_readMappedByteBuffer)
-      _readMappedByteBuffer = null
-      _channel.close()
-      _channel = null
-      _file.close()
-      _file = null
+      if (_inflatedPtr != TeslaNullMemoryPtr) {
+        offheap.freeMemory(_inflatedPtr)
+        TeslaMemoryBudget.recordFree(_readSize)
+        _inflatedPtr = TeslaNullMemoryPtr
+      } else {
+        _readMappedByteBuffer.force()
+        releaseMapping()
+      }
+      _readPtr = TeslaNullMemoryPtr
+      _readSize = 0
       FabricRegionReporter.countReadClose()
     } catch safely {
       case t: Throwable =>
@@ -159,6 +277,7 @@ class FabricRegionReaderContext(var snap: FabricSnap, region: FabricRegion, regi
     try {
       log debug s"REGION_FLUSH $tag"
       if (Files.exists(filePath)) Files.delete(filePath)
+      _fileState = RegionFileAbsent
     } catch safely {
       case t: Throwable =>
         val msg = s"REGION_FLUSH_FAIL $t $tag"
@@ -168,10 +287,230 @@ class FabricRegionReaderContext(var snap: FabricSnap, region: FabricRegion, regi
   }
 
 
+  override
+  def regionCompressed: Boolean = fileState == RegionFileCompacted
+
+  override
+  def regionCompactable: Boolean = fileState == RegionFilePlain
+
+  override
+  def regionFileRewritten(): Unit = _fileState = RegionFileUnprobed
+
+  override
+  def compactRegionOnDisk(): Long = synchronized {
+    lazy val tag = s"FabricRegionReader.compactRegionOnDisk($parameters)"
+    if (_readPtr != TeslaNullMemoryPtr)
+      throw VitalsException(s"REGION_COMPACT_IN_MEMORY $tag")
+    if (!regionCompactable)
+      return 0
+    // the compacted file is written next to the region file with a delete suffix so that a partial
+    // compaction is cleaned up like any other abandoned file (one that races the cleaner fails and is retried)
+    val compactPath = filePath.resolveSibling(s"${filePath.getFileName}$compactFileSuffix$deleteFileSuffix")
+    val start = System.nanoTime
+    try {
+      val inflatedSize = Files.size(filePath)
+      writeCompacted(compactPath, inflatedSize)
+      val deflatedSize = Files.size(compactPath)
+      if (deflatedSize >= inflatedSize) {
+        log debug s"REGION_COMPACT_NO_GAIN inflatedSize=$inflatedSize deflatedSize=$deflatedSize $tag"
+        Files.delete(compactPath)
+        // don't try again until the file is rewritten
+        _fileState = RegionFileIncompressible
+        return 0
+      }
+      Files.move(compactPath, filePath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING)
+      _fileState = RegionFileCompacted
+      FabricRegionReporter.recordCompact(System.nanoTime - start, inflatedSize, deflatedSize)
+      log debug s"REGION_COMPACT inflatedSize=$inflatedSize deflatedSize=$deflatedSize $tag"
+      inflatedSize - deflatedSize
+    } catch safely {
+      case t: Throwable =>
+        Files.deleteIfExists(compactPath)
+        val msg = s"REGION_COMPACT_FAIL $t $tag"
+        log error burstStdMsg(msg, t)
+        throw VitalsException(msg, t)
+    }
+  }
+
   /////////////////////////////////////////////////////////////////////////////////////////////////////////////
   // private
   /////////////////////////////////////////////////////////////////////////////////////////////////////////////
 
+  /**
+   * compress the region file (with the configured parcel codec) one chunk at a time into a new compacted file
+   */
+  private
+  def writeCompacted(compactPath: Path, inflatedSize: Long): Unit = {
+    val codec = TeslaParcelCodec.defaultCodec
+    val file = new RandomAccessFile(filePath.toFile, "r")
+    try {
+      val source = file.getChannel.map(FileChannel.MapMode.READ_ONLY, 0, inflatedSize)
+      try {
+        val sourcePtr = source.asInstanceOf[DirectBuffer].address
+        val out = FileChannel.open(compactPath, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)
+        val chunk = ByteBuffer.allocateDirect(SizeOfRegionChunkHeader + codec.maxDeflatedSize(RegionCompressChunkSize))
+        chunk.order(TeslaByteOrder)
+        try {
+          val header = ByteBuffer.allocate(SizeOfRegionCompressedCodecHeader).order(TeslaByteOrder)
+          header.put(RegionMagic).put(RegionCompressedCodecVersion).put(codec.codecId.toByte).putLong(inflatedSize).flip()
+          writeFully(out, header)
+          val chunkPtr = chunk.asInstanceOf[DirectBuffer].address
+          var offset = 0L
+          while (offset < inflatedSize) {
+            val inflatedChunkSize = math.min(RegionCompressChunkSize.toLong, inflatedSize - offset).toInt
+            val deflatedChunkSize = codec.deflate(sourcePtr + offset, inflatedChunkSize, chunkPtr + SizeOfRegionChunkHeader)
+            chunk.clear()
+            chunk.putInt(inflatedChunkSize).putInt(deflatedChunkSize)
+            chunk.position(0).limit(SizeOfRegionChunkHeader + deflatedChunkSize)
+            writeFully(out, chunk)
+            offset += inflatedChunkSize
+          }
+          out.force(true)
+        } finally {
+          out.close()
+          offheap.releaseBuffer(chunk)
+        }
+      } finally offheap.releaseBuffer(source)
+    } finally file.close()
+  }
+
+  private
+  def writeFully(channel: FileChannel, buffer: ByteBuffer): Unit = {
+    while (buffer.hasRemaining)
+      channel.write(buffer)
+  }
+
+  /**
+   * inflate the (mmapped) compacted region file into an exact size off heap allocation and release the mapping. Must be called
+   * while holding the reader lock.
+   */
+  private
+  def inflateRegion(version: Byte): Unit = {
+    lazy val tag = s"FabricRegionReader.inflateRegion($parameters)"
+    val start = System.nanoTime
+    val mappedPtr = _readPtr
+    val mappedSize = _readSize
+    // compacted files from before codecs were recorded are snappy
+    val (codec, headerSize) = if (version == RegionCompressedCodecVersion)
+      (TeslaParcelCodec.byId(offheap.getByte(mappedPtr + SizeOfRegionHeader)), SizeOfRegionCompressedCodecHeader)
+    else
+      (TeslaParcelCodec.legacyCodec, SizeOfRegionCompressedHeader)
+    val inflatedSize = offheap.getLong(mappedPtr + headerSize - SizeOfLong)
+    if (inflatedSize < SizeOfRegionHeader || inflatedSize > Int.MaxValue) {
+      val msg = s"REGION_INFLATE_BAD_SIZE inflatedSize=$inflatedSize $tag"
+      log error burstStdMsg(msg)
+      throw VitalsException(msg)
+    }
+    val inflatedPtr = offheap.allocateMemory(inflatedSize)
+    TeslaMemoryBudget.recordAllocation(inflatedSize)
+    try {
+      var source = headerSize.toLong
+      var destination = 0L
+      while (source < mappedSize) {
+        val inflatedChunkSize = offheap.getInt(mappedPtr + source)
+        val deflatedChunkSize = offheap.getInt(mappedPtr + source + SizeOfInteger)
+        source += SizeOfRegionChunkHeader
+        if (destination + inflatedChunkSize > inflatedSize)
+          throw VitalsException(s"REGION_INFLATE_OVERFLOW destination=$destination inflatedChunkSize=$inflatedChunkSize $tag")
+        val size = codec.inflate(mappedPtr + source, deflatedChunkSize, inflatedPtr + destination, inflatedChunkSize)
+        if (size != inflatedChunkSize)
+          throw VitalsException(s"REGION_INFLATE_BAD_CHUNK expected=$inflatedChunkSize actual=$size $tag")
+        source += deflatedChunkSize
+        destination += size
+      }
+      if (destination != inflatedSize)
+        throw VitalsException(s"REGION_INFLATE_SHORT expected=$inflatedSize actual=$destination $tag")
+    } catch safely {
+      case t: Throwable =>
+        offheap.freeMemory(inflatedPtr)
+        TeslaMemoryBudget.recordFree(inflatedSize)
+        log error burstStdMsg(s"REGION_INFLATE_FAIL $t $tag", t)
+        throw t
+    }
+    // the compacted file is not needed once inflated
+    releaseMapping()
+    _inflatedPtr = inflatedPtr
+    _readPtr = inflatedPtr
+    _readSize = inflatedSize
+    FabricRegionReporter.recordReadInflate(System.nanoTime - start, inflatedSize)
+  }
+
+  /**
+   * what we know about the region file on disk, probing its header the first time
+   */
+  private
+  def fileState: Int = {
+    if (_fileState == RegionFileUnprobed) synchronized {
+      if (_fileState == RegionFileUnprobed)
+        _fileState = probeFileState
+    }
+    _fileState
+  }
+
+  private
+  def probeFileState: Int = {
+    if (!Files.exists(filePath))
+      return RegionFileAbsent
+    val file = new RandomAccessFile(filePath.toFile, "r")
+    try {
+      if (file.length < SizeOfRegionHeader) RegionFilePlain else {
+        file.seek(SizeOfRegionMagic)
+        val version = file.readByte
+        if (version == RegionCompressedVersion || version == RegionCompressedCodecVersion) RegionFileCompacted else RegionFilePlain
+      }
+    } finally file.close()
+  }
+
+  private
+  def releaseMapping(): Unit = {
+    offheap.releaseBuffer(_readMappedByteBuffer)
+    _readMappedByteBuffer = null
+    _channel.close()
+    _channel = null
+    _file.close()
+    _file = null
+  }
+
+  /**
+   * touch one byte in every page of a mapped buffer, one chunk at a time while holding the reader lock
+   * so the buffer cannot be unmapped underneath us. Sequential touching also triggers kernel read-ahead.
+   */
+  private
+  def touchPages(buffer: MappedByteBuffer): Unit = {
+    lazy val tag = s"FabricRegionReader.touchPages($parameters)"
+    val start = System.nanoTime
+    val size = buffer.capacity.toLong
+    val pageSize = offheap.pageSize
+    var sum = 0L
+    var offset = 0L
+    var evicted = false
+    try {
+      while (offset < size && !evicted) {
+        val end = math.min(offset + prefetchChunkSize, size)
+        synchronized {
+          if (_readMappedByteBuffer ne buffer) evicted = true
+          else {
+            val base = readMemoryPtr
+            var page = offset
+            while (page < end) {
+              sum += offheap.getByte(base + page)
+              page += pageSize
+            }
+          }
+        }
+        offset = end
+      }
+      _prefetchSum = sum
+      if (evicted)
+        log debug s"REGION_PREFETCH_EVICTED offset=$offset $tag"
+      else
+        FabricRegionReporter.recordReadPrefetch(System.nanoTime - start, size)
+    } catch safely {
+      case t: Throwable =>
+        log warn burstStdMsg(s"REGION_PREFETCH_FAIL $t $tag", t)
+    }
+  }
+
   /**
    * First byte is a magic number
    *
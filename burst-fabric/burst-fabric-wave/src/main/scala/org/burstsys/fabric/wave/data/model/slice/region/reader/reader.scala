@@ -1,8 +1,53 @@
 /* Copyright Yahoo, Licensed under the terms of the Apache 2.0 license. See LICENSE file in project root for terms. */
 package org.burstsys.fabric.wave.data.model.slice.region
 
+import io.opentelemetry.context.Context
+import org.burstsys.fabric.wave.configuration.burstFabricCacheRegionPrefetchThreadsProperty
+import org.burstsys.tesla.thread.TeslaNuma
 import org.burstsys.vitals.logging._
+import org.burstsys.vitals.threading.burstThreadGroupGlobal
+
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.{Executors, ThreadFactory}
+import scala.concurrent.{ExecutionContext, ExecutionContextExecutorService}
 
 package object reader extends VitalsLogger {
 
+  /**
+   * the size of the chunks a region prefetch touches while holding the reader lock. This bounds how
+   * long an evict can be held up by a prefetch in progress.
+   */
+  final val prefetchChunkSize: Long = 16 * 1024 * 1024
+
+  private
+  val prefetchThreadId = new AtomicInteger(1)
+
+  /**
+   * a small bounded pool for region prefetch so page touching stays out of the way of scans. In tesla NUMA mode
+   * there is one pool per node with its threads pinned to that node, so the page cache pages of a region are
+   * placed on the node that will scan it.
+   */
+  private lazy
+  val prefetchExecutors: Array[ExecutionContextExecutorService] = (0 until TeslaNuma.nodeCount).map { node =>
+    val factory: ThreadFactory = (r: Runnable) => {
+      val pinned: Runnable = if (!TeslaNuma.numaEnabled) r else () => {
+        TeslaNuma.pinCurrentThread(node)
+        r.run()
+      }
+      val t = new Thread(burstThreadGroupGlobal, pinned, f"fab-region-prefetch-${prefetchThreadId.getAndIncrement}%02d")
+      t.setDaemon(true)
+      t.setPriority(Thread.NORM_PRIORITY - 1)
+      t
+    }
+    val pool = Context.taskWrapping(Executors.newFixedThreadPool(burstFabricCacheRegionPrefetchThreadsProperty.get, factory))
+    ExecutionContext.fromExecutorService(pool)
+  }.toArray
+
+  /**
+   * the prefetch pool for a NUMA node
+   */
+  final
+  def prefetchExecutor(numaNode: Int): ExecutionContextExecutorService =
+    prefetchExecutors(Math.floorMod(numaNode, prefetchExecutors.length))
+
 }
@@ -4,7 +4,7 @@ package org.burstsys.fabric.wave.data.model.slice
 import org.apache.commons.io.FileUtils
 import org.burstsys.fabric
 import org.burstsys.fabric.wave.configuration.cacheSpindleFolders
-import org.burstsys.tesla.TeslaTypes.SizeOfByte
+import org.burstsys.tesla.TeslaTypes.{SizeOfByte, SizeOfInteger, SizeOfLong}
 import org.burstsys.vitals.errors._
 import org.burstsys.vitals.logging._
 
@@ -46,6 +46,46 @@ package object region extends VitalsLogger  {
   final
   val SizeOfRegionHeader = SizeOfRegionVersion + SizeOfRegionMagic
 
+  /**
+   * region file header encoding version of a compacted (compressed) region file. The header is followed by
+   * the inflated size of the region file contents and then a sequence of snappy compressed chunks each prefixed by its
+   * inflated and deflated size
+   */
+  final
+  val RegionCompressedVersion: Byte = 0x2.toByte
+
+  final
+  val SizeOfRegionCompressedHeader: Int = SizeOfRegionHeader + SizeOfLong
+
+  /**
+   * region file header encoding version of a compacted region file that records its codec. The header is followed by
+   * the (byte) id of the [[org.burstsys.tesla.parcel.codec.TeslaParcelCodec]] the chunks are compressed with and then
+   * the same layout as [[RegionCompressedVersion]] (which is always snappy)
+   */
+  final
+  val RegionCompressedCodecVersion: Byte = 0x3.toByte
+
+  final
+  val SizeOfRegionCompressedCodecHeader: Int = SizeOfRegionHeader + SizeOfByte + SizeOfLong
+
+  final
+  val SizeOfRegionChunkHeader: Int = SizeOfInteger + SizeOfInteger
+
+  /**
+   * the (inflated) size of the chunks a region file is compressed in
+   */
+  final
+  val RegionCompressChunkSize: Int = 4 * 1024 * 1024
+
+  final
+  val compactFileSuffix = ".compact"
+
+  /**
+   * the region checksum of a region file whose contents checksum is not known
+   */
+  final
+  val NoRegionChecksum: Long = -1L
+
   /**
    * the region file header as a byte buffer that can be re-used.
    */
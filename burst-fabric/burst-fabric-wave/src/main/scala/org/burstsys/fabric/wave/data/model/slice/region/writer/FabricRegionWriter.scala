@@ -47,6 +47,11 @@ trait FabricRegionWriter extends FabricWriteMetrics with FabricRegionIdentity wi
    */
   def queueParcelForWrite(parcel: TeslaParcel): Unit
 
+  /**
+   * the free slots in the write queue
+   */
+  def freeWriteCapacity: Int
+
   /**
    * open the region write subsystem
    */
@@ -197,6 +202,8 @@ class FabricRegionWriterContext(
     }
   }
 
+  override def freeWriteCapacity: Int = _parcelQueue.remainingCapacity
+
   private val zeroBytes = 0L
 
   override def writeNextParcel: Long = {
@@ -300,7 +307,9 @@ class FabricRegionWriterContext(
   private def writeHeader(): Unit = {
     lazy val tag = s"FabricRegionWriter.writeHeader($parameters)"
     try {
-      _lastWriteFuture = _channel.write(ByteBuffer.wrap(Array(RegionMagic, RegionVersion)), _writePtr)
+      val header = ByteBuffer.wrap(Array(RegionMagic, RegionVersion))
+      region recordRegionWrite header
+      _lastWriteFuture = _channel.write(header, _writePtr)
     } catch safely {
       case t: Throwable =>
         val msg = s"REGION_WRITE_HEADER_FAIL $t $tag"
@@ -317,6 +326,7 @@ class FabricRegionWriterContext(
 
     // the actual write to disk of a NIO buffer
     @inline def writeBuffer(buffer: ByteBuffer): Unit = {
+      region recordRegionWrite buffer
       TeslaRequestCoupler { // give up the worker thread while we wait for ASYNC IO operation
         val oldName = Thread.currentThread().getName
         Thread.currentThread().setName(s"fab-disk-writer")
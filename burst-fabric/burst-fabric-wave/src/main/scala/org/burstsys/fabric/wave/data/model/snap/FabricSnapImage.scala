@@ -58,10 +58,13 @@ trait FabricSnapImage extends KryoSerializable {
   private[this]
   var _eraseTtlMs: Long = 0
 
-  private[this]
+  /**
+   * written under the snap monitor, read lock free (e.g. on the scan path)
+   */
+  @volatile private[this]
   var _state: FabricSnapState = ColdSnap
 
-  private[this]
+  @volatile private[this]
   var _lastAccessTime: Long = System.currentTimeMillis()
 
   private[this]
@@ -35,6 +35,9 @@ object FabricCacheReporter extends VitalsReporter with FabricSnapCacheListener {
   private[this]
   val _flushMetric = VitalsReporterUnitOpMetric("cache_flush")
 
+  private[this]
+  val _compactMetric = VitalsReporterUnitOpMetric("cache_compact")
+
   private[this]
   val _eraseMetric = VitalsReporterUnitOpMetric("cache_erase")
 
@@ -64,6 +67,11 @@ object FabricCacheReporter extends VitalsReporter with FabricSnapCacheListener {
     _currentDiskCounter.add(-bytes)
   }
 
+  override def onSnapCompact(snap: FabricSnap, elapsedNs: Long, bytes: Long): Unit = {
+    _compactMetric.recordOpWithTimeAndSize(elapsedNs, bytes)
+    _currentDiskCounter.add(-bytes)
+  }
+
   override def onSnapErase(snap: FabricSnap): Unit = {
     _eraseMetric.recordOp()
   }
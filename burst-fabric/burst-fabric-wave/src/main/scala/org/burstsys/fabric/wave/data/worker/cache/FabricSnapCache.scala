@@ -1,12 +1,15 @@
 /* Copyright Yahoo, Licensed under the terms of the Apache 2.0 license. See LICENSE file in project root for terms. */
 package org.burstsys.fabric.wave.data.worker.cache
 
+import org.burstsys.fabric.wave.configuration.burstFabricCacheEvictPolicyProperty
 import org.burstsys.fabric.wave.data.model.limits.{FabricSnapCacheLimits, FabricSnapCacheLimitsContext}
 import org.burstsys.fabric.wave.data.model.ops.FabricCacheOps
-import org.burstsys.fabric.wave.data.model.slice.FabricSlice
+import org.burstsys.fabric.wave.data.model.generation.key.FabricGenerationKey
+import org.burstsys.fabric.wave.data.model.slice.{FabricGenerationHash, FabricSlice, FabricSliceKey}
 import org.burstsys.fabric.wave.data.model.snap.{FabricSnap, FailedSnap, HotSnap, NoDataSnap}
 import org.burstsys.fabric.wave.data.worker.cache.internal._
 import org.burstsys.fabric.wave.data.worker.cache.lifecycle.{FabricSnapCacheBooter, FabricSnapCacheCleaner, FabricSnapCacheLoader, FabricSnapCacheTender}
+import org.burstsys.fabric.wave.data.worker.cache.policy.FabricSnapEvictPolicy
 import org.burstsys.fabric.wave.data.worker.pump.FabricCacheIntake
 import org.burstsys.vitals.VitalsService
 import org.burstsys.vitals.VitalsService.{VitalsServiceModality, VitalsSingleton}
@@ -27,6 +30,14 @@ trait FabricSnapCache extends VitalsService with FabricCacheOps {
    */
   def loadSnapWithReadLock(slice: FabricSlice): FabricSnap
 
+  /**
+   * return the local [[FabricSnap]] for a slice of a generation from cache '''with a read lock''' if
+   * it is already on disk or in memory. This is used to ship a slice to a peer worker so it never cold loads.
+   *
+   * @return a [[HotSnap]] or [[NoDataSnap]] or None if there is no such local snap
+   */
+  def peerSnapWithReadLock(generationKey: FabricGenerationKey, generationHash: FabricGenerationHash, sliceKey: FabricSliceKey): Option[FabricSnap]
+
   /**
    * @return current cold (in cache but not on disk) snap count
    */
@@ -113,6 +124,11 @@ class FabricSnapCacheContext() extends AnyRef
 
   protected val cache: FabricSnapCache = this
 
+  /**
+   * the ordering of resource constrained evicts and flushes
+   */
+  protected lazy val evictPolicy: FabricSnapEvictPolicy = FabricSnapEvictPolicy(burstFabricCacheEvictPolicyProperty.get)
+
   /////////////////////////////////////////////////////////////////////////////////////////////////////////////
   // private state
   ////////////////////////////////////////////////////////////////////////////////////////////////////////////
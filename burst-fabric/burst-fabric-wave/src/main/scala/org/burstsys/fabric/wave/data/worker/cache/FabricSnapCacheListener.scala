@@ -44,6 +44,14 @@ trait FabricSnapCacheListener extends Any {
    */
   def onSnapFlush(snap: FabricSnap, elapsedNs: Long, bytes: Long): Unit = {}
 
+  /**
+   * a slice is being compacted (compressed on disk)
+   *
+   * @param snap
+   * @param bytes the number of disk bytes freed
+   */
+  def onSnapCompact(snap: FabricSnap, elapsedNs: Long, bytes: Long): Unit = {}
+
   /**
    * a slice is being erased
    *
@@ -4,13 +4,17 @@ package org.burstsys.fabric.wave.data.worker.cache.internal
 import java.util.concurrent.TimeUnit
 import java.util.concurrent.locks.ReentrantLock
 
+import org.burstsys.fabric.wave.configuration.burstFabricCacheLockStripesProperty
+import org.burstsys.fabric.wave.data.model.slice.FabricSlice
 import org.burstsys.vitals.errors.{VitalsException, safely}
 import org.burstsys.vitals.logging._
 
 import scala.language.postfixOps
 
 /**
- * locking protocol for the snap cache functions
+ * locking protocol for the snap cache functions. Lookups, inserts and removes of a slice's snap in the cache map
+ * are guarded by one of a set of lock stripes chosen by slice hash, so loads, evicts and flushes of unrelated
+ * slices do not serialize. Snap state transitions themselves are guarded by the snap's own read/write lock.
  */
 trait FabricSnapCacheLocks extends AnyRef {
 
@@ -21,8 +25,14 @@ trait FabricSnapCacheLocks extends AnyRef {
   // PRIVATE STATE
   /////////////////////////////////////////////////////////////////////////////////////////////////////////////
 
+  /**
+   * slice hashed lock stripes (a power of two in number)
+   */
   final protected
-  val _snapCacheGlobalLock = new ReentrantLock(true)
+  val _snapCacheLocks: Array[ReentrantLock] = {
+    val stripes = Integer.highestOneBit(math.max(1, burstFabricCacheLockStripesProperty.get - 1) << 1)
+    Array.fill(stripes)(new ReentrantLock(true))
+  }
 
   /////////////////////////////////////////////////////////////////////////////////////////////////////////////
   // API
@@ -74,64 +84,105 @@ trait FabricSnapCacheLocks extends AnyRef {
     }
   */
 
-  final private def info: String = s"holds=${_snapCacheGlobalLock.getHoldCount} queue=${_snapCacheGlobalLock.getQueueLength}"
+  /**
+   * acquire the cache lock stripe for a slice. This guards the lookup/insert/remove of that slice's
+   * snap in the cache map and is to be held only for very short periods. Unrelated slices
+   * (almost always) hash to other stripes and do not contend.
+   */
+  final protected
+  def acquireSliceCacheLock(slice: FabricSlice): Unit = acquireCacheLock(stripeOf(slice))
 
   /**
-   * acquire the global grain snap cache lock. This is to be used very sparingly and for
-   * very short periods as it blocks all other snap cache operations.
+   * release the cache lock stripe for a slice
    */
   final protected
-  def acquireGlobalCacheLock(): Unit = {
-    lazy val tag = "FabricSnapCacheLocker.acquireGlobalCacheLock"
-    if (debugGlobalLocks)
-      log info s"CACHE_ENTER $tag $info"
-    if (_snapCacheGlobalLock.tryLock(0, TimeUnit.SECONDS) ||
-      _snapCacheGlobalLock.tryLock(cacheLockAcquireTimeout.toSeconds, TimeUnit.SECONDS)) {
-      if (debugGlobalLocks)
-        log info s"CACHE_EXIT $tag"
-    } else {
-      val msg = s"CACHE_TIMEOUT $tag $cacheLockAcquireTimeout [${_snapCacheGlobalLock}] $info"
-      log error burstStdMsg(msg)
-      throw VitalsException(msg)
-    }
+  def releaseSliceCacheLock(slice: FabricSlice): Unit = releaseCacheLock(stripeOf(slice))
+
+  /**
+   * release the cache lock stripe for a slice only if its held
+   */
+  final protected
+  def releaseSliceCacheLockIfHeld(slice: FabricSlice): Unit = {
+    val lock = stripeOf(slice)
+    if (lock.isHeldByCurrentThread) releaseCacheLock(lock)
   }
 
   /**
-   * release the global grain snap cache lock
+   * acquire all cache lock stripes (in stripe order). This is to be used very sparingly and for
+   * very short periods as it blocks all other snap cache operations.
    */
   final protected
-  def releaseGlobalCacheLock(): Unit = {
-    lazy val tag = "FabricSnapCacheLocker.releaseGlobalCacheLock"
-    if (debugGlobalLocks)
-      log info s"CACHE_ENTER $tag $info"
+  def acquireGlobalCacheLock(): Unit = {
+    var i = 0
     try {
-      _snapCacheGlobalLock.unlock()
+      while (i < _snapCacheLocks.length) {
+        acquireCacheLock(_snapCacheLocks(i))
+        i += 1
+      }
     } catch safely {
-      // just in case we fall through a hole and try to unlock twice...
-      case imse: IllegalMonitorStateException =>
-        log warn burstStdMsg(s"CACHE_COULD_NOT_UNLOCK $tag", imse)
+      case t: Throwable =>
+        while (i > 0) {
+          i -= 1
+          releaseCacheLock(_snapCacheLocks(i))
+        }
+        throw t
     }
-    if (debugGlobalLocks)
-      log info s"CACHE_EXIT $tag $info"
   }
 
   /**
-   * release the global grain snap cache lock only if its held
+   * release all cache lock stripes
    */
   final protected
-  def releaseGlobalCacheLockIfHeld(): Unit = {
-    lazy val tag = "FabricSnapCacheLocker.releaseGlobalCacheLockIfHeld"
+  def releaseGlobalCacheLock(): Unit = {
+    var i = _snapCacheLocks.length
+    while (i > 0) {
+      i -= 1
+      releaseCacheLock(_snapCacheLocks(i))
+    }
+  }
+
+  /////////////////////////////////////////////////////////////////////////////////////////////////////////////
+  // internals
+  /////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+  final private
+  def stripeOf(slice: FabricSlice): ReentrantLock = {
+    val h = slice.hashCode
+    _snapCacheLocks((h ^ (h >>> 16)) & (_snapCacheLocks.length - 1))
+  }
+
+  final private def info(lock: ReentrantLock): String = s"holds=${lock.getHoldCount} queue=${lock.getQueueLength}"
+
+  final private
+  def acquireCacheLock(lock: ReentrantLock): Unit = {
+    lazy val tag = "FabricSnapCacheLocker.acquireCacheLock"
+    if (debugGlobalLocks)
+      log info s"CACHE_ENTER $tag ${info(lock)}"
+    if (lock.tryLock(0, TimeUnit.SECONDS) ||
+      lock.tryLock(cacheLockAcquireTimeout.toSeconds, TimeUnit.SECONDS)) {
+      if (debugGlobalLocks)
+        log info s"CACHE_EXIT $tag"
+    } else {
+      val msg = s"CACHE_TIMEOUT $tag $cacheLockAcquireTimeout [$lock] ${info(lock)}"
+      log error burstStdMsg(msg)
+      throw VitalsException(msg)
+    }
+  }
+
+  final private
+  def releaseCacheLock(lock: ReentrantLock): Unit = {
+    lazy val tag = "FabricSnapCacheLocker.releaseCacheLock"
     if (debugGlobalLocks)
-      log info s"CACHE_ENTER $tag $info"
+      log info s"CACHE_ENTER $tag ${info(lock)}"
     try {
-      if (_snapCacheGlobalLock.isHeldByCurrentThread) _snapCacheGlobalLock.unlock()
+      lock.unlock()
     } catch safely {
       // just in case we fall through a hole and try to unlock twice...
       case imse: IllegalMonitorStateException =>
         log warn burstStdMsg(s"CACHE_COULD_NOT_UNLOCK $tag", imse)
     }
     if (debugGlobalLocks)
-      log info s"CACHE_EXIT $tag $info"
+      log info s"CACHE_EXIT $tag ${info(lock)}"
   }
 
 }
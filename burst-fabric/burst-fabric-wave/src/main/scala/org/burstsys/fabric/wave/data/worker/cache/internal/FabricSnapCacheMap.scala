@@ -69,6 +69,15 @@ trait FabricSnapCacheMap extends AnyRef with FabricSnapCache {
   def flushCandidateSnaps: List[FabricSnap] =
     _snapCache.values.asScala.toList.filter(inFlushReadyState).sortBy(_.lastAccessTime)
 
+  /**
+   * snaps in [[WarmSnap]] state whose region files are not yet compacted - sorted by access time
+   *
+   * @return
+   */
+  final protected
+  def compactCandidateSnaps: List[FabricSnap] =
+    _snapCache.values.asScala.toList.filter(inCompactReadyState).sortBy(_.lastAccessTime)
+
   /**
    * snaps in [[ColdSnap]] state - sorted by access time
    *
@@ -110,6 +119,8 @@ trait FabricSnapCacheMap extends AnyRef with FabricSnapCache {
 
   private def inFlushReadyState(s: FabricSnap): Boolean = s.state == HotSnap || s.state == WarmSnap || s.state == NoDataSnap
 
+  private def inCompactReadyState(s: FabricSnap): Boolean = s.state == WarmSnap && !s.data.sliceCompactedOnDisk
+
   private def inEraseReadyState(s: FabricSnap): Boolean = s.state == ColdSnap
 
 }
@@ -1,7 +1,7 @@
 /* Copyright Yahoo, Licensed under the terms of the Apache 2.0 license. See LICENSE file in project root for terms. */
 package org.burstsys.fabric.wave.data.worker.cache.internal
 
-import org.burstsys.fabric.wave.configuration.burstFabricCacheBootFlushProperty
+import org.burstsys.fabric.wave.configuration.{burstFabricCacheBootFlushProperty, burstFabricCacheBootRecoverProperty}
 import org.burstsys.fabric.wave.data.model.slice.region.RegionFileFilter
 import org.burstsys.fabric.wave.data.model.slice.region.deleteFileSuffix
 import org.burstsys.fabric.wave.data.model.slice.region.regionFileSuffix
@@ -11,6 +11,7 @@ import org.burstsys.vitals.errors._
 import org.burstsys.vitals.logging._
 
 import java.nio.file.Files
+import java.nio.file.Path
 import java.nio.file.Paths
 import scala.language.postfixOps
 
@@ -21,12 +22,15 @@ trait FabricSnapCacheRegions extends Any {
 
   /**
    * initialize the cache - loading slices and their regions as they are found. Flush if enabled...
+   * In recovery mode region files are left in place for the snap boot to pick up.
    */
   final
   def initializeRegionFiles(): Unit = {
     lazy val tag = s"FabricSnapCacheRegions.initializeRegionFiles"
     try {
-      if (burstFabricCacheBootFlushProperty.get)
+      if (burstFabricCacheBootRecoverProperty.get)
+        log info s"CACHE_KEEP_ALL_REGION_FILES (recovery mode...) $tag "
+      else if (burstFabricCacheBootFlushProperty.get)
         cleanAllRegionFiles()
       else
         loadRegionFiles()
@@ -45,13 +49,34 @@ trait FabricSnapCacheRegions extends Any {
   def cleanAllRegionFiles(): Unit = {
     lazy val tag = s"FabricSnapCacheRegions.cleanAllRegionFiles"
     log info s"CACHE_DELETE_ALL_REGION_FILES $tag "
+    cleanRegionFiles(_ => true)
+  }
+
+  /**
+   * clean up the region files that do not belong to a recovered snap
+   *
+   * @param referenced the (absolute) region file paths of the recovered snaps
+   */
+  final protected
+  def cleanUnreferencedRegionFiles(referenced: Set[Path]): Unit = {
+    lazy val tag = s"FabricSnapCacheRegions.cleanUnreferencedRegionFiles"
+    log info s"CACHE_DELETE_UNREFERENCED_REGION_FILES referenced=${referenced.size} $tag "
+    cleanRegionFiles(path => !referenced.contains(path.toAbsolutePath))
+  }
+
+  /**
+   * move region files to be deleted by the background cleaner
+   */
+  final private
+  def cleanRegionFiles(shouldClean: Path => Boolean): Unit = {
+    lazy val tag = s"FabricSnapCacheRegions.cleanRegionFiles"
     regionFolders foreach {
       folder =>
         try {
           val stream = Files.newDirectoryStream(folder, RegionFileFilter)
           try {
             stream forEach {
-              path =>
+              path => if (shouldClean(path)) {
                 var i = 1
                 val fileName = path.toString.stripSuffix(regionFileSuffix)
                 var deletedFile = Paths.get(fileName + deleteFileSuffix)
@@ -66,6 +91,7 @@ trait FabricSnapCacheRegions extends Any {
                   case t: Throwable =>
                     log error burstStdMsg(t)
                 }
+              }
             }
           } finally stream.close()
         } catch safely {
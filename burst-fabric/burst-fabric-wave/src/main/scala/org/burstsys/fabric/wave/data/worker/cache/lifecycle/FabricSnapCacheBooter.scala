@@ -1,39 +1,57 @@
 /* Copyright Yahoo, Licensed under the terms of the Apache 2.0 license. See LICENSE file in project root for terms. */
 package org.burstsys.fabric.wave.data.worker.cache.lifecycle
 
-import org.burstsys.fabric.wave.configuration.burstFabricCacheBootFlushProperty
+import org.burstsys.fabric.wave.configuration.{burstFabricCacheBootFlushProperty, burstFabricCacheBootRecoverProperty}
 import org.burstsys.fabric.wave.data.worker.cache.{FabricSnapCache, FabricSnapCacheContext}
 import org.burstsys.fabric.wave.data.worker.cache.internal.{FabricSnapCacheLocks, FabricSnapCacheMap}
 import org.burstsys.fabric.wave.data.model.snap._
 import org.burstsys.vitals.errors._
 import org.apache.commons.io.FileUtils
 
+import java.nio.file.Path
+
 import scala.language.postfixOps
 import org.burstsys.vitals.logging._
 
 /**
  * [[FabricSnapCache]] JVM boot time lifecycle functions
  * If `burstFabricCacheBootFlushProperty` is true, then delete the snap files instead or reloading
- * them at boot.
+ * them at boot. If `burstFabricCacheBootRecoverProperty` is true, then snaps with intact region files are
+ * recovered and served without a reload.
  */
 trait FabricSnapCacheBooter extends AnyRef  {
 
   self: FabricSnapCacheContext =>
 
+  import FabricSnapCacheBooter._
+
   private
   def printFolders: String = snapFolders.mkString("\n\t", ", \n\t", "")
 
   final protected
   def bootSnapCache(): Unit = {
     lazy val tag = s"FabricSnapCacheBooter.bootSnapCache"
+    val recover = burstFabricCacheBootRecoverProperty.get
     var loadCount = 0
+    var recoverCount = 0
     var deleteCount = 0
+    var recoveredRegionFiles = Set.empty[Path]
     try {
       acquireGlobalCacheLock()
       try {
         getPersistedSnapFiles foreach {
           file =>
-            if (burstFabricCacheBootFlushProperty.get) {
+            if (recover) {
+              recoverSnap(file) match {
+                case Some(snap) =>
+                  recoveredRegionFiles ++= snap.data.regionFiles.map(_.toAbsolutePath)
+                  this += snap
+                  recoverCount += 1
+                case None =>
+                  FileUtils.deleteQuietly(file.toFile)
+                  deleteCount += 1
+              }
+            } else if (burstFabricCacheBootFlushProperty.get) {
               FileUtils.deleteQuietly(file.toFile)
               deleteCount += 1
             } else {
@@ -44,8 +62,12 @@ trait FabricSnapCacheBooter extends AnyRef  {
             }
         }
       } finally releaseGlobalCacheLock()
+      if (recover)
+        cleanUnreferencedRegionFiles(recoveredRegionFiles)
       if (loadCount > 0)
         log info f"CACHE_SNAP_LOADED loadCount=$loadCount%,d FROM ${printFolders} $tag"
+      if (recoverCount > 0)
+        log info f"CACHE_SNAP_RECOVERED recoverCount=$recoverCount%,d FROM ${printFolders} $tag"
       if (deleteCount > 0)
         log info f"CACHE_SNAP_DELETED deleteCount=$deleteCount%,d FROM ${printFolders} $tag"
     } catch safely {
@@ -56,3 +78,36 @@ trait FabricSnapCacheBooter extends AnyRef  {
   }
 
 }
+
+object FabricSnapCacheBooter {
+
+  /**
+   * a snap whose region files were all written (with checksums) and are still on disk is served as a [[WarmSnap]]
+   * (validated against the checksums on its first load), an empty snap stays a [[NoDataSnap]]. Anything
+   * else (including snap files that can't be read) is not recovered.
+   *
+   * @return the recovered snap if any
+   */
+  private[fabric]
+  def recoverSnap(file: Path): Option[FabricSnap] = {
+    lazy val tag = s"FabricSnapCacheBooter.recoverSnap($file)"
+    try {
+      val snap = FabricSnap(file)
+      snap.state match {
+        case WarmSnap | HotSnap if snap.data.regionsRecoverable =>
+          snap state = WarmSnap
+          Some(snap)
+        case NoDataSnap =>
+          Some(snap)
+        case s =>
+          log info s"CACHE_SNAP_NOT_RECOVERABLE state=$s $tag"
+          None
+      }
+    } catch safely {
+      case t: Throwable =>
+        log warn burstStdMsg(s"CACHE_SNAP_NOT_RECOVERABLE $t $tag", t)
+        None
+    }
+  }
+
+}
@@ -4,7 +4,7 @@ package org.burstsys.fabric.wave.data.worker.cache.lifecycle
 import org.burstsys.fabric.wave.data.model.snap.{ColdSnap, FabricSnap, FailedSnap, HotSnap, NoDataSnap, WarmSnap}
 import org.burstsys.fabric.wave.data.worker.cache.FabricSnapCacheContext
 import org.burstsys.vitals.errors.safely
-import org.burstsys.vitals.reporter.instrument.{prettyTimeFromMillis, prettyTimeFromNanos}
+import org.burstsys.vitals.reporter.instrument.{prettyByteSizeString, prettyTimeFromMillis, prettyTimeFromNanos}
 import org.burstsys.vitals.logging.burstStdMsg
 import org.burstsys.vitals.time.printTimeInPast
 
@@ -12,6 +12,7 @@ import org.burstsys.vitals.time.printTimeInPast
  * OPS to clean resources out of memory and disk
  * {{{
  *   evict: remove slice from memory
+ *   compact: compress slice region files on disk
  *   flush: remove slices from disk
  * }}}
  * NOTE: under peak loading it is possible for cleaning to take up significant system BW. It is important
@@ -145,6 +146,46 @@ trait FabricSnapCacheCleaner extends AnyRef {
     }
   }
 
+  /**
+   * '''compact''' (compress region files on disk) a snap - you do not need (nor should you have)
+   * a global or snap grained lock before entering.
+   * This will only work if the snap (after a possible transition) is in [[WarmSnap]] state. If not this is a NOOP.
+   * The snap stays [[WarmSnap]] - its compacted regions are inflated into memory when it is next loaded.
+   *
+   * @param snap  the snap to compact
+   * @param cause the reason the snap is being compacted
+   * @return true if success, false otherwise
+   */
+  final protected
+  def compactSnap(snap: FabricSnap, cause: String): Boolean = {
+    lazy val tag = s"FabricSnapCacheCleaner.compactSnap(guid=${snap.guid}, ${snap.slice.identity})"
+    val start = System.nanoTime
+    try {
+      var loops = 0
+      while (loops < tenderLoopTuner.maxLoops) {
+        snap.state match {
+          case WarmSnap =>
+            if (snap.trySnapWriteLock) {
+              try {
+                log info s"CACHE_SNAP_COMPACT cause=$cause state=${snap.state} guid=${snap.guid} ${snap.slice.identity}"
+                return doCompact(snap)
+              } finally snap.releaseSnapWriteLock()
+            } else snap.waitState(tenderLoopTuner.waitQuantumMs) // if someone else has a lock then we wait for them - but not too long...
+
+          case _ => return false
+        }
+        loops += 1
+      }
+      log debug burstStdMsg(s"FAB_CACHE_COMPACT_DELAY elapsed=${prettyTimeFromNanos(System.nanoTime - start)} loops=$loops")
+      false
+    } catch safely {
+      case t: Throwable =>
+        snap.lastFail = t
+        log error burstStdMsg(s"FAB_CACHE_COMPACT_FAIL $t $tag", t)
+        throw t
+    }
+  }
+
   /**
    * '''erase''' (remove from cache management) a Cold snap - you do not need (nor should you have)
    * a global or snap grained lock before entering.
@@ -280,6 +321,35 @@ trait FabricSnapCacheCleaner extends AnyRef {
     }
   }
 
+  /**
+   * do the actual compaction of the region files of a (Warm) snap.
+   *
+   * @param snap
+   * @return true if success, false otherwise
+   */
+  private[cache]
+  def doCompact(snap: FabricSnap): Boolean = {
+    lazy val tag = s"FabricSnapCacheCleaner.doCompact(guid=${snap.guid}, ${snap.slice.identity})"
+    val start = System.nanoTime
+    try {
+      snap.state match {
+        case WarmSnap =>
+          val freed = snap.data.compactSliceOnDisk()
+          log info s"FAB_CACHE_COMPACT_WARM_SNAP freed=${prettyByteSizeString(freed)} elapsed=${prettyTimeFromNanos(System.nanoTime - start)} $tag "
+          talk(_.onSnapCompact(snap, System.nanoTime - start, freed))
+          return true
+        case s =>
+          log warn s"FAB_CACHE_COMPACT_NOT_WARM_SNAP state=$s $tag "
+      }
+      false
+    } catch safely {
+      case t: Throwable =>
+        snap.lastFail = t
+        log error burstStdMsg(s"FAB_CACHE_COMPACT_FAIL $t $tag", t)
+        false
+    }
+  }
+
   /**
    * do an erase of a (Cold) snap.
    *
@@ -295,13 +365,13 @@ trait FabricSnapCacheCleaner extends AnyRef {
         case HotSnap => log warn s"FAB_CACHE_ERASE_HOT_SNAP $tag "
         case NoDataSnap => log warn s"FAB_CACHE_ERASE_NO_DATA_SNAP $tag "
         case ColdSnap | FailedSnap =>
-          acquireGlobalCacheLock()
+          acquireSliceCacheLock(snap.slice)
           try {
             log info s"FAB_CACHE_ERASE_COLD_SNAP $tag "
             this -= snap.delete // remove from cache tracking and file system
             talk(_.onSnapErase(snap))
             return true
-          } finally releaseGlobalCacheLock()
+          } finally releaseSliceCacheLock(snap.slice)
         case s => log warn s"FAB_CACHE_ERASE_UNKNOWN_SNAP state=$s $tag "
       }
       false
@@ -1,7 +1,8 @@
 /* Copyright Yahoo, Licensed under the terms of the Apache 2.0 license. See LICENSE file in project root for terms. */
 package org.burstsys.fabric.wave.data.worker.cache.lifecycle
 
-import org.burstsys.fabric.wave.data.model.slice.FabricSlice
+import org.burstsys.fabric.wave.data.model.generation.key.FabricGenerationKey
+import org.burstsys.fabric.wave.data.model.slice.{FabricGenerationHash, FabricSlice, FabricSliceKey}
 import org.burstsys.fabric.wave.data.model.slice.state._
 import org.burstsys.fabric.wave.data.model.snap.{FabricSnap, _}
 import org.burstsys.fabric.wave.data.model.store.FabricStoreNameProperty
@@ -40,32 +41,68 @@ trait FabricSnapCacheLoader extends AnyRef {
   def loadSnapWithReadLock(slice: FabricSlice): FabricSnap = {
     lazy val tag = s"FabricSnapCacheLoader.loadSnapWithReadLock(guid=${slice.guid}, ${slice.identity})"
     val startNanos = System.nanoTime()
-    acquireGlobalCacheLock()
     try {
-      get(slice) match {
+      // lock free lookup for the (common) case where the snap is already in the map
+      val found = get(slice) match {
+        case Some(snap) => Some(snap)
+        case None =>
+          acquireSliceCacheLock(slice)
+          get(slice) // check again now that we hold the lock
+      }
+      found match {
         case None => // snap brand new so its always cold ...
           val snap = FabricSnap(getSnapFile(slice), slice)
           this += snap
           log info s"FAB_CACHE_SNAP_NOT_FOUND (adding to cache map...) $tag "
-          releaseGlobalCacheLock()
+          releaseSliceCacheLock(slice)
           processSnap(startNanos, snap, slice)
           snap.lastFail.foreach(t => throw VitalsException(s"FAB_CACHE_LOAD_FAIL $tag", t))
+          evictPolicy recordAccess snap
           snap.persist
 
         case Some(snap) => // snap already in map so we have to deal with multiple states...
           log info s"FAB_CACHE_SNAP_FOUND (taken from cache map...) $tag "
-          releaseGlobalCacheLock()
+          releaseSliceCacheLockIfHeld(slice)
           processSnap(startNanos, snap, slice)
           snap.lastFail.foreach(t => throw VitalsException(s"FAB_CACHE_LOAD_FAIL $tag", t))
+          evictPolicy recordAccess snap
           snap.recordAccess
       }
     } catch safely {
       case t: Throwable =>
-        releaseGlobalCacheLockIfHeld()
+        releaseSliceCacheLockIfHeld(slice)
         throw t
     }
   }
 
+  final override
+  def peerSnapWithReadLock(generationKey: FabricGenerationKey, generationHash: FabricGenerationHash, sliceKey: FabricSliceKey): Option[FabricSnap] = {
+    lazy val tag = s"FabricSnapCacheLoader.peerSnapWithReadLock($generationKey, generationHash=$generationHash, sliceKey=$sliceKey)"
+    val iterator = allSnaps()
+    while (iterator.hasNext) {
+      val snap = iterator.next()
+      if (snap.slice.sliceKey == sliceKey && snap.slice.generationHash == generationHash && generationKey.identifies(snap.metadata)) {
+        snap.state match {
+          case WarmSnap | HotSnap | NoDataSnap =>
+            val loaded = loadSnapWithReadLock(snap.slice)
+            loaded.state match {
+              case HotSnap | NoDataSnap =>
+                log info s"FAB_CACHE_PEER_SNAP_FOUND state=${loaded.state} $tag"
+                return Some(loaded)
+              case _ => // a failed snap is returned without a read lock
+                log info s"FAB_CACHE_PEER_SNAP_FAILED $tag"
+                return None
+            }
+          case state =>
+            log info s"FAB_CACHE_PEER_SNAP_NOT_LOCAL state=$state $tag"
+            return None
+        }
+      }
+    }
+    log info s"FAB_CACHE_PEER_SNAP_NOT_FOUND $tag"
+    None
+  }
+
   /////////////////////////////////////////////////////////////////////////////////////////////////////////////
   // internals
   /////////////////////////////////////////////////////////////////////////////////////////////////////////////
@@ -1,6 +1,7 @@
 /* Copyright Yahoo, Licensed under the terms of the Apache 2.0 license. See LICENSE file in project root for terms. */
 package org.burstsys.fabric.wave.data.worker.cache.lifecycle
 
+import org.burstsys.fabric.wave.configuration.burstFabricCacheRegionCompactProperty
 import org.burstsys.fabric.wave.data.model.limits.FabricSnapCacheLimits
 import org.burstsys.fabric.wave.data.worker.cache.{FabricSnapCache, FabricSnapCacheContext}
 import org.burstsys.vitals.background.VitalsBackgroundFunction
@@ -12,7 +13,9 @@ import org.burstsys.vitals.logging._
  * and persistent file system (disk) through flushing of datasets where needed
  * and appropriate.
  * upper and lower resource bounds found in the `limits` [[FabricSnapCacheLimits]] object.
- * 'stale' snaps are those who's TTL is exceeded
+ * 'stale' snaps are those who's TTL is exceeded. The order in which resource constrained snaps are evicted and flushed
+ * is decided by the configured [[org.burstsys.fabric.wave.data.worker.cache.policy.FabricSnapEvictPolicy]].
+ * If region compaction is enabled, disk constrained warm snaps are compacted (compressed on disk) before any are flushed.
  */
 trait FabricSnapCacheTender extends AnyRef {
 
@@ -48,7 +51,12 @@ trait FabricSnapCacheTender extends AnyRef {
       talk(_.onSnapCacheTend(cache))
       try {
         if (limits.memoryUsageAboveHighWater) {
-          evictConstrainedSnaps()
+          evictConstrainedSnaps(memoryConstrained = true)
+        } else if (limits.mappedBytesAboveBudget) {
+          evictConstrainedSnaps(memoryConstrained = false)
+        }
+        if (limits.diskUsageAboveHighWater && burstFabricCacheRegionCompactProperty.get) {
+          compactConstrainedSnaps()
         }
         if (limits.diskUsageAboveHighWater) {
           flushConstrainedSnaps()
@@ -79,18 +87,34 @@ trait FabricSnapCacheTender extends AnyRef {
   private final
   def eraseStaleSnaps(): Unit = eraseTtlExpiredSnaps.foreach(eraseSnap(_, "stale"))
 
+  /**
+   * @param memoryConstrained true if memory usage went over the high water mark (evict down to the low water
+   *                          mark), false if only the mapped bytes went over budget (evict just until they fit)
+   */
   private final
-  def evictConstrainedSnaps(): Unit = {
-    evictCandidateSnaps.foreach {
+  def evictConstrainedSnaps(memoryConstrained: Boolean): Unit = {
+    evictPolicy.rankEvictCandidates(evictCandidateSnaps).foreach {
       s =>
-        evictSnap(s, "low disk")
-        if (limits.memoryUsageBelowLowWater) return
+        evictSnap(s, if (memoryConstrained) "low memory" else "mapped budget")
+        val relieved =
+          if (memoryConstrained) limits.memoryUsageBelowLowWater && !limits.mappedBytesAboveBudget
+          else !limits.memoryUsageAboveHighWater && !limits.mappedBytesAboveBudget
+        if (relieved) return
+    }
+  }
+
+  private final
+  def compactConstrainedSnaps(): Unit = {
+    evictPolicy.rankFlushCandidates(compactCandidateSnaps).foreach {
+      s =>
+        compactSnap(s, "low disk")
+        if (limits.diskUsageBelowLowWater) return
     }
   }
 
   private final
   def flushConstrainedSnaps(): Unit = {
-    flushCandidateSnaps.foreach {
+    evictPolicy.rankFlushCandidates(flushCandidateSnaps).foreach {
       s =>
         flushSnap(s, "low disk")
         if (limits.diskUsageBelowLowWater) return
@@ -0,0 +1,44 @@
+/* Copyright Yahoo, Licensed under the terms of the Apache 2.0 license. See LICENSE file in project root for terms. */
+package org.burstsys.fabric.wave.data.worker.cache.policy
+
+import org.burstsys.fabric.wave.data.model.snap.FabricSnap
+
+/**
+ * A cost aware policy. Each candidate is scored by what it would cost to bring it back i.e. its reload bytes
+ * times its recent access frequency from a [[FabricSnapFrequencySketch]]. The cheapest goes first with ties
+ * broken by least recent access.
+ */
+trait FabricCostEvictPolicy extends FabricSnapEvictPolicy
+
+object FabricCostEvictPolicy {
+
+  final val name = "cost"
+
+  def apply(): FabricCostEvictPolicy = FabricCostEvictPolicyContext()
+
+}
+
+private final case
+class FabricCostEvictPolicyContext() extends FabricCostEvictPolicy {
+
+  private[this] val _sketch = FabricSnapFrequencySketch()
+
+  override def policyName: String = FabricCostEvictPolicy.name
+
+  override def recordAccess(snap: FabricSnap): Unit = _sketch increment snap
+
+  override def rankEvictCandidates(candidates: List[FabricSnap]): List[FabricSnap] = rank(candidates)
+
+  override def rankFlushCandidates(candidates: List[FabricSnap]): List[FabricSnap] = rank(candidates)
+
+  private
+  def rank(candidates: List[FabricSnap]): List[FabricSnap] =
+    candidates.sortBy(s => (reloadCost(s), s.lastAccessTime))
+
+  private
+  def reloadCost(snap: FabricSnap): Double = {
+    val reloadBytes = math.max(1L, snap.metadata.generationMetrics.byteCount)
+    (_sketch.frequency(snap) + 1).toDouble * reloadBytes.toDouble
+  }
+
+}
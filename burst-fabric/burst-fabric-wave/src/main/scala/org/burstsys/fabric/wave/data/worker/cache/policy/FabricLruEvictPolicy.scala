@@ -0,0 +1,30 @@
+/* Copyright Yahoo, Licensed under the terms of the Apache 2.0 license. See LICENSE file in project root for terms. */
+package org.burstsys.fabric.wave.data.worker.cache.policy
+
+import org.burstsys.fabric.wave.data.model.snap.FabricSnap
+
+/**
+ * the least recently accessed snap goes first (the original cache behavior)
+ */
+trait FabricLruEvictPolicy extends FabricSnapEvictPolicy
+
+object FabricLruEvictPolicy {
+
+  final val name = "lru"
+
+  def apply(): FabricLruEvictPolicy = FabricLruEvictPolicyContext()
+
+}
+
+private final case
+class FabricLruEvictPolicyContext() extends FabricLruEvictPolicy {
+
+  override def policyName: String = FabricLruEvictPolicy.name
+
+  override def recordAccess(snap: FabricSnap): Unit = {}
+
+  override def rankEvictCandidates(candidates: List[FabricSnap]): List[FabricSnap] = candidates.sortBy(_.lastAccessTime)
+
+  override def rankFlushCandidates(candidates: List[FabricSnap]): List[FabricSnap] = candidates.sortBy(_.lastAccessTime)
+
+}
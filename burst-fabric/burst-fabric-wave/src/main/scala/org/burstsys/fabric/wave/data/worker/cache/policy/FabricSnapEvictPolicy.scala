@@ -0,0 +1,58 @@
+/* Copyright Yahoo, Licensed under the terms of the Apache 2.0 license. See LICENSE file in project root for terms. */
+package org.burstsys.fabric.wave.data.worker.cache.policy
+
+import org.burstsys.fabric.wave.data.model.snap.FabricSnap
+import org.burstsys.vitals.errors.VitalsException
+
+/**
+ * SPI for choosing the order in which resource constrained snaps are evicted or flushed. TTL based
+ * eviction/flushing is not affected by the policy.
+ */
+trait FabricSnapEvictPolicy extends Any {
+
+  /**
+   * the name used to select this policy
+   *
+   * @return
+   */
+  def policyName: String
+
+  /**
+   * record a scan access of a snap (called once per successful snap load with read lock)
+   *
+   * @param snap
+   */
+  def recordAccess(snap: FabricSnap): Unit
+
+  /**
+   * order [[org.burstsys.fabric.wave.data.model.snap.HotSnap]] candidates for eviction
+   *
+   * @param candidates
+   * @return the candidates with the best one to evict first
+   */
+  def rankEvictCandidates(candidates: List[FabricSnap]): List[FabricSnap]
+
+  /**
+   * order candidates for flushing
+   *
+   * @param candidates
+   * @return the candidates with the best one to flush first
+   */
+  def rankFlushCandidates(candidates: List[FabricSnap]): List[FabricSnap]
+
+}
+
+object FabricSnapEvictPolicy {
+
+  /**
+   * @param policyName one of `lru`, `tinylfu` or `cost`
+   * @return
+   */
+  def apply(policyName: String): FabricSnapEvictPolicy = policyName.trim.toLowerCase match {
+    case FabricLruEvictPolicy.name => FabricLruEvictPolicy()
+    case FabricTinyLfuEvictPolicy.name => FabricTinyLfuEvictPolicy()
+    case FabricCostEvictPolicy.name => FabricCostEvictPolicy()
+    case name => throw VitalsException(s"CACHE_EVICT_POLICY_UNKNOWN policy='$name'")
+  }
+
+}
@@ -0,0 +1,102 @@
+/* Copyright Yahoo, Licensed under the terms of the Apache 2.0 license. See LICENSE file in project root for terms. */
+package org.burstsys.fabric.wave.data.worker.cache.policy
+
+import org.burstsys.fabric.wave.data.model.snap.FabricSnap
+
+/**
+ * A small count-min sketch of snap access frequency in the style of TinyLFU. Counters saturate at
+ * `maxCount` and are all halved once the number of recorded accesses reaches a sample size of ten times the
+ * width, so old popularity ages out and the sketch reflects recent access frequency.
+ * <p/>
+ * Snap accesses are infrequent (once per slice scan) so this is simply synchronized.
+ *
+ * @param width the number of counters per row (rounded up to a power of two)
+ * @param depth the number of hashed rows (at most 4)
+ */
+final
+class FabricSnapFrequencySketch(width: Int, depth: Int) {
+
+  private[this] val _width: Int = math.max(16, Integer.highestOneBit(math.max(1, width - 1) << 1))
+
+  private[this] val _depth: Int = math.min(math.max(1, depth), FabricSnapFrequencySketch.seeds.length)
+
+  private[this] val _counters = new Array[Int](_width * _depth)
+
+  private[this] val _sampleSize: Int = 10 * _width
+
+  private[this] var _additions: Int = 0
+
+  /**
+   * @return the number of recorded accesses after which all the counters are halved
+   */
+  def sampleSize: Int = _sampleSize
+
+  /**
+   * record one access for the key
+   */
+  def increment(key: Int): Unit = synchronized {
+    var row = 0
+    while (row < _depth) {
+      val i = index(key, row)
+      if (_counters(i) < FabricSnapFrequencySketch.maxCount) _counters(i) += 1
+      row += 1
+    }
+    _additions += 1
+    if (_additions >= _sampleSize) age()
+  }
+
+  /**
+   * @return the estimated (recent) access frequency for the key
+   */
+  def frequency(key: Int): Int = synchronized {
+    var result = Int.MaxValue
+    var row = 0
+    while (row < _depth) {
+      result = math.min(result, _counters(index(key, row)))
+      row += 1
+    }
+    result
+  }
+
+  def increment(snap: FabricSnap): Unit = increment(FabricSnapFrequencySketch.keyOf(snap))
+
+  def frequency(snap: FabricSnap): Int = frequency(FabricSnapFrequencySketch.keyOf(snap))
+
+  /**
+   * halve all the counters
+   */
+  private
+  def age(): Unit = {
+    var i = 0
+    while (i < _counters.length) {
+      _counters(i) >>>= 1
+      i += 1
+    }
+    _additions >>>= 1
+  }
+
+  private
+  def index(key: Int, row: Int): Int = {
+    var h = key * FabricSnapFrequencySketch.seeds(row)
+    h ^= h >>> 16
+    h *= 0x45d9f3b
+    h ^= h >>> 16
+    row * _width + (h & (_width - 1))
+  }
+
+}
+
+object FabricSnapFrequencySketch {
+
+  def apply(width: Int = 1024, depth: Int = 4): FabricSnapFrequencySketch = new FabricSnapFrequencySketch(width, depth)
+
+  final val maxCount: Int = 15
+
+  private final val seeds: Array[Int] = Array(0x9E3779B9L.toInt, 0x85EBCA6BL.toInt, 0xC2B2AE35L.toInt, 0x27D4EB2FL.toInt)
+
+  /**
+   * snaps are tracked by slice (datasource and slice key)
+   */
+  def keyOf(snap: FabricSnap): Int = snap.slice.hashCode
+
+}
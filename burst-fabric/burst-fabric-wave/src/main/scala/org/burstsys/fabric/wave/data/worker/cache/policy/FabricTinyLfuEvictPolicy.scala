@@ -0,0 +1,45 @@
+/* Copyright Yahoo, Licensed under the terms of the Apache 2.0 license. See LICENSE file in project root for terms. */
+package org.burstsys.fabric.wave.data.worker.cache.policy
+
+import org.burstsys.fabric.wave.data.model.snap.FabricSnap
+
+/**
+ * A W-TinyLFU style policy. The most recently accessed candidates (the ''window'') are protected and go last. The
+ * rest are ordered by their recent access frequency from a [[FabricSnapFrequencySketch]] with ties broken by
+ * least recent access. Snaps that are scanned often survive a burst of one-off loads of other snaps.
+ */
+trait FabricTinyLfuEvictPolicy extends FabricSnapEvictPolicy
+
+object FabricTinyLfuEvictPolicy {
+
+  final val name = "tinylfu"
+
+  /**
+   * @param windowFraction the fraction of most recently accessed candidates to protect
+   */
+  def apply(windowFraction: Double = 0.01): FabricTinyLfuEvictPolicy = FabricTinyLfuEvictPolicyContext(windowFraction)
+
+}
+
+private final case
+class FabricTinyLfuEvictPolicyContext(windowFraction: Double) extends FabricTinyLfuEvictPolicy {
+
+  private[this] val _sketch = FabricSnapFrequencySketch()
+
+  override def policyName: String = FabricTinyLfuEvictPolicy.name
+
+  override def recordAccess(snap: FabricSnap): Unit = _sketch increment snap
+
+  override def rankEvictCandidates(candidates: List[FabricSnap]): List[FabricSnap] = rank(candidates)
+
+  override def rankFlushCandidates(candidates: List[FabricSnap]): List[FabricSnap] = rank(candidates)
+
+  private
+  def rank(candidates: List[FabricSnap]): List[FabricSnap] = {
+    if (candidates.isEmpty) return candidates
+    val windowSize = math.ceil(candidates.size * windowFraction).toInt
+    val (main, window) = candidates.sortBy(_.lastAccessTime).splitAt(candidates.size - windowSize)
+    main.sortBy(s => (_sketch.frequency(s), s.lastAccessTime)) ++ window
+  }
+
+}
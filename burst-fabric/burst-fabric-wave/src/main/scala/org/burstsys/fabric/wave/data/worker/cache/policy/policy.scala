@@ -0,0 +1,12 @@
+/* Copyright Yahoo, Licensed under the terms of the Apache 2.0 license. See LICENSE file in project root for terms. */
+package org.burstsys.fabric.wave.data.worker.cache
+
+import org.burstsys.vitals.logging._
+
+/**
+ * pluggable policies that choose which snaps the [[org.burstsys.fabric.wave.data.worker.cache.lifecycle.FabricSnapCacheTender]]
+ * evicts from memory or flushes from disk when cache resources are constrained
+ */
+package object policy extends VitalsLogger {
+
+}
@@ -0,0 +1,150 @@
+/* Copyright Yahoo, Licensed under the terms of the Apache 2.0 license. See LICENSE file in project root for terms. */
+package org.burstsys.fabric.wave.execution.model.gather
+
+import org.burstsys.fabric.wave.execution.model.gather.data.FabricEmptyGather
+import org.burstsys.tesla.thread.worker.TeslaWorkerFuture
+import org.burstsys.vitals.errors.safely
+import org.burstsys.vitals.logging.burstStdMsg
+
+import scala.concurrent.{Future, Promise}
+
+/**
+ * A pairwise (tree) reduction of a stream of gathers. As gathers arrive they are paired up with any gather
+ * that is waiting for a partner and each pair is merged concurrently on the tesla worker pool. The output of
+ * each pair merge is fed back in as a new arrival, so independent merges proceed in parallel and the
+ * depth of the merge is logarithmic in the number of gathers instead of linear.
+ * <p/>
+ * Merge order is not deterministic, so the merge operation must be associative and commutative
+ * which all the slice and wave merges are.
+ */
+trait FabricGatherTreeMerge extends Any {
+
+  /**
+   * add a new gather to the reduction
+   */
+  def add(gather: FabricGather): Unit
+
+  /**
+   * indicate that no more gathers will be added
+   */
+  def seal(): Unit
+
+  /**
+   * @return a future that completes with the single final gather (or null if none were added)
+   *         once the reduction is sealed and all merges are done
+   */
+  def result: Future[FabricGather]
+
+}
+
+object FabricGatherTreeMerge {
+
+  /**
+   * @param merge merge the second gather into the first and return the combined gather
+   */
+  def apply(merge: (FabricGather, FabricGather) => FabricGather): FabricGatherTreeMerge =
+    FabricGatherTreeMergeContext(merge)
+
+  /**
+   * choose a pair member to merge into. An empty gather is never used as the target of a merge
+   * if the other member has data.
+   *
+   * @return the (into, from) ordering of the pair
+   */
+  def orderPair(left: FabricGather, right: FabricGather): (FabricGather, FabricGather) = left match {
+    case _: FabricEmptyGather => (right, left)
+    case _ => (left, right)
+  }
+
+}
+
+private final case
+class FabricGatherTreeMergeContext(merge: (FabricGather, FabricGather) => FabricGather) extends FabricGatherTreeMerge {
+
+  //////////////////////////////////////////////////////////////////////////////
+  // PRIVATE STATE
+  //////////////////////////////////////////////////////////////////////////////
+
+  private[this] val _promise = Promise[FabricGather]()
+
+  /**
+   * a gather waiting for a partner
+   */
+  private[this] var _waiting: FabricGather = _
+
+  /**
+   * the number of gathers added that have not been merged away (waiting, in flight or being merged)
+   */
+  private[this] var _live = 0
+
+  private[this] var _sealed = false
+
+  //////////////////////////////////////////////////////////////////////////////
+  // API
+  //////////////////////////////////////////////////////////////////////////////
+
+  override def result: Future[FabricGather] = _promise.future
+
+  override def add(gather: FabricGather): Unit = {
+    synchronized {
+      _live += 1
+    }
+    offer(gather, merged = false)
+  }
+
+  override def seal(): Unit = synchronized {
+    _sealed = true
+    tryComplete()
+  }
+
+  //////////////////////////////////////////////////////////////////////////////
+  // internals
+  //////////////////////////////////////////////////////////////////////////////
+
+  /**
+   * pair an arriving gather with the waiting gather or make it the waiting gather
+   *
+   * @param merged true if this gather is the output of a pair merge (consuming one live gather)
+   */
+  private
+  def offer(gather: FabricGather, merged: Boolean): Unit = {
+    val partner = synchronized {
+      if (merged) _live -= 1
+      if (_waiting == null) {
+        _waiting = gather
+        tryComplete()
+        null
+      } else {
+        val w = _waiting
+        _waiting = null
+        w
+      }
+    }
+    if (partner != null)
+      TeslaWorkerFuture {
+        val result = try {
+          val (into, from) = FabricGatherTreeMerge.orderPair(partner, gather)
+          merge(into, from)
+        } catch safely {
+          case t: Throwable =>
+            log error burstStdMsg(s"FAB_GATHER_TREE_MERGE_FAIL $t", t)
+            _promise.tryFailure(t)
+            null
+        }
+        if (result != null) offer(result, merged = true)
+      }
+  }
+
+  /**
+   * must be called while holding the lock
+   */
+  private
+  def tryComplete(): Unit = {
+    if (!_sealed || _promise.isCompleted) return
+    if (_live == 0)
+      _promise.trySuccess(null)
+    else if (_live == 1 && _waiting != null)
+      _promise.trySuccess(_waiting)
+  }
+
+}
@@ -69,4 +69,11 @@ class FabricPlane extends FabricOutcome
    */
   def clear(): Unit
 
+  /**
+   * can this plane be [[clear]]ed and reused for another item scan once it has been merged
+   *
+   * @return
+   */
+  def recyclable: Boolean = false
+
 }
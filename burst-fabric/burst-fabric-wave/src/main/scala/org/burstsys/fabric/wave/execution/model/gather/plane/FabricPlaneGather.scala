@@ -87,6 +87,35 @@ trait FabricPlaneGather extends FabricDataGatherContext {
     this
   }
 
+  /**
+   * can all the active planes be cleared and reused for another item scan
+   *
+   * @return
+   */
+  final
+  def recyclable: Boolean = {
+    var i = 0
+    while (i < activePlanes) {
+      if (_planes(i) == null || !_planes(i).recyclable) return false
+      i += 1
+    }
+    true
+  }
+
+  /**
+   * clear all the active planes of an already merged gather so it can be reused for another item scan
+   */
+  final
+  def recyclePlanes: this.type = {
+    var i = 0
+    while (i < activePlanes) {
+      _planes(i).clear()
+      _planes(i).initializeOutcome()
+      i += 1
+    }
+    this
+  }
+
   /**
    * total rows in the plane
    *
@@ -144,6 +173,15 @@ trait FabricPlaneGather extends FabricDataGatherContext {
     }
   }
 
+  /**
+   * a region merge that does not release the resources of the merged gather so that it can be
+   * [[recyclePlanes]]ed and reused for the next item scan
+   */
+  final
+  def regionMergeRetained(gather: FabricMerge): Unit = {
+    merge(gather, FabricRegionMergeLevel)
+  }
+
   override final
   def sliceMerge(gather: FabricMerge): Unit = {
     try {
@@ -62,6 +62,26 @@ trait FabricScanner extends (BrioBlob => FabricGather) with FabricWorkerScanner
    */
   def afterAllScans(snap: FabricSnap): this.type
 
+  /**
+   * can this scanner reuse an item gather from a previous item scan on the same thread
+   *
+   * @return
+   */
+  def reusesItemGathers: Boolean = false
+
+  /**
+   * scan an item, reusing the resources of a previous item gather from the same thread that has already
+   * been merged. The scratch gather is consumed by this call, it is either returned as the result or released.
+   *
+   * @param blob    the item to scan
+   * @param scratch a merged item gather to reuse, or null
+   * @return
+   */
+  def apply(blob: BrioBlob, scratch: FabricGather): FabricGather = {
+    if (scratch != null) scratch.releaseResourcesOnWorker()
+    apply(blob)
+  }
+
 }
 
 abstract
@@ -1,22 +1,25 @@
 /* Copyright Yahoo, Licensed under the terms of the Apache 2.0 license. See LICENSE file in project root for terms. */
 package org.burstsys.fabric.wave.execution.supervisor.wave
 
-import org.burstsys.fabric.wave.execution.model.gather.FabricGather
+import org.burstsys.fabric.wave.configuration.burstFabricMergeTreeEnableProperty
+import org.burstsys.fabric.wave.execution.model.gather.{FabricGather, FabricGatherTreeMerge}
 import org.burstsys.fabric.wave.execution.model.gather.data.FabricDataGather
 import org.burstsys.fabric.wave.execution.model.gather.data.FabricEmptyGather
 import org.burstsys.fabric.wave.execution.model.gather.metrics.FabricGatherMetrics
 import org.burstsys.fabric.wave.execution.worker.ResultQueue
 import org.burstsys.tesla.scatter.TeslaScatter
-import org.burstsys.tesla.thread.request.TeslaRequestFuture
+import org.burstsys.tesla.thread.request.{TeslaRequestFuture, teslaRequestExecutor}
 import org.burstsys.tesla.thread.worker.TeslaWorkerCoupler
-import org.burstsys.vitals.errors.safely
+import org.burstsys.vitals.errors.{VitalsException, safely}
 import org.burstsys.vitals.logging._
 import org.burstsys.vitals.uid.VitalsUid
 
+import java.util.TimerTask
 import scala.annotation.unused
 import scala.collection.mutable.ArrayBuffer
 import scala.concurrent.Future
 import scala.concurrent.Promise
+import scala.util.{Failure, Success}
 
 /**
  * stores all the state associated with a single wave on the supervisor
@@ -76,13 +79,16 @@ class WaveGatherMergeContext(scatter: TeslaScatter) extends WaveGatherMerge {
   // this variable is ever accessed, but that's ok
   @unused
   private val _mergeWorker: Future[Unit] = TeslaRequestFuture {
-    var next = _workQueue.take()
-    while (next != EndOfQueueGather) {
-      TeslaWorkerCoupler(processResult(next))
-      next = _workQueue.take()
+    if (burstFabricMergeTreeEnableProperty.get)
+      treeMergeResults() // completes the merge when the tree merge does
+    else {
+      var next = _workQueue.take()
+      while (next != EndOfQueueGather) {
+        TeslaWorkerCoupler(processResult(next))
+        next = _workQueue.take()
+      }
+      completeMerge()
     }
-    TeslaWorkerCoupler(finalizeMerge())
-    _promise.success(_result)
   }
 
   //////////////////////////////////////////////////////////////////////////////
@@ -115,11 +121,64 @@ class WaveGatherMergeContext(scatter: TeslaScatter) extends WaveGatherMerge {
     } catch safely {
       case t: Throwable =>
         log error burstStdMsg(s"FAB_WAVE_STATE_FAULT $t $tag ", t)
-        _promise.failure(t)
+        _promise.tryFailure(t)
         throw t
     }
   }
 
+  private def completeMerge(): Unit = {
+    TeslaWorkerCoupler(finalizeMerge())
+    _promise.trySuccess(_result)
+  }
+
+  /**
+   * merge the slice results as a pairwise tree with independent pairs merged concurrently on the tesla worker
+   * pool. Nothing waits for the tree merge - the merge is finished (on the request pool) when it completes, or
+   * failed if it takes longer than the [[mergeWait]]
+   */
+  private def treeMergeResults(): Unit = {
+    lazy val tag = s"FabricWaveState.treeMergeResults(guid=$guid)"
+    try {
+      val treeMerge = FabricGatherTreeMerge(waveMergePair)
+      var next = _workQueue.take()
+      while (next != EndOfQueueGather) {
+        _sliceMetrics += next.gatherMetrics
+        treeMerge add next
+        next = _workQueue.take()
+      }
+      treeMerge.seal()
+      val timeout = new TimerTask {
+        override def run(): Unit = {
+          if (_promise.tryFailure(VitalsException(s"FAB_WAVE_TREE_MERGE_TIMEOUT mergeWait=$mergeWait $tag")))
+            log error s"FAB_WAVE_TREE_MERGE_TIMEOUT mergeWait=$mergeWait $tag"
+        }
+      }
+      mergeTimer.schedule(timeout, mergeWait.toMillis)
+      treeMerge.result.onComplete { r =>
+        timeout.cancel()
+        r match {
+          case Success(gather) =>
+            _result = gather
+            if (!_promise.isCompleted)
+              completeMerge()
+          case Failure(t) =>
+            log error burstStdMsg(s"FAB_WAVE_STATE_FAULT $t $tag ", t)
+            _promise.tryFailure(t)
+        }
+      }(teslaRequestExecutor)
+    } catch safely {
+      case t: Throwable =>
+        log error burstStdMsg(s"FAB_WAVE_STATE_FAULT $t $tag ", t)
+        _promise.tryFailure(t)
+        throw t
+    }
+  }
+
+  private def waveMergePair(result: FabricGather, nextGather: FabricGather): FabricGather = {
+    result.waveMerge(nextGather)
+    result
+  }
+
   private def finalizeMerge(): Unit = {
     lazy val tag = s"FabricWaveState.finalizeMerge(guid=$guid)"
     try {
@@ -137,7 +196,7 @@ class WaveGatherMergeContext(scatter: TeslaScatter) extends WaveGatherMerge {
     } catch safely {
       case t: Throwable =>
         log error burstStdMsg(s"FAB_WAVE_STATE_FAULT $t $tag", t)
-        _promise.failure(t)
+        _promise.tryFailure(t)
         throw t
     }
   }
@@ -14,6 +14,11 @@ package object wave extends VitalsLogger {
   val mergeWait: Duration = 5 minutes // longest merge pipeline possible?
   val scatterTimeout: FiniteDuration = 5.minutes
 
+  /**
+   * fails tree merges that do not finish within the [[mergeWait]] (nothing blocks waiting for them)
+   */
+  private[wave] lazy val mergeTimer = new java.util.Timer("fab-wave-merge-timer", true)
+
   /**
    * placed into the end of the merge pipeline queue when the last gather
    * has been pushed
@@ -0,0 +1,64 @@
+/* Copyright Yahoo, Licensed under the terms of the Apache 2.0 license. See LICENSE file in project root for terms. */
+package org.burstsys.fabric.wave.execution.worker
+
+import java.util.concurrent.ConcurrentLinkedDeque
+import scala.collection.mutable.ArrayBuffer
+import scala.reflect.ClassTag
+
+/**
+ * the ranges of items of the regions of a slice being scanned with work stealing. Each region's owner
+ * cuts its region into ranges and takes them from the front while other owners that have run out
+ * steal them from the back. Each range is handed out exactly once.
+ *
+ * @param nodes the NUMA node of each region
+ */
+final
+class FabricScanRanges[T: ClassTag](nodes: Array[Int]) {
+
+  private[this] val _ranges = nodes.map(_ => new ConcurrentLinkedDeque[Array[T]])
+
+  def regionCount: Int = nodes.length
+
+  /**
+   * cut a region into ranges of at most `rangeItems` items
+   */
+  def cut(owner: Int, items: Iterator[T], rangeItems: Int): Unit = {
+    val ranges = _ranges(owner)
+    val range = new ArrayBuffer[T](rangeItems)
+    while (items.hasNext) {
+      range += items.next()
+      if (range.length == rangeItems) {
+        ranges.addLast(range.toArray)
+        range.clear()
+      }
+    }
+    if (range.nonEmpty) ranges.addLast(range.toArray)
+  }
+
+  /**
+   * take the next range from the front of our own region, or steal one from the back of another region.
+   * Regions on our own NUMA node are stolen from before regions on other nodes.
+   *
+   * @return the next range or null if there are currently none left. Another region may not have been cut
+   *         yet - its owner scans it.
+   */
+  def next(owner: Int): Array[T] = {
+    val own = _ranges(owner).pollFirst()
+    if (own != null) return own
+    var pass = 0
+    while (pass < 2) {
+      var i = 1
+      while (i < _ranges.length) {
+        val victim = (owner + i) % _ranges.length
+        if ((nodes(victim) == nodes(owner)) == (pass == 0)) {
+          val stolen = _ranges(victim).pollLast()
+          if (stolen != null) return stolen
+        }
+        i += 1
+      }
+      pass += 1
+    }
+    null
+  }
+
+}
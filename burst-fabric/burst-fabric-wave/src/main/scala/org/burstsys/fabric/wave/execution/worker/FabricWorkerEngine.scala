@@ -3,6 +3,7 @@ package org.burstsys.fabric.wave.execution.worker
 
 import org.burstsys.fabric.container.FabricWorkerService
 import org.burstsys.fabric.wave.container.worker.FabricWaveWorkerContainer
+import org.burstsys.fabric.wave.configuration.{burstFabricScanMemoryReservationProperty, burstFabricScanMemoryWaitProperty}
 import org.burstsys.fabric.wave.data
 import org.burstsys.fabric.wave.data.model.snap.{FabricSnap, FailedSnap, HotSnap, NoDataSnap}
 import org.burstsys.fabric.wave.execution.model.gather.FabricGather
@@ -12,6 +13,7 @@ import org.burstsys.fabric.wave.execution.model.pipeline.publishPipelineEvent
 import org.burstsys.fabric.wave.execution.model.wave.FabricParticle
 import org.burstsys.fabric.wave.execution.{ParticleExecutionDataReady, ParticleExecutionFinished, ParticleExecutionStart}
 import org.burstsys.fabric.wave.trek.{FabricWorkerFetchTrekMark, FabricWorkerScanInitTrekMark, FabricWorkerScanTrekMark}
+import org.burstsys.tesla.part.factory.TeslaMemoryBudget
 import org.burstsys.vitals.VitalsService.{VitalsServiceModality, VitalsStandardServer}
 import org.burstsys.vitals.errors._
 import org.burstsys.vitals.healthcheck.VitalsHealthMonitoredService
@@ -47,8 +49,14 @@ class FabricWorkerContextEngine(container: FabricWaveWorkerContainer, modality:
 
   override
   def executionParticleOp(ruid: VitalsUid, particle: FabricParticle): FabricGather = {
-    val slice = sliceFetch(particle)
-    sliceScan(particle, slice)
+    val reservation = burstFabricScanMemoryReservationProperty.get
+    // delay (rather than fail) the scan if it does not fit in the tesla memory budget - before the snap read
+    // lock is taken so a waiting scan does not hold off snap eviction and writes
+    TeslaMemoryBudget.reserve(particle.guid, reservation, burstFabricScanMemoryWaitProperty.get)
+    try {
+      val slice = sliceFetch(particle)
+      sliceScan(particle, slice)
+    } finally TeslaMemoryBudget.release(particle.guid, reservation)
   }
 
   ////////////////////////////////////////////////////////////////////////////////////////////////////////////////
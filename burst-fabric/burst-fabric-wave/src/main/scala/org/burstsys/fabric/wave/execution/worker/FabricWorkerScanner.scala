@@ -2,14 +2,21 @@
 package org.burstsys.fabric.wave.execution.worker
 
 import java.util.concurrent.ArrayBlockingQueue
+import org.burstsys.brio.blob.BrioBlob
 import org.burstsys.brio.blob.BrioBlob.BrioRegionIterator
-import org.burstsys.fabric.wave.execution.model.gather.FabricGather
+import org.burstsys.fabric.wave.configuration.{burstFabricMergeTreeEnableProperty, burstFabricScanGatherReuseProperty, burstFabricScanStealEnableProperty, burstFabricScanStealRangeItemsProperty}
+import org.burstsys.fabric.wave.execution.model.gather.{FabricGather, FabricGatherTreeMerge}
 import org.burstsys.fabric.wave.execution.model.gather.control.FabricFaultGather
 import org.burstsys.fabric.wave.execution.model.gather.data.FabricEmptyGather
+import org.burstsys.fabric.wave.execution.model.gather.plane.FabricPlaneGather
 import org.burstsys.fabric.wave.execution.model.scanner.FabricScanner
+import org.burstsys.tesla.thread.TeslaNuma
 import org.burstsys.tesla.thread.worker.{TeslaWorkerCoupler, TeslaWorkerFuture}
 import org.burstsys.vitals.errors.{VitalsException, safely}
 
+import scala.concurrent.Await
+import scala.concurrent.duration.Duration
+
 /**
  * scan/merge all the items in a region for all regions in a slice on a worker
  * <hr/>
@@ -39,32 +46,11 @@ trait FabricWorkerScanner extends Any {
     try {
       // set up our results return path
       val itemsInRegionQueue = new ResultQueue(sliceRegions.length)
-      var nonEmptyRegionCount = 0
-      var allRegionsIndex = 0
-
-      /**
-       * go through all regions in slice and start collecting
-       * results in a queue that are each the result of a scan/merge of
-       * all items in the region
-       */
-      while (allRegionsIndex < sliceRegions.length) {
-        val region = sliceRegions(allRegionsIndex)
-        if (region.nonEmpty) {
-          nonEmptyRegionCount += 1
-          // feed result queue in background worker thread
-          TeslaWorkerFuture {
-            // single worker thread for the entire mmap region
-            val itemsInRegionResult = try {
-              scanMergeItemsInRegion(region)
-            } catch safely {
-              case t: Throwable =>
-                FabricFaultGather(self, t)
-            }
-            itemsInRegionQueue put itemsInRegionResult
-          }
-        }
-        allRegionsIndex += 1
-      }
+
+      val nonEmptyRegionCount = if (burstFabricScanStealEnableProperty.get)
+        stealScanRegionsInSlice(sliceRegions, itemsInRegionQueue)
+      else
+        boundScanRegionsInSlice(sliceRegions, itemsInRegionQueue)
 
       // process final results from queue
       finalRegionsInSliceResult = mergeRegionResultsForSlice(nonEmptyRegionCount, itemsInRegionQueue)
@@ -86,6 +72,97 @@ trait FabricWorkerScanner extends Any {
     finalRegionsInSliceResult
   }
 
+  /**
+   * go through all regions in slice and start collecting results in a queue that are each the
+   * result of a scan/merge of all items in the region. Each region is bound to a single worker thread.
+   *
+   * @param sliceRegions       all the regions in a slice
+   * @param itemsInRegionQueue the queue to feed region results into
+   * @return the number of results that will be put into the queue
+   */
+  private
+  def boundScanRegionsInSlice(sliceRegions: Array[BrioRegionIterator], itemsInRegionQueue: ResultQueue): Int = {
+    var nonEmptyRegionCount = 0
+    var allRegionsIndex = 0
+    while (allRegionsIndex < sliceRegions.length) {
+      val region = sliceRegions(allRegionsIndex)
+      if (region.nonEmpty) {
+        nonEmptyRegionCount += 1
+        // feed result queue in background worker thread (on the NUMA node the region pages were placed on)
+        TeslaWorkerFuture.onNode(TeslaNuma.homeNode(allRegionsIndex)) {
+          // single worker thread for the entire mmap region
+          val itemsInRegionResult = try {
+            scanMergeItemsInRegion(region)
+          } catch safely {
+            case t: Throwable =>
+              FabricFaultGather(self, t)
+          }
+          itemsInRegionQueue put itemsInRegionResult
+        }
+      }
+      allRegionsIndex += 1
+    }
+    nonEmptyRegionCount
+  }
+
+  /**
+   * go through all regions in slice and start one worker thread per non empty region. Each worker cuts its own
+   * region into ranges of items (see [[FabricScanRanges]]), scans the ranges of its own region front to back, and
+   * then steals ranges from the back of the other regions until there are none left. Each worker returns a single
+   * partial gather for all the ranges it scanned. A worker never waits on another worker. Each range is handed
+   * out once and an owner keeps taking its own region's ranges until they are gone, so every range is scanned
+   * by exactly one worker (or that worker's partial result is a fault).
+   *
+   * @param sliceRegions       all the regions in a slice
+   * @param itemsInRegionQueue the queue to feed partial results into
+   * @return the number of results that will be put into the queue
+   */
+  private
+  def stealScanRegionsInSlice(sliceRegions: Array[BrioRegionIterator], itemsInRegionQueue: ResultQueue): Int = {
+    val rangeItems = math.max(1, burstFabricScanStealRangeItemsProperty.get)
+    val nonEmptyIndices = sliceRegions.indices.filter(sliceRegions(_).nonEmpty).toArray
+    val nonEmptyRegions = nonEmptyIndices.map(sliceRegions(_))
+    val nodes = nonEmptyIndices.map(TeslaNuma.homeNode)
+    val ranges = new FabricScanRanges[BrioBlob](nodes)
+
+    var regionIndex = 0
+    while (regionIndex < nonEmptyRegions.length) {
+      val ownerIndex = regionIndex
+      // feed result queue in background worker thread (on the NUMA node the region pages were placed on)
+      TeslaWorkerFuture.onNode(nodes(ownerIndex)) {
+        var partialResult: FabricGather = null
+        try {
+          ranges.cut(ownerIndex, nonEmptyItems(nonEmptyRegions(ownerIndex)), rangeItems)
+          var range = ranges.next(ownerIndex)
+          while (range != null) {
+            partialResult = scanMergeItems(partialResult, range.iterator)
+            range = ranges.next(ownerIndex)
+          }
+          if (partialResult == null) partialResult = FabricEmptyGather(this)
+          partialResult.gatherMetrics.finalizeRegionMetricsOnWorker()
+        } catch safely {
+          case t: Throwable =>
+            partialResult = FabricFaultGather(self, t)
+        }
+        itemsInRegionQueue put partialResult
+      }
+      regionIndex += 1
+    }
+    nonEmptyRegions.length
+  }
+
+  /**
+   * the items of a region, skipping the marker blob an empty region returns
+   */
+  private
+  def nonEmptyItems(region: BrioRegionIterator): Iterator[BrioBlob] = {
+    lazy val tag = s"FabricWorkerScanner.nonEmptyItems(guid=${self.group.groupUid})"
+    region.filter { item =>
+      if (item.isEmpty) log info s"REGION_SCAN_EMPTY_ITEM $tag"
+      !item.isEmpty
+    }
+  }
+
   /**
    * scan and merge all the blobs in a region
    *
@@ -94,13 +171,36 @@ trait FabricWorkerScanner extends Any {
    */
   private
   def scanMergeItemsInRegion(region: BrioRegionIterator): FabricGather = {
+    var finalItemsInRegionResult = scanMergeItems(null, region)
+
+    // if there were no non empty items - set up a special 'empty' gather
+    if (finalItemsInRegionResult == null) finalItemsInRegionResult = FabricEmptyGather(this)
+
+    // make sure metrics are cleaned up as we reach the end of one full region
+    finalItemsInRegionResult.gatherMetrics.finalizeRegionMetricsOnWorker()
+
+    finalItemsInRegionResult
+  }
+
+  /**
+   * scan and merge a sequence of blobs into an existing result
+   *
+   * @param itemsResult the result to merge into, or null if no items have been scanned yet
+   * @param items       the blobs to scan
+   * @return the merged result, or null if there were no non empty items
+   */
+  private
+  def scanMergeItems(itemsResult: FabricGather, items: Iterator[BrioBlob]): FabricGather = {
     lazy val tag = s"FabricWorkerScanner.scanMergeItemsInRegion(guid=${self.group.groupUid})"
-    var finalItemsInRegionResult: FabricGather = null
+    val reuseItemGathers = burstFabricScanGatherReuseProperty.get && self.reusesItemGathers
+    var finalItemsInRegionResult: FabricGather = itemsResult
+    // the last merged item gather which this thread can reuse for the next item
+    var scratchItemGather: FabricGather = null
     // go through all blobs in a region
-    while (region.hasNext) {
+    while (items.hasNext) {
 
       // grab the next blob in the region
-      val currentItem = region.next()
+      val currentItem = items.next()
 
       // an empty region returns a marker blob with .isEmpty == true
       // this is not truly an item and should not be counted as an item scanned
@@ -111,7 +211,12 @@ trait FabricWorkerScanner extends Any {
         // this is the actual specific scan i.e. the scanner.apply(blob) => gather
         val newItemGather = try {
           val scanStart = System.nanoTime
-          val gather = this (currentItem) // scanner(blobItem) => gather -- scan of item returns gather
+          val gather = if (reuseItemGathers) {
+            // the scanner takes ownership of the scratch gather
+            val scratch = scratchItemGather
+            scratchItemGather = null
+            this (currentItem, scratch)
+          } else this (currentItem) // scanner(blobItem) => gather -- scan of item returns gather
           gather.gatherMetrics.executionMetrics.recordItemScanOnWorker(System.nanoTime - scanStart)
           gather
         } catch safely {
@@ -123,21 +228,21 @@ trait FabricWorkerScanner extends Any {
         // first regionResult handled differently than the rest
         if (finalItemsInRegionResult == null) {
           finalItemsInRegionResult = newItemGather // first one is our ultimate regionResult
-        } else {
-          finalItemsInRegionResult.regionMerge(newItemGather)
-          // merge a new gather metric into the prior gather metric
-          finalItemsInRegionResult.gatherMetrics.mergeItemMetricsOnWorker(newItemGather.gatherMetrics)
+        } else (finalItemsInRegionResult, newItemGather) match {
+          case (result: FabricPlaneGather, itemGather: FabricPlaneGather) if reuseItemGathers && itemGather.recyclable =>
+            // merge without releasing the item gather so it can be reused for the next item
+            result.regionMergeRetained(itemGather)
+            result.gatherMetrics.mergeItemMetricsOnWorker(itemGather.gatherMetrics)
+            scratchItemGather = itemGather
+          case _ =>
+            finalItemsInRegionResult.regionMerge(newItemGather)
+            // merge a new gather metric into the prior gather metric
+            finalItemsInRegionResult.gatherMetrics.mergeItemMetricsOnWorker(newItemGather.gatherMetrics)
         }
 
       }
     }
-
-    // if there were no non empty items - set up a special 'empty' gather
-    if (finalItemsInRegionResult == null) finalItemsInRegionResult = FabricEmptyGather(this)
-
-    // make sure metrics are cleaned up as we reach the end of one full region
-    finalItemsInRegionResult.gatherMetrics.finalizeRegionMetricsOnWorker()
-
+    if (scratchItemGather != null) scratchItemGather.releaseResourcesOnWorker()
     finalItemsInRegionResult
   }
 
@@ -150,23 +255,22 @@ trait FabricWorkerScanner extends Any {
    */
   private
   def mergeRegionResultsForSlice(nonEmptyRegionCount: Int, regionResultQueue: ArrayBlockingQueue[FabricGather]): FabricGather = {
+    if (burstFabricMergeTreeEnableProperty.get)
+      return treeMergeRegionResultsForSlice(nonEmptyRegionCount, regionResultQueue)
+
     lazy val tag = s"FabricWorkerScanner.mergeRegionResultsForSlice(guid=${self.group.groupUid})"
     var finalRegionsInSliceResult: FabricGather = null
     var regionIndex = 0
     while (regionIndex < nonEmptyRegionCount) {
       val newRegionResult = regionResultQueue.take
-      if (finalRegionsInSliceResult == null) {
-        finalRegionsInSliceResult = newRegionResult
-      } else {
-        TeslaWorkerCoupler { // worker thread to do CPU bound section
-          try {
-            finalRegionsInSliceResult.sliceMerge(newRegionResult)
-          } catch safely {
-            case t: Throwable =>
-              finalRegionsInSliceResult.sliceMerge(FabricFaultGather(self, t))
+      finalRegionsInSliceResult match {
+        // an empty result has no data to merge into
+        case _: FabricEmptyGather | null =>
+          finalRegionsInSliceResult = newRegionResult
+        case _ =>
+          TeslaWorkerCoupler { // worker thread to do CPU bound section
+            sliceMergePair(finalRegionsInSliceResult, newRegionResult)
           }
-          finalRegionsInSliceResult.sliceFinalize()
-        }
       }
       regionIndex += 1
     }
@@ -177,4 +281,47 @@ trait FabricWorkerScanner extends Any {
     finalRegionsInSliceResult
   }
 
+  /**
+   * merge all the queued results of parallel scan merging all the items in regions for this slice
+   * as a pairwise tree with independent pairs merged concurrently on the tesla worker pool
+   *
+   * @param nonEmptyRegionCount
+   * @param regionResultQueue
+   * @return
+   */
+  private
+  def treeMergeRegionResultsForSlice(nonEmptyRegionCount: Int, regionResultQueue: ArrayBlockingQueue[FabricGather]): FabricGather = {
+    val treeMerge = FabricGatherTreeMerge(sliceMergePair)
+    var regionIndex = 0
+    while (regionIndex < nonEmptyRegionCount) {
+      treeMerge add regionResultQueue.take
+      regionIndex += 1
+    }
+    treeMerge.seal()
+    val finalRegionsInSliceResult = Await.result(treeMerge.result, Duration.Inf)
+
+    // return appropriate type of gather
+    if (finalRegionsInSliceResult == null)
+      FabricEmptyGather(self)
+    else
+      finalRegionsInSliceResult
+  }
+
+  /**
+   * slice merge one region result into another in a worker thread
+   *
+   * @return the result merged into
+   */
+  private
+  def sliceMergePair(regionsResult: FabricGather, newRegionResult: FabricGather): FabricGather = {
+    try {
+      regionsResult.sliceMerge(newRegionResult)
+    } catch safely {
+      case t: Throwable =>
+        regionsResult.sliceMerge(FabricFaultGather(self, t))
+    }
+    regionsResult.sliceFinalize()
+    regionsResult
+  }
+
 }
@@ -0,0 +1,50 @@
+/* Copyright Yahoo, Licensed under the terms of the Apache 2.0 license. See LICENSE file in project root for terms. */
+package org.burstsys.fabric.test.cache
+
+import org.burstsys.fabric.test.FabricWaveBaseSpec
+import org.burstsys.fabric.wave.data.worker.cache.policy.{FabricCostEvictPolicy, FabricLruEvictPolicy, FabricSnapEvictPolicy, FabricSnapFrequencySketch, FabricTinyLfuEvictPolicy}
+import org.burstsys.vitals.errors.VitalsException
+
+final class FabricWaveCacheEvictPolicySpec extends FabricWaveBaseSpec {
+
+  "Fabric Cache Evict Policy" should "select policies by name" in {
+    FabricSnapEvictPolicy("lru").policyName should equal(FabricLruEvictPolicy.name)
+    FabricSnapEvictPolicy(" TinyLFU ").policyName should equal(FabricTinyLfuEvictPolicy.name)
+    FabricSnapEvictPolicy("cost").policyName should equal(FabricCostEvictPolicy.name)
+    an[VitalsException] should be thrownBy FabricSnapEvictPolicy("fifo")
+  }
+
+  it should "estimate frequency with a frequency sketch" in {
+    val sketch = FabricSnapFrequencySketch()
+    sketch.frequency(42) should equal(0)
+    for (_ <- 1 to 5) sketch.increment(42)
+    sketch.increment(7)
+    sketch.frequency(42) should be >= 5
+    sketch.frequency(7) should be >= 1
+    sketch.frequency(42) should be > sketch.frequency(7)
+  }
+
+  it should "saturate and age frequency sketch counters" in {
+    val sketch = FabricSnapFrequencySketch(width = 16)
+    for (_ <- 1 to 100) sketch.increment(42)
+    sketch.frequency(42) should be <= FabricSnapFrequencySketch.maxCount
+    sketch.frequency(42) should be > 0
+  }
+
+  it should "halve frequency sketch counters once the sample size is reached" in {
+    val sketch = FabricSnapFrequencySketch(width = 16)
+    sketch.sampleSize should equal(10 * 16)
+    for (_ <- 1 until sketch.sampleSize) sketch.increment(42)
+    sketch.frequency(42) should equal(FabricSnapFrequencySketch.maxCount)
+
+    // the access that reaches the sample size halves the counters and the count of accesses
+    sketch.increment(42)
+    sketch.frequency(42) should equal(FabricSnapFrequencySketch.maxCount / 2)
+
+    for (_ <- 1 until sketch.sampleSize / 2) sketch.increment(7)
+    sketch.frequency(42) should equal(FabricSnapFrequencySketch.maxCount / 2)
+    sketch.increment(7)
+    sketch.frequency(42) should equal(FabricSnapFrequencySketch.maxCount / 4)
+  }
+
+}
@@ -0,0 +1,98 @@
+/* Copyright Yahoo, Licensed under the terms of the Apache 2.0 license. See LICENSE file in project root for terms. */
+package org.burstsys.fabric.test.cache
+
+import org.burstsys.fabric.test.FabricWaveBaseSpec
+import org.burstsys.fabric.wave.configuration.{burstFabricCacheHoseDirectBatchBytesProperty, burstFabricCacheHoseIoProperty}
+import org.burstsys.fabric.wave.data.model.slice.region.hose.FabricHoseChannel
+import org.burstsys.vitals.errors.VitalsException
+
+import java.nio.ByteBuffer
+import java.nio.file.{FileAlreadyExistsException, Files, Path}
+import scala.concurrent.Await
+import scala.concurrent.duration._
+import scala.language.postfixOps
+import scala.util.Random
+
+//@Ignore
+class FabricWaveCacheHoseChannelSpec extends FabricWaveBaseSpec {
+
+  private var _dir: Path = _
+
+  override protected def beforeEach(): Unit = {
+    _dir = Files.createTempDirectory("hose-channel")
+  }
+
+  override protected def afterEach(): Unit = {
+    burstFabricCacheHoseIoProperty.set(FabricHoseChannel.asyncIo)
+    Files.list(_dir).forEach(Files.delete(_))
+    Files.delete(_dir)
+  }
+
+  /**
+   * append buffers of awkward sizes (some bigger than a direct batch) and check the file holds exactly the
+   * appended bytes
+   */
+  private def appendAndCheck(io: String): Unit = {
+    burstFabricCacheHoseIoProperty.set(io)
+    burstFabricCacheHoseDirectBatchBytesProperty.set(8 * 1024)
+    val path = _dir.resolve(s"region-$io")
+    val random = new Random(7)
+    val chunks = Seq(1, 511, 4096, 4097, 13, 20000, 0, 3).map { size =>
+      val bytes = new Array[Byte](size)
+      random.nextBytes(bytes)
+      bytes
+    }
+
+    val channel = FabricHoseChannel(path)
+    try {
+      chunks.zipWithIndex.foreach { case (bytes, i) =>
+        // mix heap and direct buffers the way parcels and region blocks arrive
+        val buffer = if (i % 2 == 0) ByteBuffer.wrap(bytes) else {
+          val direct = ByteBuffer.allocateDirect(bytes.length)
+          direct.put(bytes).flip()
+          direct
+        }
+        Await.result(channel.append(buffer), 10 seconds) should equal(bytes.length)
+        buffer.hasRemaining should equal(false)
+      }
+      channel.flush()
+      channel.size should equal(chunks.map(_.length).sum)
+    } finally channel.close()
+
+    Files.readAllBytes(path) should equal(chunks.flatten.toArray)
+  }
+
+  "FabricHoseChannel" should "append through async IO" in {
+    appendAndCheck(FabricHoseChannel.asyncIo)
+  }
+
+  it should "append through direct IO (or fall back to async where the file system does not support it)" in {
+    appendAndCheck(FabricHoseChannel.directIo)
+  }
+
+  it should "flush an empty file" in {
+    burstFabricCacheHoseIoProperty.set(FabricHoseChannel.directIo)
+    val path = _dir.resolve("empty")
+    val channel = FabricHoseChannel(path)
+    try {
+      channel.flush()
+      channel.size should equal(0)
+    } finally channel.close()
+    Files.size(path) should equal(0)
+  }
+
+  it should "not open (or delete) an existing file" in {
+    val path = Files.write(_dir.resolve("existing"), Array[Byte](1, 2, 3))
+    for (io <- Seq(FabricHoseChannel.asyncIo, FabricHoseChannel.directIo)) {
+      burstFabricCacheHoseIoProperty.set(io)
+      a[FileAlreadyExistsException] should be thrownBy FabricHoseChannel(path)
+      Files.readAllBytes(path) should equal(Array[Byte](1, 2, 3))
+    }
+  }
+
+  it should "reject an unknown backend" in {
+    burstFabricCacheHoseIoProperty.set("mmap")
+    a[VitalsException] should be thrownBy FabricHoseChannel(_dir.resolve("unknown"))
+  }
+
+}
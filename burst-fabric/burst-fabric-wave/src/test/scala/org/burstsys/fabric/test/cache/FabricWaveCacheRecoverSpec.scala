@@ -0,0 +1,208 @@
+/* Copyright Yahoo, Licensed under the terms of the Apache 2.0 license. See LICENSE file in project root for terms. */
+package org.burstsys.fabric.test.cache
+
+import com.esotericsoftware.kryo.io.{Input, Output}
+import org.burstsys.brio.flurry.provider.unity.BurstUnityMockData
+import org.burstsys.fabric.test.FabricWaveSupervisorWorkerBaseSpec
+import org.burstsys.fabric.test.mock.mockDatasource
+import org.burstsys.fabric.topology.model.node.UnknownFabricNodeId
+import org.burstsys.fabric.topology.model.node.worker.FabricWorkerNode
+import org.burstsys.fabric.wave.data.model.slice.FabricSlice
+import org.burstsys.fabric.wave.data.model.slice.data.{FabricSliceDataContext, magicNumber, version}
+import org.burstsys.fabric.wave.data.model.slice.region.{NoRegionChecksum, deleteFileSuffix, regionFileSuffix, regionFolders}
+import org.burstsys.fabric.wave.data.model.slice.state.{FabricDataHot, FabricDataState, FabricDataWarm}
+import org.burstsys.fabric.wave.data.model.snap.{ColdSnap, FabricSnap, HotSnap, NoDataSnap, WarmSnap, getSnapFile}
+import org.burstsys.fabric.wave.data.worker.cache.internal.FabricSnapCacheRegions
+import org.burstsys.fabric.wave.data.worker.cache.lifecycle.FabricSnapCacheBooter
+import org.burstsys.fabric.wave.data.worker.pump.FabricCacheIntake
+import org.burstsys.fabric.wave.data.worker.store.FabricWorkerLoader
+import org.burstsys.tesla.thread.request.TeslaRequestCoupler
+import org.burstsys.vitals.errors.VitalsException
+import org.burstsys.vitals.kryo.{acquireKryo, releaseKryo}
+import org.burstsys.vitals.net._
+import org.burstsys.vitals.uid._
+
+import java.nio.file.{Files, Path, Paths}
+
+//@Ignore
+class FabricWaveCacheRecoverSpec extends FabricWaveSupervisorWorkerBaseSpec with FabricWorkerLoader {
+
+  private val itemsToGenerate = 3e2.toInt
+
+  private var _snap: FabricSnap = _
+
+  override def beforeAll(): Unit = {
+    super.beforeAll()
+    FabricCacheIntake.start
+    TeslaRequestCoupler {
+      val slice = FabricSlice(
+        guid = newBurstUid, datasource = mockDatasource,
+        worker = FabricWorkerNode(UnknownFabricNodeId, workerNodeAddress = getPublicHostAddress),
+        sliceKey = 0, generationHash = newBurstUid, slices = 1
+      )
+      _snap = FabricSnap(getSnapFile(slice), slice)
+      this.loadSliceFromCacheOrInitialize(_snap)
+    }
+    _snap.metadata.state shouldBe FabricDataHot
+  }
+
+  override protected def afterAll(): Unit = {
+    super.afterAll()
+    FabricCacheIntake.stop
+  }
+
+  /**
+   * persist the loaded snap in a given state and try to recover it the way the booter does
+   */
+  private def persistAndRecover(state: org.burstsys.fabric.wave.data.model.snap.FabricSnapState): Option[FabricSnap] = {
+    _snap.state = state
+    _snap.persist
+    FabricSnapCacheBooter.recoverSnap(_snap.snapFile)
+  }
+
+  private def checksums(snap: FabricSnap): Seq[Long] =
+    snap.data.asInstanceOf[FabricSliceDataContext].regions.map(_.regionChecksum).toSeq
+
+  private def withKryo[T](body: com.esotericsoftware.kryo.Kryo => T): T = {
+    val kryo = acquireKryo
+    try body(kryo) finally releaseKryo(kryo)
+  }
+
+  ////////////////////////////////////////////////////////////////////////////////
+  // recoverSnap
+  ////////////////////////////////////////////////////////////////////////////////
+
+  "FabricSnapCacheBooter" should "recover a hot or warm snap with intact region files as a warm snap" in {
+    _snap.data.regionsRecoverable shouldBe true
+    for (state <- Seq(HotSnap, WarmSnap)) {
+      val recovered = persistAndRecover(state)
+      recovered should not be empty
+      recovered.get.state shouldBe WarmSnap
+      recovered.get.guid shouldBe _snap.guid
+      recovered.get.data.regionFiles.map(_.toAbsolutePath).toSeq shouldBe _snap.data.regionFiles.map(_.toAbsolutePath).toSeq
+      checksums(recovered.get) shouldBe checksums(_snap)
+    }
+  }
+
+  it should "keep an empty snap empty" in {
+    val recovered = persistAndRecover(NoDataSnap)
+    recovered should not be empty
+    recovered.get.state shouldBe NoDataSnap
+  }
+
+  it should "not recover a snap that is not on disk" in {
+    persistAndRecover(ColdSnap) shouldBe empty
+  }
+
+  it should "not recover a snap with a missing region file" in {
+    val regionFile = _snap.data.regionFiles.head
+    val moved = Paths.get(regionFile.toString + ".moved")
+    Files.move(regionFile, moved)
+    try {
+      persistAndRecover(WarmSnap) shouldBe empty
+    } finally Files.move(moved, regionFile)
+    persistAndRecover(WarmSnap) should not be empty
+  }
+
+  it should "not recover a snap file that can't be read" in {
+    val file = Files.createTempFile("garbage", ".snap")
+    try {
+      Files.write(file, Array[Byte](1, 2, 3, 4, 5))
+      FabricSnapCacheBooter.recoverSnap(file) shouldBe empty
+    } finally Files.deleteIfExists(file)
+  }
+
+  ////////////////////////////////////////////////////////////////////////////////
+  // slice data versions
+  ////////////////////////////////////////////////////////////////////////////////
+
+  "FabricSliceData" should "round trip region paths and checksums in the current version" in {
+    withKryo { kryo =>
+      val output = new Output(64 * 1024)
+      _snap.data.asInstanceOf[FabricSliceDataContext].write(kryo, output)
+      val data = FabricSliceDataContext(_snap)
+      data.read(kryo, new Input(output.toBytes))
+      data.regionCount shouldBe _snap.data.regionCount
+      data.regionFiles.map(_.toAbsolutePath).toSeq shouldBe _snap.data.regionFiles.map(_.toAbsolutePath).toSeq
+      data.regions.map(_.regionChecksum).toSeq shouldBe checksums(_snap)
+      data.regions.foreach(_.regionChecksum should not equal NoRegionChecksum)
+      data.regionsRecoverable shouldBe true
+    }
+  }
+
+  it should "read version 1 slice data without checksums (and so not recoverable)" in {
+    withKryo { kryo =>
+      val paths = _snap.data.regionFiles
+      val output = new Output(64 * 1024)
+      output.writeInt(magicNumber)
+      output.writeInt(1)
+      output.writeInt(0)
+      output.writeInt(paths.length)
+      paths.foreach(p => output.writeString(p.toFile.getAbsolutePath))
+
+      val data = FabricSliceDataContext(_snap)
+      data.read(kryo, new Input(output.toBytes))
+      data.regionCount shouldBe paths.length
+      data.regionFiles.map(_.toAbsolutePath).toSeq shouldBe paths.map(_.toAbsolutePath).toSeq
+      data.regions.foreach(_.regionChecksum shouldBe NoRegionChecksum)
+      data.regionsRecoverable shouldBe false
+    }
+  }
+
+  it should "reject an unknown version or a bad magic number" in {
+    withKryo { kryo =>
+      for ((magic, v) <- Seq((magicNumber, version + 1), (magicNumber + 1, version))) {
+        val output = new Output(1024)
+        output.writeInt(magic)
+        output.writeInt(v)
+        output.writeInt(0)
+        output.writeInt(0)
+        an[VitalsException] should be thrownBy FabricSliceDataContext(_snap).read(kryo, new Input(output.toBytes))
+      }
+    }
+  }
+
+  ////////////////////////////////////////////////////////////////////////////////
+  // region file cleanup
+  ////////////////////////////////////////////////////////////////////////////////
+
+  private object cacheRegions extends FabricSnapCacheRegions {
+    def clean(referenced: Set[Path]): Unit = cleanUnreferencedRegionFiles(referenced)
+  }
+
+  "FabricSnapCacheRegions" should "only clean region files no recovered snap references" in {
+    val orphan = regionFolders.head.resolve(s"orphan_$newBurstUid$regionFileSuffix")
+    Files.write(orphan, Array[Byte](1, 2, 3))
+    val referenced = _snap.data.regionFiles.map(_.toAbsolutePath).toSet
+
+    cacheRegions.clean(referenced)
+
+    Files.exists(orphan) shouldBe false
+    // moved aside for the background cleaner (which may already have deleted it)
+    Files.list(regionFolders.head).toArray.map(_.toString).filter(_.contains("orphan_"))
+      .foreach(_ should endWith(deleteFileSuffix))
+    referenced.foreach(Files.exists(_) shouldBe true)
+    persistAndRecover(WarmSnap) should not be empty
+  }
+
+  override protected
+  def initializeSlice(snap: FabricSnap): FabricDataState = {
+    var itemCount = 0
+    snap.data.openForWrites()
+    try {
+      BurstUnityMockData(itemsToGenerate).pressToDeflatedParcels foreach { parcel =>
+        itemCount += parcel.bufferCount
+        snap.data queueParcelForWrite parcel
+      }
+      snap.data.waitForWritesToComplete()
+      snap.metadata.state = FabricDataWarm
+      snap.metadata.generationMetrics.recordSliceNormalColdLoad(
+        loadTookMs = 0, regionCount = snap.data.regionCount,
+        itemCount = itemCount, expectedItemCount = itemCount, potentialItemCount = itemCount,
+        rejectedItemCount = 0, byteCount = 0
+      )
+    } finally snap.data.closeForWrites()
+    snap.metadata.state
+  }
+
+}
@@ -0,0 +1,110 @@
+/* Copyright Yahoo, Licensed under the terms of the Apache 2.0 license. See LICENSE file in project root for terms. */
+package org.burstsys.fabric.test.cache
+
+import java.nio.file.{Files, Paths}
+import java.util.zip.CRC32C
+
+import org.burstsys.fabric.test.FabricWaveBaseSpec
+import org.burstsys.fabric.test.mock.MockSlice
+import org.burstsys.fabric.topology.model.node.UnknownFabricNodeId
+import org.burstsys.fabric.topology.model.node.worker.FabricWorkerNode
+import org.burstsys.fabric.wave.configuration.cacheSpindleFolders
+import org.burstsys.fabric.wave.data.model.slice.region._
+import org.burstsys.fabric.wave.data.model.snap.FabricSnap
+import org.burstsys.fabric.wave.metadata.model.datasource.FabricDatasource
+import org.burstsys.tesla.block.factory.TeslaBlockSizes
+import org.burstsys.tesla.part.factory.TeslaMemoryBudget
+import org.burstsys.vitals.net.getPublicHostAddress
+import org.burstsys.vitals.uid.newBurstUid
+
+//@Ignore
+class FabricWaveCacheRegionCompactSpec extends FabricWaveBaseSpec {
+
+  private val tmpFolder = Files.createTempDirectory("snap")
+  private val tmpPath = Paths.get(tmpFolder.toString, "mock")
+  private val worker = FabricWorkerNode(workerId = UnknownFabricNodeId, workerNodeAddress = getPublicHostAddress)
+  private val slice = MockSlice(newBurstUid, 0, newBurstUid, 1, FabricDatasource(-1, -1, -1), "", worker)
+  private val snap = FabricSnap(tmpPath, slice)
+
+  /**
+   * a (compressible) region file just over a block size class spanning several compression chunks
+   */
+  private def regionContents: Array[Byte] = {
+    val size = TeslaBlockSizes.blockSizes.find(_ > 2 * RegionCompressChunkSize).get + 1
+    val contents = new Array[Byte](size)
+    contents(0) = RegionMagic
+    contents(1) = RegionVersion
+    for (i <- SizeOfRegionHeader until size)
+      contents(i) = (i % 251).toByte
+    contents
+  }
+
+  it should "inflate a compacted region larger than a block size class into an exact size allocation" in {
+    val contents = regionContents
+    val checksum = new CRC32C
+    checksum.update(contents)
+
+    val spindle = Files.createDirectories(Paths.get(cacheSpindleFolders.head))
+    val filePath = spindle.resolve(s"region_compact_$newBurstUid")
+    Files.write(filePath, contents)
+    val region = FabricRegion(snap, 0, filePath)
+    try {
+      region.regionCompactable shouldBe true
+      region.compactRegionOnDisk() should be > 0L
+      region.regionCompressed shouldBe true
+      region.regionCompactable shouldBe false
+      region.compactRegionOnDisk() shouldEqual 0L
+      Files.size(filePath) should be < contents.length.toLong
+
+      // the load validates the inflated contents against the checksum of the original region file
+      region.restoreRegionChecksum(checksum.getValue)
+      val allocated = TeslaMemoryBudget.allocatedBytes
+      region.loadRegionIntoMemory()
+      try {
+        region.readFileSize shouldEqual contents.length
+        TeslaMemoryBudget.allocatedBytes - allocated shouldEqual contents.length
+      } finally region.evictRegionFromMemory()
+      TeslaMemoryBudget.allocatedBytes shouldEqual allocated
+    } finally region.flushRegionFromDisk()
+  }
+
+  it should "not compact a region file that does not compress more than once" in {
+    val contents = new Array[Byte](64 * 1024)
+    new scala.util.Random(11).nextBytes(contents)
+    contents(0) = RegionMagic
+    contents(1) = RegionVersion
+
+    val spindle = Files.createDirectories(Paths.get(cacheSpindleFolders.head))
+    val filePath = spindle.resolve(s"region_incompressible_$newBurstUid")
+    Files.write(filePath, contents)
+    val region = FabricRegion(snap, 0, filePath)
+    try {
+      region.regionCompactable shouldBe true
+      region.compactRegionOnDisk() shouldEqual 0L
+      region.regionCompressed shouldBe false
+      region.regionCompactable shouldBe false
+      val modified = Files.getLastModifiedTime(filePath)
+      region.compactRegionOnDisk() shouldEqual 0L
+      Files.getLastModifiedTime(filePath) shouldEqual modified
+      Files.readAllBytes(filePath) shouldEqual contents
+    } finally region.flushRegionFromDisk()
+    region.regionCompressed shouldBe false
+    region.regionCompactable shouldBe false
+  }
+
+  it should "find a compacted region file left by a previous region" in {
+    val contents = regionContents
+    val spindle = Files.createDirectories(Paths.get(cacheSpindleFolders.head))
+    val filePath = spindle.resolve(s"region_compact_$newBurstUid")
+    Files.write(filePath, contents)
+    val region = FabricRegion(snap, 0, filePath)
+    try {
+      region.compactRegionOnDisk() should be > 0L
+      // e.g. a region recovered at boot probes the file header
+      val recovered = FabricRegion(snap, 0, filePath)
+      recovered.regionCompressed shouldBe true
+      recovered.regionCompactable shouldBe false
+    } finally region.flushRegionFromDisk()
+  }
+
+}
@@ -0,0 +1,100 @@
+/* Copyright Yahoo, Licensed under the terms of the Apache 2.0 license. See LICENSE file in project root for terms. */
+package org.burstsys.fabric.test.cache
+
+import org.burstsys.brio.flurry.provider.unity.BurstUnityMockData
+import org.burstsys.fabric.test.FabricWaveSupervisorWorkerBaseSpec
+import org.burstsys.fabric.test.mock.mockDatasource
+import org.burstsys.fabric.topology.model.node.UnknownFabricNodeId
+import org.burstsys.fabric.topology.model.node.worker.FabricWorkerNode
+import org.burstsys.fabric.wave.data.model.slice.FabricSlice
+import org.burstsys.fabric.wave.data.model.slice.state.{FabricDataHot, FabricDataState, FabricDataWarm}
+import org.burstsys.fabric.wave.data.model.snap.{FabricSnap, getSnapFile}
+import org.burstsys.fabric.wave.data.worker.pump.FabricCacheIntake
+import org.burstsys.fabric.wave.data.worker.store.FabricWorkerLoader
+import org.burstsys.tesla
+import org.burstsys.tesla.parcel.TeslaParcel
+import org.burstsys.tesla.thread.request.TeslaRequestCoupler
+import org.burstsys.vitals.errors.VitalsException
+import org.burstsys.vitals.net._
+import org.burstsys.vitals.uid._
+
+//@Ignore
+class FabricWaveCacheSliceShipSpec extends FabricWaveSupervisorWorkerBaseSpec with FabricWorkerLoader {
+
+  private val itemsToGenerate = 3e2.toInt
+
+  private val parcelSize = 1e6.toInt
+
+  override def beforeAll(): Unit = {
+    super.beforeAll()
+    FabricCacheIntake.start
+  }
+
+  override protected def afterAll(): Unit = {
+    super.afterAll()
+    FabricCacheIntake.stop
+  }
+
+  /**
+   * ship (a stripe of) the slice and return the items in the shipped parcels
+   */
+  private def ship(snap: FabricSnap, stripe: Int, stripes: Int): Long = {
+    var parcelItems = 0L
+    val shipped = snap.data.shipSlice(parcelSize, stripe, stripes) { parcel: TeslaParcel =>
+      parcelItems += parcel.bufferCount
+      tesla.parcel.factory.releaseParcel(parcel)
+    }
+    shipped shouldEqual parcelItems
+    shipped
+  }
+
+  "Fabric Slice" should "ship disjoint stripes of its regions that together cover the slice" in {
+    TeslaRequestCoupler {
+      val slice = FabricSlice(
+        guid = newBurstUid, datasource = mockDatasource,
+        worker = FabricWorkerNode(UnknownFabricNodeId, workerNodeAddress = getPublicHostAddress),
+        sliceKey = 0, generationHash = newBurstUid, slices = 1
+      )
+      val snap = FabricSnap(getSnapFile(slice), slice)
+      this.loadSliceFromCacheOrInitialize(snap)
+      snap.metadata.state shouldBe FabricDataHot
+
+      ship(snap, 0, 1) shouldEqual itemsToGenerate
+
+      for (stripes <- Seq(2, 3, snap.data.regionCount + 1)) {
+        val shares = (0 until stripes).map(ship(snap, _, stripes))
+        // regions are dealt to exactly one stripe each
+        shares.sum shouldEqual itemsToGenerate
+        // and always to the same one
+        (0 until stripes).map(ship(snap, _, stripes)) shouldEqual shares
+      }
+
+      // a stripe past the last region ships nothing
+      ship(snap, snap.data.regionCount, snap.data.regionCount + 1) shouldEqual 0
+
+      an[VitalsException] should be thrownBy ship(snap, 2, 2)
+      an[VitalsException] should be thrownBy ship(snap, -1, 2)
+    }
+  }
+
+  override protected
+  def initializeSlice(snap: FabricSnap): FabricDataState = {
+    var itemCount = 0
+    snap.data.openForWrites()
+    try {
+      BurstUnityMockData(itemsToGenerate).pressToDeflatedParcels foreach { parcel =>
+        itemCount += parcel.bufferCount
+        snap.data queueParcelForWrite parcel
+      }
+      snap.data.waitForWritesToComplete()
+      snap.metadata.state = FabricDataWarm
+      snap.metadata.generationMetrics.recordSliceNormalColdLoad(
+        loadTookMs = 0, regionCount = snap.data.regionCount,
+        itemCount = itemCount, expectedItemCount = itemCount, potentialItemCount = itemCount,
+        rejectedItemCount = 0, byteCount = 0
+      )
+    } finally snap.data.closeForWrites()
+    snap.metadata.state
+  }
+
+}
@@ -0,0 +1,80 @@
+/* Copyright Yahoo, Licensed under the terms of the Apache 2.0 license. See LICENSE file in project root for terms. */
+package org.burstsys.fabric.test.execution.model
+
+import org.burstsys.fabric.test.FabricWaveBaseSpec
+import org.burstsys.fabric.wave.execution.model.gather.control.FabricControlGatherContext
+import org.burstsys.fabric.wave.execution.model.gather.{FabricGather, FabricGatherTreeMerge}
+import org.burstsys.vitals.errors.VitalsException
+
+import java.util.concurrent.atomic.AtomicInteger
+import scala.concurrent.Await
+import scala.concurrent.duration._
+
+//@Ignore
+class FabricGatherTreeMergeSpec extends FabricWaveBaseSpec {
+
+  /**
+   * a gather that counts the gathers merged into it
+   */
+  private final class CountGather(var count: Int = 1) extends FabricControlGatherContext {
+    override val resultMessage: String = "count"
+  }
+
+  private val merges = new AtomicInteger
+
+  private def countMerge(into: FabricGather, from: FabricGather): FabricGather = {
+    merges.incrementAndGet()
+    into.asInstanceOf[CountGather].count += from.asInstanceOf[CountGather].count
+    into
+  }
+
+  private def treeMerge(gathers: Seq[FabricGather],
+                        merge: (FabricGather, FabricGather) => FabricGather = countMerge): FabricGather = {
+    merges.set(0)
+    val tree = FabricGatherTreeMerge(merge)
+    gathers.foreach(tree.add)
+    tree.seal()
+    Await.result(tree.result, 30.seconds)
+  }
+
+  "FabricGatherTreeMerge" should "complete with no gather when none are added" in {
+    treeMerge(Seq.empty) shouldBe null
+    merges.get shouldBe 0
+  }
+
+  it should "complete with a single gather without merging it" in {
+    val only = new CountGather
+    treeMerge(Seq(only)) should be theSameInstanceAs only
+    merges.get shouldBe 0
+  }
+
+  it should "merge every gather exactly once for odd and even fan in" in {
+    for (n <- Seq(2, 3, 5, 7, 8, 33, 101)) {
+      val result = treeMerge(Seq.fill(n)(new CountGather))
+      result.asInstanceOf[CountGather].count shouldBe n
+      merges.get shouldBe n - 1
+    }
+  }
+
+  it should "complete a seal that arrives before the merges finish" in {
+    merges.set(0)
+    val tree = FabricGatherTreeMerge { (into, from) =>
+      Thread.sleep(10)
+      countMerge(into, from)
+    }
+    (1 to 9).foreach(_ => tree.add(new CountGather))
+    tree.seal()
+    Await.result(tree.result, 30.seconds).asInstanceOf[CountGather].count shouldBe 9
+  }
+
+  it should "fail the result when a merge fails" in {
+    val failing: (FabricGather, FabricGather) => FabricGather = { (into, from) =>
+      if (into.asInstanceOf[CountGather].count + from.asInstanceOf[CountGather].count >= 4)
+        throw VitalsException("merge failed")
+      countMerge(into, from)
+    }
+    val thrown = the[VitalsException] thrownBy treeMerge(Seq.fill(7)(new CountGather), failing)
+    thrown.getMessage should include("merge failed")
+  }
+
+}
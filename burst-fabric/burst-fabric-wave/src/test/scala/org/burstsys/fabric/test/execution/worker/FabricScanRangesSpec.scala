@@ -0,0 +1,90 @@
+/* Copyright Yahoo, Licensed under the terms of the Apache 2.0 license. See LICENSE file in project root for terms. */
+package org.burstsys.fabric.test.execution.worker
+
+import org.burstsys.fabric.test.FabricWaveBaseSpec
+import org.burstsys.fabric.wave.execution.worker.FabricScanRanges
+
+import java.util.concurrent.atomic.AtomicIntegerArray
+import java.util.concurrent.{CountDownLatch, Executors, TimeUnit}
+import scala.collection.mutable.ArrayBuffer
+
+//@Ignore
+class FabricScanRangesSpec extends FabricWaveBaseSpec {
+
+  /**
+   * region `r` holds `sizes(r)` items numbered after the items of the regions before it
+   */
+  private def regionItems(sizes: Array[Int], region: Int): Iterator[Int] = {
+    val start = sizes.take(region).sum
+    (start until start + sizes(region)).iterator
+  }
+
+  private def drain(ranges: FabricScanRanges[Int], owner: Int): Seq[Array[Int]] = {
+    val taken = new ArrayBuffer[Array[Int]]
+    var range = ranges.next(owner)
+    while (range != null) {
+      taken += range
+      range = ranges.next(owner)
+    }
+    taken.toSeq
+  }
+
+  "FabricScanRanges" should "cut a region into ranges an owner takes front to back" in {
+    val ranges = new FabricScanRanges[Int](Array(0))
+    ranges.cut(0, (0 until 10).iterator, 4)
+    drain(ranges, 0).map(_.toSeq) shouldEqual Seq(Seq(0, 1, 2, 3), Seq(4, 5, 6, 7), Seq(8, 9))
+    ranges.next(0) shouldBe null
+  }
+
+  it should "cut an empty region into no ranges" in {
+    val ranges = new FabricScanRanges[Int](Array(0, 0))
+    ranges.cut(0, Iterator.empty, 4)
+    ranges.next(0) shouldBe null
+    ranges.next(1) shouldBe null
+  }
+
+  it should "steal from the back of other regions, same node first" in {
+    // regions 0 and 2 are on node 0, region 1 on node 1
+    val ranges = new FabricScanRanges[Int](Array(0, 1, 0))
+    ranges.cut(1, (10 until 14).iterator, 2)
+    ranges.cut(2, (20 until 24).iterator, 2)
+    // region 0 has nothing of its own so it steals the back of region 2 (same node) before region 1
+    drain(ranges, 0).map(_.head) shouldEqual Seq(22, 20, 12, 10)
+  }
+
+  it should "leave a region that has not been cut to its owner" in {
+    val ranges = new FabricScanRanges[Int](Array(0, 0))
+    ranges.next(1) shouldBe null
+    ranges.cut(0, (0 until 6).iterator, 2)
+    drain(ranges, 0).flatten shouldEqual (0 until 6)
+  }
+
+  it should "hand every item to exactly one concurrent worker" in {
+    val sizes = Array(1000, 0, 17, 5000, 3, 2500, 1, 800)
+    val nodes = sizes.indices.map(_ % 2).toArray
+    val total = sizes.sum
+    val pool = Executors.newFixedThreadPool(sizes.length)
+    try {
+      for (rangeItems <- Seq(1, 7, 64, 10000)) {
+        val ranges = new FabricScanRanges[Int](nodes)
+        val scans = new AtomicIntegerArray(total)
+        val start = new CountDownLatch(1)
+        val done = new CountDownLatch(sizes.length)
+        for (owner <- sizes.indices) {
+          pool.execute(() => {
+            try {
+              start.await()
+              // the way a scan worker does it - cut our own region then take ranges until there are none
+              ranges.cut(owner, regionItems(sizes, owner), rangeItems)
+              drain(ranges, owner).foreach(_.foreach(scans.incrementAndGet))
+            } finally done.countDown()
+          })
+        }
+        start.countDown()
+        done.await(30, TimeUnit.SECONDS) shouldBe true
+        (0 until total).filter(scans.get(_) != 1) shouldBe empty
+      }
+    } finally pool.shutdown()
+  }
+
+}
@@ -4,6 +4,7 @@ package org.burstsys.felt.kryo
 import org.burstsys.fabric.wave.execution.model.execute.invoke.{FabricInvocationContext, FabricParameterizationContext}
 import org.burstsys.felt.model.collectors.cube.decl.column.aggregation._
 import org.burstsys.felt.model.collectors.cube.decl.column.aggregation.primitive._
+import org.burstsys.felt.model.collectors.cube.decl.column.aggregation.sketch.{FeltCubeAggApproxDistinctSemRt, FeltCubeAggQuantileSemRt}
 import org.burstsys.felt.model.collectors.cube.decl.column.aggregation.take.{FeltCubeAggTakeSemRt, FeltCubeBottomTakeSemMode, FeltCubeTakeSemMode, FeltCubeTopTakeSemMode}
 import org.burstsys.felt.model.collectors.cube.decl.column.dimension.FeltCubeDimSemRt
 import org.burstsys.felt.model.collectors.cube.decl.column.dimension.coerce.{COERCE_DIMENSION_SEMANTIC, FeltCubeDimCoerceSemRt}
@@ -162,7 +163,13 @@ class FeltKryoCatalog extends VitalsKryoCatalogProvider {
 
 
         (key.getAndIncrement, FeltCubeTopTakeSemMode.getClass),
-        (key.getAndIncrement, FeltCubeBottomTakeSemMode.getClass)
+        (key.getAndIncrement, FeltCubeBottomTakeSemMode.getClass),
+
+        // sketch semantics
+        (key.getAndIncrement, APPROX_DISTINCT_AGGREGATION_SEMANTIC.getClass),
+        (key.getAndIncrement, classOf[FeltCubeAggApproxDistinctSemRt]),
+        (key.getAndIncrement, QUANTILE_AGGREGATION_SEMANTIC.getClass),
+        (key.getAndIncrement, classOf[FeltCubeAggQuantileSemRt])
       )
     }
 }
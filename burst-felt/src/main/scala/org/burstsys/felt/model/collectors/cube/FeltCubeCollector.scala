@@ -170,6 +170,18 @@ trait FeltCubeCollector extends Any with FeltCollector {
    */
   def writeAggregationPrimitive(builder: FeltCubeBuilder, thisCube: FeltCubeCollector, aggregation: Int, value: BrioPrimitive): Unit
 
+  /**
+   * add an item to the sketch of a sketch aggregation (see
+   * [[org.burstsys.felt.model.collectors.cube.decl.column.aggregation.sketch.FeltCubeAggSketchSemRt]])
+   * and update the aggregation value from the sketch
+   *
+   * @param builder
+   * @param thisCube
+   * @param aggregation
+   * @param item
+   */
+  def writeAggregationSketch(builder: FeltCubeBuilder, thisCube: FeltCubeCollector, aggregation: Int, item: BrioPrimitive): Unit
+
   /**
    * TODO
    *
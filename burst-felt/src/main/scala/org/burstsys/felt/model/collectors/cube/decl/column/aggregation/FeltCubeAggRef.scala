@@ -3,6 +3,7 @@ package org.burstsys.felt.model.collectors.cube.decl.column.aggregation
 
 import org.burstsys.brio.types.BrioTypes._
 import org.burstsys.felt.model.collectors.cube.decl.column.FeltCubeColRef
+import org.burstsys.felt.model.collectors.cube.decl.column.aggregation.sketch.{FeltCubeAggSketchColSem, FeltCubeAggSketchSemRt}
 import org.burstsys.felt.model.collectors.cube.generate.{FeltStaticCubeSpace, cubeBuilderVariable, cubeDictionary}
 import org.burstsys.felt.model.reference.path.FeltPathExpr
 import org.burstsys.felt.model.reference.{FeltReference, FeltStdRefResolver}
@@ -43,7 +44,41 @@ class FeltCubeAggRef(refName: FeltPathExpr, refDecl: FeltCubeAggDecl) extends Fe
 
   override
   def generateReferenceAssign(implicit cursor: FeltCodeCursor): FeltCode = {
-    generateAggregationWrite
+    refDecl.semantic match {
+      case _: FeltCubeAggSketchColSem => generateSketchWrite
+      case _ => generateAggregationWrite
+    }
+  }
+
+  /**
+   * sketch aggregations add the value to the row's sketch as an item - null values are not added
+   */
+  private
+  def generateSketchWrite(implicit cursor: FeltCodeCursor): FeltCode = {
+    val ns = FeltStaticCubeSpace(global, cubeName)
+    s"""|
+        |${T(this, s"agg-sketch-write")}
+        |${I}if(!${cursor.callScope.scopeNull}) {
+        |${I2}val semantic = ${cubeBuilderVariable(cubeName)}.aggregationSemantics($relationOrdinal).asInstanceOf[${classOf[FeltCubeAggSketchSemRt].getName}]; // $relationName
+        |$I2${ns.currentInstCube}.writeAggregationSketch(${ns.cubeBuilderVar}, ${ns.currentInstCube}, $relationOrdinal, semantic.$sketchItem) // $relationName
+        |$I}""".stripMargin
+  }
+
+  private
+  def sketchItem(implicit cursor: FeltCodeCursor): FeltCode = {
+    relationType match {
+      case BrioBooleanKey => s"itemBoolean(${cursor.callScope.scopeVal})"
+      case BrioByteKey => s"itemByte(${cursor.callScope.scopeVal})"
+      case BrioShortKey => s"itemShort(${cursor.callScope.scopeVal})"
+      case BrioIntegerKey => s"itemInteger(${cursor.callScope.scopeVal})"
+      case BrioLongKey => s"itemLong(${cursor.callScope.scopeVal})"
+      case BrioDoubleKey => s"itemDouble(${cursor.callScope.scopeVal})"
+      case BrioStringKey =>
+        if (cursor.global.lexicon.enabled)
+          s"itemLexiconString(${sweepRuntimeSym}.dictionary, ${cursor.callScope.scopeVal})"
+        else
+          s"itemString(${cursor.callScope.scopeVal})"
+    }
   }
 
   private
@@ -16,6 +16,8 @@ package object aggregation {
   private[felt] final val TopName = "top"
   private[felt] final val BottomName = "bottom"
   private[felt] final val ProjectName = "project"
+  private[felt] final val ApproxDistinctName = "approxDistinct"
+  private[felt] final val QuantileName = "quantile"
 
   /**
    * abstraction for all aggregations in DSL
@@ -51,5 +53,9 @@ package object aggregation {
 
   object PROJECT_AGGREGATION_SEMANTIC extends FeltAggSemType(ProjectName)
 
+  object APPROX_DISTINCT_AGGREGATION_SEMANTIC extends FeltAggSemType(ApproxDistinctName)
+
+  object QUANTILE_AGGREGATION_SEMANTIC extends FeltAggSemType(QuantileName)
+
 
 }
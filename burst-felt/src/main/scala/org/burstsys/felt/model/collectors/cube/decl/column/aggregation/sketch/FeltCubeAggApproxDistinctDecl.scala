@@ -0,0 +1,90 @@
+/* Copyright Yahoo, Licensed under the terms of the Apache 2.0 license. See LICENSE file in project root for terms. */
+package org.burstsys.felt.model.collectors.cube.decl.column.aggregation.sketch
+
+import org.burstsys.brio.types.BrioTypes.{BrioLongKey, BrioRelationName, BrioTypeKey, brioDataTypeNameFromKey}
+import org.burstsys.felt.model.FeltException
+import org.burstsys.felt.model.collectors.cube.decl.column.aggregation._
+import org.burstsys.felt.model.expressions.FeltExpression
+import org.burstsys.felt.model.reference.path.FeltPathExpr
+import org.burstsys.felt.model.tree.source._
+import org.burstsys.felt.model.tree.{FeltLocation, FeltNode}
+
+import scala.reflect.ClassTag
+
+/**
+ * A Felt compatible ''approxDistinct'' aggregate AST node. The value type is the type of the values
+ * counted - the aggregation itself is always a long count. An optional ''precision'' (the number of hash bits
+ * used to pick one of the `2^precision` one byte registers) trades sketch size for accuracy.
+ */
+trait FeltCubeAggApproxDistinctDecl extends FeltCubeAggDecl {
+
+  final override val nodeName = "felt-cube-approx-distinct-agg-col"
+
+  final override val semanticType: FeltAggSemType = APPROX_DISTINCT_AGGREGATION_SEMANTIC
+
+  /**
+   * the precision if one was given
+   */
+  def precisionValues: Array[FeltExpression]
+
+  final override lazy val semantic: FeltCubeAggColSem = {
+    val p = precisionValues.headOption.map(_.reduceToFixAtomOrThrow.value.toInt)
+      .getOrElse(FeltCubeAggApproxDistinctSemRt.DefaultPrecision)
+    if (p < FeltCubeAggApproxDistinctSemRt.MinPrecision || p > FeltCubeAggApproxDistinctSemRt.MaxPrecision)
+      throw FeltException(location,
+        s"approxDistinct aggregation '$columnName' precision $p must be between ${FeltCubeAggApproxDistinctSemRt.MinPrecision} and ${FeltCubeAggApproxDistinctSemRt.MaxPrecision}")
+    new FeltCubeAggApproxDistinctColSem {
+      final override val bType: BrioTypeKey = BrioLongKey
+      final override val columnName: BrioRelationName = FeltCubeAggApproxDistinctDecl.this.columnName
+      final override val precision: Int = p
+    }
+  }
+
+  ////////////////////////////////////////////////////////////////////////////////////////////////////////////
+  // TREE OPS
+  ////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+  override
+  def treeApply[R: ClassTag](rule: FeltNode => Array[R]): Array[R] = rule(this) ++ precisionValues.treeApply(rule)
+
+  final override
+  def children: Array[_ <: FeltNode] = precisionValues
+
+  ////////////////////////////////////////////////////////////////////////////////////////////////////////////
+  // TYPE INFERENCE
+  ////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+  override def canInferTypes: Boolean = super.canInferTypes && precisionValues.canInferTypes
+
+  override
+  def resolveTypes: this.type = {
+    super.resolveTypes
+    precisionValues.foreach(_.resolveTypes)
+    this
+  }
+
+  ////////////////////////////////////////////////////////////////////////////////////////////////////////////
+  // STATIC REDUCTION
+  ////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+  final override
+  def reduceStatics: FeltCubeAggApproxDistinctDecl = new FeltCubeAggApproxDistinctDecl {
+    sync(FeltCubeAggApproxDistinctDecl.this)
+    final override val location: FeltLocation = FeltCubeAggApproxDistinctDecl.this.location
+    final override val refName: FeltPathExpr = FeltCubeAggApproxDistinctDecl.this.refName
+    final override val valueType: BrioTypeKey = FeltCubeAggApproxDistinctDecl.this.valueType
+    final override val precisionValues: Array[FeltExpression] =
+      FeltCubeAggApproxDistinctDecl.this.precisionValues.map(_.resolveTypes.reduceStatics)
+  }
+
+  ////////////////////////////////////////////////////////////////////////////////////////////////////////////
+  // NORMALIZED SOURCE GEN
+  ////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+  final override
+  def normalizedSource(implicit index: Int): String =
+    s"$S'$columnName':${semanticType.name}[${brioDataTypeNameFromKey(valueType).toLowerCase}]${
+      if (precisionValues.isEmpty) "" else s"(${precisionValues.map(_.normalizedSource).mkString(",")})"
+    }"
+
+}
@@ -0,0 +1,185 @@
+/* Copyright Yahoo, Licensed under the terms of the Apache 2.0 license. See LICENSE file in project root for terms. */
+package org.burstsys.felt.model.collectors.cube.decl.column.aggregation.sketch
+
+import com.esotericsoftware.kryo.Kryo
+import com.esotericsoftware.kryo.io.{Input, Output}
+import org.burstsys.brio.types.BrioPrimitives.BrioPrimitive
+import org.burstsys.felt.model.collectors.cube.decl.column.aggregation.APPROX_DISTINCT_AGGREGATION_SEMANTIC
+import org.burstsys.felt.model.tree.code.{FeltCode, FeltCodeCursor, I}
+import org.burstsys.felt.model.tree.source.S
+import org.burstsys.tesla.TeslaTypes.{TeslaMemoryPtr, TeslaMemorySize}
+import org.burstsys.tesla.offheap
+
+/**
+ * An approximate distinct count using a HyperLogLog sketch of `2^precision` one byte registers (a standard
+ * error of about `1.04 / sqrt(2^precision)` - 3% at the default precision). Items are 64 bit hashes of the
+ * values counted so the same value always lands in the same register whatever item, region or worker it was
+ * scanned in. Merging is a register by register max so intra and inter merges are the same (and idempotent).
+ *
+ * @param _precision the number of hash bits used to pick a register
+ */
+final case
+class FeltCubeAggApproxDistinctSemRt(var _precision: Int = FeltCubeAggApproxDistinctSemRt.DefaultPrecision)
+  extends AnyRef with FeltCubeAggSketchSemRt {
+
+  import FeltCubeAggApproxDistinctSemRt._
+
+  semanticType = APPROX_DISTINCT_AGGREGATION_SEMANTIC
+
+  assert(_precision >= MinPrecision && _precision <= MaxPrecision)
+
+  ///////////////////////////////////////////////////////////////////////////////////
+  // Accessors
+  ///////////////////////////////////////////////////////////////////////////////////
+
+  def precision: Int = _precision
+
+  @inline private
+  def registerCount: Int = 1 << _precision
+
+  ///////////////////////////////////////////////////////////////////////////////////
+  // CODE GENERATION
+  ///////////////////////////////////////////////////////////////////////////////////
+
+  def generateDeclaration(implicit cursor: FeltCodeCursor): FeltCode =
+    s"$I${classOf[FeltCubeAggApproxDistinctSemRt].getName}($precision)"
+
+  ///////////////////////////////////////////////////////////////////////////////////
+  // SKETCH
+  ///////////////////////////////////////////////////////////////////////////////////
+
+  @inline override
+  def sketchByteSize: TeslaMemorySize = registerCount
+
+  @inline override
+  def sketchUpdate(sketch: TeslaMemoryPtr, item: BrioPrimitive): Boolean = {
+    // the high bits pick the register, the rank is the position of the first one bit in the rest
+    val register = sketch + (item >>> (64 - precision))
+    val rank = java.lang.Long.numberOfLeadingZeros((item << precision) | (1L << (precision - 1))) + 1
+    if (rank > offheap.getByte(register)) {
+      offheap.putByte(register, rank.toByte)
+      true
+    } else false
+  }
+
+  @inline override
+  def sketchMerge(sketch: TeslaMemoryPtr, thatSketch: TeslaMemoryPtr): Boolean = {
+    var changed = false
+    var r = 0
+    while (r < registerCount) {
+      val thatRank = offheap.getByte(thatSketch + r)
+      if (thatRank > offheap.getByte(sketch + r)) {
+        offheap.putByte(sketch + r, thatRank)
+        changed = true
+      }
+      r += 1
+    }
+    changed
+  }
+
+  @inline override
+  def sketchValue(sketch: TeslaMemoryPtr): BrioPrimitive = {
+    var sum = 0.0
+    var zeros = 0
+    var r = 0
+    while (r < registerCount) {
+      val rank = offheap.getByte(sketch + r)
+      sum += java.lang.Math.scalb(1.0, -rank)
+      if (rank == 0) zeros += 1
+      r += 1
+    }
+    val alpha = 0.7213 / (1.0 + 1.079 / registerCount)
+    val estimate = alpha * registerCount * registerCount / sum
+    // small cardinalities are much better estimated by counting empty registers
+    if (zeros != 0 && estimate <= 2.5 * registerCount)
+      math.round(registerCount * math.log(registerCount.toDouble / zeros))
+    else
+      math.round(estimate)
+  }
+
+  ///////////////////////////////////////////////////////////////////////////////////
+  // ITEMS
+  ///////////////////////////////////////////////////////////////////////////////////
+
+  @inline override
+  def itemBoolean(v: Boolean): BrioPrimitive = itemLong(if (v) 1L else 0L)
+
+  @inline override
+  def itemByte(v: Byte): BrioPrimitive = itemLong(v)
+
+  @inline override
+  def itemShort(v: Short): BrioPrimitive = itemLong(v)
+
+  @inline override
+  def itemInteger(v: Int): BrioPrimitive = itemLong(v)
+
+  @inline override
+  def itemLong(v: Long): BrioPrimitive = mix(v + Seed)
+
+  @inline override
+  def itemDouble(v: Double): BrioPrimitive = itemLong(java.lang.Double.doubleToLongBits(v))
+
+  @inline override
+  def itemString(v: String): BrioPrimitive = {
+    // FNV-1a over the characters
+    var hash = 0xcbf29ce484222325L
+    var i = 0
+    while (i < v.length) {
+      hash = (hash ^ v.charAt(i)) * 0x100000001b3L
+      i += 1
+    }
+    itemLong(hash)
+  }
+
+  ///////////////////////////////////////////////////////////////////////////////////
+  // KRYO SERDE
+  ///////////////////////////////////////////////////////////////////////////////////
+
+  override
+  def write(kryo: Kryo, output: Output): Unit = {
+    super.write(kryo, output)
+    output writeInt _precision
+  }
+
+  override
+  def read(kryo: Kryo, input: Input): Unit = {
+    super.read(kryo, input)
+    _precision = input.readInt
+  }
+
+  ///////////////////////////////////////////////////////////////////////////////////
+  // NORMALIZED SOURCE GEN
+  ///////////////////////////////////////////////////////////////////////////////////
+
+  def normalizedSource(implicit index: Int): String =
+    s"$S${classOf[FeltCubeAggApproxDistinctSemRt].getName}($precision)"
+}
+
+object FeltCubeAggApproxDistinctSemRt {
+
+  /**
+   * the number of hash bits used to pick a register when none is given (1024 registers)
+   */
+  final val DefaultPrecision: Int = 10
+
+  final val MinPrecision: Int = 4
+
+  final val MaxPrecision: Int = 16
+
+  private final val Seed: Long = 0x9e3779b97f4a7c15L
+
+  /**
+   * spread every input bit across the whole hash (the murmur3 64 bit finalizer)
+   */
+  @inline private
+  def mix(v: Long): Long = {
+    var h = v
+    h ^= h >>> 33
+    h *= 0xff51afd7ed558ccdL
+    h ^= h >>> 33
+    h *= 0xc4ceb9fe1a85ec53L
+    h ^= h >>> 33
+    h
+  }
+
+}
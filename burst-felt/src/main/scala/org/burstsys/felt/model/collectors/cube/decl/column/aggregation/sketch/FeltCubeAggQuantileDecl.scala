@@ -0,0 +1,86 @@
+/* Copyright Yahoo, Licensed under the terms of the Apache 2.0 license. See LICENSE file in project root for terms. */
+package org.burstsys.felt.model.collectors.cube.decl.column.aggregation.sketch
+
+import org.burstsys.brio.types.BrioTypes._
+import org.burstsys.felt.model.FeltException
+import org.burstsys.felt.model.collectors.cube.decl.column.aggregation._
+import org.burstsys.felt.model.expressions.FeltExpression
+import org.burstsys.felt.model.reference.path.FeltPathExpr
+import org.burstsys.felt.model.tree.source._
+import org.burstsys.felt.model.tree.{FeltLocation, FeltNode}
+
+import scala.reflect.ClassTag
+
+/**
+ * A Felt compatible ''quantile'' aggregate AST node. The value type is the (numeric) type of the values
+ * written - the aggregation itself is always a double.
+ */
+trait FeltCubeAggQuantileDecl extends FeltCubeAggDecl {
+
+  final override val nodeName = "felt-cube-quantile-agg-col"
+
+  final override val semanticType: FeltAggSemType = QUANTILE_AGGREGATION_SEMANTIC
+
+  /**
+   * the quantile e.g. 0.5 for the median
+   */
+  def quantileValue: FeltExpression
+
+  final override lazy val semantic: FeltCubeAggColSem = {
+    if (valueType == BrioStringKey)
+      throw FeltException(location, s"quantile aggregation '$columnName' must be of a numeric type")
+    val q = quantileValue.reduceToFltAtom.map(_.value).getOrElse(quantileValue.reduceToFixAtomOrThrow.value.toDouble)
+    if (q < 0.0 || q > 1.0)
+      throw FeltException(location, s"quantile aggregation '$columnName' quantile $q must be between 0 and 1")
+    new FeltCubeAggQuantileColSem {
+      final override val bType: BrioTypeKey = BrioDoubleKey
+      final override val columnName: BrioRelationName = FeltCubeAggQuantileDecl.this.columnName
+      final override val quantile: Double = q
+    }
+  }
+
+  ////////////////////////////////////////////////////////////////////////////////////////////////////////////
+  // TREE OPS
+  ////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+  override
+  def treeApply[R: ClassTag](rule: FeltNode => Array[R]): Array[R] = rule(this) ++ quantileValue.treeApply(rule)
+
+  final override
+  def children: Array[_ <: FeltNode] = Array(quantileValue)
+
+  ////////////////////////////////////////////////////////////////////////////////////////////////////////////
+  // TYPE INFERENCE
+  ////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+  override def canInferTypes: Boolean = super.canInferTypes && quantileValue.canInferTypes
+
+  override
+  def resolveTypes: this.type = {
+    super.resolveTypes
+    quantileValue.resolveTypes
+    this
+  }
+
+  ////////////////////////////////////////////////////////////////////////////////////////////////////////////
+  // STATIC REDUCTION
+  ////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+  final override
+  def reduceStatics: FeltCubeAggQuantileDecl = new FeltCubeAggQuantileDecl {
+    sync(FeltCubeAggQuantileDecl.this)
+    final override val quantileValue: FeltExpression = FeltCubeAggQuantileDecl.this.quantileValue.resolveTypes.reduceStatics
+    final override val refName: FeltPathExpr = FeltCubeAggQuantileDecl.this.refName
+    final override val valueType: BrioTypeKey = FeltCubeAggQuantileDecl.this.valueType
+    final override val location: FeltLocation = FeltCubeAggQuantileDecl.this.location
+  }
+
+  ////////////////////////////////////////////////////////////////////////////////////////////////////////////
+  // NORMALIZED SOURCE GEN
+  ////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+  final override
+  def normalizedSource(implicit index: Int): String =
+    s"$S'$columnName':${semanticType.name}[${brioDataTypeNameFromKey(valueType).toLowerCase}](${quantileValue.normalizedSource})"
+
+}
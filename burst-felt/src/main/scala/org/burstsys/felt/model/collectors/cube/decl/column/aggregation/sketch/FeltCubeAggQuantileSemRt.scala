@@ -0,0 +1,298 @@
+/* Copyright Yahoo, Licensed under the terms of the Apache 2.0 license. See LICENSE file in project root for terms. */
+package org.burstsys.felt.model.collectors.cube.decl.column.aggregation.sketch
+
+import com.esotericsoftware.kryo.Kryo
+import com.esotericsoftware.kryo.io.{Input, Output}
+import org.burstsys.brio.types.BrioPrimitives._
+import org.burstsys.felt.model.collectors.cube.decl.column.aggregation.QUANTILE_AGGREGATION_SEMANTIC
+import org.burstsys.felt.model.tree.code.{FeltCode, FeltCodeCursor, I}
+import org.burstsys.felt.model.tree.source.S
+import org.burstsys.tesla.TeslaTypes.{TeslaMemoryPtr, TeslaMemorySize}
+import org.burstsys.tesla.offheap
+import org.burstsys.vitals.errors.VitalsException
+
+/**
+ * An approximate '''quantile''' (e.g. 0.5 for the median, 0.95 for the p95) of the numeric values written to
+ * the aggregation using a merging t-digest of at most [[FeltCubeAggQuantileSemRt.CentroidCapacity]] centroids.
+ * Centroids are kept sorted by mean, and when the sketch fills up adjacent centroids are merged as long as
+ * their combined weight stays under a limit that shrinks towards the tails so extreme quantiles stay accurate.
+ * Merging two sketches adds the centroids of one to the other so intra and inter merges are the same.
+ * {{{
+ *   Sketch Layout
+ *   | COUNT (int) | pad | MIN (double) | MAX (double) | CENTROID 0 (double mean, long weight) | ... |
+ * }}}
+ *
+ * @param _quantile the quantile to estimate (between 0 and 1)
+ */
+final case
+class FeltCubeAggQuantileSemRt(var _quantile: Double) extends AnyRef with FeltCubeAggSketchSemRt {
+
+  import FeltCubeAggQuantileSemRt._
+
+  semanticType = QUANTILE_AGGREGATION_SEMANTIC
+
+  ///////////////////////////////////////////////////////////////////////////////////
+  // Accessors
+  ///////////////////////////////////////////////////////////////////////////////////
+
+  def quantile: Double = _quantile
+
+  ///////////////////////////////////////////////////////////////////////////////////
+  // CODE GENERATION
+  ///////////////////////////////////////////////////////////////////////////////////
+
+  def generateDeclaration(implicit cursor: FeltCodeCursor): FeltCode =
+    s"$I${classOf[FeltCubeAggQuantileSemRt].getName}($quantile)"
+
+  ///////////////////////////////////////////////////////////////////////////////////
+  // SKETCH
+  ///////////////////////////////////////////////////////////////////////////////////
+
+  @inline override
+  def sketchByteSize: TeslaMemorySize = SketchByteSize
+
+  @inline override
+  def sketchUpdate(sketch: TeslaMemoryPtr, item: BrioPrimitive): Boolean = {
+    add(sketch, brioPrimitiveToDouble(item), 1L)
+    true
+  }
+
+  @inline override
+  def sketchMerge(sketch: TeslaMemoryPtr, thatSketch: TeslaMemoryPtr): Boolean = {
+    val thatCount = offheap.getInt(thatSketch + CountOffset)
+    if (thatCount == 0)
+      return false
+    val thatMin = offheap.getDouble(thatSketch + MinOffset)
+    val thatMax = offheap.getDouble(thatSketch + MaxOffset)
+    var c = 0
+    while (c < thatCount) {
+      val centroid = thatSketch + centroidOffset(c)
+      add(sketch, offheap.getDouble(centroid), offheap.getLong(centroid + WeightOffset))
+      c += 1
+    }
+    // centroid means are not the extremes of the values they hold
+    if (thatMin < offheap.getDouble(sketch + MinOffset)) offheap.putDouble(sketch + MinOffset, thatMin)
+    if (thatMax > offheap.getDouble(sketch + MaxOffset)) offheap.putDouble(sketch + MaxOffset, thatMax)
+    true
+  }
+
+  @inline override
+  def sketchValue(sketch: TeslaMemoryPtr): BrioPrimitive = {
+    val count = offheap.getInt(sketch + CountOffset)
+    if (count == 0)
+      return brioDoubleToPrimitive(0.0)
+    val min = offheap.getDouble(sketch + MinOffset)
+    val max = offheap.getDouble(sketch + MaxOffset)
+    val target = quantile * totalWeight(sketch, count)
+
+    // each centroid's weight is centered on its mean - interpolate between neighboring centers
+    var mean = offheap.getDouble(sketch + centroidOffset(0))
+    var halfWeight = offheap.getLong(sketch + centroidOffset(0) + WeightOffset) / 2.0
+    if (target < halfWeight)
+      return brioDoubleToPrimitive(min + (mean - min) * target / halfWeight)
+    var center = halfWeight
+    var c = 1
+    while (c < count) {
+      val nextMean = offheap.getDouble(sketch + centroidOffset(c))
+      val nextHalfWeight = offheap.getLong(sketch + centroidOffset(c) + WeightOffset) / 2.0
+      val nextCenter = center + halfWeight + nextHalfWeight
+      if (target < nextCenter)
+        return brioDoubleToPrimitive(mean + (nextMean - mean) * (target - center) / (nextCenter - center))
+      mean = nextMean
+      halfWeight = nextHalfWeight
+      center = nextCenter
+      c += 1
+    }
+    brioDoubleToPrimitive(math.min(max, mean + (max - mean) * (target - center) / halfWeight))
+  }
+
+  ///////////////////////////////////////////////////////////////////////////////////
+  // ITEMS
+  ///////////////////////////////////////////////////////////////////////////////////
+
+  @inline override
+  def itemBoolean(v: Boolean): BrioPrimitive = brioDoubleToPrimitive(if (v) 1.0 else 0.0)
+
+  @inline override
+  def itemByte(v: Byte): BrioPrimitive = brioDoubleToPrimitive(v)
+
+  @inline override
+  def itemShort(v: Short): BrioPrimitive = brioDoubleToPrimitive(v)
+
+  @inline override
+  def itemInteger(v: Int): BrioPrimitive = brioDoubleToPrimitive(v)
+
+  @inline override
+  def itemLong(v: Long): BrioPrimitive = brioDoubleToPrimitive(v.toDouble)
+
+  @inline override
+  def itemDouble(v: Double): BrioPrimitive = brioDoubleToPrimitive(v)
+
+  override
+  def itemString(v: String): BrioPrimitive = throw VitalsException(s"quantile of string values is not supported")
+
+  ///////////////////////////////////////////////////////////////////////////////////
+  // internals
+  ///////////////////////////////////////////////////////////////////////////////////
+
+  /**
+   * insert a centroid keeping the centroids sorted by mean, compressing first if the sketch is full
+   */
+  @inline private
+  def add(sketch: TeslaMemoryPtr, mean: Double, weight: Long): Unit = {
+    var count = offheap.getInt(sketch + CountOffset)
+    if (count == CentroidCapacity)
+      count = compress(sketch, count)
+    if (count == 0) {
+      offheap.putDouble(sketch + MinOffset, mean)
+      offheap.putDouble(sketch + MaxOffset, mean)
+    } else {
+      if (mean < offheap.getDouble(sketch + MinOffset)) offheap.putDouble(sketch + MinOffset, mean)
+      if (mean > offheap.getDouble(sketch + MaxOffset)) offheap.putDouble(sketch + MaxOffset, mean)
+    }
+    var c = count
+    while (c > 0 && offheap.getDouble(sketch + centroidOffset(c - 1)) > mean) {
+      moveCentroid(sketch, c - 1, c)
+      c -= 1
+    }
+    offheap.putDouble(sketch + centroidOffset(c), mean)
+    offheap.putLong(sketch + centroidOffset(c) + WeightOffset, weight)
+    offheap.putInt(sketch + CountOffset, count + 1)
+  }
+
+  /**
+   * merge adjacent centroids in place while their combined weight is within the t-digest size limit
+   *
+   * @return the new centroid count
+   */
+  private
+  def compress(sketch: TeslaMemoryPtr, count: Int): Int = {
+    val total = totalWeight(sketch, count).toDouble
+    var merged = 0
+    var mergedMean = offheap.getDouble(sketch + centroidOffset(0))
+    var mergedWeight = offheap.getLong(sketch + centroidOffset(0) + WeightOffset)
+    var cumulative = 0L
+    var c = 1
+    while (c < count) {
+      val mean = offheap.getDouble(sketch + centroidOffset(c))
+      val weight = offheap.getLong(sketch + centroidOffset(c) + WeightOffset)
+      val proposed = mergedWeight + weight
+      val q = (cumulative + proposed / 2.0) / total
+      if (proposed <= math.max(1.0, 4.0 * total * q * (1.0 - q) / Compression)) {
+        mergedMean += (mean - mergedMean) * weight / proposed
+        mergedWeight = proposed
+      } else {
+        offheap.putDouble(sketch + centroidOffset(merged), mergedMean)
+        offheap.putLong(sketch + centroidOffset(merged) + WeightOffset, mergedWeight)
+        cumulative += mergedWeight
+        merged += 1
+        mergedMean = mean
+        mergedWeight = weight
+      }
+      c += 1
+    }
+    offheap.putDouble(sketch + centroidOffset(merged), mergedMean)
+    offheap.putLong(sketch + centroidOffset(merged) + WeightOffset, mergedWeight)
+    val newCount = merged + 1
+    // always make room for at least one more centroid
+    if (newCount < count) newCount else mergeLightestPair(sketch, count)
+  }
+
+  /**
+   * @return the new centroid count
+   */
+  private
+  def mergeLightestPair(sketch: TeslaMemoryPtr, count: Int): Int = {
+    var lightest = 0
+    var lightestWeight = Long.MaxValue
+    var c = 0
+    while (c < count - 1) {
+      val weight = offheap.getLong(sketch + centroidOffset(c) + WeightOffset) +
+        offheap.getLong(sketch + centroidOffset(c + 1) + WeightOffset)
+      if (weight < lightestWeight) {
+        lightest = c
+        lightestWeight = weight
+      }
+      c += 1
+    }
+    val mean = offheap.getDouble(sketch + centroidOffset(lightest))
+    val nextMean = offheap.getDouble(sketch + centroidOffset(lightest + 1))
+    val nextWeight = offheap.getLong(sketch + centroidOffset(lightest + 1) + WeightOffset)
+    offheap.putDouble(sketch + centroidOffset(lightest), mean + (nextMean - mean) * nextWeight / lightestWeight)
+    offheap.putLong(sketch + centroidOffset(lightest) + WeightOffset, lightestWeight)
+    c = lightest + 1
+    while (c < count - 1) {
+      moveCentroid(sketch, c + 1, c)
+      c += 1
+    }
+    count - 1
+  }
+
+  @inline private
+  def totalWeight(sketch: TeslaMemoryPtr, count: Int): Long = {
+    var total = 0L
+    var c = 0
+    while (c < count) {
+      total += offheap.getLong(sketch + centroidOffset(c) + WeightOffset)
+      c += 1
+    }
+    total
+  }
+
+  @inline private
+  def moveCentroid(sketch: TeslaMemoryPtr, from: Int, to: Int): Unit = {
+    offheap.putLong(sketch + centroidOffset(to), offheap.getLong(sketch + centroidOffset(from)))
+    offheap.putLong(sketch + centroidOffset(to) + WeightOffset, offheap.getLong(sketch + centroidOffset(from) + WeightOffset))
+  }
+
+  ///////////////////////////////////////////////////////////////////////////////////
+  // NORMALIZED SOURCE GEN
+  ///////////////////////////////////////////////////////////////////////////////////
+
+  def normalizedSource(implicit index: Int): String =
+    s"$S${classOf[FeltCubeAggQuantileSemRt].getName}($quantile)"
+
+  ///////////////////////////////////////////////////////////////////////////////////
+  // KRYO SERDE
+  ///////////////////////////////////////////////////////////////////////////////////
+
+  override
+  def write(kryo: Kryo, output: Output): Unit = {
+    super.write(kryo, output)
+    output writeDouble _quantile
+  }
+
+  override
+  def read(kryo: Kryo, input: Input): Unit = {
+    super.read(kryo, input)
+    _quantile = input.readDouble
+  }
+}
+
+object FeltCubeAggQuantileSemRt {
+
+  /**
+   * the t-digest compression - roughly the number of centroids left after a compression
+   */
+  final val Compression: Double = 20
+
+  /**
+   * the byte size of every quantile sketch
+   */
+  final val SketchByteSize: TeslaMemorySize = 1024
+
+  private final val CountOffset: Int = 0
+  private final val MinOffset: Int = 8
+  private final val MaxOffset: Int = 16
+  private final val CentroidsOffset: Int = 24
+  private final val WeightOffset: Int = 8
+  private final val CentroidSize: Int = 16
+
+  final val CentroidCapacity: Int = (SketchByteSize - CentroidsOffset) / CentroidSize
+
+  assert(CentroidCapacity > 2 * Compression)
+
+  @inline private
+  def centroidOffset(centroid: Int): Int = CentroidsOffset + centroid * CentroidSize
+
+}
@@ -0,0 +1,108 @@
+/* Copyright Yahoo, Licensed under the terms of the Apache 2.0 license. See LICENSE file in project root for terms. */
+package org.burstsys.felt.model.collectors.cube.decl.column.aggregation.sketch
+
+import org.burstsys.brio.dictionary.BrioDictionary
+import org.burstsys.brio.runtime.BrioThreadRuntime
+import org.burstsys.brio.types.BrioPrimitives.BrioPrimitive
+import org.burstsys.brio.types.BrioTypes.BrioDictionaryKey
+import org.burstsys.felt.model.collectors.cube.decl.column.aggregation.FeltCubeAggSemRt
+import org.burstsys.tesla.TeslaTypes.{TeslaMemoryPtr, TeslaMemorySize}
+import org.burstsys.vitals.errors.VitalsException
+
+/**
+ * cube semantics runtime support for ''sketch'' aggregations. Each row of a cube keeps a [[sketchByteSize]]
+ * off heap sketch for each sketch aggregation and the aggregation value itself is the current result of
+ * that sketch. Values scanned are first converted to a sketch ''item'' and then added to the sketch, and
+ * sketches are merged (not their values) during intra and inter cube merges. An all zero sketch
+ * '''must''' be an empty sketch so cubes can initialize sketches without knowing their semantic.
+ */
+trait FeltCubeAggSketchSemRt extends AnyRef with FeltCubeAggSemRt {
+
+  //////////////////////////////////////////////////////////////////////
+  // SKETCH
+  //////////////////////////////////////////////////////////////////////
+
+  /**
+   * the byte size of the sketch
+   */
+  def sketchByteSize: TeslaMemorySize
+
+  /**
+   * add an item to a sketch
+   *
+   * @return true if the sketch changed
+   */
+  def sketchUpdate(sketch: TeslaMemoryPtr, item: BrioPrimitive): Boolean
+
+  /**
+   * merge that sketch into this sketch
+   *
+   * @return true if this sketch changed
+   */
+  def sketchMerge(sketch: TeslaMemoryPtr, thatSketch: TeslaMemoryPtr): Boolean
+
+  /**
+   * the aggregation value for a sketch
+   */
+  def sketchValue(sketch: TeslaMemoryPtr): BrioPrimitive
+
+  //////////////////////////////////////////////////////////////////////
+  // ITEMS
+  //////////////////////////////////////////////////////////////////////
+
+  def itemBoolean(v: Boolean): BrioPrimitive
+
+  def itemByte(v: Byte): BrioPrimitive
+
+  def itemShort(v: Short): BrioPrimitive
+
+  def itemInteger(v: Int): BrioPrimitive
+
+  def itemLong(v: Long): BrioPrimitive
+
+  def itemDouble(v: Double): BrioPrimitive
+
+  def itemString(v: String): BrioPrimitive
+
+  /**
+   * the item for a string from the lexicon (the string itself not its key is the item)
+   */
+  @inline final
+  def itemLexiconString(dictionary: BrioDictionary, key: BrioDictionaryKey)(implicit threadRuntime: BrioThreadRuntime): BrioPrimitive =
+    itemString(dictionary.stringLookup(key)(threadRuntime.text))
+
+  //////////////////////////////////////////////////////////////////////
+  // VALUES
+  //////////////////////////////////////////////////////////////////////
+
+  /*
+   * sketch aggregation values are never combined - they are recalculated from their merged sketches. A merge
+   * or extract path that combines the values themselves would silently produce a wrong result so it fails.
+   */
+
+  @inline final override
+  def doBoolean(a: BrioPrimitive, b: BrioPrimitive, intra: Boolean = true): BrioPrimitive = valuesNotCombined("doBoolean")
+
+  @inline final override
+  def doByte(a: BrioPrimitive, b: BrioPrimitive, intra: Boolean = true): BrioPrimitive = valuesNotCombined("doByte")
+
+  @inline final override
+  def doShort(a: BrioPrimitive, b: BrioPrimitive, intra: Boolean = true): BrioPrimitive = valuesNotCombined("doShort")
+
+  @inline final override
+  def doInteger(a: BrioPrimitive, b: BrioPrimitive, intra: Boolean = true): BrioPrimitive = valuesNotCombined("doInteger")
+
+  @inline final override
+  def doLong(a: BrioPrimitive, b: BrioPrimitive, intra: Boolean = true): BrioPrimitive = valuesNotCombined("doLong")
+
+  @inline final override
+  def doDouble(a: BrioPrimitive, b: BrioPrimitive, intra: Boolean = true): BrioPrimitive = valuesNotCombined("doDouble")
+
+  @inline final override
+  def doString(a: BrioPrimitive, b: BrioPrimitive, intra: Boolean): BrioPrimitive = valuesNotCombined("doString")
+
+  private
+  def valuesNotCombined(operation: String): BrioPrimitive =
+    throw VitalsException(s"FELT_CUBE_SKETCH_VALUES_NOT_COMBINED semantic=${semanticType.name} operation=$operation (sketch aggregations must be merged by their sketches)")
+
+}
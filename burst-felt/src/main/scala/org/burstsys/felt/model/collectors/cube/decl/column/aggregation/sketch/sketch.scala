@@ -0,0 +1,41 @@
+/* Copyright Yahoo, Licensed under the terms of the Apache 2.0 license. See LICENSE file in project root for terms. */
+package org.burstsys.felt.model.collectors.cube.decl.column.aggregation
+
+package object sketch {
+
+  /**
+   * an aggregation whose value is derived from a fixed size mergeable ''sketch'' kept alongside it in each
+   * cube row. The aggregation value is always the current result of the sketch.
+   */
+  abstract
+  class FeltCubeAggSketchColSem extends FeltCubeAggColSem {
+
+    override def semanticRt: FeltCubeAggSketchSemRt
+
+  }
+
+  /**
+   * an approximate count of the distinct values written to the aggregation backed by a HyperLogLog sketch.
+   * The value is always a long whatever the type of the values counted.
+   */
+  abstract
+  class FeltCubeAggApproxDistinctColSem extends FeltCubeAggSketchColSem {
+
+    def precision: Int
+
+    final override lazy val semanticRt: FeltCubeAggApproxDistinctSemRt = FeltCubeAggApproxDistinctSemRt(precision)
+  }
+
+  /**
+   * an approximate quantile (between 0 and 1) of the numeric values written to the aggregation backed by a
+   * t-digest sketch. The value is always a double whatever the type of the values written.
+   */
+  abstract
+  class FeltCubeAggQuantileColSem extends FeltCubeAggSketchColSem {
+
+    def quantile: Double
+
+    final override lazy val semanticRt: FeltCubeAggQuantileSemRt = FeltCubeAggQuantileSemRt(quantile)
+  }
+
+}
@@ -83,6 +83,9 @@ class FeltCubePlaneContext()
   @inline override
   def rowCount: Int = if (planeCollector == null) _rowCount else planeCollector.itemCount
 
+  @inline override
+  def recyclable: Boolean = true
+
   @inline override
   def clearCollector(): Unit = {
     super.clearCollector()
@@ -85,7 +85,7 @@ datetimeDurationDimension:  identifier COLON datetimeDurationType LSB valuePrimi
 ////////////////////////////////////////////////////////////////////////////////////////////////////////////
 
 // the aggregate 'value' in a cube table row
-aggregate:  (primitiveAggregate | takeAggregate) ;
+aggregate:  (primitiveAggregate | takeAggregate | sketchAggregate) ;
 
 // simple aggregation type that takes no parameters
 primitiveAggregate:
@@ -101,3 +101,9 @@ takeAggregate:
     identifier COLON TOP LSB valuePrimitiveTypeDeclaration RSB LP expression (SEP expression (SEP expression)? )? RP  #topAggregate
     |   identifier COLON BOTTOM LSB valuePrimitiveTypeDeclaration RSB LP expression (SEP expression (SEP expression)? )? RP  #bottomAggregate
     ;
+
+// aggregation whose value is derived from a mergeable sketch of the values written to it
+sketchAggregate:
+    identifier COLON APPROX_DISTINCT LSB valuePrimitiveTypeDeclaration RSB (LP expression RP)?  #approxDistinctAggregate
+    |   identifier COLON QUANTILE LSB valuePrimitiveTypeDeclaration RSB LP expression RP  #quantileAggregate
+    ;
@@ -74,6 +74,8 @@ UNIQUE:     'unique' ;
 MAX:        'max' ;
 MIN:        'min' ;
 PROJECT:    'project' ;
+APPROX_DISTINCT:    'approxDistinct' ;
+QUANTILE:   'quantile' ;
 
 TOP:        'top' ;
 BOTTOM:     'bottom' ;
@@ -7,6 +7,7 @@ import org.burstsys.felt.model.collectors.cube.decl.FeltCubeDecl
 import org.burstsys.felt.model.collectors.cube.decl.column.aggregation._
 import org.burstsys.felt.model.collectors.cube.decl.column.aggregation.primitive._
 import org.burstsys.felt.model.collectors.cube.decl.column.aggregation.take._
+import org.burstsys.felt.model.collectors.cube.decl.column.aggregation.sketch._
 import org.burstsys.felt.model.collectors.cube.decl.column.dimension._
 import org.burstsys.felt.model.collectors.cube.decl.column.dimension.coerce._
 import org.burstsys.felt.model.collectors.cube.decl.column.dimension.datetime.duration._
@@ -301,6 +302,30 @@ trait HydraParseCubeBldr extends HydraAnalysisGrammarBaseVisitor[FeltNode] {
     }
 
 
+  override
+  def visitApproxDistinctAggregate(ctx: HydraAnalysisGrammarParser.ApproxDistinctAggregateContext): FeltCubeAggApproxDistinctDecl =
+    new FeltCubeAggApproxDistinctDecl {
+      global = HydraParseCubeBldr.this.global
+      final override val location = HydraLocation(HydraParseCubeBldr.this.global, ctx)
+      final override val refName: FeltPathExpr = FeltSimplePath(extractIdentifier(ctx.identifier))
+      final override val valueType: BrioTypeKey =
+        visit(ctx.valuePrimitiveTypeDeclaration).asInstanceOf[FeltPrimTypeDecl].valueType
+      final override val precisionValues: Array[FeltExpression] =
+        Option(ctx.expression).map(visit(_).asInstanceOf[FeltExpression]).toArray
+    }
+
+  override
+  def visitQuantileAggregate(ctx: HydraAnalysisGrammarParser.QuantileAggregateContext): FeltCubeAggQuantileDecl =
+    new FeltCubeAggQuantileDecl {
+      global = HydraParseCubeBldr.this.global
+      final override val location = HydraLocation(HydraParseCubeBldr.this.global, ctx)
+      final override val refName: FeltPathExpr = FeltSimplePath(extractIdentifier(ctx.identifier))
+      final override val valueType: BrioTypeKey =
+        visit(ctx.valuePrimitiveTypeDeclaration).asInstanceOf[FeltPrimTypeDecl].valueType
+      final override val quantileValue: FeltExpression = visit(ctx.expression).asInstanceOf[FeltExpression]
+    }
+
+
   override
   def visitTopAggregate(ctx: HydraAnalysisGrammarParser.TopAggregateContext): FeltNode =
     new FeltCubeAggTopDecl {
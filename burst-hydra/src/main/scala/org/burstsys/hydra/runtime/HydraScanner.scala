@@ -189,14 +189,37 @@ class HydraScanner() extends FabricPlaneScannerContext with FabricPlaneScanner {
    * @return
    */
   @inline override
-  def apply(blob: BrioBlob): FabricGather = {
+  def apply(blob: BrioBlob): FabricGather = sweepItem(blob, null)
+
+  override
+  def reusesItemGathers: Boolean = true
+
+  /**
+   * per item scan that reuses the collectors of the previous item gather merged on this thread
+   *
+   * @param blob
+   * @param scratch
+   * @return
+   */
+  @inline override
+  def apply(blob: BrioBlob, scratch: FabricGather): FabricGather = scratch match {
+    case gather: HydraGather => sweepItem(blob, gather)
+    case _ => super.apply(blob, scratch)
+  }
+
+  private
+  def sweepItem(blob: BrioBlob, scratch: HydraGather): FabricGather = {
     lazy val tag = s"HydraScanner.apply(group=$group, datasource=$datasource)"
     startSerialTraversal
     try {
 
-      // gathers are a pooled resource
-      val gather = grabGather(this)
-      gather.activatePlanesOnWorker(_sweep.feltBinding, _sweep.collectorBuilders)
+      val gather = if (scratch == null) {
+        // gathers are a pooled resource
+        grabGather(this).activatePlanesOnWorker(_sweep.feltBinding, _sweep.collectorBuilders)
+      } else {
+        // the previous item gather has been merged so we can clear and reuse its collectors
+        scratch.initialize(this).recyclePlanes
+      }
 
       // runtimes are a pooled resource taken from a thread local for this specific scanner
       val rt = runtime.prepare(snap, blob, gather)
@@ -215,6 +238,7 @@ class HydraScanner() extends FabricPlaneScannerContext with FabricPlaneScanner {
       }
     } catch safely {
       case t: Throwable =>
+        if (scratch != null) scratch.releaseResourcesOnWorker()
         FabricFaultGather(this, t)
     } finally endSerialTraversal
   }
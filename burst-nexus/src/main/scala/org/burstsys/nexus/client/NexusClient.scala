@@ -11,7 +11,7 @@ import org.burstsys.nexus.configuration._
 import org.burstsys.nexus.message.{NexusInboundFrameDecoder, NexusOutboundFrameEncoder}
 import org.burstsys.nexus.transceiver._
 import org.burstsys.nexus.server.NexusServerReporter
-import org.burstsys.nexus.stream.NexusStream
+import org.burstsys.nexus.stream.{NexusStream, NexusStreamCapacity}
 import org.burstsys.nexus.{NexusConfig, NexusSliceKey, NexusStreamUid, NexusIoMode => _}
 import org.burstsys.tesla.parcel.TeslaParcelStatus
 import org.burstsys.tesla.parcel.pipe.TeslaParcelPipe
@@ -78,10 +78,13 @@ trait NexusClient extends VitalsService {
    * @param sliceKey       the slice information for this stream
    * @param clientHostname the hostname for this machine
    * @param serverHostname the hostname for the server
+   * @param capacity       the free capacity downstream of the pipe used to grant the server parcel credits
+   *                       (if null the server is granted the full credit window as parcels arrive)
    * @return the stream that is started
    */
   def startStream(guid: VitalsUid, suid: NexusStreamUid, properties: VitalsPropertyMap, schema: BrioSchemaName, filter: BurstMotifFilter,
-                  pipe: TeslaParcelPipe, sliceKey: NexusSliceKey, clientHostname: VitalsHostName, serverHostname: VitalsHostName): NexusStream
+                  pipe: TeslaParcelPipe, sliceKey: NexusSliceKey, clientHostname: VitalsHostName, serverHostname: VitalsHostName,
+                  capacity: NexusStreamCapacity = null): NexusStream
 
   /**
    * abort the current stream (if any) on this client with a specific [[TeslaParcelStatus]]
@@ -176,9 +179,10 @@ class NexusClientContext(
 
   override def startStream(
                             guid: VitalsUid, suid: NexusStreamUid, properties: VitalsPropertyMap, schema: BrioSchemaName, filter: BurstMotifFilter,
-                            pipe: TeslaParcelPipe, sliceKey: NexusSliceKey, clientHostname: VitalsHostName, serverHostname: VitalsHostName
+                            pipe: TeslaParcelPipe, sliceKey: NexusSliceKey, clientHostname: VitalsHostName, serverHostname: VitalsHostName,
+                            capacity: NexusStreamCapacity
                           ): NexusStream = {
-    _connection.startStream(guid, suid, properties, schema, filter, pipe, sliceKey, clientHostname, serverHostname)
+    _connection.startStream(guid, suid, properties, schema, filter, pipe, sliceKey, clientHostname, serverHostname, capacity)
   }
 
   override
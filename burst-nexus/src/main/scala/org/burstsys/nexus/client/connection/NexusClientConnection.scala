@@ -4,9 +4,10 @@ package org.burstsys.nexus.client.connection
 import io.netty.channel.Channel
 import org.burstsys.brio.types.BrioTypes.BrioSchemaName
 import org.burstsys.nexus.client.{NexusClientListener, NexusClientReporter}
-import org.burstsys.nexus.message.{NexusMsg, NexusStreamAbortMsg, NexusStreamCompleteMsg, NexusStreamHeartbeatMsg, NexusStreamInitiateMsg, NexusStreamInitiatedMsg, NexusStreamParcelMsg, msgIds}
+import org.burstsys.nexus.configuration.{burstNexusStreamCreditPollProperty, burstNexusStreamCreditWindowProperty}
+import org.burstsys.nexus.message.{NexusMsg, NexusStreamAbortMsg, NexusStreamCompleteMsg, NexusStreamCreditMsg, NexusStreamHeartbeatMsg, NexusStreamInitiateMsg, NexusStreamInitiatedMsg, NexusStreamParcelMsg, msgIds}
 import org.burstsys.nexus.transceiver.{NexusClientMsgListener, NexusTransmitter}
-import org.burstsys.nexus.stream.{NexusStream, newRuid, streamIds}
+import org.burstsys.nexus.stream.{NexusStream, NexusStreamCapacity, NexusStreamCreditLedger, creditTimer, newRuid, streamIds}
 import org.burstsys.nexus.trek.{NexusClientStreamStartTrekMark, NexusClientStreamFinalizeTrekMark}
 import org.burstsys.nexus.{NexusConnection, NexusSliceKey, NexusStreamUid}
 import org.burstsys.tesla.parcel.TeslaParcelStatus
@@ -19,6 +20,7 @@ import org.burstsys.vitals.properties.{BurstMotifFilter, VitalsPropertyMap}
 import org.burstsys.vitals.reporter.instrument._
 import org.burstsys.vitals.uid._
 
+import java.util.TimerTask
 import java.util.concurrent.TimeUnit
 import java.util.concurrent.atomic.{AtomicBoolean, LongAdder}
 import java.util.concurrent.locks.{Condition, ReentrantLock}
@@ -55,7 +57,8 @@ trait NexusClientConnection extends NexusConnection with NexusClientMsgListener
                    pipe: TeslaParcelPipe,
                    sliceKey: NexusSliceKey,
                    clientHostname: VitalsHostName,
-                   serverHostname: VitalsHostName
+                   serverHostname: VitalsHostName,
+                   capacity: NexusStreamCapacity
                  ): NexusStream
 
   /**
@@ -108,6 +111,13 @@ class NexusClientConnectionContext(channel: Channel, transmitter: NexusTransmitt
 
   private var _stream: NexusStream = _
 
+  private val _credits = new NexusStreamCreditLedger
+
+  /**
+   * a credit re-check is scheduled for a stalled server
+   */
+  private val _creditPollScheduled = new AtomicBoolean
+
   private def startMetrics(): Unit = {
     _startTime = System.currentTimeMillis()
     _startNanos = System.nanoTime()
@@ -147,7 +157,8 @@ class NexusClientConnectionContext(channel: Channel, transmitter: NexusTransmitt
 
   override def startStream(
                             guid: VitalsUid, suid: NexusStreamUid, properties: VitalsPropertyMap, schema: BrioSchemaName, filter: BurstMotifFilter,
-                            pipe: TeslaParcelPipe, sliceKey: NexusSliceKey, clientHostname: VitalsHostName, serverHostname: VitalsHostName
+                            pipe: TeslaParcelPipe, sliceKey: NexusSliceKey, clientHostname: VitalsHostName, serverHostname: VitalsHostName,
+                            capacity: NexusStreamCapacity
                           ): NexusStream = {
     val hdr = s"NexusClientConnection.startStream($link, guid=$guid, suid=$suid)"
     if (isActive) {
@@ -157,11 +168,15 @@ class NexusClientConnectionContext(channel: Channel, transmitter: NexusTransmitt
 
     _isInitiated.set(false)
     _isTerminated.set(false)
+    _credits.reset(capacity)
 
     startMetrics()
     log info s"$hdr"
     transmitter.transmitControlMessage(
-      NexusStreamInitiateMsg(newRuid, guid, suid, properties, schema, filter, sliceKey, clientHostname, serverHostname)
+      NexusStreamInitiateMsg(
+        newRuid, guid, suid, properties, schema, filter, sliceKey, clientHostname, serverHostname,
+        creditWindow = burstNexusStreamCreditWindowProperty.get
+      )
     )
 
     _gate.lock()
@@ -235,10 +250,12 @@ class NexusClientConnectionContext(channel: Channel, transmitter: NexusTransmitt
           log warn s"$hdr already in stream"
           throw VitalsException(s"NEXUS_ALREADY_IN_STREAM $hdr")
         }
+        _credits.open(msg.creditWindow)
         _isInitiated.set(true)
         _initiateReceived.signalAll()
       } finally _gate.unlock()
 
+      grantCredits()
       forward(_.onStreamInitiated(msg))
       _initiatedNanos = System.nanoTime()
     } catch safely {
@@ -271,6 +288,8 @@ class NexusClientConnectionContext(channel: Channel, transmitter: NexusTransmitt
         log warn burstStdMsg(s"$tag stream was null")
       } else {
         _stream put msg.parcel
+        _credits.received()
+        grantCredits()
       }
       forward(_.onStreamParcel(msg))
 
@@ -350,6 +369,8 @@ class NexusClientConnectionContext(channel: Channel, transmitter: NexusTransmitt
 
       if (_stream != null) {
         _stream put msg.marker
+        // a flow controlled server heartbeats while it waits for credits
+        grantCredits()
         forward(_.onStreamHeartbeat(msg))
       }
     } catch safely {
@@ -359,6 +380,30 @@ class NexusClientConnectionContext(channel: Channel, transmitter: NexusTransmitt
     }
   }
 
+  /**
+   * top up the server's parcel credits to the free capacity downstream (see [[NexusStreamCreditLedger]]). If the
+   * server is left without credits we re-check for freed capacity shortly rather than leave it stalled until its
+   * next heartbeat.
+   */
+  private def grantCredits(): Unit = {
+    if (_isTerminated.get)
+      return
+    val credits = _credits.grant()
+    if (credits > 0) {
+      log debug s"NexusStreamCreditMsg ${streamIds(_stream)} credits=$credits ${_credits} action=grant"
+      transmitter.transmitControlMessage(NexusStreamCreditMsg(_stream, credits))
+    } else if (_credits.isStarved && _creditPollScheduled.compareAndSet(false, true)) {
+      creditTimer.schedule(new TimerTask {
+        override def run(): Unit = {
+          _creditPollScheduled.set(false)
+          try grantCredits() catch safely {
+            case t: Throwable => log warn burstStdMsg(s"NEXUS_STREAM_CREDIT_POLL_FAIL ${streamIds(_stream)} $t", t)
+          }
+        }
+      }, burstNexusStreamCreditPollProperty.get)
+    }
+  }
+
   private def forward(action: NexusClientListener => Unit): Unit = {
     if (_listener != null) {
       TeslaRequestFuture {
@@ -60,6 +60,35 @@ package object configuration extends VitalsPropertyRegistry {
 
   def burstNexusStreamTimeoutDuration: Duration = Duration(burstNexusStreamTimeoutProperty.get, TimeUnit.MILLISECONDS)
 
+  /**
+   * the max number of parcels the server can have in flight to a client on a stream. Clients grant parcel credits
+   * (up to this window) as they have room downstream for more parcels. Zero (the default) disables credit based
+   * flow control.
+   */
+  val burstNexusStreamCreditWindowProperty: VitalsPropertySpecification[Int] = VitalsPropertySpecification[Int](
+    key = "burst.nexus.stream.credit.window",
+    description = "the max parcels in flight on a flow controlled stream (0 to disable)",
+    default = Some(0)
+  )
+
+  /**
+   * how long a server waits for a parcel credit before heartbeating the client (which prompts a credit check)
+   */
+  val burstNexusStreamCreditWaitProperty: VitalsPropertySpecification[VitalsMs] = VitalsPropertySpecification[VitalsMs](
+    key = "burst.nexus.stream.credit.wait.ms",
+    description = "how long a server waits for parcel credits before sending a heartbeat",
+    default = Some((1 second).toMillis)
+  )
+
+  /**
+   * how often a client that could not grant a stalled server any credits re-checks for freed capacity
+   */
+  val burstNexusStreamCreditPollProperty: VitalsPropertySpecification[VitalsMs] = VitalsPropertySpecification[VitalsMs](
+    key = "burst.nexus.stream.credit.poll.ms",
+    description = "how often a client re-checks for free capacity when a stalled server has no parcel credits",
+    default = Some(10L)
+  )
+
   val burstNexusStreamParcelPackerConcurrencyProperty: VitalsPropertySpecification[Int] = VitalsPropertySpecification[Int](
     key = "burst.nexus.stream.parcel.packer.concurrency",
     description = "The number of parcel packers per stream",
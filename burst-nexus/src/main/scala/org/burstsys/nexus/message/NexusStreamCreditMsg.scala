@@ -0,0 +1,52 @@
+/* Copyright Yahoo, Licensed under the terms of the Apache 2.0 license. See LICENSE file in project root for terms. */
+package org.burstsys.nexus.message
+
+import org.burstsys.nexus.stream.NexusStream
+import io.netty.buffer.ByteBuf
+
+/**
+  * sent from client to server to grant credits for more parcels on a flow controlled stream
+  */
+object NexusStreamCreditMsg {
+
+  def apply(stream: NexusStream, credits: Int): NexusStreamCreditMsg = {
+    val m = new NexusStreamCreditMsg()
+    m.link(stream)
+    m.credits = credits
+    m
+  }
+
+  def apply(buffer: ByteBuf): NexusStreamCreditMsg = {
+    new NexusStreamCreditMsg().decode(buffer)
+  }
+}
+
+final
+class NexusStreamCreditMsg()
+  extends NexusMsg(NexusStreamCreditMsgType) {
+
+  /**
+    * the number of additional parcels the server may send
+    */
+  var credits: Int = 0
+
+  override def toString: String = s"${super.toString}, credits=$credits"
+
+  ////////////////////////////////////////////////////////////////////////////////////
+  // CODEC
+  ////////////////////////////////////////////////////////////////////////////////////
+  override
+  def decode(buffer: ByteBuf): this.type = {
+    super.decode(buffer)
+    credits = buffer.readInt
+    this
+  }
+
+  override
+  def encode(buffer: ByteBuf): this.type = {
+    super.encode(buffer)
+    buffer.writeInt(credits)
+    this
+  }
+
+}
@@ -3,6 +3,7 @@ package org.burstsys.nexus.message
 
 import org.burstsys.brio.types.BrioTypes.BrioSchemaName
 import org.burstsys.nexus.{NexusRequestUid, NexusSliceKey, NexusStreamUid}
+import org.burstsys.tesla.parcel.codec.TeslaParcelCodec
 import org.burstsys.vitals.uid._
 import org.burstsys.vitals.net.VitalsHostName
 import org.burstsys.vitals.properties._
@@ -15,7 +16,8 @@ import io.netty.buffer.ByteBuf
 object NexusStreamInitiateMsg {
 
   def apply(ruid: NexusRequestUid, guid: VitalsUid, suid: NexusStreamUid, properties: VitalsPropertyMap, schema: BrioSchemaName,
-            filter: BurstMotifFilter, sliceKey: NexusSliceKey, clientHostname: VitalsHostName, serverHostname: VitalsHostName): NexusStreamInitiateMsg = {
+            filter: BurstMotifFilter, sliceKey: NexusSliceKey, clientHostname: VitalsHostName, serverHostname: VitalsHostName,
+            parcelCodecs: Array[String] = TeslaParcelCodec.acceptedCodecNames, creditWindow: Int = 0): NexusStreamInitiateMsg = {
     val m = new NexusStreamInitiateMsg()
     m.ruid(ruid)
     m.guid(guid)
@@ -26,6 +28,8 @@ object NexusStreamInitiateMsg {
     m.sliceKey(sliceKey)
     m.clientHostname(clientHostname)
     m.serverHostname(serverHostname)
+    m.parcelCodecs(parcelCodecs)
+    m.creditWindow(creditWindow)
     m
   }
 
@@ -65,6 +69,12 @@ class NexusStreamInitiateMsg() extends NexusMsg(NexusStreamInitiateMsgType) {
   private[this]
   var _serverHostname: VitalsHostName = _
 
+  private[this]
+  var _parcelCodecs: Array[String] = Array.empty
+
+  private[this]
+  var _creditWindow: Int = _
+
   ////////////////////////////////////////////////////////////////////////////////////
   // API
   ////////////////////////////////////////////////////////////////////////////////////
@@ -82,6 +92,16 @@ class NexusStreamInitiateMsg() extends NexusMsg(NexusStreamInitiateMsgType) {
 
   def serverHostname: VitalsHostName = _serverHostname
 
+  /**
+   * the parcel codecs the client accepts in preference order (empty from clients that predate codec negotiation)
+   */
+  def parcelCodecs: Array[String] = _parcelCodecs
+
+  /**
+   * the max parcels in flight if the client grants parcel credits (zero if the stream is not flow controlled)
+   */
+  def creditWindow: Int = _creditWindow
+
   def properties(p: VitalsPropertyMap): Unit = _properties = p
 
   def schema(s: BrioSchemaName): Unit = _schema = s
@@ -94,6 +114,10 @@ class NexusStreamInitiateMsg() extends NexusMsg(NexusStreamInitiateMsgType) {
 
   def serverHostname(h: VitalsHostName): Unit = _serverHostname = h
 
+  def parcelCodecs(c: Array[String]): Unit = _parcelCodecs = c
+
+  def creditWindow(w: Int): Unit = _creditWindow = w
+
   ////////////////////////////////////////////////////////////////////////////////////
   // CODEC
   ////////////////////////////////////////////////////////////////////////////////////
@@ -106,6 +130,9 @@ class NexusStreamInitiateMsg() extends NexusMsg(NexusStreamInitiateMsgType) {
     _sliceKey = buffer.readLong()
     _clientHostname = decodeUtf8StringFromByteBuf(buffer)
     _serverHostname = decodeUtf8StringFromByteBuf(buffer)
+    // the codecs are a trailing field so older clients can still initiate streams
+    _parcelCodecs = if (buffer.isReadable) Array.fill(buffer.readInt)(decodeAsciiStringFromByteBuf(buffer)) else Array.empty
+    _creditWindow = if (buffer.isReadable) buffer.readInt else 0
     this
   }
 
@@ -118,6 +145,9 @@ class NexusStreamInitiateMsg() extends NexusMsg(NexusStreamInitiateMsgType) {
     buffer.writeLong(_sliceKey)
     encodeUtf8StringToByteBuf(_clientHostname, buffer)
     encodeUtf8StringToByteBuf(_serverHostname, buffer)
+    buffer.writeInt(_parcelCodecs.length)
+    _parcelCodecs foreach (encodeAsciiStringToByteBuf(_, buffer))
+    buffer.writeInt(_creditWindow)
     this
   }
 
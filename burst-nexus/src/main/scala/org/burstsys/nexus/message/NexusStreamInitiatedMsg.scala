@@ -12,6 +12,8 @@ object NexusStreamInitiatedMsg {
   def apply(request: NexusStreamInitiateMsg, suid: NexusStreamUid): NexusStreamInitiatedMsg = {
     val m = new NexusStreamInitiatedMsg()
     m.link(request)
+    // a server that understands credits echoes the client's window to tell it the stream is flow controlled
+    m.creditWindow = request.creditWindow
     m
   }
 
@@ -24,18 +26,25 @@ final
 class NexusStreamInitiatedMsg()
   extends NexusMsg(NexusStreamInitiatedMsgType) {
 
+  /**
+    * the credit window the server is honoring (zero if the stream is not flow controlled)
+    */
+  var creditWindow: Int = 0
+
   ////////////////////////////////////////////////////////////////////////////////////
   // CODEC
   ////////////////////////////////////////////////////////////////////////////////////
   override
   def decode(buffer: ByteBuf): this.type = {
     super.decode(buffer)
+    creditWindow = if (buffer.isReadable) buffer.readInt else 0
     this
   }
 
   override
   def encode(buffer: ByteBuf): this.type = {
     super.encode(buffer)
+    buffer.writeInt(creditWindow)
     this
   }
 
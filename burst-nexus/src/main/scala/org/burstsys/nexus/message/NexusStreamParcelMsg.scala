@@ -2,10 +2,10 @@
 package org.burstsys.nexus.message
 
 import org.burstsys.nexus.stream.NexusStream
-import org.burstsys.tesla
 import org.burstsys.tesla.TeslaTypes.{TeslaMemorySize, _}
+import org.burstsys.tesla.parcel.codec.TeslaParcelCodec
+import org.burstsys.tesla.parcel.factory.TeslaParcelArena
 import org.burstsys.tesla.parcel.{TeslaParcel, _}
-import org.burstsys.tesla.thread.worker.TeslaWorkerCoupler
 import io.netty.buffer.ByteBuf
 
 /**
@@ -14,14 +14,31 @@ import io.netty.buffer.ByteBuf
 object NexusStreamParcelMsg {
 
   def apply(stream: NexusStream, parcel: TeslaParcel): NexusStreamParcelMsg = {
-    val m = new NexusStreamParcelMsg()
+    val m = apply(parcel, stream.parcelCodec)
     m.link(stream)
+    m
+  }
+
+  /**
+   * streams that negotiated a codec send [[NexusStreamCodecParcelMsgType]] messages that carry the codec id,
+   * all others send the legacy [[NexusStreamParcelMsgType]] message framing deflated with snappy
+   */
+  def apply(parcel: TeslaParcel, negotiatedCodec: Option[TeslaParcelCodec]): NexusStreamParcelMsg = {
+    val m = negotiatedCodec match {
+      case None => new NexusStreamParcelMsg(NexusStreamParcelMsgType)
+      case Some(codec) =>
+        val m = new NexusStreamParcelMsg(NexusStreamCodecParcelMsgType)
+        m.codec = codec
+        m
+    }
     m.parcel = parcel
     m
   }
 
-  def apply(buffer: ByteBuf): NexusStreamParcelMsg = {
-    new NexusStreamParcelMsg().decode(buffer)
+  def apply(buffer: ByteBuf): NexusStreamParcelMsg = apply(NexusStreamParcelMsgType, buffer)
+
+  def apply(messageType: NexusMsgType, buffer: ByteBuf): NexusStreamParcelMsg = {
+    new NexusStreamParcelMsg(messageType).decode(buffer)
   }
 }
 
@@ -29,63 +46,76 @@ object NexusStreamParcelMsg {
 /**
  * sent from server to client to provide a single data item (for non batch mode transfers)
  */
-final class NexusStreamParcelMsg() extends NexusMsg(NexusStreamParcelMsgType) {
+final class NexusStreamParcelMsg(msgType: NexusMsgType = NexusStreamParcelMsgType) extends NexusMsg(msgType) {
 
   var parcel: TeslaParcel = TeslaEndMarkerParcel
 
+  /**
+   * the codec the parcel is (or was) deflated with on the wire
+   */
+  var codec: TeslaParcelCodec = TeslaParcelCodec.legacyCodec
+
+  /**
+   * only codec parcel messages carry the codec id - legacy parcel messages are always snappy
+   */
+  def carriesCodec: Boolean = messageType == NexusStreamCodecParcelMsgType
+
   ////////////////////////////////////////////////////////////////////////////////////
   // CODEC
   ////////////////////////////////////////////////////////////////////////////////////
 
   /**
    * Decode the contents of a Netty ByteBuf into a parcel.
-   * Decode copies the deflated parcel
+   * Decode copies the deflated parcel. This runs on the Netty event loop so the parcel comes
+   * from the shared [[TeslaParcelArena]] rather than a worker thread part pool.
    *
    * @param buffer source netty buffer
    * @return uninflated parcel
    */
   override def decode(buffer: ByteBuf): this.type = {
-    TeslaWorkerCoupler {
-      super.decode(buffer)
-      // read total length
-      val length: TeslaMemorySize = buffer.readInt
-      // read the number of buffers
-      val number = buffer.readInt()
-      // read the inflated size
-      val inflatedSize: TeslaMemorySize = buffer.readInt()
-      parcel = tesla.parcel.factory.grabParcel(length)
-      // transfer
-      val ptr: TeslaMemoryPtr = buffer.memoryAddress() + buffer.readerIndex()
-      parcel.fromDeflatedMemoryPtr(number, inflatedSize, length, ptr)
-      this
-    }
+    super.decode(buffer)
+    // read total length
+    val length: TeslaMemorySize = buffer.readInt
+    // read the number of buffers
+    val number = buffer.readInt()
+    // read the inflated size
+    val inflatedSize: TeslaMemorySize = buffer.readInt()
+    // read the codec
+    codec = if (carriesCodec) TeslaParcelCodec.byId(buffer.readInt()) else TeslaParcelCodec.legacyCodec
+    parcel = TeslaParcelArena.grabParcel(length)
+    // transfer
+    val ptr: TeslaMemoryPtr = buffer.memoryAddress() + buffer.readerIndex()
+    parcel.fromDeflatedMemoryPtr(number, inflatedSize, length, ptr, codec.codecId)
+    this
   }
 
   /**
    * Encode the parcel into the Netty ByteBuf
-   * It deflates the buffers directly
+   * It deflates the buffers directly. There is no part allocation here so this runs
+   * on the calling (Netty event loop) thread.
    *
    * @return
    */
   override def encode(buffer: ByteBuf): this.type = {
-    lazy val hdr = s"NexusStreamParcelMsg.encode"
-    TeslaWorkerCoupler {
-      super.encode(buffer)
-      val lengthWIndex = buffer.writerIndex
-      // write length
-      buffer.writeInt(0)
-      // write number of buffers
-      buffer.writeInt(parcel.bufferCount)
-      // write inflated size
-      buffer.writeInt(parcel.currentUsedMemory)
-
-      // deflate directly into the buffer
-      val ptr: TeslaMemoryPtr = buffer.memoryAddress()
-      val deflatedSize: Int = parcel.deflateTo(ptr + buffer.writerIndex).toInt
-      buffer.setInt(lengthWIndex, deflatedSize)
-      buffer.writerIndex(buffer.writerIndex + deflatedSize)
-      this
-    }
+    super.encode(buffer)
+    val lengthWIndex = buffer.writerIndex
+    // write length
+    buffer.writeInt(0)
+    // write number of buffers
+    buffer.writeInt(parcel.bufferCount)
+    // write inflated size
+    buffer.writeInt(parcel.currentUsedMemory)
+    // write the codec
+    if (carriesCodec)
+      buffer.writeInt(codec.codecId)
+
+    // deflate directly into the buffer - make room first as this does not go through the ByteBuf API
+    buffer.ensureWritable(codec.maxDeflatedSize(parcel.currentUsedMemory))
+    val ptr: TeslaMemoryPtr = buffer.memoryAddress()
+    val deflatedSize: Int = parcel.deflateTo(ptr + buffer.writerIndex, codec).toInt
+    buffer.setInt(lengthWIndex, deflatedSize)
+    buffer.writerIndex(buffer.writerIndex + deflatedSize)
+    this
   }
 
 }
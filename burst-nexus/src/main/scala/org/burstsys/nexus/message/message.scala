@@ -91,6 +91,17 @@ package object message extends VitalsLogger {
     */
   object NexusStreamHeartbeatMsgType extends NexusMsgType(6, "Stream Heartbeat")
 
+  /**
+    * sent from the client to the server to grant credits for more parcels on a flow controlled stream
+    */
+  object NexusStreamCreditMsgType extends NexusMsgType(7, "Stream Credit")
+
+  /**
+    * sent from the server to the client as parcels in a stream that negotiated a parcel codec. Unlike
+    * [[NexusStreamParcelMsgType]] these carry the codec id so clients that did not negotiate never see them
+    */
+  object NexusStreamCodecParcelMsgType extends NexusMsgType(8, "Stream Codec Parcel")
+
 
   ////////////////////////////////////////////////////////////////////////////////
   // decode helpers
@@ -180,6 +191,8 @@ package object message extends VitalsLogger {
     m.putIfAbsent(NexusStreamCompleteMsgType.code, NexusStreamCompleteMsgType)
     m.putIfAbsent(NexusStreamAbortMsgType.code, NexusStreamAbortMsgType)
     m.putIfAbsent(NexusStreamHeartbeatMsgType.code, NexusStreamHeartbeatMsgType)
+    m.putIfAbsent(NexusStreamCreditMsgType.code, NexusStreamCreditMsgType)
+    m.putIfAbsent(NexusStreamCodecParcelMsgType.code, NexusStreamCodecParcelMsgType)
     m
   }
 
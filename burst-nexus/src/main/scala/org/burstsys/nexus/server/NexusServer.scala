@@ -71,8 +71,12 @@ object NexusServer {
 
   final val idGenerator = new AtomicInteger()
 
-  def apply(serverHost: VitalsHostAddress, config: NexusConfig = serverConfig): NexusServer =
-    NexusServerContext(serverId = idGenerator.getAndIncrement, serverHost = serverHost: VitalsHostAddress, config = config: NexusConfig)
+  /**
+   * @param bindPort the port to bind (defaults to the configured nexus server port)
+   */
+  def apply(serverHost: VitalsHostAddress, config: NexusConfig = serverConfig, bindPort: VitalsHostPort = nexus.port): NexusServer =
+    NexusServerContext(serverId = idGenerator.getAndIncrement, serverHost = serverHost: VitalsHostAddress, config = config: NexusConfig,
+      bindPort = bindPort: VitalsHostPort)
 }
 
 /**
@@ -85,6 +89,7 @@ class NexusServerContext(
                           serverId: Int,
                           serverHost: VitalsHostName,
                           config: NexusConfig,
+                          bindPort: VitalsHostPort,
                           timeout: Duration = Inf,
                           ioMode: NexusIoMode = NioIoMode
                         ) extends NexusServer with NexusServerNetty with SslGlobalProperties {
@@ -225,7 +230,7 @@ class NexusServerContext(
           .group(_listenGroup, _connectionGroup)
           .channel(_transportClass)
         setNettyOptions(bootstrap).childHandler(initializer)
-        val channelFuture = bootstrap.bind(new InetSocketAddress(null.asInstanceOf[InetAddress], nexus.port))
+        val channelFuture = bootstrap.bind(new InetSocketAddress(null.asInstanceOf[InetAddress], bindPort))
 
         if (!channelFuture.awaitUninterruptibly.isSuccess) {
           val cause = channelFuture.cause
@@ -30,6 +30,9 @@ object NexusServerReporter extends VitalsReporter {
   private[this]
   val _serverHeartbeatMetric = VitalsReporterUnitOpMetric("nexus_server_heartbeat")
 
+  private[this]
+  val _serverCreditWaitMetric = VitalsReporterUnitOpMetric("nexus_server_credit_wait")
+
   private[this]
   val _serverStreamSucceedMetric = VitalsReporterUnitOpMetric("nexus_server_stream_succeed")
 
@@ -61,6 +64,11 @@ object NexusServerReporter extends VitalsReporter {
     _serverHeartbeatMetric.recordOp()
   }
 
+  final
+  def onServerCreditWait(ns: Long): Unit = {
+    _serverCreditWaitMetric.recordOpWithTime(ns)
+  }
+
   final
   def onServerStreamSucceed(): Unit = {
     _serverStreamSucceedMetric.recordOp()
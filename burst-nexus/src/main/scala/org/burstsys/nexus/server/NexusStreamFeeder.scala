@@ -18,6 +18,15 @@ trait NexusStreamFeeder extends Any {
     */
   def feedStream(stream: NexusStream): Unit
 
+  /**
+    * can this feeder feed just its stripe (see [[NexusStream.stripe]]) of a striped stream? A feeder that can not is
+    * only asked to feed the first sub-stream (with everything) and the other sub-streams complete with no data.
+    *
+    * @param stream
+    * @return
+    */
+  def feedsStripes(stream: NexusStream): Boolean = false
+
   /**
     * Stop feeding the stream and send abort marker
     *
@@ -4,7 +4,7 @@ package org.burstsys.nexus.server.connection
 import io.netty.channel.Channel
 import org.burstsys.nexus.NexusConnection
 import org.burstsys.nexus.configuration.burstNexusPipeSizeProperty
-import org.burstsys.nexus.message.{NexusStreamAbortMsg, NexusStreamInitiateMsg, NexusStreamInitiatedMsg, msgIds}
+import org.burstsys.nexus.message.{NexusStreamAbortMsg, NexusStreamCreditMsg, NexusStreamInitiateMsg, NexusStreamInitiatedMsg, msgIds}
 import org.burstsys.nexus.transceiver.{NexusServerMsgListener, NexusTransmitter}
 import org.burstsys.nexus.server.{NexusServerListener, NexusStreamFeeder, connection}
 import org.burstsys.nexus.stream.NexusStream
@@ -70,11 +70,13 @@ class NexusServerConnectionContext(channel: Channel, transmitter: NexusTransmitt
       try {
         val pipe = TeslaParcelPipe(name = "nexus.server.stream", guid = request.guid, suid = request.suid, depth = burstNexusPipeSizeProperty.get).start
         val stream = NexusStream(connection = this, request.guid, request.suid, request, pipe).start
-        log info s"NEXUS_STREAM_INITIATE NexusServerParcelHandler.initiateStream($link, ${msgIds(request)}) "
-        transmitter.transmitControlMessage(NexusStreamInitiatedMsg(request, request.suid))
+        log info s"NEXUS_STREAM_INITIATE NexusServerParcelHandler.initiateStream($link, ${msgIds(request)}) creditWindow=${request.creditWindow}"
 
-        val handler = connection.NexusStreamHandler(stream, transmitter, feeder, stage)
+        // register the handler before the client is told the stream is initiated so its first credits find it
+        val handler = connection.NexusStreamHandler(stream, transmitter, feeder, stage, request.creditWindow)
         _streamHandlers.put(request.streamKey, handler)
+        transmitter.transmitControlMessage(NexusStreamInitiatedMsg(request, request.suid))
+
         handler.start() andThen { case _ =>
           _streamHandlers.remove(request.streamKey)
         } andThen {
@@ -97,6 +99,15 @@ class NexusServerConnectionContext(channel: Channel, transmitter: NexusTransmitt
   }
 
 
+  override def onStreamCreditMsg(request: NexusStreamCreditMsg): Unit = {
+    val handler = _streamHandlers.get(request.streamKey)
+    if (handler != null) {
+      handler.grantCredits(request.credits)
+    } else {
+      log debug s"NEXUS_STREAM_CREDIT_NO_STREAM ($link, ${msgIds(request)}) credits=${request.credits}"
+    }
+  }
+
   override def onStreamAbortMsg(request: NexusStreamAbortMsg): Unit = {
     val handler = _streamHandlers.remove((request.guid, request.suid))
     if (handler != null) {
@@ -2,10 +2,11 @@
 package org.burstsys.nexus.server.connection
 
 import io.opentelemetry.api.common.AttributeKey
+import org.burstsys.nexus.configuration.burstNexusStreamCreditWaitProperty
 import org.burstsys.nexus.message.{NexusStreamCompleteMsg, NexusStreamHeartbeatMsg, NexusStreamParcelMsg, maxFrameLength}
 import org.burstsys.nexus.server.connection.NexusStreamHandler._
 import org.burstsys.nexus.server.{NexusServerReporter, NexusStreamFeeder}
-import org.burstsys.nexus.stream.NexusStream
+import org.burstsys.nexus.stream.{NexusStream, NexusStreamCreditGate}
 import org.burstsys.nexus.transceiver.NexusTransmitter
 import org.burstsys.nexus.trek.{NexusServerCompleteSendTrekMark, NexusServerParcelSendTrekMark, NexusServerStreamTrekMark}
 import org.burstsys.tesla
@@ -16,6 +17,7 @@ import org.burstsys.vitals.errors._
 import org.burstsys.vitals.logging.burstStdMsg
 import org.burstsys.vitals.trek.TrekStage
 
+import java.util.concurrent.atomic.AtomicBoolean
 import scala.concurrent.duration.Duration
 import scala.concurrent.{Await, Future, Promise}
 import scala.util.{Failure, Success}
@@ -33,12 +35,34 @@ object NexusStreamHandler {
   private val parcelItemCountKey = AttributeKey.longKey("parcel.itemCount")
 }
 
-case class NexusStreamHandler(stream: NexusStream, transmitter: NexusTransmitter, feeder: NexusStreamFeeder, stage: TrekStage) {
+/**
+ * sends the parcels of a server side stream to the client.
+ *
+ * @param creditWindow if greater than zero the client grants credits for parcels and a data parcel is only
+ *                     sent with a credit in hand (see [[grantCredits]])
+ */
+case class NexusStreamHandler(stream: NexusStream, transmitter: NexusTransmitter, feeder: NexusStreamFeeder, stage: TrekStage,
+                              creditWindow: Int = 0) {
 
   override def toString: String = s"NexusStreamHandler(stream=$stream  remote=${transmitter.remoteAddress})"
 
+  private[this] val _credits = new NexusStreamCreditGate
+
+  private[this] val _aborted = new AtomicBoolean(false)
+
+  def isFlowControlled: Boolean = creditWindow > 0
+
+  /**
+   * the client has room for `credits` more parcels
+   */
+  def grantCredits(credits: Int): Unit = _credits.grant(credits)
+
   def start(): Future[Unit] = {
-    feeder.feedStream(stream)
+    if (stream.stripe > 0 && !feeder.feedsStripes(stream)) {
+      log info s"NEXUS_STREAM_STRIPE_UNFED stripe=${stream.stripe} stripes=${stream.stripes} $this"
+      stream.complete(0, 0, 0, 0)
+    } else
+      feeder.feedStream(stream)
     TeslaRequestFuture {
       var lastMessageTransmit: Future[Unit] = Promise.successful((): Unit).future
       try {
@@ -56,6 +80,9 @@ case class NexusStreamHandler(stream: NexusStream, transmitter: NexusTransmitter
           } else if (parcel.currentUsedMemory > maxFrameLength) {
             dropParcel(parcel)
 
+          } else if (!awaitCredit()) {
+            tesla.parcel.factory releaseParcel parcel
+
           } else {
             Await.ready(lastMessageTransmit, Duration.Inf)
             lastMessageTransmit = transmitDataParcel(parcel)
@@ -73,9 +100,34 @@ case class NexusStreamHandler(stream: NexusStream, transmitter: NexusTransmitter
   }
 
   def abort(status: parcel.TeslaParcelStatus): Unit = {
+    _aborted.set(true)
     feeder.abortStream(stream, status)
   }
 
+  /**
+   * wait for a credit to send a data parcel. Parcels back up in the stream pipe (and so in the feeder) while we wait
+   * which bounds server memory. The client is heartbeated while we wait - this keeps its pipe alive and prompts it
+   * to check for newly freed capacity.
+   *
+   * @return false if the parcel should not be sent (the stream was aborted or the client went away)
+   */
+  private def awaitCredit(): Boolean = {
+    if (!isFlowControlled)
+      return true
+    val waitStart = System.nanoTime
+    val credited = _credits.await(burstNexusStreamCreditWaitProperty.get, () => abandonCredit, () => transmitHeartbeat())
+    if (credited)
+      NexusServerReporter.onServerCreditWait(System.nanoTime - waitStart)
+    credited
+  }
+
+  private def abandonCredit: Boolean = {
+    val abandon = _aborted.get || !transmitter.channel.isActive
+    if (abandon)
+      log warn s"NEXUS_STREAM_CREDIT_ABANDON aborted=${_aborted.get} active=${transmitter.channel.isActive} $this"
+    abandon
+  }
+
   private def transmitHeartbeat(): Unit = {
     NexusServerReporter.onServerHeartbeat()
     stage.addEvent("Heartbeat")
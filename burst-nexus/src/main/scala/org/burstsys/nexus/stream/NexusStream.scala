@@ -7,6 +7,7 @@ import org.burstsys.nexus.message.NexusStreamInitiateMsg
 import org.burstsys.nexus.{NexusConnection, NexusGlobalUid, NexusSliceKey, NexusStreamUid}
 import org.burstsys.tesla
 import org.burstsys.tesla.buffer.mutable.TeslaMutableBuffer
+import org.burstsys.tesla.parcel.codec.TeslaParcelCodec
 import org.burstsys.tesla.parcel.packer.TeslaParcelPacker
 import org.burstsys.tesla.parcel.pipe.TeslaParcelPipe
 import org.burstsys.tesla.parcel.{TeslaAbortMarkerParcel, TeslaEndMarkerParcel, TeslaExceptionMarkerParcel, TeslaHeartbeatMarkerParcel, TeslaNoDataMarkerParcel, TeslaParcel, TeslaTimeoutMarkerParcel}
@@ -50,6 +51,12 @@ trait NexusStream extends VitalsService {
    */
   def properties: VitalsPropertyMap
 
+  /**
+   * the codec outbound parcels are deflated with, negotiated with the client when the stream is initiated.
+   * This is None for clients that sent no codec list - they are sent legacy (snappy) parcel messages
+   */
+  def parcelCodec: Option[TeslaParcelCodec] = None
+
   private lazy val extendedProperties = properties.extend
 
   /**
@@ -63,6 +70,16 @@ trait NexusStream extends VitalsService {
 
   def getOrDefault[T: ClassTag](name: VitalsPropertyKey, defVal: T): T = extendedProperties.getValueOrDefault[T](name, defVal)
 
+  /**
+   * the index of this sub-stream if the client striped a logical stream across sub-streams (zero if not striped)
+   */
+  def stripe: Int = properties.get(nexusStreamStripeProperty).map(_.toInt).getOrElse(0)
+
+  /**
+   * the number of sub-streams the client striped a logical stream across (one if not striped)
+   */
+  def stripes: Int = properties.get(nexusStreamStripesProperty).map(_.toInt).getOrElse(1)
+
   /**
    * the schema for the data in the stream
    */
@@ -206,6 +223,7 @@ object NexusStream {
       initMsg.sliceKey,
       initMsg.clientHostname,
       initMsg.serverHostname,
+      if (initMsg.parcelCodecs.isEmpty) None else Some(TeslaParcelCodec.negotiate(initMsg.parcelCodecs)),
       outbound = true
     )
 
@@ -235,6 +253,7 @@ object NexusStream {
       sliceKey,
       clientHostname,
       serverHostname,
+      None,
       outbound = false
     )
 }
@@ -253,6 +272,7 @@ class NexusStreamContext(
                           sliceKey: NexusSliceKey,
                           clientHostname: VitalsHostName,
                           serverHostname: VitalsHostName,
+                          override val parcelCodec: Option[TeslaParcelCodec],
 
                           outbound: Boolean
                         ) extends NexusStream {
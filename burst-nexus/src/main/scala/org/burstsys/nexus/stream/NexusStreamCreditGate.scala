@@ -0,0 +1,48 @@
+/* Copyright Yahoo, Licensed under the terms of the Apache 2.0 license. See LICENSE file in project root for terms. */
+package org.burstsys.nexus.stream
+
+import java.util.concurrent.{Semaphore, TimeUnit}
+
+/**
+ * the server side of a flow controlled stream - the parcel credits granted by the client. A data parcel is only
+ * sent with a credit in hand.
+ */
+final
+class NexusStreamCreditGate {
+
+  private[this] val _credits = new Semaphore(0)
+
+  ////////////////////////////////////////////////////////////////////////////////////
+  // API
+  ////////////////////////////////////////////////////////////////////////////////////
+
+  /**
+   * the client has room for `credits` more parcels
+   */
+  def grant(credits: Int): Unit = {
+    if (credits > 0)
+      _credits.release(credits)
+  }
+
+  def available: Int = _credits.availablePermits
+
+  /**
+   * wait for a credit, calling `onWait` each time `waitMs` passes without one
+   *
+   * @param abandon checked before each wait - true if the caller should give up
+   * @return true if a credit was taken, false if the wait was abandoned
+   */
+  def await(waitMs: Long, abandon: () => Boolean, onWait: () => Unit): Boolean = {
+    if (abandon())
+      return false
+    while (!_credits.tryAcquire(waitMs, TimeUnit.MILLISECONDS)) {
+      if (abandon())
+        return false
+      onWait()
+    }
+    true
+  }
+
+  override def toString: String = s"NexusStreamCreditGate(available=$available)"
+
+}
@@ -0,0 +1,77 @@
+/* Copyright Yahoo, Licensed under the terms of the Apache 2.0 license. See LICENSE file in project root for terms. */
+package org.burstsys.nexus.stream
+
+/**
+ * the client side parcel credit accounting for a flow controlled stream. The client grants the server credits
+ * up to the free capacity downstream (bounded by the credit window) and each parcel received uses one up.
+ */
+final
+class NexusStreamCreditLedger {
+
+  private[this] var _window: Int = 0
+
+  private[this] var _capacity: NexusStreamCapacity = _
+
+  /**
+   * credits granted to the server for parcels we have not yet received
+   */
+  private[this] var _outstanding: Int = 0
+
+  ////////////////////////////////////////////////////////////////////////////////////
+  // API
+  ////////////////////////////////////////////////////////////////////////////////////
+
+  /**
+   * forget any previous stream. Nothing is granted until the server agrees to a window in [[open]]
+   *
+   * @param capacity the free capacity downstream (if null the full window is granted as parcels arrive)
+   */
+  def reset(capacity: NexusStreamCapacity): Unit = synchronized {
+    _window = 0
+    _capacity = capacity
+    _outstanding = 0
+  }
+
+  /**
+   * the server agreed to a credit window (zero if the stream is not flow controlled)
+   */
+  def open(window: Int): Unit = synchronized {
+    _window = math.max(0, window)
+  }
+
+  def isFlowControlled: Boolean = synchronized(_window > 0)
+
+  def outstanding: Int = synchronized(_outstanding)
+
+  /**
+   * a parcel arrived using up one credit
+   */
+  def received(): Unit = synchronized {
+    _outstanding = math.max(0, _outstanding - 1)
+  }
+
+  /**
+   * top up the server's credits to the free capacity downstream. Small grants are held back to batch credit
+   * messages unless the server has run out of credits.
+   *
+   * @return the new credits to send to the server (zero if none)
+   */
+  def grant(): Int = synchronized {
+    if (_window <= 0)
+      return 0
+    val room = if (_capacity == null) _window else math.min(_window, math.max(0, _capacity()))
+    val credits = room - _outstanding
+    if (credits > 0 && (credits >= math.max(1, _window / 4) || _outstanding <= 0)) {
+      _outstanding += credits
+      credits
+    } else 0
+  }
+
+  /**
+   * the server has no credits and there was no room to grant any - it is stalled until capacity frees up
+   */
+  def isStarved: Boolean = synchronized(_window > 0 && _outstanding <= 0)
+
+  override def toString: String = synchronized(s"NexusStreamCreditLedger(window=${_window}, outstanding=${_outstanding})")
+
+}
@@ -2,6 +2,7 @@
 package org.burstsys.nexus
 
 import org.burstsys.vitals.logging._
+import org.burstsys.vitals.properties.{VitalsPropertyKey, VitalsPropertyMap}
 
 import java.util.concurrent.atomic.AtomicInteger
 import scala.language.postfixOps
@@ -12,10 +13,48 @@ package object stream extends VitalsLogger {
   // UIDs
   ///////////////////////////////////////////////////////////////////////////
 
+  /**
+   * the free capacity (in parcels) of whatever a client stream's parcels are fed to - used to grant
+   * the server parcel credits on flow controlled streams
+   */
+  type NexusStreamCapacity = () => Int
+
+  /**
+   * schedules client credit re-checks for stalled flow controlled streams
+   */
+  private[nexus] lazy val creditTimer = new java.util.Timer("nexus-stream-credit-timer", true)
+
   def newRuid: NexusRequestUid = _ruidGenerator.incrementAndGet()
 
   private val _ruidGenerator = new AtomicInteger
 
+  ///////////////////////////////////////////////////////////////////////////
+  // STRIPES
+  ///////////////////////////////////////////////////////////////////////////
+
+  /**
+   * the index of a sub-stream within a striped stream
+   */
+  final val nexusStreamStripeProperty: VitalsPropertyKey = "burst.nexus.stream.stripe"
+
+  /**
+   * the number of sub-streams in a striped stream
+   */
+  final val nexusStreamStripesProperty: VitalsPropertyKey = "burst.nexus.stream.stripes"
+
+  /**
+   * the distinct suid of a sub-stream of a striped stream
+   */
+  def stripeSuid(suid: NexusStreamUid, stripe: Int, stripes: Int): NexusStreamUid =
+    if (stripes <= 1) suid else s"${suid}_s$stripe"
+
+  /**
+   * the stream properties for a sub-stream of a striped stream
+   */
+  def stripeProperties(properties: VitalsPropertyMap, stripe: Int, stripes: Int): VitalsPropertyMap =
+    if (stripes <= 1) properties
+    else properties ++ Map(nexusStreamStripeProperty -> stripe.toString, nexusStreamStripesProperty -> stripes.toString)
+
   def streamIds(stream: NexusStream): String = {
     if (stream == null) {
       "stream(null)"
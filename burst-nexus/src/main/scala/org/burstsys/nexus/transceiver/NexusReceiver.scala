@@ -85,6 +85,9 @@ class NexusReceiver(
               case NexusStreamParcelMsgType =>
                 dispatchMessage(NexusStreamParcelMsg(buffer), clientListener.onStreamParcelMsg)
 
+              case NexusStreamCodecParcelMsgType =>
+                dispatchMessage(NexusStreamParcelMsg(NexusStreamCodecParcelMsgType, buffer), clientListener.onStreamParcelMsg)
+
               case NexusStreamCompleteMsgType =>
                 dispatchMessage(NexusStreamCompleteMsg(buffer), clientListener.onStreamCompleteMsg)
 
@@ -97,6 +100,9 @@ class NexusReceiver(
               case NexusStreamAbortMsgType =>
                 dispatchMessage(NexusStreamAbortMsg(buffer), serverListener.onStreamAbortMsg)
 
+              case NexusStreamCreditMsgType =>
+                dispatchMessage(NexusStreamCreditMsg(buffer), serverListener.onStreamCreditMsg)
+
               case mt =>
                 val e = VitalsException(s"Unknown message type: $mt")
                 log error(burstStdMsg(e), e)
@@ -33,6 +33,8 @@ package object transceiver extends VitalsLogger {
 
     def onStreamInitiateMsg(msg: NexusStreamInitiateMsg): Unit
 
+    def onStreamCreditMsg(msg: NexusStreamCreditMsg): Unit
+
   }
 
 }
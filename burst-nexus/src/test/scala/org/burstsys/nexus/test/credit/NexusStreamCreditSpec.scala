@@ -0,0 +1,226 @@
+/* Copyright Yahoo, Licensed under the terms of the Apache 2.0 license. See LICENSE file in project root for terms. */
+package org.burstsys.nexus.test.credit
+
+import io.netty.buffer.{ByteBuf, Unpooled}
+import org.burstsys.nexus.message._
+import org.burstsys.nexus.stream.{NexusStreamCreditGate, NexusStreamCreditLedger}
+import org.burstsys.nexus.test.NexusSpec
+import org.burstsys.vitals.uid.newBurstUid
+
+import java.util.concurrent.atomic.{AtomicBoolean, AtomicInteger}
+
+//@Ignore
+class NexusStreamCreditSpec extends NexusSpec {
+
+  private def encode(msg: NexusMsg): ByteBuf = {
+    msg.guid(newBurstUid)
+    msg.suid(newBurstUid)
+    val buffer = Unpooled.buffer(256)
+    msg.encode(buffer)
+    buffer
+  }
+
+  behavior of "NexusStreamCreditMsg"
+
+  it should "round trip its credits" in {
+    val msg = new NexusStreamCreditMsg()
+    msg.credits = 17
+    val buffer = encode(msg)
+    try {
+      // the frame decoder reads the message type code
+      buffer.readInt should equal(NexusStreamCreditMsgType.code)
+      val decoded = NexusStreamCreditMsg(buffer)
+      decoded.credits should equal(17)
+      decoded.guid should equal(msg.guid)
+      decoded.suid should equal(msg.suid)
+    } finally buffer.release()
+  }
+
+  it should "round trip the agreed window in the initiated message" in {
+    val msg = new NexusStreamInitiatedMsg()
+    msg.creditWindow = 32
+    val buffer = encode(msg)
+    try {
+      buffer.readInt should equal(NexusStreamInitiatedMsgType.code)
+      NexusStreamInitiatedMsg(buffer).creditWindow should equal(32)
+    } finally buffer.release()
+  }
+
+  it should "read a zero window from a server that predates credits" in {
+    val msg = new NexusStreamInitiatedMsg()
+    msg.creditWindow = 32
+    val buffer = encode(msg)
+    try {
+      buffer.readInt
+      // drop the trailing window the way an older server never wrote it
+      val legacy = buffer.slice(buffer.readerIndex, buffer.readableBytes - 4)
+      NexusStreamInitiatedMsg(legacy).creditWindow should equal(0)
+    } finally buffer.release()
+  }
+
+  behavior of "NexusStreamCreditLedger"
+
+  it should "grant nothing until the server agrees to a window" in {
+    val ledger = new NexusStreamCreditLedger
+    ledger.reset(null)
+    ledger.grant() should equal(0)
+    ledger.isFlowControlled should equal(false)
+    ledger.isStarved should equal(false)
+  }
+
+  it should "grant the full window when there is no downstream capacity to check" in {
+    val ledger = new NexusStreamCreditLedger
+    ledger.reset(null)
+    ledger.open(8)
+    ledger.grant() should equal(8)
+    ledger.outstanding should equal(8)
+    // nothing more until parcels arrive
+    ledger.grant() should equal(0)
+  }
+
+  it should "use a credit per parcel and batch small top ups" in {
+    val ledger = new NexusStreamCreditLedger
+    ledger.reset(null)
+    ledger.open(8)
+    ledger.grant() should equal(8)
+
+    // a quarter of the window is the smallest grant while the server still has credits
+    ledger.received()
+    ledger.outstanding should equal(7)
+    ledger.grant() should equal(0)
+    ledger.received()
+    ledger.grant() should equal(2)
+    ledger.outstanding should equal(8)
+  }
+
+  it should "grant a single credit to a server that has run out" in {
+    val room = new AtomicInteger(1)
+    val ledger = new NexusStreamCreditLedger
+    ledger.reset(() => room.get)
+    ledger.open(8)
+    ledger.grant() should equal(1)
+    ledger.received()
+    ledger.grant() should equal(1)
+  }
+
+  it should "bound grants by the downstream capacity and the window" in {
+    val room = new AtomicInteger(3)
+    val ledger = new NexusStreamCreditLedger
+    ledger.reset(() => room.get)
+    ledger.open(8)
+    ledger.grant() should equal(3)
+    room.set(100)
+    ledger.grant() should equal(5)
+    ledger.outstanding should equal(8)
+  }
+
+  it should "report a starved server when there is no room to grant" in {
+    val room = new AtomicInteger(0)
+    val ledger = new NexusStreamCreditLedger
+    ledger.reset(() => room.get)
+    ledger.open(8)
+    ledger.grant() should equal(0)
+    ledger.isStarved should equal(true)
+    room.set(2)
+    ledger.grant() should equal(2)
+    ledger.isStarved should equal(false)
+  }
+
+  it should "not count parcels beyond the credits it granted" in {
+    val ledger = new NexusStreamCreditLedger
+    ledger.reset(null)
+    ledger.open(4)
+    ledger.received()
+    ledger.outstanding should equal(0)
+    ledger.grant() should equal(4)
+  }
+
+  behavior of "NexusStreamCreditGate"
+
+  it should "pass a credit without waiting" in {
+    val gate = new NexusStreamCreditGate
+    gate.grant(2)
+    val waits = new AtomicInteger
+    gate.await(10000, () => false, () => waits.incrementAndGet()) should equal(true)
+    gate.available should equal(1)
+    waits.get should equal(0)
+  }
+
+  it should "call the wait hook each time the wait times out" in {
+    val gate = new NexusStreamCreditGate
+    val waits = new AtomicInteger
+    val start = System.nanoTime
+    // the third hook call abandons the wait
+    gate.await(20, () => waits.get >= 3, () => waits.incrementAndGet()) should equal(false)
+    waits.get should equal(3)
+    (System.nanoTime - start) should be >= (3 * 20 * 1000000L)
+  }
+
+  it should "not wait once abandoned" in {
+    val gate = new NexusStreamCreditGate
+    gate.grant(1)
+    gate.await(10000, () => true, () => ()) should equal(false)
+    gate.available should equal(1)
+  }
+
+  it should "take a credit granted from another thread" in {
+    val gate = new NexusStreamCreditGate
+    val granter = new Thread(() => {
+      Thread.sleep(50)
+      gate.grant(1)
+    })
+    granter.start()
+    val waits = new AtomicInteger
+    gate.await(10000, () => false, () => waits.incrementAndGet()) should equal(true)
+    granter.join()
+    waits.get should equal(0)
+  }
+
+  behavior of "credit flow control"
+
+  it should "re-grant credits on a heartbeat once capacity frees up" in {
+    val room = new AtomicInteger(0)
+    val ledger = new NexusStreamCreditLedger
+    ledger.reset(() => room.get)
+    ledger.open(8)
+    val gate = new NexusStreamCreditGate
+
+    // the initiated grant finds no room
+    gate.grant(ledger.grant())
+    gate.available should equal(0)
+
+    // each server heartbeat prompts the client to grant again - capacity frees after the first one
+    val heartbeats = new AtomicInteger
+    val onHeartbeat: () => Unit = () => {
+      if (heartbeats.incrementAndGet() == 1)
+        room.set(4)
+      gate.grant(ledger.grant())
+    }
+    gate.await(20, () => false, onHeartbeat) should equal(true)
+    heartbeats.get should equal(1)
+    ledger.outstanding should equal(4)
+    gate.available should equal(3)
+  }
+
+  it should "hold back a server until every parcel it sent is received" in {
+    val ledger = new NexusStreamCreditLedger
+    ledger.reset(null)
+    ledger.open(4)
+    val gate = new NexusStreamCreditGate
+    gate.grant(ledger.grant())
+
+    val abandoned = new AtomicBoolean
+    var sent = 0
+    while (gate.await(20, () => abandoned.get, () => abandoned.set(true)))
+      sent += 1
+    sent should equal(4)
+
+    // the client receives them all and tops the server back up
+    for (_ <- 0 until sent) {
+      ledger.received()
+      gate.grant(ledger.grant())
+    }
+    gate.available should equal(4)
+  }
+
+}
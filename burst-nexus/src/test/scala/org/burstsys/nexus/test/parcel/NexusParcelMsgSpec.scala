@@ -0,0 +1,104 @@
+/* Copyright Yahoo, Licensed under the terms of the Apache 2.0 license. See LICENSE file in project root for terms. */
+package org.burstsys.nexus.test.parcel
+
+import io.netty.buffer.{ByteBuf, Unpooled}
+import org.burstsys.nexus.message._
+import org.burstsys.nexus.test.NexusSpec
+import org.burstsys.tesla
+import org.burstsys.tesla.TeslaTypes.SizeOfInteger
+import org.burstsys.tesla.parcel.TeslaParcel
+import org.burstsys.tesla.parcel.codec.TeslaParcelCodec
+import org.burstsys.tesla.thread.worker.TeslaWorkerCoupler
+import org.burstsys.vitals.uid.newBurstUid
+
+//@Ignore
+class NexusParcelMsgSpec extends NexusSpec {
+
+  behavior of "NexusStreamParcelMsg"
+
+  private val bufferCount = 100
+
+  private def withParcel(body: TeslaParcel => Unit): Unit = {
+    TeslaWorkerCoupler {
+      val parcel = tesla.parcel.factory.grabParcel(bufferCount * 2 * SizeOfInteger)
+      try {
+        parcel.startWrites()
+        for (i <- 0 until bufferCount) {
+          val buffer = tesla.buffer.factory.grabBuffer(SizeOfInteger)
+          try {
+            buffer.writeInt(i % 13)
+            parcel.writeNextBuffer(buffer)
+          } finally tesla.buffer.factory.releaseBuffer(buffer)
+        }
+        body(parcel)
+      } finally tesla.parcel.factory.releaseParcel(parcel)
+    }
+  }
+
+  private def encode(msg: NexusStreamParcelMsg): ByteBuf = {
+    msg.guid(newBurstUid)
+    msg.suid(newBurstUid)
+    val buffer = Unpooled.directBuffer(1024)
+    msg.encode(buffer)
+    buffer
+  }
+
+  /**
+   * decode the way the client receiver does (the message type code is read before the message decodes)
+   */
+  private def decode(buffer: ByteBuf): NexusStreamParcelMsg =
+    NexusStreamParcelMsg(codeToMsg(buffer.readInt), buffer)
+
+  private def assertContents(msg: NexusStreamParcelMsg): Unit = {
+    val inflated = tesla.parcel.factory.grabParcel(bufferCount * 2 * SizeOfInteger)
+    try {
+      inflated.inflateFrom(msg.parcel)
+      inflated.bufferCount should equal(bufferCount)
+      inflated.startReads()
+      for (i <- 0 until bufferCount)
+        inflated.readNextBuffer.readInteger(0) should equal(i % 13)
+    } finally {
+      tesla.parcel.factory.releaseParcel(inflated)
+      tesla.parcel.factory.releaseParcel(msg.parcel)
+    }
+  }
+
+  it should "round trip a parcel between peers that negotiated a codec" in {
+    withParcel { parcel =>
+      val codec = TeslaParcelCodec.negotiate(TeslaParcelCodec.acceptedCodecNames)
+      val msg = NexusStreamParcelMsg(parcel, Some(codec))
+      msg.messageType should equal(NexusStreamCodecParcelMsgType)
+      val buffer = encode(msg)
+      try {
+        val decoded = decode(buffer)
+        decoded.codec should equal(codec)
+        assertContents(decoded)
+      } finally buffer.release()
+    }
+  }
+
+  it should "send the legacy parcel framing to a peer that did not negotiate a codec" in {
+    withParcel { parcel =>
+      val msg = NexusStreamParcelMsg(parcel, None)
+      msg.messageType should equal(NexusStreamParcelMsgType)
+      val buffer = encode(msg)
+      try {
+        // read it the way a peer that predates codec negotiation does
+        val legacy = buffer.duplicate()
+        legacy.readInt should equal(NexusStreamParcelMsgType.code)
+        legacy.readInt // ruid
+        decodeAsciiStringFromByteBuf(legacy) should equal(msg.guid)
+        decodeAsciiStringFromByteBuf(legacy) should equal(msg.suid)
+        val length = legacy.readInt
+        legacy.readInt should equal(bufferCount)
+        legacy.readInt should equal(parcel.currentUsedMemory)
+        legacy.readableBytes should equal(length)
+
+        val decoded = decode(buffer)
+        decoded.codec should equal(TeslaParcelCodec.legacyCodec)
+        assertContents(decoded)
+      } finally buffer.release()
+    }
+  }
+
+}
@@ -21,6 +21,14 @@ trait SampleStoreSlice extends Any with FabricSlice {
    */
   def loci: Array[SampleStoreLocus]
 
+  /**
+   * a peer worker that already holds this slice (from an earlier placement) and can ship it
+   * instead of it being reloaded from the '''loci'''
+   *
+   * @return
+   */
+  def peer: Option[SampleStoreLocus]
+
 }
 
 object SampleStoreSlice {
@@ -33,7 +41,8 @@ object SampleStoreSlice {
              datasource: FabricDatasource,
              motifFilter: String,
              worker: FabricWorkerNode,
-             loci: Array[SampleStoreLocus]
+             loci: Array[SampleStoreLocus],
+             peer: Option[SampleStoreLocus] = None
            ): SampleStoreSlice = SampleStoreSliceContext(
     guid: VitalsUid,
     sliceKey: FabricSliceKey,
@@ -42,7 +51,8 @@ object SampleStoreSlice {
     datasource: FabricDatasource,
     motifFilter: String,
     worker: FabricWorkerNode,
-    loci: Array[SampleStoreLocus]
+    loci: Array[SampleStoreLocus],
+    peer: Option[SampleStoreLocus]
   )
 
 }
@@ -56,11 +66,12 @@ class SampleStoreSliceContext(
                                var datasource: FabricDatasource,
                                var motifFilter: String,
                                var worker: FabricWorkerNode,
-                               var loci: Array[SampleStoreLocus]
+                               var loci: Array[SampleStoreLocus],
+                               var peer: Option[SampleStoreLocus]
                              )
   extends FabricSliceContext() with SampleStoreSlice {
 
-  def this() = this(null, 0,  null, 0, null, null, null, null)
+  def this() = this(null, 0,  null, 0, null, null, null, null, None)
 
   ///////////////////////////////////////////////////////////////////
   // KRYO SERDE
@@ -76,6 +87,7 @@ class SampleStoreSliceContext(
       loci(i) = kryo.readClassAndObject(input).asInstanceOf[SampleStoreLocus]
       i += 1
     }
+    peer = if (input.readBoolean) Some(kryo.readClassAndObject(input).asInstanceOf[SampleStoreLocus]) else None
   }
 
   override
@@ -87,6 +99,8 @@ class SampleStoreSliceContext(
       kryo.writeClassAndObject(output, loci(i))
       i += 1
     }
+    output.writeBoolean(peer.isDefined)
+    peer.foreach(kryo.writeClassAndObject(output, _))
   }
 
 }
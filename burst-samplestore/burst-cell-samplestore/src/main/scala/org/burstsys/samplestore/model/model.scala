@@ -3,11 +3,25 @@ package org.burstsys.samplestore
 
 import org.burstsys.fabric.wave.metadata.model.datasource.FabricDatasource
 import org.burstsys.samplestore.api.{BurstSampleStoreDataSource, BurstSampleStoreDomain, BurstSampleStoreView, SampleStoreDataLocus}
+import org.burstsys.vitals.properties.VitalsPropertyKey
 
 import scala.language.implicitConversions
 
 package object model {
 
+  /**
+   * the partition properties of a peer locus identify the slice held by the peer worker
+   */
+  final val peerDomainKeyProperty: VitalsPropertyKey = "burst.samplestore.peer.domain.key"
+
+  final val peerViewKeyProperty: VitalsPropertyKey = "burst.samplestore.peer.view.key"
+
+  final val peerGenerationClockProperty: VitalsPropertyKey = "burst.samplestore.peer.generation.clock"
+
+  final val peerGenerationHashProperty: VitalsPropertyKey = "burst.samplestore.peer.generation.hash"
+
+  final val peerSliceKeyProperty: VitalsPropertyKey = "burst.samplestore.peer.slice.key"
+
   implicit
   def fabricToSampleStoreDataSource(fabricDataSource: FabricDatasource): BurstSampleStoreDataSource = {
     import fabricDataSource._
@@ -8,11 +8,13 @@ import org.burstsys.fabric.wave.data.model.slice.FabricSlice
 import org.burstsys.fabric.wave.data.model.store._
 import org.burstsys.fabric.wave.data.supervisor.store._
 import org.burstsys.fabric.wave.metadata.model.datasource.FabricDatasource
+import org.burstsys.fabric.wave.metadata.model.{FabricDomainKey, FabricViewKey}
+import org.burstsys.nexus.newNexusUid
 import org.burstsys.samplestore.SampleStoreName
 import org.burstsys.samplestore.api.BurstSampleStoreApiRequestState._
 import org.burstsys.samplestore.api._
 import org.burstsys.samplestore.api.client.{SampleStoreApiClient, defaultHostName, defaultPort}
-import org.burstsys.samplestore.api.configuration.{burstSampleStoreApiHostProperty, burstSampleStoreApiPortProperty, burstSampleStoreApiSslEnableProperty}
+import org.burstsys.samplestore.api.configuration.{burstSampleStoreApiHostProperty, burstSampleStoreApiPortProperty, burstSampleStoreApiSslEnableProperty, burstSampleStorePeerPlacementsMaxProperty, burstSampleStorePeerPortProperty, burstSampleStorePeerTransferEnableProperty}
 import org.burstsys.samplestore.model.{SampleStoreLocus, SampleStoreSlice, _}
 import org.burstsys.samplestore.trek.SampleStoreGetViewGeneratorTrek
 import org.burstsys.tesla.thread.request._
@@ -23,6 +25,7 @@ import org.burstsys.vitals.net.{VitalsHostName, VitalsHostPort}
 import org.burstsys.vitals.reporter.instrument.prettyTimeFromNanos
 import org.burstsys.vitals.uid.VitalsUid
 
+import java.util
 import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.atomic.AtomicInteger
 import scala.annotation.unused
@@ -41,6 +44,16 @@ class SampleStoreSupervisor(container: FabricWaveSupervisorContainer) extends Fa
 
   private val _clients = new ConcurrentHashMap[(VitalsHostName, VitalsHostPort), SampleStoreApiClient]()
 
+  /**
+   * the most recent slices of each (domain, view) - used to find a worker that still holds a slice that has moved.
+   * Only the most recently placed views are kept (access ordered LRU) so this does not hold on to the slices
+   * of every view ever loaded
+   */
+  private val _placements = new util.LinkedHashMap[(FabricDomainKey, FabricViewKey), Array[SampleStoreSlice]](16, 0.75f, true) {
+    override def removeEldestEntry(eldest: util.Map.Entry[(FabricDomainKey, FabricViewKey), Array[SampleStoreSlice]]): Boolean =
+      size > burstSampleStorePeerPlacementsMaxProperty.get
+  }
+
   ///////////////////////////////////////////////////////////////////
   // API
   ///////////////////////////////////////////////////////////////////
@@ -148,11 +161,12 @@ class SampleStoreSupervisor(container: FabricWaveSupervisorContainer) extends Fa
 
         // mapping the slices to workers using nodeId as sliceKey.
         // Hey, nobody said keys had to fall in (0..slices) and as far as I can tell it's only used to build the region file path
-        val slices = workerMap.keys.map { worker =>
+        val storeSlices = workerMap.keys.map { worker =>
           SampleStoreSlice(
             guid, sliceKey = worker.nodeId.toInt, generator.generationHash, sliceCount,
             datasource, motifFilter, worker, workerMap(worker).toArray)
-        }.toArray[FabricSlice]
+        }.toArray
+        val slices = (if (burstSampleStorePeerTransferEnableProperty.get) withPeers(storeSlices, workers, datasource) else storeSlices).toArray[FabricSlice]
         val elapsedNanos = System.nanoTime - start
         log info s"SAMPLE_STORE_SLICE_SUCCESS elapsedTime=$elapsedNanos (${prettyTimeFromNanos(elapsedNanos)}), slices=${slices.length} $tag"
         slices
@@ -164,6 +178,55 @@ class SampleStoreSupervisor(container: FabricWaveSupervisorContainer) extends Fa
     }
   }
 
+  ///////////////////////////////////////////////////////////////////
+  // PEER TRANSFER
+  ///////////////////////////////////////////////////////////////////
+
+  /**
+   * a slice whose loci were all held by a different (still live) worker in the previous placement of the same
+   * generation is given that worker as a peer it can be shipped from instead of being reloaded from the sample source
+   */
+  private def withPeers(slices: Array[SampleStoreSlice], workers: Array[FabricWorkerNode], datasource: FabricDatasource): Array[SampleStoreSlice] = {
+    val key = (datasource.domain.domainKey, datasource.view.viewKey)
+    val priors = Option(_placements synchronized _placements.get(key)).getOrElse(Array.empty[SampleStoreSlice]).filter { prior =>
+      prior.generationHash == slices.head.generationHash &&
+        prior.datasource.view.generationClock == datasource.view.generationClock &&
+        workers.contains(prior.worker)
+    }.map(prior => lociKey(prior.loci) -> prior).toMap
+    val placed = slices.map { slice =>
+      priors.get(lociKey(slice.loci)) match {
+        case Some(prior) if prior.worker != slice.worker =>
+          log info s"SAMPLE_STORE_SLICE_PEER sliceKey=${slice.sliceKey} peer=${prior.worker} priorSliceKey=${prior.sliceKey} guid=${slice.guid}"
+          SampleStoreSlice(
+            slice.guid, slice.sliceKey, slice.generationHash, slice.slices,
+            slice.datasource, slice.motifFilter, slice.worker, slice.loci, Some(peerLocus(prior)))
+        case _ => slice
+      }
+    }
+    _placements synchronized _placements.put(key, placed)
+    placed
+  }
+
+  /**
+   * the identity of a set of loci (stream uids change from load to load)
+   */
+  private def lociKey(loci: Array[SampleStoreLocus]): Set[String] =
+    loci.map(l => s"${l.hostAddress}:${l.port}:${l.partitionProperties.toSeq.sorted.mkString(",")}").toSet
+
+  private def peerLocus(prior: SampleStoreSlice): SampleStoreLocus = SampleStoreLocus(
+    suid = newNexusUid,
+    hostName = prior.worker.nodeName,
+    hostAddress = prior.worker.nodeAddress,
+    port = burstSampleStorePeerPortProperty.get,
+    partitionProperties = Map(
+      peerDomainKeyProperty -> prior.datasource.domain.domainKey.toString,
+      peerViewKeyProperty -> prior.datasource.view.viewKey.toString,
+      peerGenerationClockProperty -> prior.datasource.view.generationClock.toString,
+      peerGenerationHashProperty -> prior.generationHash,
+      peerSliceKeyProperty -> prior.sliceKey.toString
+    )
+  )
+
   burstSampleStoreApiSslEnableProperty.listeners += watchHostProperty
   burstSampleStoreApiPortProperty.listeners += watchHostProperty
   burstSampleStoreApiHostProperty.listeners += watchHostProperty
@@ -8,10 +8,10 @@ import org.burstsys.fabric.wave.data.model.slice.state.{FabricDataFailed, Fabric
 import org.burstsys.fabric.wave.data.model.snap.FabricSnap
 import org.burstsys.nexus
 import org.burstsys.nexus.client.NexusClient
-import org.burstsys.nexus.stream.NexusStream
+import org.burstsys.nexus.stream.{NexusStream, stripeProperties, stripeSuid}
 import org.burstsys.nexus.{configuration, _}
-import org.burstsys.samplestore.api.configuration.burstSampleStoreHeartbeatDuration
-import org.burstsys.samplestore.model.SampleStoreSlice
+import org.burstsys.samplestore.api.configuration.{burstSampleStoreHeartbeatDuration, burstSampleStoreLoadStripesProperty}
+import org.burstsys.samplestore.model.{SampleStoreLocus, SampleStoreSlice}
 import org.burstsys.samplestore.trek.{SampleStoreLoaderProcessStreamTrekMark, SampleStoreLoaderReleaseStreamsTrekMark}
 import org.burstsys.tesla.parcel.pipe.TeslaParcelPipe
 import org.burstsys.tesla.parcel.{TeslaAbortMarkerParcel, TeslaEndMarkerParcel, TeslaExceptionMarkerParcel, TeslaHeartbeatMarkerParcel, TeslaNoDataMarkerParcel, TeslaParcelStatus, TeslaTimeoutMarkerParcel}
@@ -26,10 +26,14 @@ import scala.language.postfixOps
 import org.burstsys.vitals.logging._
 
 /**
- * load state and tracking semantics for worker side
+ * load state and tracking semantics for worker side. Each locus can be loaded over a number of striped
+ * sub-streams (each on its own pooled nexus connection) - all the streams feed the same pipe and so are interleaved
+ * across the slice regions as they are written.
+ *
+ * @param loci the remote nexus stream feed locations to load from (the slice loci or a peer worker)
  */
 private[worker]
-case class SampleStoreLoader(snap: FabricSnap, slice: SampleStoreSlice) {
+case class SampleStoreLoader(snap: FabricSnap, slice: SampleStoreSlice, loci: Array[SampleStoreLocus]) {
 
   lazy val parameters = s"guid=${snap.guid}, suid=${_suids})"
 
@@ -37,9 +41,11 @@ case class SampleStoreLoader(snap: FabricSnap, slice: SampleStoreSlice) {
   // private state
   //////////////////////////////////////////////////////////////////////////////////////////////////////
 
-  private[this] lazy val _suids: String = slice.loci.map(_.suid).mkString("_")
+  private[this] lazy val _suids: String = loci.map(_.suid).mkString("_")
 
-  private[this] lazy val _expectedTransfers: Int = slice.loci.length
+  private[this] lazy val _stripes: Int = math.max(1, burstSampleStoreLoadStripesProperty.get)
+
+  private[this] lazy val _expectedTransfers: Int = loci.length * _stripes
 
   private[this] val _inputWaitNanos = new LongAdder
 
@@ -79,7 +85,7 @@ case class SampleStoreLoader(snap: FabricSnap, slice: SampleStoreSlice) {
       log debug burstStdMsg(tag)
       val depth = configuration.burstNexusPipeSizeProperty.get
       val timeout = 3 * burstSampleStoreHeartbeatDuration // no parcels in a 3 heartbeat interval means it's dead Jim
-      _pipe = TeslaParcelPipe(s"samplestore.mux n=${slice.loci.length}", snap.guid, _suids, depth, timeout)
+      _pipe = TeslaParcelPipe(s"samplestore.mux n=${loci.length}", snap.guid, _suids, depth, timeout)
       _pipe.start
     } catch safely {
       case t: Throwable =>
@@ -97,23 +103,24 @@ case class SampleStoreLoader(snap: FabricSnap, slice: SampleStoreSlice) {
     val metadata = snap.metadata
     try {
       log debug s"SAMPLE_STORE_STREAMS_ACQUIRE $tag"
-      slice.loci foreach {
-        l =>
-          val client = nexus.grabClientFromPool(l.hostAddress, l.port)
-          val serverHostname = convertHostAddressToHostname(l.hostAddress)
-          _nexusClients += client
-          log debug s"SAMPLE_STORE_ACQUIRE_STREAM serverHostname=$serverHostname serverIPAddress=${l.hostAddress} serverPort=${l.port} $tag"
-          try {
-            _streams += client.startStream(
-              snap.guid, l.suid, l.partitionProperties, slice.datasource.view.schemaName, Some(slice.motifFilter), _pipe,
-              slice.sliceKey, getPublicHostName, serverHostname
-            )
-          } catch safely {
-            case t: Throwable =>
-              log error burstStdMsg(s"SAMPLE_STORE_START_STREAM_FAILURE $tag", t)
-              _exceptionStreamCount add 1
-              metadata.failure(t)
-          }
+      for (l <- loci; stripe <- 0 until _stripes) {
+        val client = nexus.grabClientFromPool(l.hostAddress, l.port)
+        val serverHostname = convertHostAddressToHostname(l.hostAddress)
+        _nexusClients += client
+        log debug s"SAMPLE_STORE_ACQUIRE_STREAM serverHostname=$serverHostname serverIPAddress=${l.hostAddress} serverPort=${l.port} stripe=$stripe stripes=${_stripes} $tag"
+        try {
+          _streams += client.startStream(
+            snap.guid, stripeSuid(l.suid, stripe, _stripes), stripeProperties(l.partitionProperties, stripe, _stripes),
+            slice.datasource.view.schemaName, Some(slice.motifFilter), _pipe, slice.sliceKey, getPublicHostName, serverHostname,
+            // the streams share the slice write queues so each gets its share of the free room for credits
+            capacity = () => streamCapacity
+          )
+        } catch safely {
+          case t: Throwable =>
+            log error burstStdMsg(s"SAMPLE_STORE_START_STREAM_FAILURE $tag", t)
+            _exceptionStreamCount add 1
+            metadata.failure(t)
+        }
       }
     } catch safely {
       case t: Throwable =>
@@ -123,6 +130,16 @@ case class SampleStoreLoader(snap: FabricSnap, slice: SampleStoreSlice) {
     }
   }
 
+  /**
+   * each stream's share of the free room in the slice write queues. While there is any room every stream gets
+   * at least one credit, otherwise with more transfers (loci times stripes) than free parcels the integer share is
+   * zero and every stream stalls until the next credit poll
+   */
+  private def streamCapacity: Int = {
+    val free = snap.data.freeWriteCapacity
+    if (free <= 0) 0 else math.max(1, free / _expectedTransfers)
+  }
+
   /**
    * release all stream resources
    */
@@ -334,7 +351,7 @@ case class SampleStoreLoader(snap: FabricSnap, slice: SampleStoreSlice) {
            |  state=${metadata.state}
            |  sliceKey=${metadata.sliceKey}
            |  clientHostname=$getPublicHostName
-           |  loci=${slice.loci.map(_.hostName).mkString(", ")}
+           |  loci=${loci.map(_.hostName).mkString(", ")}
            |  ${metadata.generationMetrics.metricsString}
            |  inputWaitNanos=${_inputWaitNanos}  (${prettyTimeFromNanos(_inputWaitNanos.longValue)})
            |  inputStall=${prettyPercentage(_inputWaitNanos.longValue, elapsedNanos)} %
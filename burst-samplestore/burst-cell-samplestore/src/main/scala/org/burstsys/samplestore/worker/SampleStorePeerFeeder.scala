@@ -0,0 +1,71 @@
+/* Copyright Yahoo, Licensed under the terms of the Apache 2.0 license. See LICENSE file in project root for terms. */
+package org.burstsys.samplestore.worker
+
+import org.burstsys.fabric.wave.container.worker.FabricWaveWorkerContainer
+import org.burstsys.fabric.wave.data.model.generation.key.FabricGenerationKey
+import org.burstsys.nexus.server.NexusStreamFeeder
+import org.burstsys.nexus.stream.NexusStream
+import org.burstsys.samplestore.api.configuration.burstSampleStorePeerParcelSizeProperty
+import org.burstsys.samplestore.model._
+import org.burstsys.tesla.parcel.TeslaParcelStatus
+import org.burstsys.tesla.thread.request.TeslaRequestFuture
+import org.burstsys.vitals.errors.{VitalsException, safely}
+import org.burstsys.vitals.logging._
+import org.burstsys.vitals.reporter.instrument.prettyTimeFromNanos
+
+/**
+ * the worker side nexus feeder that ships a locally held slice to a peer worker that it has been moved to.
+ * The slice is identified by the partition properties of the peer locus. The regions of the
+ * slice are copied into inflated parcels as whole blocks (the nexus stream deflates them onto the wire) so the
+ * peer writes exactly the same items it would have pressed from the sample source. Striped streams ship
+ * their share of the regions.
+ */
+final case
+class SampleStorePeerFeeder(container: FabricWaveWorkerContainer) extends NexusStreamFeeder {
+
+  override
+  def feedsStripes(stream: NexusStream): Boolean = true
+
+  override
+  def feedStream(stream: NexusStream): Unit = {
+    lazy val tag = s"SampleStorePeerFeeder.feedStream(guid=${stream.guid}, suid=${stream.suid}, stripe=${stream.stripe}, client=${stream.clientHostname})"
+    TeslaRequestFuture {
+      val start = System.nanoTime
+      try {
+        val generationKey = FabricGenerationKey(
+          domainKey = stream.get[Long](peerDomainKeyProperty),
+          viewKey = stream.get[Long](peerViewKeyProperty),
+          generationClock = stream.get[Long](peerGenerationClockProperty)
+        )
+        val generationHash = stream.get[String](peerGenerationHashProperty)
+        val sliceKey = stream.get[Int](peerSliceKeyProperty)
+        container.cache.peerSnapWithReadLock(generationKey, generationHash, sliceKey) match {
+          case None =>
+            // the client falls back to loading from the sample source
+            stream.completeExceptionally(VitalsException(s"SAMPLE_STORE_PEER_SNAP_NOT_FOUND $tag"))
+
+          case Some(snap) =>
+            try {
+              val itemCount = snap.data.shipSlice(burstSampleStorePeerParcelSizeProperty.get, stream.stripe, stream.stripes)(stream.put)
+              val metrics = snap.metadata.generationMetrics
+              if (stream.stripe == 0)
+                stream.complete(itemCount, metrics.expectedItemCount, metrics.potentialItemCount, metrics.rejectedItemCount)
+              else // the slice level counts are reported once (by the first stripe)
+                stream.complete(itemCount, 0, 0, 0)
+              log info s"SAMPLE_STORE_PEER_SHIPPED items=$itemCount elapsed=${prettyTimeFromNanos(System.nanoTime - start)} $tag"
+            } finally snap.releaseSnapReadLock()
+        }
+      } catch safely {
+        case t: Throwable =>
+          log warn burstStdMsg(s"SAMPLE_STORE_PEER_SHIP_FAIL $t $tag", t)
+          stream.completeExceptionally(t)
+      }
+    }
+  }
+
+  override
+  def abortStream(stream: NexusStream, status: TeslaParcelStatus): Unit = {
+    log info s"SAMPLE_STORE_PEER_ABORT status=$status guid=${stream.guid}, suid=${stream.suid}"
+  }
+
+}
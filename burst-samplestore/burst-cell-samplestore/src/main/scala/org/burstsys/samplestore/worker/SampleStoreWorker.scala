@@ -2,15 +2,19 @@
 package org.burstsys.samplestore.worker
 
 import org.burstsys.fabric.wave.container.worker.FabricWaveWorkerContainer
-import org.burstsys.fabric.wave.data.model.slice.state.FabricDataState
+import org.burstsys.fabric.wave.data.model.slice.state.{FabricDataFailed, FabricDataState}
 import org.burstsys.fabric.wave.data.model.snap.FabricSnap
 import org.burstsys.fabric.wave.data.worker.store.FabricStoreWorker
 import org.burstsys.fabric.wave.execution.model.pipeline.publishPipelineEvent
+import org.burstsys.nexus.server.NexusServer
 import org.burstsys.samplestore.SampleStoreName
-import org.burstsys.samplestore.model.SampleStoreSlice
+import org.burstsys.samplestore.api.configuration.{burstSampleStorePeerPortProperty, burstSampleStorePeerTransferEnableProperty}
+import org.burstsys.samplestore.model.{SampleStoreLocus, SampleStoreSlice}
 import org.burstsys.samplestore.trek.SampleStoreLoadTrekMark
 import org.burstsys.vitals.errors.safely
 import org.burstsys.vitals.logging.burstStdMsg
+import org.burstsys.vitals.net.getPublicHostAddress
+import org.burstsys.vitals.trek.TrekStage
 
 import scala.language.postfixOps
 
@@ -22,6 +26,15 @@ class SampleStoreWorker(container: FabricWaveWorkerContainer) extends FabricStor
 
   override lazy val storeName: String = SampleStoreName
 
+  ///////////////////////////////////////////////////////////////////
+  // STATE
+  ///////////////////////////////////////////////////////////////////
+
+  /**
+   * ships slices held by this worker to peer workers
+   */
+  private[this] var _peerServer: Option[NexusServer] = None
+
   ///////////////////////////////////////////////////////////////////
   // LIFECYCLE
   ///////////////////////////////////////////////////////////////////
@@ -30,6 +43,10 @@ class SampleStoreWorker(container: FabricWaveWorkerContainer) extends FabricStor
   def start: this.type = {
     ensureNotRunning
     log info startingMessage
+    if (burstSampleStorePeerTransferEnableProperty.get) {
+      val server = NexusServer(getPublicHostAddress, bindPort = burstSampleStorePeerPortProperty.get) fedBy SampleStorePeerFeeder(container)
+      _peerServer = Some(server.start)
+    }
     markRunning
     this
   }
@@ -38,6 +55,8 @@ class SampleStoreWorker(container: FabricWaveWorkerContainer) extends FabricStor
   def stop: this.type = {
     ensureRunning
     log info stoppingMessage
+    _peerServer.foreach(_.stop)
+    _peerServer = None
     markNotRunning
     this
   }
@@ -50,40 +69,19 @@ class SampleStoreWorker(container: FabricWaveWorkerContainer) extends FabricStor
 
     val stage = SampleStoreLoadTrekMark.beginSync(guid)
     val state = try {
-      // make sure metadata is in a clean state for the load
-      snap.metadata.reset()
-
-      val loader = SampleStoreLoader(snap, slice)
-      loader.initializeLoader()
-      stage.addEvent("Loader initialized")
-
-      snap.data.openForWrites()
-      stage.addEvent("Snap opened for writes")
-
-      try {
-        loader.acquireStreams()
-        stage.addEvent("Streams acquired")
-        publishPipelineEvent(ParticleStreamsAcquired(slice.guid))
-
-        try {
-          val state = loader.processStreamData()
-          publishPipelineEvent(ParticleStreamsFinished(slice.guid))
-
-          snap.data.waitForWritesToComplete()
-          stage.addEvent("Writes completed")
-          publishPipelineEvent(ParticleWritesFinished(slice.guid))
-
-          state
-        } finally loader.releaseStreams()
-
-      } finally {
-        snap.data.closeForWrites()
-        stage.addEvent("Snap closed")
-
-        loader.processCompletion()
-        stage.addEvent("Loader completed")
+      slice.peer match {
+        case Some(peer) if burstSampleStorePeerTransferEnableProperty.get =>
+          val state = loadSlice(snap, slice, Array(peer), stage)
+          if (state != FabricDataFailed) state
+          else {
+            // the peer no longer has the slice (or failed to ship it) so load it from the source
+            log warn burstStdMsg(s"SAMPLE_STORE_PEER_LOAD_FAIL peer=${peer.hostName} failure=${snap.metadata.failure} (loading from source...) $hdr")
+            stage.addEvent("Peer load failed")
+            loadSlice(snap, slice, slice.loci, stage)
+          }
+        case _ =>
+          loadSlice(snap, slice, slice.loci, stage)
       }
-
     } catch safely {
       case t: Throwable =>
         log error burstStdMsg(s"$hdr exception", t)
@@ -94,5 +92,44 @@ class SampleStoreWorker(container: FabricWaveWorkerContainer) extends FabricStor
     state
   }
 
+  /**
+   * load a slice from a set of remote nexus stream feed locations
+   */
+  private
+  def loadSlice(snap: FabricSnap, slice: SampleStoreSlice, loci: Array[SampleStoreLocus], stage: TrekStage): FabricDataState = {
+    // make sure metadata is in a clean state for the load
+    snap.metadata.reset()
+
+    val loader = SampleStoreLoader(snap, slice, loci)
+    loader.initializeLoader()
+    stage.addEvent("Loader initialized")
+
+    snap.data.openForWrites()
+    stage.addEvent("Snap opened for writes")
+
+    try {
+      loader.acquireStreams()
+      stage.addEvent("Streams acquired")
+      publishPipelineEvent(ParticleStreamsAcquired(slice.guid))
+
+      try {
+        val state = loader.processStreamData()
+        publishPipelineEvent(ParticleStreamsFinished(slice.guid))
+
+        snap.data.waitForWritesToComplete()
+        stage.addEvent("Writes completed")
+        publishPipelineEvent(ParticleWritesFinished(slice.guid))
+
+        state
+      } finally loader.releaseStreams()
+
+    } finally {
+      snap.data.closeForWrites()
+      stage.addEvent("Snap closed")
+
+      loader.processCompletion()
+      stage.addEvent("Loader completed")
+    }
+  }
 
 }
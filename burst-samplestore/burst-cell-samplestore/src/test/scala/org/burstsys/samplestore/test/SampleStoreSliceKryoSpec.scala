@@ -61,5 +61,28 @@ class SampleStoreSliceKryoSpec extends AnyFlatSpec with Suite with Matchers with
     outSlice.loci.length should equal(1)
     outSlice.loci.head.suid should equal("suid")
     outSlice.loci.head.partitionProperties should equal(Map("key1" -> "value1"))
+    outSlice.peer should equal(None)
+  }
+
+  it should "do a kryo serialization with a peer" in {
+
+    val slice = SampleStoreSlice(
+      "guid", 1, 1.toString, 1, datasource, "motif", FabricWorkerNode(1, "localhost"),
+      Array(SampleStoreLocus("suid", "local", "local", 1000, Map("key1" -> "value1"))),
+      Some(SampleStoreLocus("peer", "peerhost", "peerhost", 1271, Map("key2" -> "value2")))
+    )
+    val outSlice = new SampleStoreSliceContext()
+
+    val k = acquireKryo
+    try {
+      val output = new Output(50000)
+      slice.asInstanceOf[KryoSerializable].write(k, output)
+      outSlice.asInstanceOf[KryoSerializable].read(k, new Input(output.toBytes))
+    } finally releaseKryo(k)
+
+    outSlice.loci.length should equal(1)
+    outSlice.peer.map(_.suid) should equal(Some("peer"))
+    outSlice.peer.map(_.port) should equal(Some(1271))
+    outSlice.peer.map(_.partitionProperties) should equal(Some(Map("key2" -> "value2")))
   }
 }
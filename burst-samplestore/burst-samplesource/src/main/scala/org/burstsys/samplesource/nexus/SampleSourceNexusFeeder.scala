@@ -54,6 +54,8 @@ final case class SampleSourceNexusFeeder() extends NexusStreamFeeder with System
     }
   }
 
+  override def feedsStripes(stream: NexusStream): Boolean = handlerForStream(stream).feedsStripes
+
   private def handlerForStream(stream: NexusStream): SampleSourceWorkerService = {
     val sourceName = stream.properties.getValueOrThrow[VitalsPropertyKey](SampleStoreSourceNameProperty)
     SampleSourceHandlerRegistry.getWorker(sourceName)
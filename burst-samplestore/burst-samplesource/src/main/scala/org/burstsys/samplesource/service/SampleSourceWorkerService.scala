@@ -44,6 +44,12 @@ trait SampleSourceWorkerService extends VitalsService {
    */
   def feedStream(stream: NexusStream): Future[Unit]
 
+  /**
+   * Can this sample source feed just its stripe of a striped stream (see [[NexusStream.stripe]])?
+   * If not the first sub-stream of a striped stream is fed everything and the others are sent no data.
+   */
+  def feedsStripes: Boolean = false
+
   /**
    * Accept new broadcast parameters that may be needed for processing
    */
@@ -37,6 +37,11 @@ abstract class ScanningSampleSourceWorker[T, F <: FeedControl, B <: BatchControl
 
   protected def getProvider(control: B): DataProvider
 
+  /**
+   * A scanning source can feed a striped stream by overriding `feedsStripes`. Its batches are then striped
+   * round robin across the sub-streams (see [[ScanningSampleSourceWorker.stripeBatches]]), so this
+   * must return the same batches in the same order for every sub-stream.
+   */
   def prepareBatchControls(feedControl: F, stream: NexusStream): Iterable[B]
 
   def finalizeBatch(control: B): B
@@ -57,7 +62,10 @@ abstract class ScanningSampleSourceWorker[T, F <: FeedControl, B <: BatchControl
       stage.span.setAttribute(SOURCE_NAME_KEY, this.name)
       TeslaRequestFuture {
         val feedControl = prepareFeedControl(stream)
-        val batchControls = prepareBatchControls(feedControl, stream)
+        val batchControls = {
+          val all = prepareBatchControls(feedControl, stream)
+          if (feedsStripes) ScanningSampleSourceWorker.stripeBatches(all, stream.stripe, stream.stripes) else all
+        }
 
         val batchIds = new ConcurrentSkipListSet(batchControls.map(_.id).asJavaCollection)
 
@@ -91,10 +99,12 @@ abstract class ScanningSampleSourceWorker[T, F <: FeedControl, B <: BatchControl
           }
           log info burstStdMsg(s"stream completed (traceId=${stage.getTraceId}, processedItemsCount=${feedControl.processedItemsCount}, " +
             s"rejectedItemsCount=${feedControl.rejectedItemsCount}, expectedItemsCount=${feedControl.expectedItemsCount})")
+          // every stripe prepares the same feed control so its totals are reported once (by the first stripe)
+          val reportsTotals = stream.stripe == 0
           stream.complete(
             itemCount = feedControl.processedItemsCount,
-            expectedItemCount = feedControl.expectedItemsCount,
-            potentialItemCount = feedControl.potentialItemsCount,
+            expectedItemCount = if (reportsTotals) feedControl.expectedItemsCount else 0,
+            potentialItemCount = if (reportsTotals) feedControl.potentialItemsCount else 0,
             feedControl.rejectedItemsCount)
           feedStreamComplete.success(())
           ScanningFeedStreamTrek.end(stage)
@@ -210,3 +220,21 @@ abstract class ScanningSampleSourceWorker[T, F <: FeedControl, B <: BatchControl
 
   override def putBroadcastVars(metadata: MetadataParameters): Unit = {}
 }
+
+object ScanningSampleSourceWorker {
+
+  /**
+   * The batches fed by one sub-stream of a striped stream. Batches are dealt round robin so the stripes are
+   * disjoint, together cover every batch, and keep the batches in their original order.
+   *
+   * @param batches the batches of the whole stream (in the same order for every stripe)
+   * @param stripe  the index of the sub-stream...
+   * @param stripes ...of this many
+   * @return the batches of the stripe
+   */
+  def stripeBatches[B](batches: Iterable[B], stripe: Int, stripes: Int): Iterable[B] = {
+    if (stripes <= 1) batches
+    else batches.zipWithIndex.collect { case (b, i) if i % stripes == stripe => b }
+  }
+
+}
@@ -0,0 +1,38 @@
+/* Copyright Yahoo, Licensed under the terms of the Apache 2.0 license. See LICENSE file in project root for terms. */
+package org.burstsys.samplesource.test
+
+import org.burstsys.samplesource.service.scanning.ScanningSampleSourceWorker
+
+//@Ignore
+class ScanningStripeBatchesSpec extends BaseSpec {
+
+  private val batches = (0 until 17).map(b => s"batch-$b")
+
+  it should "feed every batch to an unstriped stream" in {
+    ScanningSampleSourceWorker.stripeBatches(batches, 0, 1).toSeq shouldEqual batches
+  }
+
+  it should "partition the batches into disjoint stripes that cover every batch" in {
+    for (stripes <- Seq(2, 3, 4, batches.size, batches.size + 3)) {
+      val shares = (0 until stripes).map(ScanningSampleSourceWorker.stripeBatches(batches, _, stripes).toSeq)
+      shares.flatten.size shouldEqual batches.size
+      shares.flatten.toSet shouldEqual batches.toSet
+      // stripes differ by at most one batch
+      (shares.map(_.size).max - shares.map(_.size).min) should be <= 1
+    }
+  }
+
+  it should "keep the batches of a stripe in their original order" in {
+    for (stripes <- Seq(2, 3, 5); stripe <- 0 until stripes) {
+      val share = ScanningSampleSourceWorker.stripeBatches(batches, stripe, stripes).toSeq
+      share shouldEqual share.sortBy(batches.indexOf(_))
+      share shouldEqual batches.indices.filter(_ % stripes == stripe).map(batches)
+    }
+  }
+
+  it should "pick the same batches every time for the same stripe" in {
+    ScanningSampleSourceWorker.stripeBatches(batches, 1, 3).toSeq shouldEqual
+      ScanningSampleSourceWorker.stripeBatches(batches, 1, 3).toSeq
+  }
+
+}
@@ -62,4 +62,40 @@ package object configuration extends VitalsLogger with VitalsPropertyRegistry {
     default = Some(5 minutes)
   )
 
+  /////////////////////////////////////////////
+  // Striped slice loads
+  /////////////////////////////////////////////
+  val burstSampleStoreLoadStripesProperty: VitalsPropertySpecification[Int] = VitalsPropertySpecification[Int](
+    key = "burst.samplestore.load.stripes",
+    description = "the number of parallel nexus sub-streams (each on its own pooled connection) a slice is loaded over from each locus",
+    default = Some(1)
+  )
+
+  /////////////////////////////////////////////
+  // Peer slice transfer
+  /////////////////////////////////////////////
+  val burstSampleStorePeerTransferEnableProperty: VitalsPropertySpecification[Boolean] = VitalsPropertySpecification[Boolean](
+    key = "burst.samplestore.peer.transfer.enable",
+    description = "ship a slice that moves to a new worker from the worker that still holds it instead of reloading it from the sample source",
+    default = Some(false)
+  )
+
+  val burstSampleStorePeerPortProperty: VitalsPropertySpecification[VitalsHostPort] = VitalsPropertySpecification[VitalsHostPort](
+    key = "burst.samplestore.peer.port",
+    description = "port for the worker nexus server that ships slices to peer workers",
+    default = Some(1271)
+  )
+
+  val burstSampleStorePeerParcelSizeProperty: VitalsPropertySpecification[Int] = VitalsPropertySpecification[Int](
+    key = "burst.samplestore.peer.parcel.size",
+    description = "target size of the parcels a slice is shipped to a peer worker in",
+    default = Some(10e6.toInt)
+  )
+
+  val burstSampleStorePeerPlacementsMaxProperty: VitalsPropertySpecification[Int] = VitalsPropertySpecification[Int](
+    key = "burst.samplestore.peer.placements.max",
+    description = "the max number of (domain, view) slice placements the supervisor remembers to find peers in (least recently used are dropped)",
+    default = Some(1000)
+  )
+
 }
@@ -6,28 +6,74 @@ import org.burstsys.tesla.TeslaTypes.{TeslaMemoryPtr, TeslaMemorySize}
 import org.burstsys.tesla.block.{TeslaBlock, TeslaBlockAnyVal, TeslaBlockReporter}
 import org.burstsys.tesla.{block, offheap}
 import org.burstsys.tesla.part.TeslaPartPool
+import org.burstsys.tesla.part.factory.TeslaMemoryBudget
 import org.burstsys.tesla.pool.TeslaPoolId
 import org.burstsys.vitals.logging.burstStdMsg
 
+import java.util.concurrent.ConcurrentSkipListMap
+import java.util.concurrent.atomic.{AtomicInteger, AtomicLong, LongAdder}
 import scala.language.postfixOps
 
 /**
  * A block pool is a single allocation of a large number of contiguous fixed size blocks.
- * It is meant to be used by a single thread. These are allocated in page size quantums
+ * It is meant to be used by a single thread. These are allocated in page size quantums.
+ * <p/>
+ * When [[TeslaBlockSizes.slabsEnabled]] and the block size fits at least four times into
+ * [[TeslaBlockSizes.slabSize]], new blocks are carved out of a slab allocation. A slab can only
+ * be freed as a whole, so blocks freed by the tender are ''stranded'' until all the blocks of their slab are freed.
  */
 final case class TeslaBlockPool(poolId: TeslaPoolId, partByteSize: TeslaMemorySize)
   extends TeslaPartPool[java.lang.Long] with TeslaBlockShop {
 
   override val partQueueSize: Int = 5e5.toInt // 5e5
 
+  ///////////////////////////////////////////////////////////////////////////////
+  // STATE
+  ///////////////////////////////////////////////////////////////////////////////
+
+  /**
+   * the number of blocks carved out of each slab (1 means blocks are allocated individually)
+   */
+  private[this] val _blocksPerSlab: Int =
+    if (TeslaBlockSizes.slabsEnabled && partByteSize <= TeslaBlockSizes.slabSize / 4)
+      TeslaBlockSizes.slabSize / partByteSize
+    else 1
+
+  private[this] val _slabByteSize: Long = _blocksPerSlab.toLong * partByteSize
+
+  /**
+   * live slabs by base address - the count is the number of blocks of the slab not yet freed
+   */
+  private[this] lazy val _slabs = new ConcurrentSkipListMap[java.lang.Long, AtomicInteger]
+
+  private[this] val _strandedBlocks = new AtomicLong
+
+  private[this] val _requestedBytes = new LongAdder
+
+  private[this] val _grants = new LongAdder
+
+  ///////////////////////////////////////////////////////////////////////////////
+  // API
+  ///////////////////////////////////////////////////////////////////////////////
+
+  override def partsRequestedBytes: Long = _requestedBytes.sum
+
+  override def partsGrantedBytes: Long = _grants.sum * partByteSize
+
+  override def partsStrandedBytes: Long = _strandedBlocks.get * partByteSize
+
   @inline override
   def grabBlock(byteSize: TeslaMemorySize): TeslaBlock = {
     markPartGrabbed()
     val part = partQueue poll match {
       case null =>
-        incrementPartsAllocated()
-        TeslaBlockReporter.alloc(partByteSize)
-        val blck = TeslaBlockAnyVal(offheap.allocateMemory(partByteSize)).initialize(partByteSize, poolId)
+        TeslaMemoryBudget.checkGrowth(_slabByteSize)
+        val blck = if (_blocksPerSlab > 1) carveSlab() else {
+          incrementPartsAllocated()
+          TeslaBlockReporter.alloc(partByteSize)
+          TeslaMemoryBudget.recordAllocation(partByteSize)
+          TeslaBlockAnyVal(offheap.allocateMemory(partByteSize)).initialize(partByteSize, poolId)
+        }
         if (block.log.isTraceEnabled) {
           block.log trace burstStdMsg(s"allocated new buffer=${blck.blockBasePtr} inuse=$partsInUse allocated=$partsAllocated")
         }
@@ -40,6 +86,8 @@ final case class TeslaBlockPool(poolId: TeslaPoolId, partByteSize: TeslaMemorySi
         blck
     }
     incrementPartsInUse()
+    _requestedBytes add byteSize
+    _grants.increment()
     TeslaBlockReporter.grab()
     part
   }
@@ -55,13 +103,54 @@ final case class TeslaBlockPool(poolId: TeslaPoolId, partByteSize: TeslaMemorySi
   }
 
   @inline override
-  def freePart(part: lang.Long): Long  = {
+  def freePart(part: lang.Long): Long = {
     if (block.log.isTraceEnabled) {
       block.log trace burstStdMsg(s"freeing buffer=$part inuse=$partsInUse allocated=$partsAllocated")
     }
-    offheap.freeMemory(part)
-    TeslaBlockReporter.free(partByteSize)
-    partByteSize
+    if (_blocksPerSlab == 1) {
+      offheap.freeMemory(part)
+      TeslaBlockReporter.free(partByteSize)
+      TeslaMemoryBudget.recordFree(partByteSize)
+      partByteSize
+    } else {
+      val slab = _slabs.floorEntry(part)
+      if (slab.getValue.decrementAndGet > 0) {
+        _strandedBlocks.incrementAndGet()
+        0
+      } else {
+        // the last block of the slab - release the whole slab
+        _slabs.remove(slab.getKey)
+        _strandedBlocks.addAndGet(1 - _blocksPerSlab)
+        offheap.freeMemory(slab.getKey)
+        TeslaBlockReporter.free(_slabByteSize)
+        TeslaMemoryBudget.recordFree(_slabByteSize)
+        _slabByteSize
+      }
+    }
+  }
+
+  ///////////////////////////////////////////////////////////////////////////////
+  // internals
+  ///////////////////////////////////////////////////////////////////////////////
+
+  /**
+   * allocate a new slab, put all but the first of its blocks into the part queue and return the first
+   */
+  private
+  def carveSlab(): TeslaBlock = {
+    val slabPtr: TeslaMemoryPtr = offheap.allocateMemory(_slabByteSize)
+    TeslaBlockReporter.alloc(_slabByteSize)
+    TeslaMemoryBudget.recordAllocation(_slabByteSize)
+    _slabs.put(slabPtr, new AtomicInteger(_blocksPerSlab))
+    var i = 1
+    while (i < _blocksPerSlab) {
+      incrementPartsAllocated()
+      val blck = TeslaBlockAnyVal(slabPtr + i.toLong * partByteSize).initialize(partByteSize, poolId)
+      partQueue add blck.blockBasePtr
+      i += 1
+    }
+    incrementPartsAllocated()
+    TeslaBlockAnyVal(slabPtr).initialize(partByteSize, poolId)
   }
 
 }
@@ -2,7 +2,7 @@
 package org.burstsys.tesla.block.factory
 
 import org.burstsys.tesla.TeslaTypes.TeslaMemorySize
-import org.burstsys.tesla.{block, offheap}
+import org.burstsys.tesla.{block, configuration, offheap}
 import org.burstsys.tesla.block._
 import org.burstsys.vitals
 import org.burstsys.vitals.logging.burstStdMsg
@@ -16,21 +16,50 @@ object TeslaBlockSizes {
 
   final val pageSize: TeslaMemorySize = offheap.pageSize
 
+  /**
+   * are block sizes quarter power of two size classes with the smaller ones carved out of slabs
+   */
+  final lazy val slabsEnabled: Boolean = configuration.teslaBlockSlabsEnableProperty.get
+
+  /**
+   * the size of a slab when [[slabsEnabled]]
+   */
+  final lazy val slabSize: TeslaMemorySize = configuration.teslaBlockSlabSizeProperty.get
+
   /**
    * we preallocate all these sizes for each thread
    * make sure we don't overflow
    * TODO make this just an array of page quanta and build the other structures at init time.
    */
   val blockSizes: Array[TeslaMemorySize] = {
-    block.log info s"calculating block size options:"
-    (for (i <- 0 to 16) yield {
-      Math.exp(i).toLong*pageSize
-    }).filter(_ < Int.MaxValue).map{s =>
-      block.log info s"block size: $s (${ vitals.reporter.instrument.prettyByteSizeString(s)})"
+    block.log info s"calculating block size options: (slabsEnabled=$slabsEnabled)"
+    (if (slabsEnabled) quarterPowerOfTwoSizes else exponentialSizes).map { s =>
+      block.log info s"block size: $s (${vitals.reporter.instrument.prettyByteSizeString(s)})"
       s.toInt
     }.toArray
   }
 
+  /**
+   * the original size classes: e^i pages
+   */
+  private
+  def exponentialSizes: Seq[Long] = (for (i <- 0 to 16) yield {
+    Math.exp(i).toLong * pageSize
+  }).filter(_ < Int.MaxValue)
+
+  /**
+   * size classes of 1, 1.25, 1.5 and 1.75 times each power of two pages (rounded up to whole pages) so
+   * no request is rounded up by more than 25% (beyond the first few pages)
+   */
+  private
+  def quarterPowerOfTwoSizes: Seq[Long] = (for {
+    p <- 0 to 30
+    q <- 4 to 7
+  } yield {
+    val pages = ((1L << p) * q + 3) / 4
+    pages * pageSize
+  }).filter(_ < Int.MaxValue).distinct
+
   @inline final
   def findBlockSize(byteSize: TeslaMemorySize): TeslaMemorySize = blockSize(byteSize)
 
@@ -48,13 +77,14 @@ object TeslaBlockSizes {
     // here we allow for the size of the memory block header
     val size = {
       val desired = byteSize + SizeofBlockHeader
-      var chosen = 0
-      var i = 0
-      while (chosen == 0 && i < blockSizes.length) {
-        if (desired < blockSizes(i))
-          chosen = blockSizes(i)
-        i += 1
+      // binary search for the first (smallest) size larger than desired - there are a lot more sizes in slab mode
+      var lo = 0
+      var hi = blockSizes.length
+      while (lo < hi) {
+        val mid = (lo + hi) >>> 1
+        if (desired < blockSizes(mid)) hi = mid else lo = mid + 1
       }
+      val chosen = if (lo < blockSizes.length) blockSizes(lo) else 0
       if (chosen == 0) {
         throw new RuntimeException(s"TESLA_BAD_BLOCK_SIZE_REQUEST: request for unsupported block size: $byteSize (${ vitals.reporter.instrument.prettyByteSizeString(byteSize)})")
       }
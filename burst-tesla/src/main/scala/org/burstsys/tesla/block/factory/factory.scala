@@ -21,7 +21,7 @@ package object factory extends TeslaPartFactory[java.lang.Long, TeslaBlockPool]
   @inline final override
   def grabBlock(byteSize: TeslaMemoryOffset): TeslaBlock = {
     val bs = TeslaBlockSizes findBlockSize byteSize
-    perThreadPartPool(bs) grabBlock bs
+    perThreadPartPool(bs) grabBlock byteSize
   }
 
   @inline final override
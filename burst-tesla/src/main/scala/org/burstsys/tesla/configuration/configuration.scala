@@ -35,6 +35,18 @@ package object configuration extends VitalsPropertyRegistry {
     default = Some(5000)
   )
 
+  /**
+   * run request threads as JDK virtual threads. Request threads spend nearly all their time waiting (futures,
+   * queues, network) so virtual threads avoid a platform thread (and stack) per waiting request and are not
+   * capped by [[burstTeslaMaxRequestThreadCountProperty]]. Requires a JVM with virtual threads (21+), otherwise
+   * the pool falls back to platform threads. Worker threads are always platform threads.
+   */
+  val burstTeslaRequestVirtualThreadsProperty: VitalsPropertySpecification[Boolean] = VitalsPropertySpecification[Boolean](
+    key = "burst.tesla.request.virtual.threads",
+    description = "use virtual threads for the shared tesla request pool",
+    default = Some(false)
+  )
+
   /////////////////////////////////////////////////////////////////////////////////////////////////////
   // WORKER THREADS
   /////////////////////////////////////////////////////////////////////////////////////////////////////
@@ -57,6 +69,27 @@ package object configuration extends VitalsPropertyRegistry {
     default = Some(getRuntime.availableProcessors)
   )
 
+  /**
+   * split the tesla worker pool into one pool per NUMA node and place work on the node its data lives on.
+   * Only takes effect on linux hosts with more than one NUMA node.
+   */
+  val burstTeslaWorkerNumaEnableProperty: VitalsPropertySpecification[Boolean] = VitalsPropertySpecification[Boolean](
+    key = "burst.tesla.worker.numa.enable",
+    description = "split tesla worker threads into per NUMA node pools",
+    default = Some(false)
+  )
+
+  /**
+   * in NUMA mode also pin the threads of each node's pool to the cpus of that node. Part pools are per worker thread,
+   * so part memory is first touched, and therefore lives, on the node it is used on. Pinning forks `taskset`
+   * once per worker thread as it starts. If that fails no further threads are pinned.
+   */
+  val burstTeslaWorkerNumaPinProperty: VitalsPropertySpecification[Boolean] = VitalsPropertySpecification[Boolean](
+    key = "burst.tesla.worker.numa.pin",
+    description = "pin NUMA node tesla worker threads to the cpus of their node (with taskset)",
+    default = Some(false)
+  )
+
   /////////////////////////////////////////////////////////////////////////////////////////////////////
   // WORKER PART MEMORY
   /////////////////////////////////////////////////////////////////////////////////////////////////////
@@ -89,6 +122,84 @@ package object configuration extends VitalsPropertyRegistry {
    */
   def teslaPartsTtlInterval: Duration = Duration(teslaPartsTtlProperty.get, TimeUnit.SECONDS)
 
+  /**
+   * the max number of recently released parts each worker thread keeps privately per part pool
+   * (in front of the shared pool queue) - zero disables the magazines
+   */
+  val teslaPartsMagazineSizeProperty: VitalsPropertySpecification[Int] = VitalsPropertySpecification[Int](
+    key = "burst.tesla.parts.magazine.size",
+    description = "the max number of parts in a per thread part pool magazine",
+    default = Some(32)
+  )
+
+  /**
+   * the global budget for off heap part memory (across all part factories) as a fraction of physical
+   * memory. Query reservations that do not fit are delayed. Zero or less disables the budget.
+   */
+  val teslaMemoryBudgetPercentProperty: VitalsPropertySpecification[Double] = VitalsPropertySpecification[Double](
+    key = "burst.tesla.memory.budget.percent",
+    description = "the fraction of physical memory that tesla part memory can be reserved against",
+    default = Some(0.0)
+  )
+
+  /**
+   * the max bytes of idle parcels kept by the shared parcel arena (used for network decode on non worker
+   * threads). Parcels released beyond this are freed.
+   */
+  val teslaParcelArenaMaxIdleBytesProperty: VitalsPropertySpecification[Long] = VitalsPropertySpecification[Long](
+    key = "burst.tesla.parcel.arena.idle.bytes",
+    description = "the max bytes of idle parcels in the shared parcel arena",
+    default = Some(64e6.toLong)
+  )
+
+  /////////////////////////////////////////////////////////////////////////////////////////////////////
+  // PARCEL CODECS
+  /////////////////////////////////////////////////////////////////////////////////////////////////////
+
+  /**
+   * the codec parcels (and compacted regions) are deflated with: `snappy`, `lz4`, `zstd` or `none`. Nexus streams
+   * negotiate their codec - the client sends its accepted codecs with this one first.
+   */
+  val teslaParcelCodecProperty: VitalsPropertySpecification[String] = VitalsPropertySpecification[String](
+    key = "burst.tesla.parcel.codec",
+    description = "the codec used to deflate parcels (snappy, lz4, zstd or none)",
+    default = Some("snappy")
+  )
+
+  /**
+   * the zstd compression level when deflating with the `zstd` codec
+   */
+  val teslaParcelCodecZstdLevelProperty: VitalsPropertySpecification[Int] = VitalsPropertySpecification[Int](
+    key = "burst.tesla.parcel.codec.zstd.level",
+    description = "the zstd compression level for parcels",
+    default = Some(3)
+  )
+
+  /////////////////////////////////////////////////////////////////////////////////////////////////////
+  // BLOCK SIZES
+  /////////////////////////////////////////////////////////////////////////////////////////////////////
+
+  /**
+   * by default block sizes grow exponentially (e^i pages) so a request can be rounded up by as much as
+   * a factor of e. In slab mode block sizes are quarter power of two page quanta (at most 25% rounding) and the
+   * smaller sizes are carved out of larger slab allocations. This is read once when the block sizes are
+   * first calculated.
+   */
+  val teslaBlockSlabsEnableProperty: VitalsPropertySpecification[Boolean] = VitalsPropertySpecification[Boolean](
+    key = "burst.tesla.block.slabs.enable",
+    description = "use quarter power of two block size classes with slab carving",
+    default = Some(false)
+  )
+
+  /**
+   * in slab mode, block sizes that fit at least four times into this size are carved out of slabs of this size
+   */
+  val teslaBlockSlabSizeProperty: VitalsPropertySpecification[Int] = VitalsPropertySpecification[Int](
+    key = "burst.tesla.block.slab.size",
+    description = "the size of a slab that smaller blocks are carved out of",
+    default = Some(2e6.toInt)
+  )
+
   /////////////////////////////////////////////////////////////////////////////////////////////////////
   // SCATTERS
   /////////////////////////////////////////////////////////////////////////////////////////////////////
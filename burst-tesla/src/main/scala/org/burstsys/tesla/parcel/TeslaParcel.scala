@@ -7,6 +7,7 @@ import org.burstsys.tesla.TeslaTypes._
 import org.burstsys.tesla.block.TeslaBlockPart
 import org.burstsys.tesla.buffer.TeslaBuffer
 import org.burstsys.tesla.buffer.mutable.TeslaMutableBuffer
+import org.burstsys.tesla.parcel.codec.TeslaParcelCodec
 import org.burstsys.tesla.parcel.internal.{TeslaParcelBulk, TeslaParcelDeflator, TeslaParcelInflator, TeslaParcelReader, TeslaParcelWriter}
 import org.burstsys.tesla.parcel.state.TeslaParcelState
 import org.burstsys.tesla.part.TeslaPart
@@ -110,6 +111,13 @@ trait TeslaParcel extends Any with TeslaBlockPart with  TeslaParcelStatusMarker
     */
   def nextSlotOffset: TeslaMemoryOffset
 
+  /**
+    * the id of the [[TeslaParcelCodec]] the contents are (or were) deflated with
+    *
+    * @return
+    */
+  def codecId: Int
+
   //////////////////////////////////////////////////////////////////////////////////////////
   // lifecycle
   //////////////////////////////////////////////////////////////////////////////////////////
@@ -150,12 +158,12 @@ trait TeslaParcel extends Any with TeslaBlockPart with  TeslaParcelStatusMarker
 
   /**
     * compress this parcel into a given native memory location.
-    * The size of the copy is not known a priori - it will be less than the inflated size.
+    * The size of the copy is not known a priori - it will be at most `codec.maxDeflatedSize` of the inflated size.
     * no allocation or deallocation is performed in this routine
     *
     * @return
     */
-  def deflateTo(destination: TeslaMemoryPtr): Long
+  def deflateTo(destination: TeslaMemoryPtr, codec: TeslaParcelCodec = TeslaParcelCodec.defaultCodec): Long
 
   /**
     * uncompress a source parcel into this parcel. This parcel must have enough
@@ -165,7 +173,7 @@ trait TeslaParcel extends Any with TeslaBlockPart with  TeslaParcelStatusMarker
     *
     * @return
     */
-  def deflateFrom(destination: TeslaParcel): Unit
+  def deflateFrom(destination: TeslaParcel, codec: TeslaParcelCodec = TeslaParcelCodec.defaultCodec): Unit
 
   //////////////////////////////////////////////////////////////////////////////////////////
   // reading
@@ -229,7 +237,13 @@ trait TeslaParcel extends Any with TeslaBlockPart with  TeslaParcelStatusMarker
   /**
     * load a deflated bytes from a memory pointer
     */
-  def fromDeflatedMemoryPtr(number: Int, inflatedSize: TeslaMemorySize, deflatedSizr: TeslaMemorySize, source: TeslaMemoryPtr): Unit
+  def fromDeflatedMemoryPtr(number: Int, inflatedSize: TeslaMemorySize, deflatedSizr: TeslaMemorySize, source: TeslaMemoryPtr,
+                            codecId: Int = TeslaParcelCodec.legacyCodec.codecId): Unit
+
+  /**
+    * load inflated buffer slots (a run of `[size][bytes]` slots) from a memory pointer
+    */
+  def fromInflatedMemoryPtr(number: Int, inflatedSize: TeslaMemorySize, source: TeslaMemoryPtr): Unit
 
   /**
     * get the data in this wrapped in a direct byte buffer
@@ -0,0 +1,198 @@
+/* Copyright Yahoo, Licensed under the terms of the Apache 2.0 license. See LICENSE file in project root for terms. */
+package org.burstsys.tesla.parcel.codec
+
+import com.github.luben.zstd.Zstd
+import net.jpountz.lz4.LZ4Factory
+import org.burstsys.tesla.TeslaTypes.{TeslaMemoryPtr, TeslaMemorySize}
+import org.burstsys.tesla.{configuration, offheap}
+import org.burstsys.vitals.errors.VitalsException
+import org.xerial.snappy.Snappy
+
+/**
+ * A compression codec for the contents of a [[org.burstsys.tesla.parcel.TeslaParcel]] (or any native memory run).
+ * Codecs work native memory to native memory with no native allocation (snappy, zstd and none also make no
+ * heap allocations - lz4 wraps the memory in two short lived nio buffers per call). The codec used to deflate a run is
+ * identified by its `codecId` which is recorded alongside the deflated data (parcel header, nexus parcel message,
+ * compacted region file) so it can be inflated by the right codec.
+ */
+trait TeslaParcelCodec {
+
+  /**
+   * the persistent/wire id of this codec
+   */
+  def codecId: Int
+
+  /**
+   * the name of this codec used in configuration and stream negotiation
+   */
+  def codecName: String
+
+  /**
+   * the max size of the deflated form of `inflatedSize` bytes
+   */
+  def maxDeflatedSize(inflatedSize: TeslaMemorySize): TeslaMemorySize
+
+  /**
+   * deflate `size` bytes at `source` into `destination` which must have room for [[maxDeflatedSize]] bytes
+   *
+   * @return the deflated size
+   */
+  def deflate(source: TeslaMemoryPtr, size: TeslaMemorySize, destination: TeslaMemoryPtr): TeslaMemorySize
+
+  /**
+   * inflate `deflatedSize` bytes at `source` into `destination` which must have room for `inflatedSize` bytes
+   *
+   * @return the inflated size
+   */
+  def inflate(source: TeslaMemoryPtr, deflatedSize: TeslaMemorySize, destination: TeslaMemoryPtr, inflatedSize: TeslaMemorySize): TeslaMemorySize
+
+  final override def toString: String = s"TeslaParcelCodec($codecName)"
+
+}
+
+object TeslaParcelCodec {
+
+  /**
+   * the codecs in codec id order
+   */
+  final val codecs: Array[TeslaParcelCodec] = Array(TeslaSnappyCodec, TeslaLz4Codec, TeslaZstdCodec, TeslaNoCodec)
+
+  /**
+   * the codec for parcels and regions written before codecs were recorded
+   */
+  final val legacyCodec: TeslaParcelCodec = TeslaSnappyCodec
+
+  /**
+   * the configured codec for deflating parcels
+   */
+  final def defaultCodec: TeslaParcelCodec = byName(configuration.teslaParcelCodecProperty.get)
+
+  @inline final
+  def byId(codecId: Int): TeslaParcelCodec = {
+    if (codecId < 0 || codecId >= codecs.length)
+      throw VitalsException(s"TESLA_PARCEL_CODEC_UNKNOWN codecId=$codecId")
+    codecs(codecId)
+  }
+
+  final
+  def byName(codecName: String): TeslaParcelCodec = codecs.find(_.codecName equalsIgnoreCase codecName.trim).getOrElse {
+    throw VitalsException(s"TESLA_PARCEL_CODEC_UNKNOWN codecName=$codecName (one of ${codecs.map(_.codecName).mkString(",")})")
+  }
+
+  /**
+   * the codec names this side accepts in preference order (the configured codec first)
+   */
+  final def acceptedCodecNames: Array[String] =
+    (defaultCodec +: codecs.filter(_ ne defaultCodec)).map(_.codecName)
+
+  /**
+   * pick the first codec in the peer's preference order that this side supports
+   * (the legacy codec if there are none - i.e. the peer predates codec negotiation)
+   */
+  final
+  def negotiate(peerCodecNames: Array[String]): TeslaParcelCodec =
+    peerCodecNames.iterator.flatMap(n => codecs.find(_.codecName equalsIgnoreCase n)).nextOption().getOrElse(legacyCodec)
+
+}
+
+/**
+ * snappy - the original parcel codec
+ */
+object TeslaSnappyCodec extends TeslaParcelCodec {
+
+  override val codecId: Int = 0
+
+  override val codecName: String = "snappy"
+
+  override def maxDeflatedSize(inflatedSize: TeslaMemorySize): TeslaMemorySize = Snappy.maxCompressedLength(inflatedSize)
+
+  override def deflate(source: TeslaMemoryPtr, size: TeslaMemorySize, destination: TeslaMemoryPtr): TeslaMemorySize =
+    Snappy.rawCompress(source, size, destination).toInt
+
+  override def inflate(source: TeslaMemoryPtr, deflatedSize: TeslaMemorySize, destination: TeslaMemoryPtr, inflatedSize: TeslaMemorySize): TeslaMemorySize =
+    Snappy.rawUncompress(source, deflatedSize, destination).toInt
+
+}
+
+/**
+ * LZ4 fast - cheaper than snappy on CPU for fast links. lz4-java has no native memory address API so each call
+ * wraps the source and destination in (non owning) direct nio buffers.
+ */
+object TeslaLz4Codec extends TeslaParcelCodec {
+
+  override val codecId: Int = 1
+
+  override val codecName: String = "lz4"
+
+  private lazy val factory = LZ4Factory.fastestInstance()
+
+  private lazy val compressor = factory.fastCompressor()
+
+  private lazy val decompressor = factory.safeDecompressor()
+
+  override def maxDeflatedSize(inflatedSize: TeslaMemorySize): TeslaMemorySize = compressor.maxCompressedLength(inflatedSize)
+
+  override def deflate(source: TeslaMemoryPtr, size: TeslaMemorySize, destination: TeslaMemoryPtr): TeslaMemorySize = {
+    val maxSize = maxDeflatedSize(size)
+    compressor.compress(offheap.directBuffer(source, size), 0, size, offheap.directBuffer(destination, maxSize), 0, maxSize)
+  }
+
+  override def inflate(source: TeslaMemoryPtr, deflatedSize: TeslaMemorySize, destination: TeslaMemoryPtr, inflatedSize: TeslaMemorySize): TeslaMemorySize =
+    decompressor.decompress(
+      offheap.directBuffer(source, deflatedSize), 0, deflatedSize, offheap.directBuffer(destination, inflatedSize), 0, inflatedSize
+    )
+
+}
+
+/**
+ * zstd at the configured level - the best ratio for slow (e.g. cross rack) links
+ */
+object TeslaZstdCodec extends TeslaParcelCodec {
+
+  override val codecId: Int = 2
+
+  override val codecName: String = "zstd"
+
+  override def maxDeflatedSize(inflatedSize: TeslaMemorySize): TeslaMemorySize = Zstd.compressBound(inflatedSize).toInt
+
+  override def deflate(source: TeslaMemoryPtr, size: TeslaMemorySize, destination: TeslaMemoryPtr): TeslaMemorySize = {
+    val maxSize = maxDeflatedSize(size)
+    val result: Long = Zstd.compressUnsafe(destination, maxSize, source, size, configuration.teslaParcelCodecZstdLevelProperty.get)
+    if (Zstd.isError(result))
+      throw VitalsException(s"TESLA_PARCEL_ZSTD_DEFLATE_FAIL ${Zstd.getErrorName(result)}")
+    result.toInt
+  }
+
+  override def inflate(source: TeslaMemoryPtr, deflatedSize: TeslaMemorySize, destination: TeslaMemoryPtr, inflatedSize: TeslaMemorySize): TeslaMemorySize = {
+    val result: Long = Zstd.decompressUnsafe(destination, inflatedSize, source, deflatedSize)
+    if (Zstd.isError(result))
+      throw VitalsException(s"TESLA_PARCEL_ZSTD_INFLATE_FAIL ${Zstd.getErrorName(result)}")
+    result.toInt
+  }
+
+}
+
+/**
+ * no compression - a straight copy for links where any compression costs more than it saves
+ */
+object TeslaNoCodec extends TeslaParcelCodec {
+
+  override val codecId: Int = 3
+
+  override val codecName: String = "none"
+
+  override def maxDeflatedSize(inflatedSize: TeslaMemorySize): TeslaMemorySize = inflatedSize
+
+  override def deflate(source: TeslaMemoryPtr, size: TeslaMemorySize, destination: TeslaMemoryPtr): TeslaMemorySize = {
+    offheap.copyMemory(source, destination, size)
+    size
+  }
+
+  override def inflate(source: TeslaMemoryPtr, deflatedSize: TeslaMemorySize, destination: TeslaMemoryPtr, inflatedSize: TeslaMemorySize): TeslaMemorySize = {
+    if (deflatedSize > inflatedSize)
+      throw VitalsException(s"TESLA_PARCEL_NO_CODEC_OVERFLOW deflatedSize=$deflatedSize inflatedSize=$inflatedSize")
+    offheap.copyMemory(source, destination, deflatedSize)
+    deflatedSize
+  }
+
+}
@@ -0,0 +1,151 @@
+/* Copyright Yahoo, Licensed under the terms of the Apache 2.0 license. See LICENSE file in project root for terms. */
+package org.burstsys.tesla.parcel.factory
+
+import org.burstsys.tesla.TeslaTypes.{TeslaMemoryPtr, TeslaMemorySize}
+import org.burstsys.tesla.block.TeslaBlockAnyVal
+import org.burstsys.tesla.block.factory.TeslaBlockSizes
+import org.burstsys.tesla.parcel.{TeslaParcel, TeslaParcelAnyVal}
+import org.burstsys.tesla.part.maxPoolsPerPart
+import org.burstsys.tesla.pool.TeslaPoolId
+import org.burstsys.tesla.{configuration, offheap, parcel}
+import org.burstsys.vitals.errors.VitalsException
+import org.burstsys.vitals.logging.burstStdMsg
+import org.burstsys.vitals.reporter.VitalsByteQuantReporter
+import org.jctools.queues.MpmcArrayQueue
+
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * A shared parcel arena for threads that are not tesla worker threads (i.e. Netty event loops decoding
+ * parcels off the wire). The per thread part pools can only be entered from worker threads, and blocking an event
+ * loop on a worker pool hop for every parcel throttles the network. Arena parcels are pooled in lock free
+ * per block size queues that any thread can grab from and release to, and are accounted for separately from the
+ * worker part pools (they are not in the block pools and do not count against the memory budget).
+ * <p/>
+ * Arena parcels carry a pool id above the range of the part pool ids so that
+ * [[org.burstsys.tesla.parcel.factory.releaseParcel]] can route them back here.
+ */
+object TeslaParcelArena {
+
+  object TeslaParcelArenaReporter extends VitalsByteQuantReporter("tesla", "parcel-arena")
+
+  /**
+   * parcel pool ids at or above this are arena parcels
+   */
+  final val arenaPoolIdBase: TeslaPoolId = maxPoolsPerPart
+
+  private final val arenaQueueSize: Int = 1e4.toInt
+
+  ///////////////////////////////////////////////////////////////////////////////
+  // STATE
+  ///////////////////////////////////////////////////////////////////////////////
+
+  private[this] lazy
+  val _blockSizes: Array[TeslaMemorySize] = TeslaBlockSizes.blockSizes
+
+  private[this] lazy
+  val _idleParcels: Array[MpmcArrayQueue[java.lang.Long]] = Array.fill(_blockSizes.length)(new MpmcArrayQueue[java.lang.Long](arenaQueueSize))
+
+  private[this]
+  val _allocatedBytes = new AtomicLong
+
+  private[this]
+  val _idleBytes = new AtomicLong
+
+  ///////////////////////////////////////////////////////////////////////////////
+  // API
+  ///////////////////////////////////////////////////////////////////////////////
+
+  /**
+   * the off heap bytes currently allocated by the arena (in use and idle)
+   */
+  final def allocatedBytes: Long = _allocatedBytes.get
+
+  /**
+   * the off heap bytes of idle parcels held by the arena
+   */
+  final def idleBytes: Long = _idleBytes.get
+
+  /**
+   * is this parcel from the arena
+   */
+  @inline final
+  def isArenaParcel(parcel: TeslaParcel): Boolean = parcel.poolId >= arenaPoolIdBase
+
+  /**
+   * grab a parcel from any thread
+   *
+   * @param byteSize size of parcel needed
+   */
+  @inline final
+  def grabParcel(byteSize: TeslaMemorySize): TeslaParcel = {
+    val parcelByteSize = byteSize + TeslaParcelAnyVal(0).headerSize
+    val blockSize = TeslaBlockSizes findBlockSize parcelByteSize
+    val sizeClass = java.util.Arrays.binarySearch(_blockSizes, blockSize)
+    if (sizeClass < 0)
+      throw VitalsException(s"TESLA_PARCEL_ARENA_NO_SIZE byteSize=$byteSize blockSize=$blockSize")
+    val result = _idleParcels(sizeClass).poll match {
+      case null =>
+        val ptr: TeslaMemoryPtr = offheap.allocateMemory(blockSize)
+        _allocatedBytes.addAndGet(blockSize)
+        TeslaParcelArenaReporter.alloc(blockSize)
+        // the block header is only used for the data size - arena parcels are never released to the block factory
+        TeslaBlockAnyVal(ptr).initialize(blockSize, 0)
+        val p = TeslaParcelAnyVal(ptr)
+        p.initialize(arenaPoolIdBase + sizeClass)
+        if (parcel.log.isTraceEnabled)
+          parcel.log trace burstStdMsg(s"arena allocated new parcel=${p.basePtr} allocatedBytes=$allocatedBytes")
+        p
+      case ptr =>
+        _idleBytes.addAndGet(-blockSize)
+        TeslaParcelAnyVal(ptr).reset
+    }
+    TeslaParcelArenaReporter.grab()
+    result
+  }
+
+  /**
+   * release an arena parcel from any thread. Parcels beyond the arena idle limit are freed.
+   */
+  @inline final
+  def releaseParcel(p: TeslaParcel): Unit = {
+    val sizeClass = p.poolId - arenaPoolIdBase
+    if (sizeClass < 0 || sizeClass >= _blockSizes.length)
+      throw VitalsException(s"TESLA_PARCEL_ARENA_BAD_POOL poolId=${p.poolId} parcel=$p")
+    val blockSize = _blockSizes(sizeClass)
+    TeslaParcelArenaReporter.release()
+    // the idle bytes are reserved before the parcel is queued and given back after it is polled, so they
+    // never undercount the idle parcels and concurrent releases can't take the arena over the limit
+    if (reserveIdle(blockSize)) {
+      if (_idleParcels(sizeClass).offer(p.blockPtr))
+        return
+      _idleBytes.addAndGet(-blockSize)
+    }
+    offheap.freeMemory(p.blockPtr)
+    _allocatedBytes.addAndGet(-blockSize)
+    TeslaParcelArenaReporter.free(blockSize)
+  }
+
+  /**
+   * reserve idle bytes for a parcel if that keeps the arena within its idle limit
+   */
+  @inline private
+  def reserveIdle(blockSize: TeslaMemorySize): Boolean = {
+    val limit = configuration.teslaParcelArenaMaxIdleBytesProperty.get
+    var idle = _idleBytes.get
+    while (idle + blockSize <= limit) {
+      if (_idleBytes.compareAndSet(idle, idle + blockSize))
+        return true
+      idle = _idleBytes.get
+    }
+    false
+  }
+
+  /**
+   * the bytes of the parcels actually in the idle queues (for validation - not a consistent snapshot while
+   * other threads grab and release)
+   */
+  private[tesla]
+  def queuedIdleBytes: Long = _idleParcels.indices.map(i => _idleParcels(i).size.toLong * _blockSizes(i)).sum
+
+}
@@ -27,7 +27,10 @@ package object factory extends TeslaPartFactory[TeslaParcel, TeslaParcelPool] wi
   @inline final override
   def releaseParcel(parcel: TeslaParcel): Unit = {
     try {
-      poolByPoolId(parcel.poolId).releaseParcel(parcel)
+      if (TeslaParcelArena.isArenaParcel(parcel))
+        TeslaParcelArena.releaseParcel(parcel)
+      else
+        poolByPoolId(parcel.poolId).releaseParcel(parcel)
     } catch safely {
       case t: Throwable =>
         throw VitalsException(t)
@@ -7,6 +7,7 @@ import org.burstsys.tesla.parcel.TeslaParcel
 import org.burstsys.tesla.parcel.state.TeslaParcelState
 import org.burstsys.tesla.TeslaTypes
 import org.burstsys.tesla.offheap
+import org.burstsys.vitals.errors.VitalsException
 
 import java.nio.ByteBuffer
 
@@ -32,8 +33,9 @@ trait TeslaParcelBulk extends Any with TeslaParcel with TeslaParcelState {
   }
 
   @inline final override
-  def fromDeflatedMemoryPtr(number: Int, inflatedSize: TeslaMemorySize, deflatedSize: TeslaMemorySize, source: TeslaMemoryPtr): Unit = {
+  def fromDeflatedMemoryPtr(number: Int, inflatedSize: TeslaMemorySize, deflatedSize: TeslaMemorySize, source: TeslaMemoryPtr, codecId: Int): Unit = {
     this.bufferCount(number)
+    this.codecId(codecId)
     this.inflatedSize(inflatedSize)
     this.deflatedSize(deflatedSize)
     isInflated(false)
@@ -41,6 +43,18 @@ trait TeslaParcelBulk extends Any with TeslaParcel with TeslaParcelState {
     offheap.copyMemory(source, checkPtr(parcelStartPtr + bufferSlotsStart), deflatedSize)
   }
 
+  @inline final override
+  def fromInflatedMemoryPtr(number: Int, inflatedSize: TeslaMemorySize, source: TeslaMemoryPtr): Unit = {
+    if (inflatedSize > maxAvailableMemory)
+      throw VitalsException(s"size=$maxAvailableMemory is insufficient neededSize=$inflatedSize $this")
+    reset
+    this.bufferCount(number)
+    this.inflatedSize(inflatedSize)
+    currentUsedMemory(inflatedSize)
+    nextSlotOffset(bufferSlotsStart + inflatedSize)
+    offheap.copyMemory(source, checkPtr(parcelStartPtr + bufferSlotsStart), inflatedSize)
+  }
+
   @inline final override
   def asByteBuffer: ByteBuffer =
     offheap.directBuffer(bufferSlotsStartPtr, inflatedSize) order TeslaTypes.TeslaByteOrder
@@ -4,11 +4,11 @@ package org.burstsys.tesla.parcel.internal
 import org.burstsys.tesla.TeslaTypes.TeslaMemoryPtr
 import org.burstsys.tesla.parcel.state.TeslaParcelState
 import org.burstsys.tesla.parcel.TeslaParcel
+import org.burstsys.tesla.parcel.codec.TeslaParcelCodec
 import org.burstsys.tesla.part
 import org.burstsys.vitals.logging.burstStdMsg
 import org.burstsys.vitals.errors.VitalsException
 import org.burstsys.vitals.errors.safely
-import org.xerial.snappy.Snappy
 
 /**
   * compression
@@ -16,11 +16,11 @@ import org.xerial.snappy.Snappy
 trait TeslaParcelDeflator extends Any with TeslaParcel with TeslaParcelState {
 
   @inline final override
-  def deflateTo(destination: TeslaMemoryPtr): Long = {
+  def deflateTo(destination: TeslaMemoryPtr, codec: TeslaParcelCodec): Long = {
     if (!isInflated)
       throw VitalsException(s"already deflated $this")
     try {
-      val deflatedSize = Snappy.rawCompress(this.bufferSlotsStartPtr, this.currentUsedMemory, destination)
+      val deflatedSize = codec.deflate(this.bufferSlotsStartPtr, this.currentUsedMemory, destination)
       /*
       log info s"deflateTo() currentUsedMemory=$currentUsedMemory, deflatedSize=$deflatedSize $this" + '\n' +
         tesla.printBytes(destination, 100) + "\n<->\n" +
@@ -29,13 +29,13 @@ trait TeslaParcelDeflator extends Any with TeslaParcel with TeslaParcelState {
       deflatedSize
     } catch safely {
       case t: Throwable =>
-        part.log error(burstStdMsg(s"could not compress $this", t), t)
+        part.log error(burstStdMsg(s"could not compress $this with $codec", t), t)
         throw t
     }
   }
 
   @inline final override
-  def deflateFrom(source: TeslaParcel): Unit = {
+  def deflateFrom(source: TeslaParcel, codec: TeslaParcelCodec): Unit = {
     if (!source.isInflated)
       throw VitalsException(s"$this already deflated")
     if (this.maxAvailableMemory < source.inflatedSize)
@@ -47,7 +47,8 @@ trait TeslaParcelDeflator extends Any with TeslaParcel with TeslaParcelState {
     this.bufferCount(source.bufferCount)
     this.inflatedSize(source.inflatedSize)
     this.isInflated(false)
-    val dSize = source.deflateTo(this.bufferSlotsStartPtr)
+    this.codecId(codec.codecId)
+    val dSize = source.deflateTo(this.bufferSlotsStartPtr, codec)
     this.deflatedSize(dSize.toInt)
     this.currentUsedMemory(dSize.toInt)
   }
@@ -2,11 +2,11 @@
 package org.burstsys.tesla.parcel.internal
 
 import org.burstsys.tesla.TeslaTypes.TeslaMemoryPtr
+import org.burstsys.tesla.parcel.codec.TeslaParcelCodec
 import org.burstsys.tesla.parcel.state.TeslaParcelState
 import org.burstsys.tesla.parcel.{TeslaParcel, log}
 import org.burstsys.vitals.errors.{VitalsException, safely}
 import org.burstsys.vitals.logging.burstStdMsg
-import org.xerial.snappy.Snappy
 
 /**
  * decompression
@@ -24,7 +24,7 @@ trait TeslaParcelInflator extends Any with TeslaParcel with TeslaParcelState {
         tesla.printBytes(this.bufferSlotsStartPtr, 100) + "\n<->\n" +
         tesla.printBytes(this.bufferSlotsStartPtr+deflatedSize-50, 50) + '\n'
       */
-      val inflatedSize = Snappy.rawUncompress(this.bufferSlotsStartPtr, this.deflatedSize, destination)
+      val inflatedSize = TeslaParcelCodec.byId(codecId).inflate(this.bufferSlotsStartPtr, this.deflatedSize, destination, this.inflatedSize)
       inflatedSize
     } catch safely {
       case t: Throwable =>
@@ -5,6 +5,7 @@ import org.burstsys.tesla
 import org.burstsys.tesla.TeslaTypes.{TeslaMemoryOffset, TeslaMemoryPtr, TeslaMemorySize, _}
 import org.burstsys.tesla.block.{TeslaBlock, TeslaBlockAnyVal}
 import org.burstsys.tesla.parcel.TeslaParcel
+import org.burstsys.tesla.parcel.codec.TeslaParcelCodec
 import org.burstsys.tesla.pool.TeslaPoolId
 import org.burstsys.vitals.errors.VitalsException
 
@@ -12,7 +13,7 @@ import org.burstsys.vitals.errors.VitalsException
  * The off heap state associated with the parcel
  * {{{
  *   |-------------------|-------------|---------|
- *   |            PARCEL HEADER (28 bytes)       |
+ *   |            PARCEL HEADER (32 bytes)       |
  *   |-------------------|-------------|---------|
  *   |     field         |     type    | offset  |
  *   |-------------------|-------------|---------|
@@ -23,6 +24,7 @@ import org.burstsys.vitals.errors.VitalsException
  *   | deflatedSize      | 4 byte int  |   16    |
  *   | isInflated        | 4 byte int  |   20    |
  *   | nextSlotOffset    | 4 byte int  |   24    |
+ *   | codecId           | 4 byte int  |   28    |
  *   |-------------------|-------------|---------|
  *
  *
@@ -31,8 +33,8 @@ import org.burstsys.vitals.errors.VitalsException
  *   |-------------------|-------------|---------|
  *   |     field         |     type    | offset  |
  *   |-------------------|-------------|---------|
- *   | bufferSize        | 4 byte int  |   28    |
- *   | bufferContent     | array[byte] |   32    |
+ *   | bufferSize        | 4 byte int  |   32    |
+ *   | bufferContent     | array[byte] |   36    |
  *   |-------------------|-------------|---------|
  *
  *   ....... buffer slots 1 through n ............
@@ -209,11 +211,30 @@ trait TeslaParcelState extends Any with TeslaParcel {
     tesla.offheap.putInt(ptr, offset)
   }
 
+  //////////////////////////////////////////////////////////////////////////////////////////
+  // field 9 is the id of the codec the contents were deflated with
+  //////////////////////////////////////////////////////////////////////////////////////////
+
+  @inline private
+  def codecIdFieldStart: TeslaMemoryOffset = nextSlotFieldStart + SizeOfInteger
+
+  @inline final override
+  def codecId: Int = {
+    val ptr = checkPtr(parcelStartPtr + codecIdFieldStart)
+    tesla.offheap.getInt(ptr)
+  }
+
+  @inline final
+  def codecId(id: Int): Unit = {
+    val ptr = checkPtr(parcelStartPtr + codecIdFieldStart)
+    tesla.offheap.putInt(ptr, id)
+  }
+
   //////////////////////////////////////////////////////////////////////////////////////////
   // header/slot locations
   //////////////////////////////////////////////////////////////////////////////////////////
 
-  @inline final override def headerSize: TeslaMemoryOffset = nextSlotFieldStart + SizeOfInteger
+  @inline final override def headerSize: TeslaMemoryOffset = codecIdFieldStart + SizeOfInteger
 
   @inline final override def bufferSlotsStart: TeslaMemoryOffset = headerSize
 
@@ -237,6 +258,7 @@ trait TeslaParcelState extends Any with TeslaParcel {
     deflatedSize(0)
     isInflated(true)
     nextSlotOffset(bufferSlotsStart)
+    codecId(TeslaParcelCodec.legacyCodec.codecId)
     this
   }
 
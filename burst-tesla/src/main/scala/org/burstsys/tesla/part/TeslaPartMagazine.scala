@@ -0,0 +1,238 @@
+/* Copyright Yahoo, Licensed under the terms of the Apache 2.0 license. See LICENSE file in project root for terms. */
+package org.burstsys.tesla.part
+
+import org.jctools.queues.MpmcArrayQueue
+
+import java.util
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * A thread local ''magazine'' in front of the shared lock free queue of a [[TeslaPartPool]].
+ * Part pools are bound to a single (owner) worker thread for grabs, but parts can be
+ * returned from any thread. The owner thread pushes and pops parts on a small private LIFO stack
+ * (no atomics, and recently used parts are still hot in cache) and only goes to the shared queue in batches:
+ * refilling half the magazine when it is empty and draining half of it when it is full.
+ * All other threads (cross thread releases, the part tender) go straight to the shared queue.
+ * <p/>
+ * Parts in the magazine are not visible to the tender, so the magazine is kept small and the tender flushes it
+ * to the shared queue. The owner marks itself busy (with one uncontended CAS) for the length of each magazine
+ * operation, so another thread can take the magazine over whenever the owner is not using it - even if the owner
+ * never touches the pool again. If the owner is busy at the time the flush happens on its next release instead.
+ *
+ * @param sharedCapacity   the capacity of the shared queue
+ * @param magazineCapacity the max number of parts held privately by the owner
+ * @param owner            the one thread allowed to use the magazine
+ */
+final
+class TeslaPartMagazine[Part](sharedCapacity: Int, magazineCapacity: Int, owner: Thread) extends util.AbstractQueue[Part] {
+
+  ///////////////////////////////////////////////////////////////////////////////
+  // STATE
+  ///////////////////////////////////////////////////////////////////////////////
+
+  private[this]
+  val _shared: util.Queue[Part] = new MpmcArrayQueue[Part](sharedCapacity)
+
+  private[this]
+  val _magazine: Array[AnyRef] = new Array[AnyRef](magazineCapacity)
+
+  private[this]
+  var _count: Int = 0
+
+  private[this]
+  val _batchSize: Int = math.max(1, magazineCapacity / 2)
+
+  @volatile private[this]
+  var _flushRequested: Boolean = false
+
+  /**
+   * who is using the magazine (see [[TeslaPartMagazine.Idle]]). Also publishes the magazine contents between
+   * the owner and a flushing thread
+   */
+  private[this]
+  val _state = new AtomicInteger(TeslaPartMagazine.Idle)
+
+  ///////////////////////////////////////////////////////////////////////////////
+  // API
+  ///////////////////////////////////////////////////////////////////////////////
+
+  @inline override
+  def offer(part: Part): Boolean = {
+    if ((Thread.currentThread ne owner) || !ownerEnter())
+      return _shared.offer(part)
+    val offered = if (_flushRequested) {
+      flush()
+      _shared.offer(part)
+    } else if (_count == magazineCapacity && !drain()) {
+      _shared.offer(part)
+    } else {
+      _magazine(_count) = part.asInstanceOf[AnyRef]
+      _count += 1
+      true
+    }
+    ownerExit()
+    offered
+  }
+
+  @inline override
+  def poll(): Part = {
+    if ((Thread.currentThread ne owner) || !ownerEnter())
+      return _shared.poll()
+    val part = if (_count == 0 && !refill()) null.asInstanceOf[Part] else {
+      _count -= 1
+      val p = _magazine(_count).asInstanceOf[Part]
+      _magazine(_count) = null
+      p
+    }
+    ownerExit()
+    part
+  }
+
+  override
+  def peek(): Part = {
+    if ((Thread.currentThread ne owner) || !ownerEnter())
+      return _shared.peek()
+    val part = if (_count > 0) _magazine(_count - 1).asInstanceOf[Part] else _shared.peek()
+    ownerExit()
+    part
+  }
+
+  /**
+   * approximate when called from a thread other than the owner
+   */
+  override
+  def size: Int = _shared.size + _count
+
+  /**
+   * weakly consistent: the parts in the magazine (only when called from the owner thread) followed by
+   * those in the shared queue
+   */
+  override
+  def iterator: util.Iterator[Part] = {
+    val magazine = if ((Thread.currentThread eq owner) && ownerEnter()) {
+      val copy = util.Arrays.copyOf(_magazine, _count)
+      ownerExit()
+      copy
+    } else Array.empty[AnyRef]
+    val shared = _shared.iterator
+    new util.Iterator[Part] {
+      private[this] var i = 0
+
+      override def hasNext: Boolean = i < magazine.length || shared.hasNext
+
+      override def next(): Part = {
+        if (i == magazine.length)
+          return shared.next()
+        i += 1
+        magazine(i - 1).asInstanceOf[Part]
+      }
+    }
+  }
+
+  /**
+   * the parts currently held privately by the owner (approximate when called from a thread other than the owner)
+   */
+  def magazineSize: Int = _count
+
+  /**
+   * move every part in the magazine to the shared queue (where other threads such as the tender can get at
+   * them). This can be called from any thread. If the owner is using the magazine right now, it is asked to
+   * flush on its next release instead.
+   *
+   * @return true if the magazine was flushed now
+   */
+  def flushMagazine(): Boolean = {
+    if (Thread.currentThread eq owner) {
+      if (!ownerEnter()) return false
+      flush()
+      ownerExit()
+      true
+    } else if (_state.compareAndSet(TeslaPartMagazine.Idle, TeslaPartMagazine.Flushing)) {
+      flush()
+      _state.set(TeslaPartMagazine.Idle)
+      true
+    } else {
+      _flushRequested = true
+      false
+    }
+  }
+
+  ///////////////////////////////////////////////////////////////////////////////
+  // internals
+  ///////////////////////////////////////////////////////////////////////////////
+
+  /**
+   * @return false if another thread is flushing the magazine (use the shared queue)
+   */
+  @inline private
+  def ownerEnter(): Boolean = _state.compareAndSet(TeslaPartMagazine.Idle, TeslaPartMagazine.OwnerBusy)
+
+  @inline private
+  def ownerExit(): Unit = _state.lazySet(TeslaPartMagazine.Idle)
+
+  /**
+   * move a batch from the shared queue into the (empty) magazine
+   *
+   * @return true if anything was moved
+   */
+  private
+  def refill(): Boolean = {
+    var continue = true
+    while (continue && _count < _batchSize) {
+      _shared.poll() match {
+        case null => continue = false
+        case part =>
+          _magazine(_count) = part.asInstanceOf[AnyRef]
+          _count += 1
+      }
+    }
+    _count > 0
+  }
+
+  /**
+   * move the whole magazine into the shared queue (as far as it has room)
+   */
+  private
+  def flush(): Unit = {
+    _flushRequested = false
+    while (_count > 0 && drain()) {}
+  }
+
+  /**
+   * move the oldest batch of the magazine into the shared queue
+   *
+   * @return true if there is now room in the magazine
+   */
+  private
+  def drain(): Boolean = {
+    var moved = 0
+    while (moved < _batchSize && moved < _count && _shared.offer(_magazine(moved).asInstanceOf[Part]))
+      moved += 1
+    if (moved > 0) {
+      System.arraycopy(_magazine, moved, _magazine, 0, _count - moved)
+      util.Arrays.fill(_magazine, _count - moved, _count, null)
+      _count -= moved
+    }
+    moved > 0
+  }
+
+}
+
+object TeslaPartMagazine {
+
+  /**
+   * nobody is using the magazine
+   */
+  private final val Idle = 0
+
+  /**
+   * the owner is in the middle of a magazine operation
+   */
+  private final val OwnerBusy = 1
+
+  /**
+   * another thread is flushing the magazine
+   */
+  private final val Flushing = 2
+
+}
@@ -1,6 +1,7 @@
 /* Copyright Yahoo, Licensed under the terms of the Apache 2.0 license. See LICENSE file in project root for terms. */
 package org.burstsys.tesla.part
 
+import org.burstsys.tesla
 import org.burstsys.tesla.part
 import org.burstsys.tesla.pool.TeslaPoolId
 import org.burstsys.vitals.logging._
@@ -54,6 +55,29 @@ trait TeslaPartPool[PoolPart] extends AnyRef {
    */
   def freePart(part: PoolPart): Long
 
+  /**
+   * the total bytes asked for by all grabs of this pool (if tracked by the subtype). Used with
+   * [[partsGrantedBytes]] to report how much memory is lost to rounding requests up to the part size
+   *
+   * @return
+   */
+  def partsRequestedBytes: Long = 0L
+
+  /**
+   * the total part bytes handed out by all grabs of this pool (if tracked by the subtype)
+   *
+   * @return
+   */
+  def partsGrantedBytes: Long = 0L
+
+  /**
+   * bytes still held by this pool that are neither in use nor reusable (if any)
+   * e.g. freed parts of a shared allocation that can only be freed as a whole
+   *
+   * @return
+   */
+  def partsStrandedBytes: Long = 0L
+
   /////////////////////////////////////////
   // API
   /////////////////////////////////////////
@@ -79,14 +103,18 @@ trait TeslaPartPool[PoolPart] extends AnyRef {
   def decrementPartsAllocated(): Unit = _partsAllocated.decrementAndGet()
 
   final
-  def partsInUse: Int = _partsInUse.get
+  def partsInUse: Int = (_ownerPartsInUse.get + _partsInUse.get).toInt
 
   /**
    * mark another part in use
    */
   final
   def incrementPartsInUse(): Unit = {
-    val newSize = _partsInUse.incrementAndGet()
+    val newSize = if (Thread.currentThread eq _ownerThread) {
+      // single writer - no need for an atomic read-modify-write
+      _ownerPartsInUse.lazySet(_ownerPartsInUse.get + 1)
+      partsInUse
+    } else _partsInUse.incrementAndGet()
     val oldSize = _maxPartsAllocated.get
     if (part.log.isTraceEnabled()) {
       if (newSize > oldSize) {
@@ -108,14 +136,17 @@ trait TeslaPartPool[PoolPart] extends AnyRef {
    */
   final
   def decrementPartsInUse(): Unit = {
-    _partsInUse.decrementAndGet()
+    if (Thread.currentThread eq _ownerThread)
+      _ownerPartsInUse.lazySet(_ownerPartsInUse.get - 1)
+    else
+      _partsInUse.decrementAndGet()
   }
 
   /**
    * mark another part in-use
    */
   final
-  def markPartGrabbed(): Unit = _lastTimePartGrabbed.set(System.nanoTime)
+  def markPartGrabbed(): Unit = _lastTimePartGrabbed.lazySet(System.nanoTime)
 
   /**
    * LRU stats for time since last usage
@@ -133,13 +164,38 @@ trait TeslaPartPool[PoolPart] extends AnyRef {
    * slick `off heap - lock free queue`...
    * this is '''lazy''' because many different [[TeslaPartPool]] ''sizes'' within a
    * [[org.burstsys.tesla.part.factory.TeslaPartFactory]] don't get used
-   * and thus we save on heap
+   * and thus we save on heap. Unless the parts are too large, the queue is fronted by a
+   * [[TeslaPartMagazine]] for the owner thread
    */
-  final lazy val partQueue: util.Queue[PoolPart] = new MpmcArrayQueue[PoolPart](partQueueSize)
+  final lazy val partQueue: util.Queue[PoolPart] = {
+    val magazineSize = math.min(
+      tesla.configuration.teslaPartsMagazineSizeProperty.get.toLong, maxPartsMagazineBytes / math.max(1, partByteSize)
+    ).toInt
+    if (magazineSize < 2)
+      new MpmcArrayQueue[PoolPart](partQueueSize)
+    else
+      new TeslaPartMagazine[PoolPart](partQueueSize, magazineSize, _ownerThread)
+  }
+
+  /**
+   * pools are instantiated on, and grabbed from, the one worker thread they are bound to.
+   * Parts can be released from any thread
+   */
+  private[this]
+  val _ownerThread: Thread = Thread.currentThread
+
+  /**
+   * parts in use as counted by the owner thread (single writer)
+   */
+  private[this]
+  val _ownerPartsInUse = new AtomicLong
 
   private[this]
   val _maxPartsAllocated = new AtomicInteger
 
+  /**
+   * parts in use as counted by all other threads
+   */
   private[this]
   val _partsInUse = new AtomicInteger
 
@@ -169,7 +225,12 @@ trait TeslaPartPool[PoolPart] extends AnyRef {
    */
   final
   def freeAllUnusedParts: (Long, Long) = {
-    if (_partsInUse.get == 0 && _partsAllocated.get == 0) return (0, 0)
+    if (partsInUse == 0 && _partsAllocated.get == 0) return (0, 0)
+    partQueue match {
+      // move the parts held in the owner's magazine to where they can be freed (even if the owner is idle)
+      case magazine: TeslaPartMagazine[_] => magazine.flushMagazine()
+      case _ =>
+    }
     var partsFreed = 0
     var bytesFreed: Long = 0L
     partQueue synchronized {
@@ -56,6 +56,19 @@ trait TeslaFactoryPrinter[Part, PartPool <: TeslaPartPool[Part]] {
         totalInUseBytes += size * inUse
     }
 
+    // fragmentation - internal (requests rounded up to part sizes) and stranded (freed but not yet releasable)
+    val poolList = pools
+    val requestedBytes = poolList.map(_.partsRequestedBytes).sum
+    val grantedBytes = poolList.map(_.partsGrantedBytes).sum
+    val strandedBytes = poolList.map(_.partsStrandedBytes).sum
+    totalAllocatedBytes += strandedBytes
+
+    if (builder.isDefined && (grantedBytes > 0 || strandedBytes > 0)) {
+      val roundingWaste = if (grantedBytes == 0) 0.0 else (grantedBytes - requestedBytes).toDouble / grantedBytes * 100
+      builder.get ++= s"\tfragmentation: requestedBytes=$requestedBytes (${prettyByteSizeString(requestedBytes)}), grantedBytes=$grantedBytes (${prettyByteSizeString(grantedBytes)})"
+      builder.get ++= f", roundingWaste=$roundingWaste%.1f%%, strandedBytes=$strandedBytes (${prettyByteSizeString(strandedBytes)})\n"
+    }
+
     if (builder.isDefined && totalAllocatedBytes == 0)
       builder.get ++= s"\tall part pools empty...\n"
 
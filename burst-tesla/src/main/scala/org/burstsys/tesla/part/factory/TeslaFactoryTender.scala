@@ -68,14 +68,16 @@ trait TeslaFactoryTender[TenderPart, TenderPartPool <: TeslaPartPool[TenderPart]
      * otherwise we just free stuff that no one is using
      */
     val maxPoolSize = (physMem * poolSizeAsPercentOfDirectMemory).toLong
-    val overSize = currPoolSize > maxPoolSize
+    // every factory gets aggressive when all part memory together is over the global budget (or a block
+    // pool recently had to grow past it)
+    val overSize = currPoolSize > maxPoolSize || TeslaMemoryBudget.overBudget || TeslaMemoryBudget.growthPressure
 
     if (overSize)
       part.log info s"TESLA_PART_OVER_SIZE osTotalPhysMemory=$physMem (${
         prettyByteSizeString(physMem)
       }), maxPoolSize=$maxPoolSize (${
         prettyByteSizeString(maxPoolSize)
-      }), directSize=${host.directMemoryUsed} (${prettyByteSizeString(host.directMemoryUsed)}) $tag "
+      }), directSize=${host.directMemoryUsed} (${prettyByteSizeString(host.directMemoryUsed)}) ${TeslaMemoryBudget.report(tag)}"
     overSize
   }
 
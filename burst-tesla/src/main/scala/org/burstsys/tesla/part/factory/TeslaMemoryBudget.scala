@@ -0,0 +1,210 @@
+/* Copyright Yahoo, Licensed under the terms of the Apache 2.0 license. See LICENSE file in project root for terms. */
+package org.burstsys.tesla.part.factory
+
+import org.burstsys.tesla
+import org.burstsys.tesla.part
+import org.burstsys.vitals.host
+import org.burstsys.vitals.reporter.instrument.{prettyByteSizeString, prettyTimeFromNanos}
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+import scala.concurrent.duration.Duration
+import scala.jdk.CollectionConverters._
+
+/**
+ * A global budget for tesla off heap part memory. All part memory across all [[TeslaPartFactory]]
+ * instances is ultimately allocated as blocks, so the block pools report every allocation and free here.
+ * <p/>
+ * Queries (by guid) make a ''reservation'' against the budget before they start allocating. A reservation
+ * fits if the memory already allocated plus the part of the current reservations not yet backed by blocks in
+ * use plus the new reservation is within the budget (allocated memory also counts idle pooled parts so
+ * admission still errs on the side of waiting). A reservation that does not fit waits (after asking the
+ * factories to free their unused parts) until enough memory is freed or other reservations are released. If it
+ * still does not fit after the wait it is admitted anyway (degraded) so that a query is delayed instead of
+ * failed. Reservations can only wait on threads that are not tesla workers.
+ * <p/>
+ * The block pools also check the budget before they grow. Growth past the budget is never blocked or
+ * failed - the growing thread is part of a scan that has already been admitted and the memory it is waiting
+ * for is usually held by other admitted scans. Instead it flags ''growth pressure'' and the part tenders give
+ * back the idle parts pooled across all factories (off the worker threads).
+ */
+object TeslaMemoryBudget extends TeslaMemoryBudgetContext(
+  budgetFn = () => (host.osTotalPhysMemory * tesla.configuration.teslaMemoryBudgetPercentProperty.get).toLong,
+  inUseFn = () => tesla.block.factory.pools.map(p => p.partsInUse.toLong * p.partByteSize).sum,
+  freeUnusedFn = () => TeslaFactoryBoss.freeAllUnusedParts
+)
+
+/**
+ * the state and operations of a [[TeslaMemoryBudget]]
+ *
+ * @param budgetFn     the total bytes of off heap part memory that can be reserved (zero disables the budget)
+ * @param inUseFn      the bytes of part memory currently in use i.e. backing reservations
+ * @param freeUnusedFn give back the idle pooled parts (on a thread that can wait)
+ */
+class TeslaMemoryBudgetContext(budgetFn: () => Long, inUseFn: () => Long, freeUnusedFn: () => Long) {
+
+  ///////////////////////////////////////////////////////////////////////////////
+  // STATE
+  ///////////////////////////////////////////////////////////////////////////////
+
+  private[this]
+  val _allocatedBytes = new AtomicLong
+
+  private[this]
+  val _reservedBytes = new AtomicLong
+
+  private[this]
+  val _reservations = new ConcurrentHashMap[String, java.lang.Long]
+
+  private[this]
+  val _growthPressureNanos = new AtomicLong(System.nanoTime - 2 * growthPressureWindowNanos)
+
+  ///////////////////////////////////////////////////////////////////////////////
+  // API
+  ///////////////////////////////////////////////////////////////////////////////
+
+  /**
+   * is the budget enabled
+   */
+  final def budgetEnabled: Boolean = budgetBytes > 0
+
+  /**
+   * the total bytes of off heap part memory that can be reserved
+   */
+  final def budgetBytes: Long = budgetFn()
+
+  /**
+   * the off heap bytes currently allocated by all part pools (in use and idle)
+   */
+  final def allocatedBytes: Long = _allocatedBytes.get
+
+  /**
+   * the sum of the current query reservations
+   */
+  final def reservedBytes: Long = _reservedBytes.get
+
+  /**
+   * the current reservations by query guid
+   */
+  final def reservations: Map[String, Long] = _reservations.asScala.map { case (guid, bytes) => guid -> bytes.longValue }.toMap
+
+  /**
+   * is the part memory currently allocated more than the budget
+   */
+  final def overBudget: Boolean = budgetEnabled && allocatedBytes > budgetBytes
+
+  /**
+   * record an off heap part memory allocation
+   */
+  final def recordAllocation(bytes: Long): Unit = _allocatedBytes.addAndGet(bytes)
+
+  /**
+   * record an off heap part memory free
+   */
+  final def recordFree(bytes: Long): Unit = _allocatedBytes.addAndGet(-bytes)
+
+  /**
+   * called by a block pool before it allocates `bytes` of new memory. If that takes part memory over the
+   * budget flag growth pressure so the part tenders give back the unused parts across all factories. The
+   * growing (worker) thread itself never sweeps the factories.
+   */
+  final def checkGrowth(bytes: Long): Unit = {
+    if (budgetEnabled && _allocatedBytes.get + bytes > budgetBytes) {
+      val now = System.nanoTime
+      if (now - _growthPressureNanos.getAndSet(now) > growthPressureWindowNanos)
+        part.log info s"TESLA_BUDGET_GROWTH_PRESSURE ${report(s"growth=${prettyByteSizeString(bytes)}")}"
+    }
+  }
+
+  /**
+   * has a block pool grown (or tried to) past the budget within the last couple of tender intervals
+   */
+  final def growthPressure: Boolean = System.nanoTime - _growthPressureNanos.get <= growthPressureWindowNanos
+
+  /**
+   * reserve memory for a query, waiting up to `timeout` for the reservation to fit in the budget
+   *
+   * @return true if the reservation fit in the budget, false if it was admitted over budget
+   */
+  final def reserve(guid: String, bytes: Long, timeout: Duration): Boolean = {
+    lazy val tag = s"TeslaMemoryBudget.reserve(guid=$guid, bytes=$bytes (${prettyByteSizeString(bytes)}))"
+    if (!budgetEnabled) {
+      admit(guid, bytes)
+      return true
+    }
+    val start = System.nanoTime
+    val deadline = if (timeout.isFinite) start + timeout.toNanos else Long.MaxValue
+    var freedUnused = false
+    synchronized {
+      while (!fits(bytes) && System.nanoTime < deadline && !tesla.thread.worker.inTeslaWorkerThread) {
+        if (!freedUnused) {
+          // idle pooled parts count against allocation, not reservations, but give the memory back while we wait
+          freeUnusedFn()
+          freedUnused = true
+          part.log info s"TESLA_BUDGET_WAIT ${report(tag)}"
+        }
+        // frees are not signalled so poll the allocated memory
+        wait(math.max(1, math.min(100, (deadline - System.nanoTime) / 1000000)))
+      }
+      val fit = fits(bytes)
+      admit(guid, bytes)
+      if (!fit)
+        part.log warn s"TESLA_BUDGET_OVER_COMMIT waited=${prettyTimeFromNanos(System.nanoTime - start)} ${report(tag)}"
+      else if (freedUnused)
+        part.log info s"TESLA_BUDGET_ADMIT waited=${prettyTimeFromNanos(System.nanoTime - start)} $tag"
+      fit
+    }
+  }
+
+  /**
+   * release memory reserved for a query (a query guid can hold more than one reservation)
+   */
+  final def release(guid: String, bytes: Long): Unit = {
+    synchronized {
+      var released = 0L
+      _reservations.computeIfPresent(guid, (_: String, reserved: java.lang.Long) => {
+        released = math.min(bytes, reserved)
+        if (reserved - released <= 0) null else java.lang.Long.valueOf(reserved - released)
+      })
+      if (released > 0) {
+        _reservedBytes.addAndGet(-released)
+        notifyAll()
+      }
+    }
+  }
+
+  /**
+   * a printable summary of the budget and the current reservations
+   */
+  final def report(tag: String = ""): String = {
+    s"budget=${prettyByteSizeString(budgetBytes)} allocated=${prettyByteSizeString(allocatedBytes)} reserved=${
+      prettyByteSizeString(reservedBytes)
+    } reservations=${
+      reservations.map { case (guid, bytes) => s"$guid:${prettyByteSizeString(bytes)}" }.mkString("[", ", ", "]")
+    } $tag"
+  }
+
+  ///////////////////////////////////////////////////////////////////////////////
+  // internals
+  ///////////////////////////////////////////////////////////////////////////////
+
+  private
+  def growthPressureWindowNanos: Long = 2 * tesla.configuration.teslaPartsTenderInterval.toNanos
+
+  /**
+   * allocated memory already includes whatever the admitted queries are using, so only the part of the
+   * reservations not yet backed by blocks in use is added to it
+   */
+  private
+  def fits(bytes: Long): Boolean = {
+    val unbacked = math.max(0L, _reservedBytes.get - inUseFn())
+    _allocatedBytes.get + unbacked + bytes <= budgetBytes
+  }
+
+  private
+  def admit(guid: String, bytes: Long): Unit = {
+    _reservations.merge(guid, java.lang.Long.valueOf(bytes), (a: java.lang.Long, b: java.lang.Long) => java.lang.Long.valueOf(a + b))
+    _reservedBytes.addAndGet(bytes)
+  }
+
+}
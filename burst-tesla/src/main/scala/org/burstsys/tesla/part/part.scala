@@ -12,9 +12,10 @@ package object part extends VitalsLogger {
   final def debugTending: Boolean = factory.log.isDebugEnabled()
 
   /**
-   * the size of the array of pools for a given part
+   * the size of the array of pools for a given part. There is a pool per block size per worker thread
+   * and there are a lot more block sizes when block slabs are enabled
    */
-  final val maxPoolsPerPart = 10000
+  final val maxPoolsPerPart = 1 << 15
 
   /**
    * we try not to free everything in one tending run
@@ -26,6 +27,12 @@ package object part extends VitalsLogger {
    */
   final val defaultPartsQueueSize = 2e5.toInt
 
+  /**
+   * parts are only kept in a per thread magazine if the whole magazine fits in this many bytes
+   * (the part tender cannot see/free magazine contents)
+   */
+  final val maxPartsMagazineBytes: Long = 16e6.toLong
+
   final val teslaBuilderUseDefaultSize: TeslaMemorySize = -1
 
 }
@@ -1,19 +1,17 @@
 /* Copyright Yahoo, Licensed under the terms of the Apache 2.0 license. See LICENSE file in project root for terms. */
 package org.burstsys.tesla.scatter
 
-import org.burstsys.tesla.scatter.TeslaScatter.maxSlotsPerScatter
+import org.burstsys.tesla.scatter.TeslaScatter._
 import org.burstsys.tesla.scatter.machine.{TeslaScatterLifecycle, TeslaScatterMachine, TeslaScatterTerminator}
 import org.burstsys.tesla.scatter.slot.{TeslaScatterSlot, TeslaScatterSlotUpdate, TeslaSlotMachine}
-import org.burstsys.vitals.errors.{VitalsException, safely}
+import org.burstsys.vitals.errors.VitalsException
 import org.burstsys.vitals.uid._
-import org.jctools.queues.MpmcArrayQueue
+import org.jctools.queues.{MpmcArrayQueue, MpscArrayQueue}
 
-import java.util.concurrent.atomic.AtomicInteger
-import java.util.concurrent.locks.ReentrantLock
-import java.util.concurrent.{ArrayBlockingQueue, ConcurrentHashMap, TimeUnit}
-import scala.collection.mutable.ArrayBuffer
+import java.lang.invoke.VarHandle
+import java.util.concurrent.atomic.{AtomicInteger, AtomicLong, AtomicLongArray}
+import java.util.concurrent.locks.{LockSupport, ReentrantLock}
 import scala.concurrent.duration._
-import scala.jdk.CollectionConverters._
 import scala.language.postfixOps
 
 /**
@@ -110,8 +108,60 @@ object TeslaScatter {
 
   def apply(): TeslaScatter = TeslaScatterContext(idGenerator.incrementAndGet)
 
+  ////////////////////////////////////////////////////////////////////////////////
+  // slot state words - where a slot is in the scatter bookkeeping
+  ////////////////////////////////////////////////////////////////////////////////
+
+  private[scatter] final val slotIdle = 0
+
+  private[scatter] final val slotActive = 1
+
+  private[scatter] final val slotSucceeded = 2
+
+  private[scatter] final val slotFailed = 3
+
+  private[scatter] final val slotZombie = 4
+
+  ////////////////////////////////////////////////////////////////////////////////
+  // slot state word layout - | epoch (32 bits) | result sequence (29 bits) | state (3 bits) |
+  ////////////////////////////////////////////////////////////////////////////////
+
+  private[scatter] final val slotStateMask: Long = 0x7L
+
+  private[scatter] final val slotSequenceShift = 3
+
+  private[scatter] final val slotSequenceMask: Long = 0x1fffffffL
+
+  private[scatter] final val slotEpochShift = 32
+
+  private[scatter] final val slotEpochMask: Long = 0x7fffffffL
+
+  /**
+   * returned by a slot transition that this caller did not make
+   */
+  private[scatter] final val slotNoEpoch: Long = -1L
+
+  @inline private[scatter]
+  def stateOf(word: Long): Int = (word & slotStateMask).toInt
+
+  @inline private[scatter]
+  def epochOf(word: Long): Long = (word >>> slotEpochShift) & slotEpochMask
+
+  @inline private[scatter]
+  def countOf(word: Long): Int = word.toInt
+
 }
 
+/**
+ * The slot bookkeeping is lock free: every slot is preallocated in a fixed array and where it is (idle, active,
+ * succeeded, failed, zombie) is an atomic state word per slot, so every slot transition is a single CAS that only
+ * one thread can win. The CAS that completes a slot also stamps its arrival order into the state word, so a slot
+ * result is recorded in the same step and there is no separate list for `close` to race with.
+ * Each execution is an ''epoch'' (bumped by `close`) that is kept with the active slot count and in the state word
+ * of every slot it activated, so a slot that completes just as the scatter closes can not touch the accounting
+ * of the next execution. Updates go through a single MPSC queue to the single scatter initiator thread waiting in
+ * `nextUpdate`. The scatter lock is only used for the (rare) scatter lifecycle transitions.
+ */
 private[scatter] final case
 class TeslaScatterContext(scatterId: TeslaScatterId) extends AnyRef
   with TeslaSlotMachine with TeslaScatter with TeslaScatterMachine {
@@ -122,10 +172,10 @@ class TeslaScatterContext(scatterId: TeslaScatterId) extends AnyRef
   // state
   //////////////////////////////////////////////////////////////////////////////////////////////////////
 
-  private[this]
+  @volatile private[this]
   var _guid: VitalsUid = _
 
-  private[scatter]
+  @volatile private[scatter]
   var _scatterState: TeslaScatterState = TeslaScatterStopState
 
   private[this]
@@ -152,39 +202,34 @@ class TeslaScatterContext(scatterId: TeslaScatterId) extends AnyRef
   private[scatter]
   val _gate = new ReentrantLock(true)
 
-  private[this]
-  val _slotId = new AtomicInteger(0)
-
   /**
-   * slots that are currently in use
-   * this collection is not persistent across executions
+   * all the slots for this scatter, slot ids are the index + 1
    */
-  private[scatter]
-  val _activeSlots = new ConcurrentHashMap[Int, TeslaScatterSlot].asScala
+  private[this]
+  val _slots: Array[TeslaScatterSlot] = Array.tabulate(maxSlotsPerScatter)(i => TeslaScatterSlot(this, i + 1))
 
   /**
-   * slots that have succeeded
-   * this collection is not persistent across executions
+   * the state word for each slot: the epoch the slot was activated in, the arrival sequence of its result (if it
+   * succeeded or failed) and its state
+   * this is persistent across executions (for zombies)
    */
-  private[scatter]
-  val _successSlots = new ArrayBuffer[TeslaScatterSlot]
+  private[this]
+  val _slotStates = new AtomicLongArray(maxSlotsPerScatter)
 
   /**
-   * slots that have failed
-   * this collection is not persistent across executions
+   * the current epoch (high 32 bits) and the number of slots in the active state (low 32 bits)
    */
-  private[scatter]
-  val _failSlots = new ArrayBuffer[TeslaScatterSlot]
+  private[this]
+  val _active = new AtomicLong
 
   /**
-   * slots that are in the zombie state
-   * this collection is persistent across executions
+   * the arrival sequence of slot results in the current epoch
    */
-  private[scatter]
-  val _zombieSlots = new ConcurrentHashMap[Int, TeslaScatterSlot].asScala
+  private[this]
+  val _resultSequence = new AtomicInteger
 
   def printSlotCounts: String =
-    s"""activeSlots=${_activeSlots.size}, successSlots=${_successSlots.size}, failSlots=${_failSlots.size}, zombieSlots=${_zombieSlots.size} """
+    s"""activeSlots=$activeSlots, successSlots=${countSlotsIn(slotSucceeded)}, failSlots=${countSlotsIn(slotFailed)}, zombieSlots=${countSlotsIn(slotZombie)} """
 
   /**
    * slots that are currently not being used
@@ -192,13 +237,19 @@ class TeslaScatterContext(scatterId: TeslaScatterId) extends AnyRef
    */
   private[scatter]
   val _idleSlots = new MpmcArrayQueue[TeslaScatterSlot](maxSlotsPerScatter)
-  for (_ <- 0 until maxSlotsPerScatter) _idleSlots add TeslaScatterSlot(this, _slotId.incrementAndGet)
+  _slots foreach (_idleSlots add _)
 
   /**
-   * the updates as they arrive
+   * the updates as they arrive - many producers, one consumer (the thread in `nextUpdate`)
    */
-  private[scatter]
-  val _updates = new ArrayBlockingQueue[TeslaScatterUpdate](maxSlotsPerScatter * 10)
+  private[this]
+  val _updates = new MpscArrayQueue[TeslaScatterUpdate](maxSlotsPerScatter * 10)
+
+  /**
+   * the thread waiting (parked) in `nextUpdate` if any
+   */
+  @volatile private[this]
+  var _consumer: Thread = _
 
   //////////////////////////////////////////////////////////////////////////////////////////////////////
   // API
@@ -211,13 +262,21 @@ class TeslaScatterContext(scatterId: TeslaScatterId) extends AnyRef
   def scatterState: TeslaScatterState = _scatterState
 
   override
-  def successes: Array[TeslaScatterSlot] = _successSlots.toArray
+  def successes: Array[TeslaScatterSlot] = orderedSlotsIn(slotSucceeded)
 
   override
-  def failures: Array[TeslaScatterSlot] = _failSlots.toArray
+  def failures: Array[TeslaScatterSlot] = orderedSlotsIn(slotFailed)
 
   override
-  def zombies: Array[TeslaScatterSlot] = _zombieSlots.values.toArray
+  def zombies: Array[TeslaScatterSlot] = {
+    val zombies = new Array[TeslaScatterSlot](countSlotsIn(slotZombie))
+    var i = 0
+    foreachSlotIn(slotZombie) { slot =>
+      if (i < zombies.length) zombies(i) = slot
+      i += 1
+    }
+    if (i < zombies.length) java.util.Arrays.copyOf(zombies, i) else zombies
+  }
 
   override
   def timeout: Duration = _timeoutAfter
@@ -225,7 +284,7 @@ class TeslaScatterContext(scatterId: TeslaScatterId) extends AnyRef
   override
   def timeout_=(tardy: Duration): Unit = _timeoutAfter = tardy
 
-  override def activeSlots: TeslaScatterId = _activeSlots.size
+  override def activeSlots: TeslaScatterId = countOf(_active.get)
 
   //////////////////////////////////////////////////////////////////////////////////////////////////////
   // locking
@@ -266,46 +325,89 @@ class TeslaScatterContext(scatterId: TeslaScatterId) extends AnyRef
 
   def timeoutExceeded: Boolean = timeout.isFinite && (System.nanoTime - _startNanos) > timeout.toNanos
 
+  /**
+   * push an update if the scatter is running (and for slot updates, if the slot is active)
+   */
   private[scatter]
   def pushUpdate(update: TeslaScatterUpdate): Unit = {
     lazy val tag = s"TeslaScatter.pushUpdate(guid=${_guid}, update=$update)"
     if (debugScatters)
       log debug s"pushing $tag"
 
-    lockScatter("push update")
-    try {
-      // TODO if the scatter is in a failed state and we get a retry update we should:
-      //  - transition the scatter back to TeslaScatterRunState
-      //  - remove the fail update from the queue
-      if (_scatterState == TeslaScatterRunState) {
-        update match {
-          case u: TeslaScatterSlotUpdate =>
-            if (_activeSlots.contains(u.slot.slotId)) _updates add u
-            else log info s"TESLA_SCATTER_UPDATE_INACTIVE slot=${u.slot} $tag"
-          case u: TeslaScatterUpdate => _updates add u
-        }
-      } else log info s"TESLA_SCATTER_UPDATE_NOT_RUNNING $tag"
-    } finally unlockScatter("push update")
+    // TODO if the scatter is in a failed state and we get a retry update we should:
+    //  - transition the scatter back to TeslaScatterRunState
+    //  - remove the fail update from the queue
+    if (_scatterState == TeslaScatterRunState) {
+      update match {
+        case u: TeslaScatterSlotUpdate =>
+          if (isActive(u.slot)) enqueueUpdate(u)
+          else log info s"TESLA_SCATTER_UPDATE_INACTIVE slot=${u.slot} $tag"
+        case u: TeslaScatterUpdate => enqueueUpdate(u)
+      }
+    } else log info s"TESLA_SCATTER_UPDATE_NOT_RUNNING $tag"
+  }
+
+  /**
+   * push the final update of a slot that has just (atomically) left the active state in `epoch`
+   */
+  private[scatter]
+  def pushSlotResult(update: TeslaScatterSlotUpdate, epoch: Long): Unit = {
+    if (_scatterState == TeslaScatterRunState && currentEpoch == epoch) enqueueUpdate(update)
+    else log info s"TESLA_SCATTER_UPDATE_NOT_RUNNING TeslaScatter.pushSlotResult(guid=${_guid}, update=$update)"
   }
 
   override
   def nextUpdate(pollTimeout: Duration): TeslaScatterUpdate = {
     lazy val tag = s"TeslaScatter.nextUpdate(guid=${_guid}, pollTimeout=$pollTimeout)"
-    val update = _updates.poll(pollTimeout.toNanos, TimeUnit.NANOSECONDS)
-    lockScatter("next update")
-    try {
-      if (update != null) {
-        if (debugScatters)
-          log debug s"TESLA_SCATTER_UPDATE_POLL update=$update $tag"
-        update
-      } else {
+    val update = pollUpdate(if (pollTimeout.isFinite) pollTimeout.toNanos else Long.MaxValue)
+    if (update != null) {
+      if (debugScatters)
+        log debug s"TESLA_SCATTER_UPDATE_POLL update=$update $tag"
+      update
+    } else {
+      lockScatter("next update")
+      try {
         val message = s"TESLA_SCATTER_UPDATE_POLL_TIMEOUT update=$update $tag"
         log info message
         scatterTimeout(message)
         // _updates now contains _timeout, and possibly other messages generated by shutting down the scatter
         _updates.poll()
+      } finally unlockScatter("next update")
+    }
+  }
+
+  private
+  def enqueueUpdate(update: TeslaScatterUpdate): Unit = {
+    _updates add update
+    // make sure the update is visible before we check for a parked consumer
+    VarHandle.fullFence()
+    val consumer = _consumer
+    if (consumer != null) LockSupport.unpark(consumer)
+  }
+
+  /**
+   * wait for the next update
+   *
+   * @return the update or null if there were none within the timeout
+   */
+  private
+  def pollUpdate(timeoutNanos: Long): TeslaScatterUpdate = {
+    var update = _updates.poll()
+    if (update != null) return update
+    val start = System.nanoTime
+    _consumer = Thread.currentThread
+    try {
+      while (update == null) {
+        update = _updates.poll()
+        if (update == null) {
+          val remaining = timeoutNanos - (System.nanoTime - start)
+          if (remaining <= 0) return null
+          LockSupport.parkNanos(this, remaining)
+          if (Thread.interrupted()) throw new InterruptedException
+        }
       }
-    } finally unlockScatter("next update")
+      update
+    } finally _consumer = null
   }
 
   //////////////////////////////////////////////////////////////////////////////////////////////////////
@@ -314,16 +416,12 @@ class TeslaScatterContext(scatterId: TeslaScatterId) extends AnyRef
 
   override
   def addRequestSlot(request: TeslaScatterRequest[_]): TeslaScatterSlot = {
-    lockScatter("add request")
-    try {
-      val slot = try {
-        _idleSlots.remove
-      } catch safely {
-        case _: NoSuchElementException => throw VitalsException(s"ran out of slots! $printSlotCounts")
-      }
-      _activeSlots += slot.slotId -> slot
-      slot.open(request)
-    } finally unlockScatter("add request")
+    val slot = _idleSlots.poll
+    if (slot == null) throw VitalsException(s"ran out of slots! $printSlotCounts")
+    slot.open(request)
+    val epoch = epochOf(_active.incrementAndGet)
+    _slotStates.set(slot.slotId - 1, (epoch << slotEpochShift) | slotActive)
+    slot
   }
 
   //////////////////////////////////////////////////////////////////////////////////////////////////////
@@ -340,16 +438,20 @@ class TeslaScatterContext(scatterId: TeslaScatterId) extends AnyRef
     try {
       _guid = guid
       if (debugScatters)
-        log info s"current slots: zombie=${_zombieSlots.size} idle=${_idleSlots.size} $tag"
-      if (_idleSlots.size + _zombieSlots.size < maxSlotsPerScatter) {
-        log warn s"leaking slots $this idle=${_idleSlots.size} zombie=${_zombieSlots.size} $tag"
-        while ((_zombieSlots.size + _idleSlots.size) < maxSlotsPerScatter)
-          _idleSlots add TeslaScatterSlot(this, _slotId.getAndIncrement)
-      }
-      _zombieSlots.foreach { s =>
-        makeSlotIdle(s._2)
-        _zombieSlots.remove(s._1)
+        log info s"current slots: zombie=${countSlotsIn(slotZombie)} idle=${_idleSlots.size} $tag"
+      var i = 0
+      while (i < _slots.length) {
+        val word = _slotStates.get(i)
+        stateOf(word) match {
+          case `slotIdle` =>
+          case `slotZombie` => if (_slotStates.compareAndSet(i, word, slotIdle)) makeSlotIdle(_slots(i))
+          case state =>
+            log warn s"leaking slot $this slot=${_slots(i)} state=$state $tag"
+            if (_slotStates.compareAndSet(i, word, slotIdle)) makeSlotIdle(_slots(i))
+        }
+        i += 1
       }
+      _active.set(currentEpoch << slotEpochShift)
     } finally unlockScatter("open")
     TeslaScatterReporter.scatterOpen()
     this
@@ -357,25 +459,28 @@ class TeslaScatterContext(scatterId: TeslaScatterId) extends AnyRef
 
   /**
    * internal close routine used by the framework.
-   * After the scatter is closed all slots should have been returned to either the
-   * _idleSlots or _zombieSlots collections
+   * After the scatter is closed all slots should be either idle or zombies.
+   * This still takes the scatter lock: the slot that takes the active count to zero terminates the scatter
+   * under the lock, and the tender walks the slots under it, so neither can interleave with the scatter
+   * being stopped and moved to the next epoch here.
    */
   private[scatter]
   def close: TeslaScatter = {
     lazy val tag = s"TeslaScatter.close(guid=${_guid})"
     lockScatter("close")
-    TeslaScatterReporter.scatterClose(_guid, _successSlots, _failSlots)
+    TeslaScatterReporter.scatterClose(_guid, successes, failures)
     try {
       _scatterState = TeslaScatterStopState
 
       zombifySlots()
-      log info s"TESLA_SCATTER_STOPPED zombieSlots=${_zombieSlots.size} $tag"
+      log info s"TESLA_SCATTER_STOPPED zombieSlots=${countSlotsIn(slotZombie)} $tag"
 
-      _successSlots foreach makeSlotIdle
-      _successSlots.clear()
+      // from here on a slot completing in the closed epoch does not change the accounting
+      _active.set(((currentEpoch + 1) & slotEpochMask) << slotEpochShift)
+      _resultSequence.set(0)
 
-      _failSlots foreach makeSlotIdle
-      _failSlots.clear()
+      idleSlotsIn(slotSucceeded)
+      idleSlotsIn(slotFailed)
 
       _updates.clear()
 
@@ -390,16 +495,77 @@ class TeslaScatterContext(scatterId: TeslaScatterId) extends AnyRef
    * `request.cancel` is responsible for acutally notifying the slot that it has been cancelled.
    */
   private[scatter] def zombifySlots(): Unit = {
-    for ((_, slot) <- _activeSlots) {
-      slot.request.cancel()
+    foreachSlotIn(slotActive)(_.request.cancel())
+  }
+
+  private[scatter] def isActive(slot: TeslaScatterSlot): Boolean = stateOf(_slotStates.get(slot.slotId - 1)) == slotActive
+
+  private[scatter] def currentEpoch: Long = epochOf(_active.get)
+
+  /**
+   * atomically move a slot from one state to another
+   *
+   * @return true if this caller made the transition
+   */
+  private[scatter] def transitionSlot(slot: TeslaScatterSlot, from: Int, to: Int): Boolean = {
+    val i = slot.slotId - 1
+    var word = _slotStates.get(i)
+    while (stateOf(word) == from) {
+      if (_slotStates.compareAndSet(i, word, (word & ~slotStateMask) | to))
+        return true
+      word = _slotStates.get(i)
+    }
+    false
+  }
+
+  /**
+   * atomically move a slot out of the active state, stamping the arrival order of its result in the same CAS
+   *
+   * @return the epoch the slot was activated in or [[slotNoEpoch]] if this caller did not make the transition
+   */
+  private[scatter] def completeSlot(slot: TeslaScatterSlot, to: Int): Long = {
+    val i = slot.slotId - 1
+    var word = _slotStates.get(i)
+    while (stateOf(word) == slotActive) {
+      val sequence = _resultSequence.incrementAndGet & slotSequenceMask
+      if (_slotStates.compareAndSet(i, word, (word & ~slotStateMask) | (sequence << slotSequenceShift) | to))
+        return epochOf(word)
+      word = _slotStates.get(i)
     }
+    slotNoEpoch
   }
 
-  private[scatter] def isActive(slot: TeslaScatterSlot): Boolean = _activeSlots.contains(slot.slotId)
+  /**
+   * account for a slot activated in `epoch` that has been moved out of the active state
+   *
+   * @return the number of slots still active or -1 if the scatter has been closed since the slot was activated
+   */
+  private[scatter] def slotDeactivated(epoch: Long): Int = {
+    var active = _active.get
+    while (epochOf(active) == epoch) {
+      if (_active.compareAndSet(active, active - 1))
+        return countOf(active - 1)
+      active = _active.get
+    }
+    -1
+  }
+
+  private[scatter] def failedSlotCount: Int = countSlotsIn(slotFailed)
 
   private[scatter] def markSlotZombie(slot: TeslaScatterSlot): Unit = {
-    _zombieSlots += (slot.slotId -> slot)
-    _activeSlots -= slot.slotId
+    val epoch = completeSlot(slot, slotZombie)
+    if (epoch != slotNoEpoch) slotDeactivated(epoch)
+  }
+
+  /**
+   * call `body` for every slot currently in a state
+   */
+  private[scatter] def foreachSlotIn(state: Int)(body: TeslaScatterSlot => Unit): Unit = {
+    var i = 0
+    while (i < _slots.length) {
+      if (stateOf(_slotStates.get(i)) == state) body(_slots(i))
+      i += 1
+    }
   }
 
   private[scatter] def makeSlotIdle(slot: TeslaScatterSlot): Unit = {
@@ -408,4 +574,41 @@ class TeslaScatterContext(scatterId: TeslaScatterId) extends AnyRef
     _idleSlots add slot.close
   }
 
+  private
+  def countSlotsIn(state: Int): Int = {
+    var count = 0
+    foreachSlotIn(state)(_ => count += 1)
+    count
+  }
+
+  /**
+   * the (succeeded or failed) slots in a state in the order their results arrived
+   */
+  private
+  def orderedSlotsIn(state: Int): Array[TeslaScatterSlot] = {
+    var completed = List.empty[(Long, TeslaScatterSlot)]
+    var i = 0
+    while (i < _slots.length) {
+      val word = _slotStates.get(i)
+      if (stateOf(word) == state)
+        completed ::= ((word >>> slotSequenceShift) & slotSequenceMask, _slots(i))
+      i += 1
+    }
+    completed.sortBy(_._1).map(_._2).toArray
+  }
+
+  /**
+   * make the (succeeded or failed) slots in a state idle
+   */
+  private
+  def idleSlotsIn(state: Int): Unit = {
+    var i = 0
+    while (i < _slots.length) {
+      val word = _slotStates.get(i)
+      if (stateOf(word) == state && _slotStates.compareAndSet(i, word, slotIdle))
+        makeSlotIdle(_slots(i))
+      i += 1
+    }
+  }
+
 }
@@ -9,7 +9,6 @@ import org.burstsys.vitals.reporter.metric.{VitalsReporterFloatValueMetric, Vita
 import org.burstsys.vitals.stats.stdSkewStat
 import org.burstsys.vitals.uid.VitalsUid
 
-import scala.collection.mutable.ArrayBuffer
 import scala.language.postfixOps
 
 /**
@@ -61,7 +60,7 @@ object TeslaScatterReporter extends VitalsReporter {
 
   private final val hostCheckCount = 5
 
-  final def scatterClose(guid: VitalsUid, successes: ArrayBuffer[TeslaScatterSlot], failures: ArrayBuffer[TeslaScatterSlot]): Unit = {
+  final def scatterClose(guid: VitalsUid, successes: Array[TeslaScatterSlot], failures: Array[TeslaScatterSlot]): Unit = {
     _openScattersCounter.add(-1)
     if(failures.isEmpty) {
       val skew = calcSkew(successes)
@@ -95,7 +94,7 @@ object TeslaScatterReporter extends VitalsReporter {
   }
 
   private
-  def calcSkew(successes: ArrayBuffer[TeslaScatterSlot]): Double = {
+  def calcSkew(successes: Array[TeslaScatterSlot]): Double = {
     var minValue = Long.MaxValue
     var maxValue = Long.MinValue
     var index = 0
@@ -2,6 +2,7 @@
 package org.burstsys.tesla.scatter.machine
 
 import io.opentelemetry.api.trace.Span
+import org.burstsys.tesla.scatter.TeslaScatter.slotActive
 import org.burstsys.tesla.scatter.{TeslaScatterContext, TeslaScatterFailState, TeslaScatterRunState, TeslaScatterStopState, TeslaScatterSuccessState}
 import org.burstsys.vitals.errors.VitalsException
 
@@ -30,12 +31,12 @@ trait TeslaScatterMachine extends AnyRef
           _scatterState = TeslaScatterRunState
         case _ => throw VitalsException(s"$tag $this can't start from state ${_scatterState}")
       }
-      log info s"SCATTER_EXECUTE $this activeSlots=${_activeSlots.size} $tag "
+      log info s"SCATTER_EXECUTE $this activeSlots=$activeSlots $tag "
 
       _startNanos = System.nanoTime
       pushUpdate(_begin)
       // TODO the returned futures - should we keep track of these?
-      _activeSlots.values foreach (_.request.execute)
+      foreachSlotIn(slotActive)(_.request.execute)
     } finally unlockScatter("execute")
   }
 
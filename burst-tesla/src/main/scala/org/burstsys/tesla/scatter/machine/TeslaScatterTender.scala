@@ -3,6 +3,7 @@ package org.burstsys.tesla.scatter.machine
 
 import java.util.concurrent.TimeUnit
 
+import org.burstsys.tesla.scatter.TeslaScatter.{slotActive, slotIdle, slotZombie}
 import org.burstsys.tesla.scatter.TeslaScatterContext
 import org.burstsys.tesla.scatter.slot.TeslaScatterSlotContext
 import org.burstsys.vitals.background.VitalsBackgroundFunctions.BackgroundFunction
@@ -40,7 +41,7 @@ trait TeslaScatterTender extends AnyRef {
   backgroundTender += tendFunction
 
   private def checkForTardySlots(): Unit = {
-    _activeSlots.values foreach {
+    foreachSlotIn(slotActive) {
       // this cast is here to get access to the lock
       case slot: TeslaScatterSlotContext =>
         slot.lockSlot("check tardy")
@@ -53,7 +54,7 @@ trait TeslaScatterTender extends AnyRef {
 
   private def cleanupOverdueZombies(): Unit = {
     val now = System.nanoTime
-    _zombieSlots.filterInPlace((_, slot) => {
+    foreachSlotIn(slotZombie) { slot =>
       val request = slot.request
       val elapsed = now - slot.lastUpdateNanos
       var stillWaiting = false
@@ -62,10 +63,10 @@ trait TeslaScatterTender extends AnyRef {
       } else if (elapsed < TimeUnit.MINUTES.toNanos(5)) {
         stillWaiting = true
       }
-      if (!stillWaiting) {
+      // a late update may have cleaned it up already
+      if (!stillWaiting && transitionSlot(slot, slotZombie, slotIdle)) {
         makeSlotIdle(slot)
       }
-      stillWaiting
-    })
+    }
   }
 }
@@ -1,117 +1,109 @@
 /* Copyright Yahoo, Licensed under the terms of the Apache 2.0 license. See LICENSE file in project root for terms. */
 package org.burstsys.tesla.scatter.slot
 
+import org.burstsys.tesla.scatter.TeslaScatter.{slotFailed, slotIdle, slotNoEpoch, slotSucceeded, slotZombie}
 import org.burstsys.tesla.scatter.TeslaScatterContext
 import org.burstsys.vitals.errors.VitalsException
 
-import scala.collection.mutable.ArrayBuffer
-
 /**
- * manage the changing states of a ''scatter slot''
+ * manage the changing states of a ''scatter slot''. Slot transitions are lock free - each is a single CAS
+ * on the slot state word so only one of any racing updates (e.g. a success and a cancel) wins.
  */
 trait TeslaSlotMachine extends Any {
 
   self: TeslaScatterContext =>
 
   final def slotBegin(slot: TeslaScatterSlot, update: TeslaScatterSlotBegin): Unit = {
-    lockScatter("slot begin")
-    try {
-      log debug s"TeslaScatter.slotBegin $this, $slot BEGIN"
-      pushUpdate(update)
-    } finally unlockScatter("slot begin")
+    log debug s"TeslaScatter.slotBegin $this, $slot BEGIN"
+    pushUpdate(update)
   }
 
   final def slotProgress(slot: TeslaScatterSlot, update: TeslaScatterSlotProgress): Unit = {
-    lockScatter("slot progress")
-    try {
-      log debug s"TeslaScatter.slotProgress $this, $slot PROGRESS"
-      pushUpdate(update)
-    } finally unlockScatter("slot progress")
+    log debug s"TeslaScatter.slotProgress $this, $slot PROGRESS"
+    pushUpdate(update)
   }
 
   final def slotCancelled(slot: TeslaScatterSlot, update: TeslaScatterSlotCancel): Unit = {
-    lockScatter("slot cancel")
-    try {
-      log debug s"TeslaScatter.slotCancelled $this, $slot CANCEL"
-      pushUpdate(update)
-      markSlotZombie(slot)
-    } finally unlockScatter("slot cancel")
+    log debug s"TeslaScatter.slotCancelled $this, $slot CANCEL"
+    pushUpdate(update)
+    markSlotZombie(slot)
   }
 
   final def slotFail(slot: TeslaScatterSlot, update: TeslaScatterSlotFail): Unit = {
-    lockScatter("slot fail")
-    try {
-      if (cleanupZombieSlot(slot, update) || !isActive(slot)) {
-        // prevent zombie slots and completed slots from reporting
-        return
-      }
+    val epoch = if (cleanupZombieSlot(slot, update)) slotNoEpoch else completeSlot(slot, slotFailed)
+    if (epoch == slotNoEpoch) {
+      // prevent zombie slots and completed slots from reporting
+      return
+    }
 
-      log info(s"TeslaScatter.slotFail $this, $slot", update.throwable)
+    log info(s"TeslaScatter.slotFail $this, $slot", update.throwable)
 
-      pushUpdate(update)
-      moveSlotTo(slot, _failSlots)
-      receivedPossibleTerminalUpdate()
-    } finally unlockScatter("slot fail")
+    slotCompleted(update, epoch)
   }
 
   final def slotTardy(slot: TeslaScatterSlot, update: TeslaScatterSlotTardy): Unit = {
-    lockScatter("slot tardy")
-    try {
-      if (isActive(slot)) {
-        log debug s"TeslaScatter.slotTardy $this $slot TARDY"
-        pushUpdate(update)
-      }
-    } finally unlockScatter("slot tardy")
+    if (isActive(slot)) {
+      log debug s"TeslaScatter.slotTardy $this $slot TARDY"
+      pushUpdate(update)
+    }
   }
 
   final def slotRetry(slot: TeslaScatterSlot, update: TeslaScatterSlotRetry): Unit = {
-    lockScatter("slot retry")
-    try {
-      log debug s"TeslaScatter.slotRetry $this $slot RETRY"
-      pushUpdate(update)
-      // this should remove the slot from the failed slots list since we're re-opening the request
-    } finally unlockScatter("slot retry")
-
+    log debug s"TeslaScatter.slotRetry $this $slot RETRY"
+    pushUpdate(update)
+    // this should remove the slot from the failed slots list since we're re-opening the request
   }
 
   final def slotSuccess(slot: TeslaScatterSlot, update: TeslaScatterSlotSucceed): Unit = {
-    lockScatter("slot success")
-    try {
-      if (cleanupZombieSlot(slot, update) || !isActive(slot)) {
-        // prevent zombie slots and completed slots from reporting
-        return
-      }
-      log debug s"TeslaScatter.slotSuccess $this, $slot SUCCESS"
+    val epoch = if (cleanupZombieSlot(slot, update)) slotNoEpoch else completeSlot(slot, slotSucceeded)
+    if (epoch == slotNoEpoch) {
+      // prevent zombie slots and completed slots from reporting
+      return
+    }
+    log debug s"TeslaScatter.slotSuccess $this, $slot SUCCESS"
 
-      pushUpdate(update)
-      moveSlotTo(slot, _successSlots)
-      receivedPossibleTerminalUpdate()
-    } finally unlockScatter("slot success")
+    slotCompleted(update, epoch)
   }
 
-  // Helper methods - these should all be called within a lock/unlock block above
-
-  private def moveSlotTo(slot: TeslaScatterSlot, collection: ArrayBuffer[TeslaScatterSlot]): Unit = {
-    _activeSlots -= slot.slotId
-    collection += slot
+  // Helper methods
+
+  /**
+   * a slot activated in `epoch` has completed (and its result is recorded in its state word). The result is pushed
+   * before the slot leaves the active count so it is always queued ahead of the terminal update - the slot that
+   * takes the count to zero can only do so after every other slot has pushed its result. If the scatter closed in
+   * the meantime the result is dropped and the slot has already been made idle.
+   */
+  private def slotCompleted(update: TeslaScatterSlotUpdate, epoch: Long): Unit = {
+    pushSlotResult(update, epoch)
+    val stillActive = slotDeactivated(epoch)
+    if (stillActive < 0)
+      return
+    receivedPossibleTerminalUpdate(stillActive, epoch)
   }
 
   private def cleanupZombieSlot(slot: TeslaScatterSlot, update: TeslaScatterSlotUpdate): Boolean = {
-    val isZombie = _zombieSlots.contains(slot.slotId)
+    val isZombie = transitionSlot(slot, slotZombie, slotIdle)
     if (isZombie) {
       log info s"$slot ZOMBIE $update"
-      _zombieSlots -= slot.slotId
       makeSlotIdle(slot)
     }
     isZombie
   }
 
-  private def receivedPossibleTerminalUpdate(): Unit = {
-    if (_activeSlots.isEmpty) {
-      if (_failSlots.isEmpty)
-        scatterSucceed()
-      else
-        scatterFail(VitalsException(s"Scatter completed with ${_failSlots.size} failed slots"))
+  /**
+   * only the slot that takes the active count to zero terminates the scatter (unless it has been closed since)
+   */
+  private def receivedPossibleTerminalUpdate(stillActive: Int, epoch: Long): Unit = {
+    if (stillActive == 0) {
+      lockScatter("terminal update")
+      try {
+        if (currentEpoch == epoch) {
+          if (failedSlotCount == 0)
+            scatterSucceed()
+          else
+            scatterFail(VitalsException(s"Scatter completed with $failedSlotCount failed slots"))
+        }
+      } finally unlockScatter("terminal update")
     }
   }
 
@@ -5,6 +5,7 @@ import org.burstsys.tesla.block.TeslaBlockReporter
 import org.burstsys.tesla.buffer.TeslaBufferReporter
 import org.burstsys.tesla.director.TeslaDirectorReporter
 import org.burstsys.tesla.parcel.TeslaParcelReporter
+import org.burstsys.tesla.parcel.factory.TeslaParcelArena.TeslaParcelArenaReporter
 import org.burstsys.tesla.scatter.TeslaScatterReporter
 import org.burstsys.vitals.logging.VitalsLogger
 import org.burstsys.vitals.reporter.VitalsReporter
@@ -17,6 +18,7 @@ package object tesla extends VitalsReporterSource with VitalsLogger {
     TeslaBlockReporter,
     TeslaDirectorReporter,
     TeslaParcelReporter,
+    TeslaParcelArenaReporter,
     TeslaBufferReporter
   )
 
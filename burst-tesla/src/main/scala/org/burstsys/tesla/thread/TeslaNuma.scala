@@ -0,0 +1,140 @@
+/* Copyright Yahoo, Licensed under the terms of the Apache 2.0 license. See LICENSE file in project root for terms. */
+package org.burstsys.tesla.thread
+
+import org.burstsys.tesla.configuration
+import org.burstsys.vitals.errors._
+import org.burstsys.vitals.logging._
+
+import java.nio.file.{Files, Path, Paths}
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+import scala.jdk.CollectionConverters._
+
+/**
+ * NUMA topology and thread placement for the tesla worker pool. The topology comes from linux sysfs and threads
+ * are (optionally) pinned with `taskset` (there is no thread affinity API in the JVM). When NUMA mode is disabled,
+ * or the host has a single node, everything behaves as a single node zero.
+ */
+object TeslaNuma {
+
+  private final val sysNodePath: Path = Paths.get("/sys/devices/system/node")
+
+  /**
+   * the cpu list (e.g. `0-15,32-47`) of each NUMA node that has cpus, in node order
+   */
+  final lazy val nodeCpus: Array[String] = readNodeCpus(sysNodePath)
+
+  /**
+   * read the cpu list of each node (`node<N>/cpulist`) under a sysfs style node folder
+   */
+  private[tesla]
+  def readNodeCpus(nodePath: Path): Array[String] = {
+    try {
+      if (!Files.isDirectory(nodePath)) Array.empty[String] else {
+        Files.list(nodePath).iterator.asScala
+          .filter(_.getFileName.toString.matches("node\\d+"))
+          .toArray
+          .sortBy(_.getFileName.toString.stripPrefix("node").toInt)
+          .map(p => p.resolve("cpulist"))
+          .filter(Files.isReadable(_))
+          .map(p => new String(Files.readAllBytes(p)).trim)
+          .filter(_.nonEmpty)
+      }
+    } catch safely {
+      case t: Throwable =>
+        log warn burstStdMsg(s"TESLA_NUMA_TOPOLOGY_FAIL $t", t)
+        Array.empty[String]
+    }
+  }
+
+  /**
+   * is NUMA mode configured and does the host have more than one node
+   */
+  final lazy val numaEnabled: Boolean = {
+    val enabled = configuration.burstTeslaWorkerNumaEnableProperty.get && nodeCpus.length > 1
+    if (configuration.burstTeslaWorkerNumaEnableProperty.get)
+      log info s"TESLA_NUMA numaEnabled=$enabled nodes=${nodeCpus.zipWithIndex.map { case (c, n) => s"$n:[$c]" }.mkString(" ")}"
+    enabled
+  }
+
+  /**
+   * the number of nodes work is spread across (1 if NUMA mode is not enabled)
+   */
+  final def nodeCount: Int = if (numaEnabled) nodeCpus.length else 1
+
+  /**
+   * the node a tesla worker thread is bound to, or -1 if the current thread is not bound to a node
+   */
+  final def currentNode: Int = Thread.currentThread match {
+    case t: worker.TeslaWorkerThread => t.numaNode
+    case _ => -1
+  }
+
+  /**
+   * a stable node assignment for the i'th of a set of things (e.g. the regions of a slice) so that
+   * everything that touches it (prefetch, scan) can be done on the same node
+   */
+  final def homeNode(index: Int): Int = if (numaEnabled) index % nodeCount else 0
+
+  /**
+   * set if a pin failed - no further threads are pinned
+   */
+  private[this] val _pinFailed = new AtomicBoolean(false)
+
+  /**
+   * did pinning fail (and so is no longer attempted)
+   */
+  final def pinFailed: Boolean = _pinFailed.get
+
+  /**
+   * pin the current thread to the cpus of a node (if pinning is configured)
+   *
+   * @return true if the thread was pinned
+   */
+  final def pinCurrentThread(node: Int): Boolean = {
+    lazy val tag = s"TeslaNuma.pinCurrentThread(node=$node, thread=${Thread.currentThread.getName})"
+    if (!numaEnabled || !configuration.burstTeslaWorkerNumaPinProperty.get || node < 0 || node >= nodeCpus.length)
+      return false
+    try {
+      // /proc/thread-self links to /proc/<pid>/task/<tid>
+      val tid = Files.readSymbolicLink(Paths.get("/proc/thread-self")).getFileName.toString
+      pinThread(tid, nodeCpus(node))
+    } catch safely {
+      case t: Throwable => pinFailure(s"$t $tag", t)
+    }
+  }
+
+  /**
+   * pin a thread to a cpu list with an external command (by default `taskset`). Once a pin fails this
+   * does nothing - the failure is logged once and threads run unpinned.
+   *
+   * @return true if the thread was pinned
+   */
+  private[tesla]
+  def pinThread(tid: String, cpus: String, command: String = "taskset"): Boolean = {
+    lazy val tag = s"TeslaNuma.pinThread(tid=$tid, cpus=$cpus)"
+    if (_pinFailed.get)
+      return false
+    try {
+      val process = new ProcessBuilder(command, "-p", "-c", cpus, tid).redirectErrorStream(true).start()
+      val output = new String(process.getInputStream.readAllBytes()).trim
+      if (!process.waitFor(10, TimeUnit.SECONDS) || process.exitValue != 0) {
+        process.destroyForcibly()
+        pinFailure(s"output='$output' $tag", null)
+      } else {
+        log debug s"TESLA_NUMA_PIN $tag"
+        true
+      }
+    } catch safely {
+      case t: Throwable => pinFailure(s"$t $tag", t)
+    }
+  }
+
+  private
+  def pinFailure(msg: String, t: Throwable): Boolean = {
+    if (_pinFailed.compareAndSet(false, true))
+      log warn burstStdMsg(s"TESLA_NUMA_PIN_FAIL (threads will not be pinned) $msg", t)
+    false
+  }
+
+}
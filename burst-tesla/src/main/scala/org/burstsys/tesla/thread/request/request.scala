@@ -2,9 +2,9 @@
 package org.burstsys.tesla.thread
 
 import io.opentelemetry.context.Context
-import org.burstsys.tesla.configuration.burstTeslaMaxRequestThreadCountProperty
+import org.burstsys.tesla.configuration.{burstTeslaMaxRequestThreadCountProperty, burstTeslaRequestVirtualThreadsProperty}
 
-import java.util.concurrent.{Executor, ExecutorService, Executors, SynchronousQueue, TimeUnit}
+import java.util.concurrent.{Executor, ExecutorService, Executors, SynchronousQueue, ThreadFactory, TimeUnit}
 import org.burstsys.tesla.part.TeslaPartPool
 import org.burstsys.vitals.errors.{VitalsException, _}
 import org.burstsys.vitals.threading.burstThreadGroupGlobal
@@ -35,13 +35,20 @@ package object request {
    */
   private[thread] trait TeslaRequestThread extends TeslaThread
 
+  /**
+   * virtual threads can not be subclassed so virtual request threads are marked with a thread local
+   */
+  private[this]
+  val _inVirtualRequestThread: ThreadLocal[java.lang.Boolean] = ThreadLocal.withInitial(() => java.lang.Boolean.FALSE)
+
   /**
    * is the current thread is in fact a [[TeslaRequestThread]]?
    *
    * @return
    */
   final
-  def inTeslaRequestThread: Boolean = Thread.currentThread.isInstanceOf[TeslaRequestThread]
+  def inTeslaRequestThread: Boolean =
+    Thread.currentThread.isInstanceOf[TeslaRequestThread] || _inVirtualRequestThread.get.booleanValue
 
   /**
    * assert that the current thread is in fact a [[TeslaRequestThread]]
@@ -110,8 +117,9 @@ package object request {
 
   /**
    * Thread Pool/Factory with a ''unlimited'' number of ''cached'' threads. Generally these are meant to be used where you have
-   * a large number of ''requests'' that are best to allocate memory from the global [[TeslaPartPool]]
-   *
+   * a large number of ''requests'' that are best to allocate memory from the global [[TeslaPartPool]].
+   * When [[burstTeslaRequestVirtualThreadsProperty]] is set (and the JVM supports it) each request gets its own
+   * virtual thread instead.
    */
   private final case
   class TeslaRequestThreadPool(poolName: String) extends TeslaThreadPool {
@@ -121,11 +129,42 @@ package object request {
     }
 
     override lazy val pool: ExecutorService = {
-      val pool = Executors.newCachedThreadPool(factory).asInstanceOf[java.util.concurrent.ThreadPoolExecutor]
-      if (burstTeslaMaxRequestThreadCountProperty.asOption.isDefined)
-        pool.setMaximumPoolSize(burstTeslaMaxRequestThreadCountProperty.get)
+      val pool = virtualThreadPool.getOrElse {
+        val pool = Executors.newCachedThreadPool(factory).asInstanceOf[java.util.concurrent.ThreadPoolExecutor]
+        if (burstTeslaMaxRequestThreadCountProperty.asOption.isDefined)
+          pool.setMaximumPoolSize(burstTeslaMaxRequestThreadCountProperty.get)
+        pool
+      }
       Context.taskWrapping(pool)
     }
+
+    /**
+     * a thread per task executor of virtual threads. We build for a JVM without virtual threads
+     * so the (JDK 21) API is looked up reflectively.
+     */
+    private
+    def virtualThreadPool: Option[ExecutorService] = {
+      if (!burstTeslaRequestVirtualThreadsProperty.get) return None
+      try {
+        val builderClass = Class.forName("java.lang.Thread$Builder")
+        val builder = classOf[Thread].getMethod("ofVirtual").invoke(null)
+        val namedBuilder = builderClass.getMethod("name", classOf[String], java.lang.Long.TYPE)
+          .invoke(builder, s"$poolName-virtual-", java.lang.Long.valueOf(0))
+        val virtualFactory = builderClass.getMethod("factory").invoke(namedBuilder).asInstanceOf[ThreadFactory]
+        val requestFactory: ThreadFactory = (r: Runnable) => virtualFactory.newThread(() => {
+          _inVirtualRequestThread.set(java.lang.Boolean.TRUE)
+          r.run()
+        })
+        val pool = classOf[Executors].getMethod("newThreadPerTaskExecutor", classOf[ThreadFactory])
+          .invoke(null, requestFactory).asInstanceOf[ExecutorService]
+        log info s"TESLA_REQUEST_VIRTUAL_THREADS $poolName"
+        Some(pool)
+      } catch safely {
+        case t: Throwable =>
+          log warn s"TESLA_REQUEST_VIRTUAL_THREADS_UNAVAILABLE falling back to platform threads $poolName $t"
+          None
+      }
+    }
   }
 
 
@@ -3,11 +3,13 @@ package org.burstsys.tesla.thread
 
 import io.opentelemetry.context.Context
 import org.burstsys.tesla.configuration
+import org.burstsys.tesla.thread.TeslaNuma
 import org.burstsys.vitals.errors.VitalsException
 import org.burstsys.vitals.errors._
 import org.burstsys.vitals.threading.burstThreadGroupGlobal
 
 import java.util.concurrent.ExecutorService
+import java.util.concurrent.atomic.AtomicInteger
 import java.util.concurrent.Executors
 import scala.concurrent.duration.Duration
 import scala.concurrent.Await
@@ -16,15 +18,61 @@ import scala.concurrent.Future
 
 package object worker {
 
+  /**
+   * the shared worker pools - a single pool, or in NUMA mode one pool per node with the configured
+   * threads split evenly across the nodes
+   */
   private lazy
-  val teslaCommonWorkerPool: TeslaWorkerThreadPool = TeslaWorkerThreadPool(
-    poolName = "tesla-worker", configuration.burstTeslaWorkerThreadCountProperty.get
-  )
+  val teslaCommonWorkerPools: Array[TeslaWorkerThreadPool] = {
+    val threadCount = configuration.burstTeslaWorkerThreadCountProperty.get
+    if (!TeslaNuma.numaEnabled)
+      Array(TeslaWorkerThreadPool(poolName = "tesla-worker", threadCount))
+    else {
+      val nodes = TeslaNuma.nodeCount
+      (0 until nodes).map { node =>
+        val nodeThreads = threadCount / nodes + (if (node < threadCount % nodes) 1 else 0)
+        TeslaWorkerThreadPool(poolName = s"tesla-worker-n$node", math.max(1, nodeThreads), node)
+      }.toArray
+    }
+  }
 
-  private implicit lazy
-  val teslaCommonWorkerExecutor: ExecutionContext = teslaCommonWorkerPool.executor
+  private lazy
+  val teslaCommonWorkerCount: Int = teslaCommonWorkerPools.map(_.threadCount).sum
 
-  private[thread] trait TeslaWorkerThread extends TeslaThread
+  private[this]
+  val nextNode = new AtomicInteger
+
+  /**
+   * the executor for new work - stay on the current node if already on a worker thread, otherwise
+   * spread work round robin across the nodes
+   */
+  private implicit
+  def teslaCommonWorkerExecutor: ExecutionContext = {
+    val pools = teslaCommonWorkerPools
+    if (pools.length == 1) pools(0).executor
+    else TeslaNuma.currentNode match {
+      case -1 => pools(Math.floorMod(nextNode.getAndIncrement, pools.length)).executor
+      case node => pools(node).executor
+    }
+  }
+
+  /**
+   * the executor for a specific node (wraps if there are fewer nodes)
+   */
+  private
+  def teslaNodeWorkerExecutor(node: Int): ExecutionContext = {
+    val pools = teslaCommonWorkerPools
+    pools(Math.floorMod(node, pools.length)).executor
+  }
+
+  private[thread] trait TeslaWorkerThread extends TeslaThread {
+
+    /**
+     * the NUMA node this thread belongs to or -1 if none
+     */
+    def numaNode: Int
+
+  }
 
   /**
    * is the current thread is in fact a [[TeslaWorkerThread]]?
@@ -46,14 +94,22 @@ package object worker {
    *
    * @param poolName
    * @param threadCount
+   * @param numaNode the NUMA node the threads belong to, and are pinned to if configured (or -1 for none)
    */
   private case
-  class TeslaWorkerThreadPool(poolName: String, threadCount: Int) extends TeslaThreadPool {
+  class TeslaWorkerThreadPool(poolName: String, threadCount: Int, numaNode: Int = -1) extends TeslaThreadPool {
 
     override val priority: Int = Thread.NORM_PRIORITY - 1 // worker threads should run at lower priority
 
     override protected def instantiateThread(r: Runnable, name: String): Thread = {
-      new Thread(burstThreadGroupGlobal, r, name) with TeslaWorkerThread
+      val node = numaNode
+      val pinned: Runnable = if (node < 0) r else () => {
+        TeslaNuma.pinCurrentThread(node)
+        r.run()
+      }
+      new Thread(burstThreadGroupGlobal, pinned, name) with TeslaWorkerThread {
+        override val numaNode: Int = node
+      }
     }
 
     override lazy val pool: ExecutorService = Context.taskWrapping(Executors.newFixedThreadPool(threadCount, factory))
@@ -65,7 +121,7 @@ package object worker {
    */
   object TeslaWorkerCoupler {
 
-    def workerCount: Int = teslaCommonWorkerPool.threadCount
+    def workerCount: Int = teslaCommonWorkerCount
 
     /**
      *
@@ -100,7 +156,7 @@ package object worker {
    */
   object TeslaWorkerFuture {
 
-    def workerCount: Int = teslaCommonWorkerPool.threadCount
+    def workerCount: Int = teslaCommonWorkerCount
 
     final def apply[T](body: => T): Future[T] = {
       Future {
@@ -108,6 +164,17 @@ package object worker {
         body
       }
     }
+
+    /**
+     * a future hosted on the worker pool of a specific NUMA node (see [[TeslaNuma.homeNode]]). This is the same
+     * as `apply` when NUMA mode is not enabled.
+     */
+    final def onNode[T](node: Int)(body: => T): Future[T] = {
+      Future {
+        assertInTeslaWorkerThread()
+        body
+      }(teslaNodeWorkerExecutor(node))
+    }
   }
 
 }
@@ -29,6 +29,16 @@ class TeslaSpec extends AnyFlatSpec with Matchers with TeslaSpecLog {
 
   }
 
+  "burst block sizes" should "choose the smallest block size that fits" in {
+    val sizes = factory.TeslaBlockSizes.blockSizes
+    sizes.sorted should equal(sizes)
+    Seq(1, 300, 5000, 1e6.toInt, 100e6.toInt) foreach { request =>
+      val size = factory.TeslaBlockSizes.findBlockSize(request)
+      size should be > request + SizeofBlockHeader
+      sizes.filter(_ < size).foreach(_ should be <= request + SizeofBlockHeader)
+    }
+  }
+
   "burst memory pool" should "allocate block twice" in {
     TeslaWorkerCoupler {
 
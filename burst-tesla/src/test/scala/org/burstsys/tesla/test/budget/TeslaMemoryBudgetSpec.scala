@@ -0,0 +1,100 @@
+/* Copyright Yahoo, Licensed under the terms of the Apache 2.0 license. See LICENSE file in project root for terms. */
+package org.burstsys.tesla.test.budget
+
+import org.burstsys.tesla.part.factory.TeslaMemoryBudgetContext
+import org.burstsys.tesla.test.support.TeslaAbstractSpec
+
+import java.util.concurrent.atomic.AtomicLong
+import scala.concurrent.ExecutionContext.Implicits.global
+import scala.concurrent.duration._
+import scala.concurrent.{Await, Future}
+
+/**
+ * each test uses its own budget with a fixed size and in use memory so that nothing else allocating
+ * tesla memory in the same jvm changes the outcome
+ */
+class TeslaMemoryBudgetSpec extends TeslaAbstractSpec {
+
+  private val budgetSize = 1024L * 1024 * 1024
+
+  private val inUse = new AtomicLong
+
+  private val unusedFreed = new AtomicLong
+
+  private def newBudget: TeslaMemoryBudgetContext = {
+    inUse.set(0)
+    unusedFreed.set(0)
+    new TeslaMemoryBudgetContext(() => budgetSize, () => inUse.get, () => {
+      unusedFreed.incrementAndGet()
+      0L
+    })
+  }
+
+  it should "admit reservations over budget after the wait" in {
+    val budget = newBudget
+    val half = budgetSize / 2
+    budget.reserve("q1", half, 1.second) shouldBe true
+    budget.reserve("q2", half * 2, 100.millis) shouldBe false
+    unusedFreed.get shouldBe 1
+    budget.reservations shouldEqual Map("q1" -> half, "q2" -> half * 2)
+    budget.release("q1", half)
+    budget.release("q2", half * 2)
+    budget.reservedBytes shouldBe 0
+    budget.reservations shouldBe empty
+  }
+
+  it should "delay a reservation until another is released" in {
+    val budget = newBudget
+    budget.reserve("q1", budgetSize, 1.second) shouldBe true
+    val release = Future {
+      Thread.sleep(200)
+      budget.release("q1", budgetSize)
+    }
+    budget.reserve("q2", budgetSize, 30.seconds) shouldBe true
+    Await.result(release, 1.second)
+    budget.reservations shouldEqual Map("q2" -> budgetSize)
+    budget.release("q2", budgetSize)
+    budget.reservedBytes shouldBe 0
+  }
+
+  it should "not admit a first reservation when allocated memory is over budget" in {
+    val budget = newBudget
+    budget.recordAllocation(budgetSize)
+    budget.overBudget shouldBe false
+    budget.recordAllocation(1)
+    budget.overBudget shouldBe true
+    budget.reserve("q1", 1, 200.millis) shouldBe false
+    budget.release("q1", 1)
+    budget.recordFree(budgetSize + 1)
+    budget.reserve("q2", 1, 200.millis) shouldBe true
+    budget.release("q2", 1)
+    budget.reservedBytes shouldBe 0
+  }
+
+  it should "not count reserved memory twice once it is allocated and in use" in {
+    val budget = newBudget
+    val quarter = budgetSize / 4
+    budget.reserve("q1", quarter * 2, 1.second) shouldBe true
+    // q1 allocates and uses all of its reservation
+    budget.recordAllocation(quarter * 2)
+    inUse.set(quarter * 2)
+    budget.reserve("q2", quarter * 2, 100.millis) shouldBe true
+    // q2 has not allocated yet so its whole reservation still counts
+    budget.reserve("q3", quarter, 100.millis) shouldBe false
+    budget.release("q1", quarter * 2)
+    budget.release("q2", quarter * 2)
+    budget.release("q3", quarter)
+    budget.reservedBytes shouldBe 0
+  }
+
+  it should "flag growth pressure instead of reclaiming on the growing thread" in {
+    val budget = newBudget
+    budget.checkGrowth(budgetSize / 2)
+    budget.growthPressure shouldBe false
+    budget.recordAllocation(budgetSize / 2)
+    budget.checkGrowth(budgetSize)
+    budget.growthPressure shouldBe true
+    unusedFreed.get shouldBe 0
+  }
+
+}
@@ -5,6 +5,7 @@ import org.burstsys.tesla
 import org.burstsys.tesla.TeslaTypes._
 import org.burstsys.tesla.block
 import org.burstsys.tesla.block.factory.TeslaBlockSizes
+import org.burstsys.tesla.parcel.codec.TeslaParcelCodec
 import org.burstsys.tesla.test.support.TeslaAbstractSpec
 import org.burstsys.tesla.thread.request.TeslaRequestCoupler
 import org.burstsys.tesla.thread.worker.TeslaWorkerCoupler
@@ -15,11 +16,11 @@ class TeslaBasicParcelSpec extends TeslaAbstractSpec {
     TeslaWorkerCoupler {
       val parcel = tesla.parcel.factory.grabParcel(1024)
       try {
-        parcel.headerSize should equal(28)
+        parcel.headerSize should equal(32)
         parcel.bufferCount should equal(0)
         parcel.inflatedSize should equal(0)
         parcel.isInflated should equal(true)
-        parcel.nextSlotOffset should equal(28)
+        parcel.nextSlotOffset should equal(32)
 
         parcel.maxAvailableMemory should equal(TeslaBlockSizes.pageSize-(parcel.headerSize + block.SizeofBlockHeader))
       } finally tesla.parcel.factory.releaseParcel(parcel)
@@ -78,5 +79,38 @@ class TeslaBasicParcelSpec extends TeslaAbstractSpec {
     }
   }
 
+  "tesla parcel" should "deflate and inflate with every codec" in {
+    TeslaWorkerCoupler {
+      TeslaParcelCodec.codecs foreach { codec =>
+        val parcel = tesla.parcel.factory.grabParcel(1024 * SizeOfInteger)
+        val deflated = tesla.parcel.factory.grabParcel(codec.maxDeflatedSize(1024 * SizeOfInteger))
+        val inflated = tesla.parcel.factory.grabParcel(1024 * SizeOfInteger)
+        try {
+          parcel.startWrites()
+          for (i <- 0 until 100) {
+            val buffer = tesla.buffer.factory.grabBuffer(SizeOfInteger)
+            try {
+              buffer.writeInt(i % 7)
+              parcel.writeNextBuffer(buffer)
+            } finally tesla.buffer.factory.releaseBuffer(buffer)
+          }
+
+          deflated.deflateFrom(parcel, codec)
+          deflated.isInflated should equal(false)
+          deflated.codecId should equal(codec.codecId)
+
+          inflated.inflateFrom(deflated)
+          inflated.bufferCount should equal(100)
+          inflated.startReads()
+          for (i <- 0 until 100)
+            inflated.readNextBuffer.readInteger(0) should equal(i % 7)
+        } finally {
+          tesla.parcel.factory.releaseParcel(parcel)
+          tesla.parcel.factory.releaseParcel(deflated)
+          tesla.parcel.factory.releaseParcel(inflated)
+        }
+      }
+    }
+  }
 
 }
@@ -0,0 +1,154 @@
+/* Copyright Yahoo, Licensed under the terms of the Apache 2.0 license. See LICENSE file in project root for terms. */
+package org.burstsys.tesla.test.parcel
+
+import org.burstsys.tesla.TeslaTypes.TeslaMemorySize
+import org.burstsys.tesla.block.factory.TeslaBlockSizes
+import org.burstsys.tesla.configuration.teslaParcelArenaMaxIdleBytesProperty
+import org.burstsys.tesla.parcel.factory.TeslaParcelArena
+import org.burstsys.tesla.parcel.{TeslaParcel, TeslaParcelAnyVal}
+import org.burstsys.tesla.test.support.TeslaAbstractSpec
+
+import java.util.concurrent.atomic.{AtomicBoolean, AtomicLong}
+import java.util.concurrent.{CountDownLatch, Executors, TimeUnit}
+import scala.collection.mutable.ArrayBuffer
+import scala.util.Random
+
+/**
+ * the arena is shared by the whole jvm so these check the accounting relative to where it started
+ */
+//@Ignore
+class TeslaParcelArenaSpec extends TeslaAbstractSpec {
+
+  private val parcelSizes = Array(100, 1000, 10000, 100000)
+
+  override protected def afterEach(): Unit = {
+    teslaParcelArenaMaxIdleBytesProperty.useDefault()
+  }
+
+  private def blockSize(byteSize: TeslaMemorySize): TeslaMemorySize =
+    TeslaBlockSizes findBlockSize (byteSize + TeslaParcelAnyVal(0).headerSize)
+
+  /**
+   * arena bytes that are handed out
+   */
+  private def inUseBytes: Long = TeslaParcelArena.allocatedBytes - TeslaParcelArena.idleBytes
+
+  "TeslaParcelArena" should "hand out arena parcels" in {
+    val parcel = TeslaParcelArena.grabParcel(1000)
+    try {
+      TeslaParcelArena.isArenaParcel(parcel) shouldBe true
+      parcel.poolId should be >= TeslaParcelArena.arenaPoolIdBase
+    } finally TeslaParcelArena.releaseParcel(parcel)
+  }
+
+  it should "reuse released parcels while under the idle limit" in {
+    val inUse = inUseBytes
+    val size = blockSize(1000)
+    teslaParcelArenaMaxIdleBytesProperty.set(TeslaParcelArena.idleBytes + size)
+
+    val parcel = TeslaParcelArena.grabParcel(1000)
+    inUseBytes shouldBe inUse + size
+    val idle = TeslaParcelArena.idleBytes
+    TeslaParcelArena.releaseParcel(parcel)
+    TeslaParcelArena.idleBytes shouldBe idle + size
+
+    val allocated = TeslaParcelArena.allocatedBytes
+    val reused = TeslaParcelArena.grabParcel(1000)
+    TeslaParcelArena.allocatedBytes shouldBe allocated
+    TeslaParcelArena.idleBytes shouldBe idle
+    TeslaParcelArena.releaseParcel(reused)
+    inUseBytes shouldBe inUse
+  }
+
+  it should "free released parcels beyond the idle limit" in {
+    val inUse = inUseBytes
+    val size = blockSize(10000)
+    val parcels = Array.fill(3)(TeslaParcelArena.grabParcel(10000))
+    val idle = TeslaParcelArena.idleBytes
+    val allocated = TeslaParcelArena.allocatedBytes
+    teslaParcelArenaMaxIdleBytesProperty.set(idle + size)
+    parcels.foreach(TeslaParcelArena.releaseParcel)
+
+    // one fits, the other two are freed
+    TeslaParcelArena.idleBytes shouldBe idle + size
+    TeslaParcelArena.allocatedBytes shouldBe allocated - 2 * size
+    inUseBytes shouldBe inUse
+    TeslaParcelArena.idleBytes shouldBe TeslaParcelArena.queuedIdleBytes
+  }
+
+  it should "never go over the idle limit with concurrent releases" in {
+    val threads = 16
+    val rounds = 200
+    val inUse = inUseBytes
+    val limit = TeslaParcelArena.idleBytes + 8 * blockSize(parcelSizes.max)
+    teslaParcelArenaMaxIdleBytesProperty.set(limit)
+
+    val pool = Executors.newFixedThreadPool(threads + 1)
+    val over = new AtomicLong
+    val running = new AtomicBoolean(true)
+    try {
+      // watch the idle bytes for the whole run
+      pool.execute(() => {
+        while (running.get) {
+          val idle = TeslaParcelArena.idleBytes
+          if (idle > limit) over.set(idle)
+        }
+      })
+      val start = new CountDownLatch(1)
+      val done = new CountDownLatch(threads)
+      for (t <- 0 until threads) {
+        pool.execute(() => {
+          try {
+            start.await()
+            val random = new Random(t)
+            val held = new ArrayBuffer[TeslaParcel]
+            for (_ <- 0 until rounds) {
+              for (_ <- 0 until random.nextInt(8) + 1)
+                held += TeslaParcelArena.grabParcel(parcelSizes(random.nextInt(parcelSizes.length)))
+              held.foreach(TeslaParcelArena.releaseParcel)
+              held.clear()
+            }
+          } finally done.countDown()
+        })
+      }
+      start.countDown()
+      done.await(60, TimeUnit.SECONDS) shouldBe true
+    } finally {
+      running.set(false)
+      pool.shutdown()
+    }
+
+    over.get shouldBe 0
+    TeslaParcelArena.idleBytes should be <= limit
+    TeslaParcelArena.idleBytes shouldBe TeslaParcelArena.queuedIdleBytes
+    inUseBytes shouldBe inUse
+  }
+
+  it should "keep its accounting when grabs and releases race on the same size" in {
+    val threads = 16
+    val inUse = inUseBytes
+    // room for about half of what is in flight so releases race both to queue and to free
+    teslaParcelArenaMaxIdleBytesProperty.set(TeslaParcelArena.idleBytes + threads / 2 * blockSize(1000))
+
+    val pool = Executors.newFixedThreadPool(threads)
+    try {
+      val start = new CountDownLatch(1)
+      val done = new CountDownLatch(threads)
+      for (_ <- 0 until threads) {
+        pool.execute(() => {
+          try {
+            start.await()
+            for (_ <- 0 until 5000)
+              TeslaParcelArena.releaseParcel(TeslaParcelArena.grabParcel(1000))
+          } finally done.countDown()
+        })
+      }
+      start.countDown()
+      done.await(60, TimeUnit.SECONDS) shouldBe true
+    } finally pool.shutdown()
+
+    TeslaParcelArena.idleBytes shouldBe TeslaParcelArena.queuedIdleBytes
+    inUseBytes shouldBe inUse
+  }
+
+}
@@ -0,0 +1,125 @@
+/* Copyright Yahoo, Licensed under the terms of the Apache 2.0 license. See LICENSE file in project root for terms. */
+package org.burstsys.tesla.test.part
+
+import org.burstsys.tesla.part.TeslaPartMagazine
+import org.burstsys.tesla.test.support.TeslaAbstractSpec
+
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.{ConcurrentLinkedQueue, CountDownLatch}
+import scala.collection.mutable
+
+/**
+ * part magazines grabbed and released from many threads
+ */
+//@Ignore
+class TeslaPartMagazineSpec extends TeslaAbstractSpec {
+
+  private val sharedCapacity = 1 << 14
+
+  private val magazineCapacity = 16
+
+  private val threadCount = 8
+
+  private def newMagazine: TeslaPartMagazine[java.lang.Long] =
+    new TeslaPartMagazine[java.lang.Long](sharedCapacity, magazineCapacity, Thread.currentThread)
+
+  private def onThreads(count: Int)(body: Int => Unit): Unit = {
+    val start = new CountDownLatch(1)
+    val failures = new ConcurrentLinkedQueue[Throwable]
+    val threads = (0 until count).map { t =>
+      val thread = new Thread(() => {
+        start.await()
+        try body(t) catch {
+          case e: Throwable => failures.add(e)
+        }
+      })
+      thread.start()
+      thread
+    }
+    start.countDown()
+    threads.foreach(_.join())
+    if (!failures.isEmpty) throw failures.peek
+  }
+
+  /**
+   * take every part out of the magazine (from the owner)
+   */
+  private def drainAll(magazine: TeslaPartMagazine[java.lang.Long]): Seq[Long] = {
+    val parts = mutable.ArrayBuffer[Long]()
+    var part = magazine.poll()
+    while (part != null) {
+      parts += part
+      part = magazine.poll()
+    }
+    parts.toSeq
+  }
+
+  "part magazines" should "keep owner releases private and pop them last in first out" in {
+    val magazine = newMagazine
+    (1L to 4L).foreach(p => magazine.offer(p))
+    magazine.magazineSize shouldBe 4
+    magazine.size shouldBe 4
+    drainAll(magazine) shouldEqual Seq(4L, 3L, 2L, 1L)
+  }
+
+  it should "not lose or duplicate parts released from many threads" in {
+    val magazine = newMagazine
+    val partsPerThread = 1000
+    onThreads(threadCount) { t =>
+      for (p <- 0 until partsPerThread)
+        magazine.offer(t.toLong * partsPerThread + p)
+    }
+    val parts = drainAll(magazine)
+    parts.size shouldBe threadCount * partsPerThread
+    parts.toSet.size shouldBe parts.size
+  }
+
+  it should "not lose or duplicate parts grabbed and released by the owner and other threads at once" in {
+    val magazine = newMagazine
+    val partCount = 4096
+    (0 until partCount).foreach(p => magazine.offer(p.toLong))
+    val done = new AtomicBoolean
+    val others = new Thread(() => {
+      // other threads grab from and release to the shared queue while the owner works its magazine
+      while (!done.get) {
+        val part = magazine.poll()
+        if (part != null) magazine.offer(part)
+        magazine.flushMagazine()
+      }
+    })
+    others.start()
+    try {
+      for (_ <- 0 until 100000) {
+        val part = magazine.poll()
+        if (part != null) magazine.offer(part)
+      }
+    } finally {
+      done.set(true)
+      others.join()
+    }
+    val parts = drainAll(magazine)
+    parts.size shouldBe partCount
+    parts.toSet shouldEqual (0 until partCount).map(_.toLong).toSet
+  }
+
+  it should "let another thread flush the magazine of an idle owner" in {
+    val magazine = newMagazine
+    (1L to 8L).foreach(p => magazine.offer(p))
+    magazine.magazineSize shouldBe 8
+
+    // the owner goes idle - a tender thread moves its parts to where it can free them
+    val freed = mutable.ArrayBuffer[Long]()
+    onThreads(1) { _ =>
+      magazine.flushMagazine() shouldBe true
+      var part = magazine.poll()
+      while (part != null) {
+        freed += part
+        part = magazine.poll()
+      }
+    }
+    freed.toSet shouldEqual (1L to 8L).toSet
+    magazine.magazineSize shouldBe 0
+    magazine.poll() shouldBe null
+  }
+
+}
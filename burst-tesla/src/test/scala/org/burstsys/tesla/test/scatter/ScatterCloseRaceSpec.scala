@@ -0,0 +1,99 @@
+/* Copyright Yahoo, Licensed under the terms of the Apache 2.0 license. See LICENSE file in project root for terms. */
+package org.burstsys.tesla.test.scatter
+
+import java.util.concurrent.CountDownLatch
+
+import org.burstsys.tesla.scatter.TeslaScatter.maxSlotsPerScatter
+import org.burstsys.tesla.scatter.{TeslaScatter, TeslaScatterStopState, pool}
+import org.burstsys.tesla.test.support.TeslaScatterAbstractSpec
+import org.burstsys.vitals.errors.VitalsException
+import org.burstsys.vitals.uid.newBurstUid
+
+/**
+ * slots that complete on other threads while the scatter initiator closes the scatter
+ */
+//@Ignore
+class ScatterCloseRaceSpec extends TeslaScatterAbstractSpec {
+
+  private val rounds = 50
+
+  private val slotCount = 100
+
+  private val threadCount = 4
+
+  // these specs grab and release their own scatters
+  override protected def afterEach(): Unit = {}
+
+  /**
+   * complete every slot (half succeed, half fail) from several threads while the scatter closes
+   */
+  private def completeWhileClosing(scatter: TeslaScatter): Unit = {
+    val slots = Array.fill(slotCount)(scatter.addRequestSlot(MockRequest()))
+    scatter.execute()
+    val start = new CountDownLatch(1)
+    val threads = Array.tabulate(threadCount) { t =>
+      new Thread(() => {
+        start.await()
+        for (i <- t until slotCount by threadCount) {
+          if (i % 2 == 0) slots(i).slotSuccess()
+          else slots(i).slotFailed(VitalsException(s"slot $i failed"))
+        }
+      })
+    }
+    threads.foreach(_.start())
+    start.countDown()
+    pool.releaseScatter(scatter)
+    threads.foreach(_.join())
+  }
+
+  /**
+   * grab scatters from the pool until the given (released) scatter comes back around
+   */
+  private def regrab(scatter: TeslaScatter): TeslaScatter = {
+    var others = List.empty[TeslaScatter]
+    var grabbed = pool.grabScatter(newBurstUid)
+    while (grabbed ne scatter) {
+      others ::= grabbed
+      grabbed = pool.grabScatter(newBurstUid)
+    }
+    others.foreach(pool.releaseScatter)
+    grabbed
+  }
+
+  "scatters" should "idle every slot that completes while the scatter closes" in {
+    for (_ <- 0 until rounds) {
+      val scatter = pool.grabScatter(newBurstUid)
+      completeWhileClosing(scatter)
+
+      scatter.scatterState should equal(TeslaScatterStopState)
+      scatter.successes shouldBe empty
+      scatter.failures shouldBe empty
+      scatter.zombies shouldBe empty
+      scatter.activeSlots should equal(0)
+
+      // every slot must be available to the next execution
+      val reopened = regrab(scatter)
+      try {
+        for (_ <- 0 until maxSlotsPerScatter)
+          reopened.addRequestSlot(MockRequest())
+        reopened.activeSlots should equal(maxSlotsPerScatter)
+      } finally pool.releaseScatter(reopened)
+    }
+  }
+
+  they should "not carry results of a closed execution into the next one" in {
+    for (_ <- 0 until rounds) {
+      val scatter = pool.grabScatter(newBurstUid)
+      completeWhileClosing(scatter)
+
+      val reopened = regrab(scatter)
+      try {
+        reopened.successes shouldBe empty
+        reopened.failures shouldBe empty
+        reopened.activeSlots should equal(0)
+        reopened.scatterState should equal(TeslaScatterStopState)
+      } finally pool.releaseScatter(reopened)
+    }
+  }
+
+}
@@ -0,0 +1,65 @@
+/* Copyright Yahoo, Licensed under the terms of the Apache 2.0 license. See LICENSE file in project root for terms. */
+package org.burstsys.tesla.test.scatter
+
+import java.util.concurrent.CountDownLatch
+
+import org.burstsys.tesla.scatter.slot.{TeslaScatterSlotBegin, TeslaScatterSlotSucceed}
+import org.burstsys.tesla.scatter.{TeslaScatterBegin, TeslaScatterSucceed, pool}
+import org.burstsys.tesla.test.support.TeslaScatterAbstractSpec
+import org.burstsys.vitals.uid.newBurstUid
+
+import scala.concurrent.duration._
+import scala.language.postfixOps
+
+/**
+ * slots that complete concurrently on many threads
+ */
+//@Ignore
+class ScatterConcurrentCompletionSpec extends TeslaScatterAbstractSpec {
+
+  private val rounds = 50
+
+  private val slotCount = 100
+
+  private val threadCount = 8
+
+  // these specs grab and release their own scatters
+  override protected def afterEach(): Unit = {}
+
+  "scatters" should "dequeue every slot success before the scatter success" in {
+    for (_ <- 0 until rounds) {
+      val scatter = pool.grabScatter(newBurstUid)
+      try {
+        val slots = Array.fill(slotCount)(scatter.addRequestSlot(MockRequest()))
+        scatter.execute()
+        val start = new CountDownLatch(1)
+        val threads = Array.tabulate(threadCount) { t =>
+          new Thread(() => {
+            start.await()
+            for (i <- t until slotCount by threadCount)
+              slots(i).slotSuccess()
+          })
+        }
+        threads.foreach(_.start())
+        start.countDown()
+
+        var successes = 0
+        var done = false
+        while (!done) {
+          scatter.nextUpdate(10 seconds) match {
+            case _: TeslaScatterBegin =>
+            case _: TeslaScatterSlotBegin =>
+            case _: TeslaScatterSlotSucceed => successes += 1
+            case _: TeslaScatterSucceed => done = true
+            case update => fail(s"unexpected update $update")
+          }
+        }
+        threads.foreach(_.join())
+
+        successes should equal(slotCount)
+        scatter.successes.length should equal(slotCount)
+      } finally pool.releaseScatter(scatter)
+    }
+  }
+
+}
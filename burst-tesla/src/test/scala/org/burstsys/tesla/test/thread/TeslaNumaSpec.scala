@@ -0,0 +1,72 @@
+/* Copyright Yahoo, Licensed under the terms of the Apache 2.0 license. See LICENSE file in project root for terms. */
+package org.burstsys.tesla.test.thread
+
+import org.burstsys.tesla.configuration
+import org.burstsys.tesla.test.support.TeslaAbstractSpec
+import org.burstsys.tesla.thread.TeslaNuma
+
+import java.nio.file.{Files, Path}
+import java.util.Comparator
+
+//@Ignore
+class TeslaNumaSpec extends TeslaAbstractSpec {
+
+  /**
+   * a sysfs style node folder with a `node<N>/cpulist` for each entry
+   */
+  private def withNodes(nodes: (String, String)*)(body: Path => Unit): Unit = {
+    val root = Files.createTempDirectory("numa-nodes")
+    try {
+      nodes.foreach { case (name, cpus) =>
+        val node = Files.createDirectories(root.resolve(name))
+        if (cpus != null) Files.write(node.resolve("cpulist"), s"$cpus\n".getBytes)
+      }
+      body(root)
+    } finally Files.walk(root).sorted(Comparator.reverseOrder[Path]).forEach(Files.delete(_))
+  }
+
+  "TeslaNuma" should "behave as a single node zero when NUMA mode is off" in {
+    configuration.burstTeslaWorkerNumaEnableProperty.get shouldBe false
+    configuration.burstTeslaWorkerNumaPinProperty.get shouldBe false
+    TeslaNuma.numaEnabled shouldBe false
+    TeslaNuma.nodeCount shouldBe 1
+    (0 until 10).map(TeslaNuma.homeNode).distinct shouldBe Seq(0)
+    TeslaNuma.currentNode shouldBe -1
+  }
+
+  it should "not pin threads unless pinning is configured" in {
+    TeslaNuma.pinCurrentThread(0) shouldBe false
+    TeslaNuma.pinCurrentThread(1) shouldBe false
+    TeslaNuma.pinFailed shouldBe false
+  }
+
+  it should "read the cpus of each node in node order" in {
+    withNodes("node10" -> "40-43", "node2" -> "8-15,24-31", "node0" -> "0-7", "possible" -> "0-1", "node3" -> null, "node4" -> "") { root =>
+      TeslaNuma.readNodeCpus(root).toSeq shouldBe Seq("0-7", "8-15,24-31", "40-43")
+    }
+  }
+
+  it should "find no nodes where there is no node folder" in {
+    withNodes() { root =>
+      TeslaNuma.readNodeCpus(root.resolve("missing")) shouldBe empty
+      TeslaNuma.readNodeCpus(root) shouldBe empty
+    }
+  }
+
+  /**
+   * these two run in order - once a pin fails no further pins are tried
+   */
+  it should "pin a thread when the pin command succeeds" in {
+    TeslaNuma.pinThread("1", "0", command = "true") shouldBe true
+    TeslaNuma.pinFailed shouldBe false
+  }
+
+  it should "stop pinning after the first failed pin" in {
+    TeslaNuma.pinThread("1", "0", command = "false") shouldBe false
+    TeslaNuma.pinFailed shouldBe true
+    TeslaNuma.pinThread("1", "0", command = "true") shouldBe false
+    TeslaNuma.pinThread("1", "0", command = "no-such-pin-command") shouldBe false
+    TeslaNuma.pinFailed shouldBe true
+  }
+
+}
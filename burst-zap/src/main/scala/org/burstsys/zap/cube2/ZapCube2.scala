@@ -6,6 +6,7 @@ import com.esotericsoftware.kryo.io.{Input, Output}
 import org.burstsys.brio.dictionary.flex.BrioFlexDictionary
 import org.burstsys.brio.dictionary.mutable.BrioMutableDictionary
 import org.burstsys.brio.types.BrioPrimitives.BrioPrimitive
+import org.burstsys.felt.model.collectors.cube.decl.column.aggregation.sketch.FeltCubeAggSketchSemRt
 import org.burstsys.felt.model.collectors.cube.{FeltCubeBuilder, FeltCubeCollector}
 import org.burstsys.tesla.TeslaTypes.{TeslaMemoryOffset, TeslaMemoryPtr, TeslaMemorySize, TeslaNullMemoryPtr}
 import org.burstsys.tesla.block.TeslaBlockPart
@@ -103,8 +104,8 @@ trait ZapCube2 extends Any with FeltCubeCollector with ZapCube2DimensionAxis
 
 
   /**
-   * the offset of the first row in the indexed bucket list or EmptyBucket is this indexed bucket is empty.
-   * This value is the offset of the first row in the bucket list from the cube's '''basePtr'''
+   * the offset of the row in the indexed (open addressed) bucket or EmptyBucket is this indexed bucket is empty.
+   * This value is the offset of the row from the cube's '''basePtr'''
    */
   def bucketRead(index: Int): TeslaMemoryOffset
 
@@ -116,7 +117,7 @@ trait ZapCube2 extends Any with FeltCubeCollector with ZapCube2DimensionAxis
   def bucketStdDeviation: Double
 
   /**
-   * calculate the longest bucket list
+   * calculate the longest bucket probe
    *
    * @return
    */
@@ -138,6 +139,15 @@ trait ZapCube2 extends Any with FeltCubeCollector with ZapCube2DimensionAxis
    */
   def dimWrite(): Unit
 
+  ////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+  // Aggregations
+  ////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+  /**
+   * add an item to the sketch of a sketch aggregation in the current row and update the aggregation
+   */
+  def aggSketchWrite(semantic: FeltCubeAggSketchSemRt, aggregation: Int, item: BrioPrimitive): Unit
+
   ////////////////////////////////////////////////////////////////////////////////////////////////////////////////
   // Rows
   ////////////////////////////////////////////////////////////////////////////////////////////////////////////////
@@ -297,6 +307,11 @@ class ZapCube2AnyVal(blockPtr: TeslaMemoryPtr = TeslaNullMemoryPtr) extends AnyV
     aggWrite(aggregation, value)
   }
 
+  override
+  def writeAggregationSketch(builder: FeltCubeBuilder, thisCube: FeltCubeCollector, aggregation: Int, item: BrioPrimitive): Unit = {
+    aggSketchWrite(builder.aggregationSemantics(aggregation).asInstanceOf[FeltCubeAggSketchSemRt], aggregation, item)
+  }
+
   override
   def readAggregationNull(builder: FeltCubeBuilder, thisCube: FeltCubeCollector, aggregation: Int): Boolean = {
     aggIsNull(aggregation)
@@ -6,6 +6,7 @@ import com.esotericsoftware.kryo.io.{Input, Output}
 import org.burstsys.brio.types.BrioTypes
 import org.burstsys.brio.types.BrioTypes.{BrioRelationName, BrioTypeKey}
 import org.burstsys.felt.model.collectors.cube.decl.column.aggregation.FeltCubeAggSemRt
+import org.burstsys.felt.model.collectors.cube.decl.column.aggregation.sketch.FeltCubeAggSketchSemRt
 import org.burstsys.felt.model.collectors.cube.decl.column.dimension.FeltCubeDimSemRt
 import org.burstsys.felt.model.collectors.cube.runtime.FeltCubeTreeMask
 import org.burstsys.felt.model.collectors.cube.{FeltCubeBuilder, FeltCubeBuilderContext}
@@ -15,6 +16,16 @@ import org.burstsys.zap.cube2.row.ZapCube2Row
 
 trait ZapCube2Builder extends FeltCubeBuilder with TeslaPartBuilder {
   def neededSize(itemCount: Int): TeslaMemorySize
+
+  /**
+   * the aggregations that have a sketch in each row
+   */
+  def sketchMap: Long
+
+  /**
+   * the byte size of each sketch in a row - the largest sketch of the sketch aggregations
+   */
+  def sketchSize: TeslaMemorySize
 }
 
 object ZapCube2Builder {
@@ -114,24 +125,29 @@ class ZapCube2BuilderContext(
 
   def defaultStartSize: TeslaMemorySize = neededSize(rowLimit)
 
-  //override val bucketCount: Int = 16
+  /**
+   * the buckets are open addressed so there must be more buckets than rows - keep them at most 3/4 full
+   */
   @inline override
-  def bucketCount(maxRowCount: Int): Int = {
-    maxRowCount match {
-      case n if n == 1 => 1;
-      case n if n < 10 => 3;
-      case n if n < 50 => 7;
-      case n if n < 100 => 11;
-      case n if n < 500 => 23;
-      case n if n < 1000 => 43;
-      case n if n < 5000 => 83;
-      case n if n < 10000 => 103;
-      case _ => 103
-    }
+  def bucketCount(maxRowCount: Int): Int = math.max(maxRowCount, 0) / 3 * 4 + 4
+
+  override
+  lazy val sketchMap: Long = {
+    var map = 0L
+    for (a <- aggregationSemantics.indices if aggregationSemantics(a).isInstanceOf[FeltCubeAggSketchSemRt])
+      map |= 1L << a
+    map
+  }
+
+  override
+  lazy val sketchSize: TeslaMemorySize = {
+    val largest = aggregationSemantics.collect { case s: FeltCubeAggSketchSemRt => s.sketchByteSize }.foldLeft(0)(math.max)
+    // rows copy and swap sketches a long at a time
+    (largest + SizeOfLong - 1) / SizeOfLong * SizeOfLong
   }
 
   @inline
-  lazy val rowSize: TeslaMemoryOffset = ZapCube2Row.byteSize(dimensionCount, aggregationCount)
+  lazy val rowSize: TeslaMemoryOffset = ZapCube2Row.byteSize(dimensionCount, aggregationCount, sketchMap, sketchSize)
 
 
   override def totalMemorySize: TeslaMemoryOffset = throw new UnsupportedOperationException("not implemented")
@@ -77,6 +77,13 @@ import org.burstsys.zap.cube2.state._
  * the parent thus supporting '''group by''' semantics per Burst count/dimension/filter top level mission.
  * </p>
  *
+ * '''INDEX:''' there is no shared key between parent and child so the result is inherently a cross product, but
+ * rows on either side with the same ''projection'' (the nullity and values of their masked dimensions) produce
+ * the same result rows, and since each join row resets the aggregation nullity of its result row only the last
+ * of them in row order survives. So a transient off heap [[ZapCube2JoinIndex]] of the distinct projections of
+ * each side is built first and the join is over distinct parent projections x distinct child projections
+ * rather than every parent row x every child row. Small cubes are not indexed and all their rows are joined.
+ *
  * '''NOTE:''' the join algorithm is perfectly re-entrant since it never does any merging of aggregations it only
  * does creation of rows and setting of aggregations. This means that we do not really need to worry about
  * upsizing causing artifacts related to stopping midway through. Cool beans!
@@ -98,35 +105,50 @@ trait ZapCube2Join extends Any with ZapCube2State {
     val rc = resultCube.asInstanceOf[ZapCube2]
     val cc = childCube.asInstanceOf[ZapCube2]
 
-    var cCount = 0
-    while (cCount < cc.rowsCount) {
-      val currentChildRow = cc.row(cCount)
+    if (cc.isEmpty) {
+      rc.validate()
+      return
+    }
+
+    // only the last of the rows with the same masked dimensions can survive in the result so just join those
+    val childIndex = ZapCube2JoinIndex(cc, childDimensionMask)
+    val parentIndex = ZapCube2JoinIndex(this, parentDimensionMask)
+    try {
+      val childRows = childIndex.joinRowCount(cc)
+      val parentRows = parentIndex.joinRowCount(this)
+      var c = 0
+      while (c < childRows) {
+        val currentChildRow = childIndex.joinRow(cc, c)
 
-      if (this.rowsCount > 0) {
-        var pCount = 0
-        while (pCount < this.rowsCount) {
-          val currentParentRow = this.row(pCount)
+        if (parentRows > 0) {
+          var p = 0
+          while (p < parentRows) {
+            val currentParentRow = parentIndex.joinRow(this, p)
+            rc.createJoinRow(
+              parentRow = currentParentRow,
+              childRow = currentChildRow,
+              resultCube = rc,
+              parentDimensionMask = parentDimensionMask, parentAggregationMask = parentAggregationMask,
+              childDimensionMask = childDimensionMask, childAggregationMask = childAggregationMask
+            )
+            p += 1
+          }
+        } else {
+          // Since there are no parent rows
+          // just copy the child row info and mask the parent out
           rc.createJoinRow(
-            parentRow = currentParentRow,
+            parentRow = null,
             childRow = currentChildRow,
             resultCube = rc,
-            parentDimensionMask = parentDimensionMask, parentAggregationMask = parentAggregationMask,
+            parentDimensionMask = VitalsBitMapAnyVal(), parentAggregationMask = VitalsBitMapAnyVal(),
             childDimensionMask = childDimensionMask, childAggregationMask = childAggregationMask
           )
-          pCount += 1
         }
-      } else {
-        // Since there are no parent rows
-        // just copy the child row info and mask the parent out
-        rc.createJoinRow(
-          parentRow = null,
-          childRow = currentChildRow,
-          resultCube = rc,
-          parentDimensionMask = VitalsBitMapAnyVal(), parentAggregationMask = VitalsBitMapAnyVal(),
-          childDimensionMask = childDimensionMask, childAggregationMask = childAggregationMask
-        )
+        c += 1
       }
-      cCount += 1
+    } finally {
+      childIndex.release()
+      parentIndex.release()
     }
     rc.validate()
   }
@@ -189,12 +211,18 @@ trait ZapCube2Join extends Any with ZapCube2State {
     while (a < aggCount) {
       if (childAggregationMask.testBit(a)) {
         if (!childRow.aggIsNull(a)) {
-          resultRow.aggWrite(a, childRow.aggRead(a))
+          if (childRow.aggIsSketch(a))
+            resultRow.aggSketchCopy(a, childRow)
+          else
+            resultRow.aggWrite(a, childRow.aggRead(a))
         }
       }
       if (parentAggregationMask.testBit(a)) {
         if (!parentRow.aggIsNull(a)) {
-          resultRow.aggWrite(a, parentRow.aggRead(a))
+          if (parentRow.aggIsSketch(a))
+            resultRow.aggSketchCopy(a, parentRow)
+          else
+            resultRow.aggWrite(a, parentRow.aggRead(a))
         }
       }
 
@@ -0,0 +1,178 @@
+/* Copyright Yahoo, Licensed under the terms of the Apache 2.0 license. See LICENSE file in project root for terms. */
+package org.burstsys.zap.cube2.algorithms
+
+import org.burstsys.tesla
+import org.burstsys.tesla.TeslaTypes.{SizeOfInteger, TeslaMemoryPtr, TeslaNullMemoryPtr}
+import org.burstsys.tesla.block.TeslaBlockAnyVal
+import org.burstsys.tesla.offheap
+import org.burstsys.vitals.bitmap.VitalsBitMapAnyVal
+import org.burstsys.zap.cube2.ZapCube2
+import org.burstsys.zap.cube2.row.ZapCube2Row
+
+/**
+ * A transient off heap index of the rows of a cube that are distinct in their ''projection'' through a join
+ * dimension mask (the nullity and values of just the masked dimensions). Rows with the same projection produce
+ * exactly the same join keys, and since [[ZapCube2Join.createJoinRow]] resets the aggregation nullity of the
+ * result row on every call, only the '''last''' of them (in row order) survives in the result. The index holds
+ * that last row for each distinct projection, in row order, so the join only has to walk the distinct rows.
+ * A cube with fewer than [[ZapCube2JoinIndex.MinIndexedRows]] rows is not indexed (the block and the hashing cost
+ * more than the duplicate rows they save) and the join walks all of its rows.
+ * {{{
+ *   [ DISTINCT_COUNT    | INTEGER ] the number of distinct projections
+ *   [ DISTINCT_ROWS     | ARRAY[INTEGER] ] the row index of the last row for each projection (in row order)
+ *   [ SLOTS             | ARRAY[INTEGER] ] open addressed hash table of row index + 1 (0 is an empty slot)
+ * }}}
+ */
+final case
+class ZapCube2JoinIndex(blockPtr: TeslaMemoryPtr) extends AnyVal {
+
+  /**
+   * false if the cube was too small to be worth indexing
+   */
+  @inline
+  def indexed: Boolean = blockPtr != TeslaNullMemoryPtr
+
+  /**
+   * the number of rows of `cube` the join has to walk
+   */
+  @inline
+  def joinRowCount(cube: ZapCube2): Int = if (indexed) distinctCount else cube.rowsCount
+
+  /**
+   * the i'th row of `cube` the join has to walk
+   */
+  @inline
+  def joinRow(cube: ZapCube2, i: Int): ZapCube2Row = cube.row(if (indexed) distinctRow(i) else i)
+
+  @inline
+  def distinctCount: Int = offheap.getInt(distinctCountStart)
+
+  @inline
+  def distinctCount_=(count: Int): Unit = offheap.putInt(distinctCountStart, count)
+
+  /**
+   * the row index of the i'th distinct row
+   */
+  @inline
+  def distinctRow(i: Int): Int = offheap.getInt(distinctRowsStart + (i * SizeOfInteger))
+
+  @inline
+  def distinctRow(i: Int, row: Int): Unit = offheap.putInt(distinctRowsStart + (i * SizeOfInteger), row)
+
+  /**
+   * return the off heap memory to the block pool
+   */
+  @inline
+  def release(): Unit = if (indexed) tesla.block.factory.releaseBlock(TeslaBlockAnyVal(blockPtr))
+
+  @inline private
+  def distinctCountStart: TeslaMemoryPtr = TeslaBlockAnyVal(blockPtr).dataStart
+
+  @inline private
+  def distinctRowsStart: TeslaMemoryPtr = distinctCountStart + SizeOfInteger
+
+}
+
+object ZapCube2JoinIndex {
+
+  /**
+   * cubes with fewer rows than this are joined row by row without an index
+   */
+  final val MinIndexedRows: Int = 32
+
+  /**
+   * index the rows of `cube` that are distinct in their projection through `dimensionMask`
+   */
+  final
+  def apply(cube: ZapCube2, dimensionMask: VitalsBitMapAnyVal): ZapCube2JoinIndex = {
+    val rows = cube.rowsCount
+    if (rows < MinIndexedRows)
+      return ZapCube2JoinIndex(TeslaNullMemoryPtr)
+    val slots = slotCount(rows)
+    val index = ZapCube2JoinIndex(
+      tesla.block.factory.grabBlock(SizeOfInteger + ((rows + slots) * SizeOfInteger)).blockBasePtr
+    )
+    val slotsStart = index.distinctRowsStart + (rows * SizeOfInteger)
+    offheap.setMemory(slotsStart, slots * SizeOfInteger, 0)
+
+    // walk backwards so the first row we see with a given projection is the last one in row order
+    var count = 0
+    var r = rows - 1
+    while (r >= 0) {
+      val row = cube.row(r)
+      var slot = projectionHash(row, dimensionMask) & (slots - 1)
+      var found = false
+      var more = true
+      while (more) {
+        offheap.getInt(slotsStart + (slot * SizeOfInteger)) match {
+          case 0 =>
+            offheap.putInt(slotsStart + (slot * SizeOfInteger), r + 1)
+            more = false
+          case entry =>
+            if (projectionsMatch(row, cube.row(entry - 1), dimensionMask)) {
+              found = true
+              more = false
+            } else
+              slot = (slot + 1) & (slots - 1)
+        }
+      }
+      if (!found) {
+        index.distinctRow(count, r)
+        count += 1
+      }
+      r -= 1
+    }
+
+    // and flip the distinct rows back into row order
+    var i = 0
+    while (i < count / 2) {
+      val tmp = index.distinctRow(i)
+      index.distinctRow(i, index.distinctRow(count - 1 - i))
+      index.distinctRow(count - 1 - i, tmp)
+      i += 1
+    }
+    index.distinctCount = count
+    index
+  }
+
+  /**
+   * a power of two with at most a 50% load factor
+   */
+  @inline private
+  def slotCount(rows: Int): Int = {
+    var slots = 2
+    while (slots < rows * 2) slots <<= 1
+    slots
+  }
+
+  @inline private
+  def projectionHash(row: ZapCube2Row, dimensionMask: VitalsBitMapAnyVal): Int = {
+    val presentMap = row.dimNullMap & dimensionMask.data
+    var result: Long = presentMap
+    var d = 0
+    while (d < row.dimCount) {
+      if (dimensionMask.testBit(d) && !row.dimIsNull(d))
+        result = result * 92821L + row.dimRead(d)
+      d += 1
+    }
+    // spread the high bits down into the slot bits
+    result ^= result >>> 33
+    result *= 0xff51afd7ed558ccdL
+    result ^= result >>> 33
+    result.toInt
+  }
+
+  @inline private
+  def projectionsMatch(thisRow: ZapCube2Row, thatRow: ZapCube2Row, dimensionMask: VitalsBitMapAnyVal): Boolean = {
+    if ((thisRow.dimNullMap & dimensionMask.data) != (thatRow.dimNullMap & dimensionMask.data))
+      return false
+    var d = 0
+    while (d < thisRow.dimCount) {
+      if (dimensionMask.testBit(d) && !thisRow.dimIsNull(d) && thisRow.dimRead(d) != thatRow.dimRead(d))
+        return false
+      d += 1
+    }
+    true
+  }
+
+}
@@ -4,6 +4,7 @@ package org.burstsys.zap.cube2.algorithms
 import org.burstsys.brio.dictionary.mutable.BrioMutableDictionary
 import org.burstsys.brio.types.BrioTypes._
 import org.burstsys.felt.model.collectors.cube.decl.column.aggregation.FeltCubeAggSemRt
+import org.burstsys.felt.model.collectors.cube.decl.column.aggregation.sketch.FeltCubeAggSketchSemRt
 import org.burstsys.felt.model.collectors.cube.{FeltCubeBuilder, FeltCubeCollector}
 import org.burstsys.vitals.bitmap.VitalsBitMapAnyVal
 import org.burstsys.vitals.git.log
@@ -110,7 +111,10 @@ trait ZapCube2Merge extends Any with ZapCube2State with ZapCube2Nav {
       // make sure that we do not aggregate for fields in other gathers
       if (aggregationMask.testBit(aggregation)) {
         if (!sourceRow.aggIsNull(aggregation)) {
-          targetRow.aggWrite(aggregation, sourceRow.aggRead(aggregation))
+          if (sourceRow.aggIsSketch(aggregation))
+            targetRow.aggSketchCopy(aggregation, sourceRow)
+          else
+            targetRow.aggWrite(aggregation, sourceRow.aggRead(aggregation))
         } else {
           targetRow.aggSetNull(aggregation)
         }
@@ -129,23 +133,27 @@ trait ZapCube2Merge extends Any with ZapCube2State with ZapCube2Nav {
       // make sure that we do not aggregate for fields in other gathers
       if (aggregationMask.testBit(aggregation)) {
         val semantic: FeltCubeAggSemRt = builder.aggregationSemantics(aggregation)
-        if (!incomingRow.aggIsNull(aggregation)) {
-          builder.aggregationFieldTypes(aggregation) match {
-            case BrioBooleanKey =>
-              existingRow.aggWrite(aggregation, semantic.doBoolean(existingRow.aggRead(aggregation), incomingRow.aggRead(aggregation), intra))
-            case BrioByteKey =>
-              existingRow.aggWrite(aggregation, semantic.doByte(existingRow.aggRead(aggregation), incomingRow.aggRead(aggregation), intra))
-            case BrioShortKey =>
-              existingRow.aggWrite(aggregation, semantic.doShort(existingRow.aggRead(aggregation), incomingRow.aggRead(aggregation), intra))
-            case BrioIntegerKey =>
-              existingRow.aggWrite(aggregation, semantic.doInteger(existingRow.aggRead(aggregation), incomingRow.aggRead(aggregation), intra))
-            case BrioLongKey =>
-              existingRow.aggWrite(aggregation, semantic.doLong(existingRow.aggRead(aggregation), incomingRow.aggRead(aggregation), intra))
-            case BrioDoubleKey =>
-              existingRow.aggWrite(aggregation, semantic.doDouble(existingRow.aggRead(aggregation), incomingRow.aggRead(aggregation), intra))
-            case BrioStringKey =>
-              existingRow.aggWrite(aggregation, semantic.doString(existingRow.aggRead(aggregation), incomingRow.aggRead(aggregation), intra))
-          }
+        if (!incomingRow.aggIsNull(aggregation)) semantic match {
+          case sketchSemantic: FeltCubeAggSketchSemRt =>
+            // sketches are merged and the value recalculated from the merged sketch
+            existingRow.aggSketchMerge(sketchSemantic, aggregation, incomingRow)
+          case _ =>
+            builder.aggregationFieldTypes(aggregation) match {
+              case BrioBooleanKey =>
+                existingRow.aggWrite(aggregation, semantic.doBoolean(existingRow.aggRead(aggregation), incomingRow.aggRead(aggregation), intra))
+              case BrioByteKey =>
+                existingRow.aggWrite(aggregation, semantic.doByte(existingRow.aggRead(aggregation), incomingRow.aggRead(aggregation), intra))
+              case BrioShortKey =>
+                existingRow.aggWrite(aggregation, semantic.doShort(existingRow.aggRead(aggregation), incomingRow.aggRead(aggregation), intra))
+              case BrioIntegerKey =>
+                existingRow.aggWrite(aggregation, semantic.doInteger(existingRow.aggRead(aggregation), incomingRow.aggRead(aggregation), intra))
+              case BrioLongKey =>
+                existingRow.aggWrite(aggregation, semantic.doLong(existingRow.aggRead(aggregation), incomingRow.aggRead(aggregation), intra))
+              case BrioDoubleKey =>
+                existingRow.aggWrite(aggregation, semantic.doDouble(existingRow.aggRead(aggregation), incomingRow.aggRead(aggregation), intra))
+              case BrioStringKey =>
+                existingRow.aggWrite(aggregation, semantic.doString(existingRow.aggRead(aggregation), incomingRow.aggRead(aggregation), intra))
+            }
         }
       }
       aggregation += 1
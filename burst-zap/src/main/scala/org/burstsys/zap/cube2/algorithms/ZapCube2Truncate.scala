@@ -15,9 +15,11 @@ import org.burstsys.zap.cube2.state._
  * <ol>
  * <li>Take an existing cube with a set of buckets, and a set of rows.</li>
  * <li>Initialize the set of buckets to be empty.</li>
- * <li>Sort the set of rows independent of their position in the buckets and bucket lists
- * using an in-situ non-stable, quicksort algorithm reverse ordering (largest to smallest)
- * based on a single given aggregation column.</li>
+ * <li>Select the K rows with the largest values in a single given aggregation column, independent of their
+ * position in the buckets and bucket lists, and move them to the beginning of the row set using an in-situ
+ * non-stable introselect (quickselect that falls back to heapsort if partitioning degrades).</li>
+ * <li>Reverse order (largest to smallest) just those K rows using an in-situ non-stable introsort. Only the
+ * rows that are kept are sorted and neither step recurses deeper than log(N).</li>
  * <li>Set the row count in the cube to an integer K, where K defines the number of rows
  * to keep in the beginning of the list.</li>
  * <li>For each row, 0 through K-1, find the hash of the row's dimension keys, and link
@@ -44,8 +46,8 @@ trait ZapCube2Truncate extends Any with ZapCube2State {
   @inline final override
   def truncateToBottomKBasedOnAggregation(builder: FeltCubeBuilder, thisCube: FeltCubeCollector, k: Int, aggregation: Int): Unit = {
 
-    // reverse sort the entire row set
-    sortRowsAscending(aggregation, 0, rowsCount - 1)
+    // move the bottom k rows to the front and sort just those
+    selectRows(aggregation, k, ascending = true)
 
     // set the row count to K. This essentially throws away all rows but 0 through k-1.
     truncateRows(k)
@@ -60,8 +62,8 @@ trait ZapCube2Truncate extends Any with ZapCube2State {
   @inline final override
   def truncateToTopKBasedOnAggregation(builder: FeltCubeBuilder, thisCube: FeltCubeCollector, k: Int, aggregation: Int): Unit = {
 
-    // reverse sort the entire row set
-    sortRowsDescending(aggregation, 0, rowsCount - 1)
+    // move the top k rows to the front and reverse sort just those
+    selectRows(aggregation, k, ascending = false)
 
     // set the row count to K. This essentially throws away all rows but 0 through k-1.
     truncateRows(k)
@@ -74,37 +76,121 @@ trait ZapCube2Truncate extends Any with ZapCube2State {
   }
 
   /**
-   * forward quicksort a cubes rows
+   * introselect the first k rows (in aggregation order) into rows 0 through k-1 and then introsort just those
    *
    * @param aggIndex
-   * @param lowerIndex
-   * @param higherIndex
+   * @param k
+   * @param ascending
    */
   @inline final private
-  def sortRowsAscending(aggIndex: Int, low: Int, high: Int): Unit = {
-    if (low >= 0 && high > low) {
-      val pivotIndex = partition(aggIndex, low, high)
-      sortRowsAscending(aggIndex, low, pivotIndex)
-      sortRowsAscending(aggIndex, pivotIndex + 1, high)
+  def selectRows(aggIndex: Int, k: Int, ascending: Boolean): Unit = {
+    val kept = math.min(k, rowsCount)
+    if (kept <= 0)
+      return
+    if (kept < rowsCount) {
+      var low = 0
+      var high = rowsCount - 1
+      var depth = depthLimit(rowsCount)
+      // partition only the side that holds the last kept row
+      while (high > low) {
+        if (depth == 0) {
+          heapSortRows(aggIndex, low, high, ascending)
+          high = low
+        } else {
+          depth -= 1
+          val pivotIndex = partition(aggIndex, low, high, ascending)
+          if (kept - 1 <= pivotIndex)
+            high = pivotIndex
+          else
+            low = pivotIndex + 1
+        }
+      }
     }
+    sortRows(aggIndex, 0, kept - 1, ascending, depthLimit(kept))
   }
 
   /**
-   * reverse quicksort a cube's rows.
+   * introsort a range of a cube's rows - quicksort that recurses into the smaller partition and loops on the
+   * larger, and falls back to heapsort when the partitions degrade
    *
    * @param aggIndex
-   * @param low
-   * @param high
+   * @param lowIndex
+   * @param highIndex
+   * @param ascending
+   * @param depthIndex
    */
   @inline final private
-  def sortRowsDescending(aggIndex: Int, low: Int, high: Int): Unit = {
-    if (low >= 0 && high > low) {
-      val pivotIndex = partition(aggIndex, low, high, ascending = false)
-      sortRowsDescending(aggIndex, low, pivotIndex)
-      sortRowsDescending(aggIndex, pivotIndex + 1, high)
+  def sortRows(aggIndex: Int, lowIndex: Int, highIndex: Int, ascending: Boolean, depthIndex: Int): Unit = {
+    var low = lowIndex
+    var high = highIndex
+    var depth = depthIndex
+    while (high > low) {
+      if (depth == 0) {
+        heapSortRows(aggIndex, low, high, ascending)
+        return
+      }
+      depth -= 1
+      val pivotIndex = partition(aggIndex, low, high, ascending)
+      if (pivotIndex - low < high - pivotIndex) {
+        sortRows(aggIndex, low, pivotIndex, ascending, depth)
+        low = pivotIndex + 1
+      } else {
+        sortRows(aggIndex, pivotIndex + 1, high, ascending, depth)
+        high = pivotIndex
+      }
+    }
+  }
+
+  /**
+   * heapsort a range of a cube's rows
+   */
+  private def heapSortRows(aggIndex: Int, low: Int, high: Int, ascending: Boolean): Unit = {
+    val size = high - low + 1
+    var root = size / 2 - 1
+    while (root >= 0) {
+      siftDown(aggIndex, low, root, size, ascending)
+      root -= 1
+    }
+    var end = size - 1
+    while (end > 0) {
+      swap(low, low + end)
+      siftDown(aggIndex, low, 0, end, ascending)
+      end -= 1
     }
   }
 
+  /**
+   * sift a row down a heap (rooted at `base`) whose root is the row that sorts last
+   */
+  private def siftDown(aggIndex: Int, base: Int, rootIndex: Int, size: Int, ascending: Boolean): Unit = {
+    var root = rootIndex
+    while (true) {
+      var child = 2 * root + 1
+      if (child >= size)
+        return
+      if (child + 1 < size && sortsBefore(aggIndex, base + child, base + child + 1, ascending))
+        child += 1
+      if (!sortsBefore(aggIndex, base + root, base + child, ascending))
+        return
+      swap(base + root, base + child)
+      root = child
+    }
+  }
+
+  @inline private
+  def sortsBefore(aggIndex: Int, left: Int, right: Int, ascending: Boolean): Boolean = {
+    if (ascending)
+      row(left).aggRead(aggIndex) < row(right).aggRead(aggIndex)
+    else
+      row(left).aggRead(aggIndex) > row(right).aggRead(aggIndex)
+  }
+
+  /**
+   * the partition depth after which introselect/introsort fall back to heapsort
+   */
+  @inline private
+  def depthLimit(rows: Int): Int = 2 * (32 - Integer.numberOfLeadingZeros(rows))
+
   private def partition(aggIndex: Int, low: Int, high: Int, ascending: Boolean = true): Int = {
     val pivotValue = row((high + low) / 2).aggRead(aggIndex)
 
@@ -185,6 +271,9 @@ trait ZapCube2Truncate extends Any with ZapCube2State {
 
       a += 1
     }
+
+    // swap sketches
+    leftRow.swapSketches(rightRow)
   }
 
 }
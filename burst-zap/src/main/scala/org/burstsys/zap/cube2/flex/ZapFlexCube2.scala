@@ -7,6 +7,7 @@ import org.burstsys.brio.dictionary.flex.BrioFlexDictionary
 import org.burstsys.brio.dictionary.mutable.BrioMutableDictionary
 import org.burstsys.brio.types.BrioPrimitives.BrioPrimitive
 import org.burstsys.fabric.wave.execution.model.result.row.FeltCubeResultData
+import org.burstsys.felt.model.collectors.cube.decl.column.aggregation.sketch.FeltCubeAggSketchSemRt
 import org.burstsys.felt.model.collectors.cube.{FeltCubeBuilder, FeltCubeCollector}
 import org.burstsys.tesla.TeslaTypes.{TeslaMemoryOffset, TeslaMemoryPtr, TeslaMemorySize}
 import org.burstsys.tesla.flex
@@ -322,6 +323,13 @@ class ZapFlexCube2AnyVal(index: TeslaFlexSlotIndex) extends AnyVal with ZapFlexC
     }
   }
 
+  @inline override
+  def aggSketchWrite(semantic: FeltCubeAggSketchSemRt, aggregation: Int, item: BrioPrimitive): Unit = {
+    runWithRetry{
+      internalCollector.aggSketchWrite(semantic, aggregation, item)
+    }
+  }
+
   @inline override
   def navigate(): Unit = {
     runWithRetry{
@@ -347,6 +355,11 @@ class ZapFlexCube2AnyVal(index: TeslaFlexSlotIndex) extends AnyVal with ZapFlexC
     aggWrite(aggregation, value)
   }
 
+  @inline override
+  def writeAggregationSketch(builder: FeltCubeBuilder, thisCube: FeltCubeCollector, aggregation: Int, item: BrioPrimitive): Unit = {
+    aggSketchWrite(builder.aggregationSemantics(aggregation).asInstanceOf[FeltCubeAggSketchSemRt], aggregation, item)
+  }
+
   @inline override
   def readAggregationNull(builder: FeltCubeBuilder, thisCube: FeltCubeCollector, aggregation: Int): Boolean = {
     aggIsNull(aggregation)
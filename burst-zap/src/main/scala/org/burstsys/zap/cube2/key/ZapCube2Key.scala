@@ -7,6 +7,7 @@ import org.burstsys.brio.types.BrioPrimitives.BrioPrimitive
 import org.burstsys.tesla.TeslaTypes._
 import org.burstsys.tesla.offheap
 import org.burstsys.zap.cube2.ZapCube2DimensionAxis
+import org.burstsys.zap.cube2.state
 
 /**
  * A key (composite set of dimensions) that identifies a unique row within the cube. One of these
@@ -35,6 +36,13 @@ trait ZapCube2Key extends Any with ZapCube2DimensionAxis {
    */
   def importFrom(otherKey: ZapCube2Key): Unit
 
+  /**
+   * a 64 bit hash of the dimension values of this key
+   *
+   * @return
+   */
+  def keyHash: Long
+
   /**
    * return the bucket index for this key
    *
@@ -161,7 +169,7 @@ class ZapCube2KeyAnyVal(basePtr: TeslaMemoryPtr) extends AnyVal with ZapCube2Key
   }
 
   @inline override
-  def bucketIndex(buckets: Int): Int = {
+  def keyHash: Long = {
     val prime: Long = 92821L
     var result: Long = 31L
     var i = 0
@@ -172,9 +180,16 @@ class ZapCube2KeyAnyVal(basePtr: TeslaMemoryPtr) extends AnyVal with ZapCube2Key
       i += 1
       cursor += SizeOfLong
     }
-    Math.abs(result % buckets).toInt
+    // spread nearby values (small dictionary keys) across all the bits
+    result ^= result >>> 33
+    result *= 0xff51afd7ed558ccdL
+    result ^= result >>> 33
+    result
   }
 
+  @inline override
+  def bucketIndex(buckets: Int): Int = state.bucketIndex(keyHash, buckets)
+
   @inline override
   def importFrom(otherKey: ZapCube2Key): Unit = {
     assert(dimCount == otherKey.dimCount)
@@ -4,6 +4,7 @@ package org.burstsys.zap.cube2.row
 import com.esotericsoftware.kryo.Kryo
 import com.esotericsoftware.kryo.io.{Input, Output}
 import org.burstsys.brio.types.BrioPrimitives.BrioPrimitive
+import org.burstsys.felt.model.collectors.cube.decl.column.aggregation.sketch.FeltCubeAggSketchSemRt
 import org.burstsys.tesla.TeslaTypes._
 import org.burstsys.tesla.offheap
 import org.burstsys.zap.cube2.key.ZapCube2Key
@@ -15,7 +16,8 @@ import org.burstsys.zap.cube2.{ZapCube2, ZapCube2AggregationAxis, ZapCube2Dimens
  * set of dimensions (as a unique ''key'') and a set of aggregations. Also included
  * are ''nullity'' maps for both as well as some local knowledge about aggregation & dimensions
  * counts used for internal operations. Rows can ''link'' to other rows so they can be
- * placed into linked ''bucket lists''.
+ * placed into linked ''bucket lists''. Sketch aggregations also have a ''sketch'' in the row that their value
+ * is derived from. Every sketch in a row is the same size - the largest sketch of the cube's sketch aggregations.
  */
 trait ZapCube2Row extends Any with ZapCube2DimensionAxis with ZapCube2AggregationAxis {
 
@@ -64,6 +66,75 @@ trait ZapCube2Row extends Any with ZapCube2DimensionAxis with ZapCube2Aggregatio
 
   def aggNullMap_=(v: Long): Unit
 
+  ////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+  // Sketches
+  ////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+  /**
+   * the aggregations that have a sketch
+   *
+   * @return
+   */
+  def sketchMap: Long
+
+  /**
+   * the byte size of each sketch
+   *
+   * @return
+   */
+  def sketchSize: TeslaMemorySize
+
+  /**
+   * does this aggregation have a sketch
+   *
+   * @param aggregation
+   * @return
+   */
+  def aggIsSketch(aggregation: Int): Boolean
+
+  /**
+   * the start of the sketch for a sketch aggregation
+   *
+   * @param aggregation
+   * @return
+   */
+  def sketch(aggregation: Int): TeslaMemoryPtr
+
+  /**
+   * add an item to the sketch of an aggregation and update the aggregation from the sketch. The sketch of a
+   * null aggregation is cleared first.
+   *
+   * @param semantic
+   * @param aggregation
+   * @param item
+   */
+  def aggSketchWrite(semantic: FeltCubeAggSketchSemRt, aggregation: Int, item: BrioPrimitive): Unit
+
+  /**
+   * merge the sketch of an aggregation in that row into the same sketch in this row and update the
+   * aggregation from the sketch. That aggregation must not be null.
+   *
+   * @param semantic
+   * @param aggregation
+   * @param thatRow
+   */
+  def aggSketchMerge(semantic: FeltCubeAggSketchSemRt, aggregation: Int, thatRow: ZapCube2Row): Unit
+
+  /**
+   * copy the sketch and the value of an aggregation in that row into this row. That aggregation must not be null.
+   *
+   * @param aggregation
+   * @param thatRow
+   */
+  def aggSketchCopy(aggregation: Int, thatRow: ZapCube2Row): Unit
+
+  /**
+   * swap all the sketches of this row with those of that row
+   *
+   * @param thatRow
+   */
+  def swapSketches(thatRow: ZapCube2Row): Unit
+
   ////////////////////////////////////////////////////////////////////////////////////////////////////////////////
   // Linked List
   ////////////////////////////////////////////////////////////////////////////////////////////////////////////////
@@ -88,7 +159,7 @@ trait ZapCube2Row extends Any with ZapCube2DimensionAxis with ZapCube2Aggregatio
   // Initialize
   ////////////////////////////////////////////////////////////////////////////////////////////////////////////////
 
-  def initialize(dimensions: Int, aggregations: Int): Unit
+  def initialize(dimensions: Int, aggregations: Int, sketches: Long, sketchSize: TeslaMemorySize): Unit
 
   /**
    *
@@ -131,10 +202,11 @@ trait ZapCube2Row extends Any with ZapCube2DimensionAxis with ZapCube2Aggregatio
 object ZapCube2Row {
 
   final
-  def apply(startPtr: TeslaMemoryPtr, dimensions: Int, aggregations: Int): ZapCube2Row = {
+  def apply(startPtr: TeslaMemoryPtr, dimensions: Int, aggregations: Int,
+            sketches: Long = 0L, sketchSize: TeslaMemorySize = 0): ZapCube2Row = {
     val row = ZapCube2RowAnyVal(startPtr)
     if (startPtr != TeslaNullMemoryPtr)
-      row.initialize(dimensions = dimensions, aggregations = aggregations)
+      row.initialize(dimensions = dimensions, aggregations = aggregations, sketches = sketches, sketchSize = sketchSize)
     row
   }
 
@@ -153,13 +225,16 @@ object ZapCube2Row {
   */
 
   final
-  def byteSize(dimCount: Int, aggCount: Int): TeslaMemorySize =
+  def byteSize(dimCount: Int, aggCount: Int, sketchMap: Long = 0L, sketchSize: TeslaMemorySize = 0): TeslaMemorySize =
     SizeOfLong + SizeOfLong + // null maps
+      SizeOfLong + // sketch map
+      SizeOfInteger + // sketch size
       SizeOfByte + SizeOfByte + // dim/agg counts
       SizeOfByte + // dirty field
       SizeOfInteger + // link to next row in bucket list
       (dimCount * SizeOfLong) + // dimension values
-      (aggCount * SizeOfLong) // aggregations values
+      (aggCount * SizeOfLong) + // aggregations values
+      (java.lang.Long.bitCount(sketchMap) * sketchSize) // aggregation sketches
 
 }
 
@@ -169,6 +244,8 @@ object ZapCube2Row {
  *   FIXED LENGTH HEADER (always the same size structure for all cubes)
  *   [ DIM_NULL_MAP    | LONG  ] the nullity of each of the dimensions  (up to 64 currently)
  *   [ AGG_NULL_MAP    | LONG  ] the nullity of each of the aggregations  (up to 64 currently)
+ *   [ SKETCH_MAP      | LONG  ] the aggregations that have a sketch
+ *   [ SKETCH_SIZE     | INTEGER ] the byte size of each sketch (a multiple of a long)
  *   [ DIM_COUNT       | BYTE  ] the number of dimensions  (up to 64 currently)
  *   [ AGG_COUNT       | BYTE  ] the number of aggregations  (up to 64 currently)
  *   [ DIRTY           | BYTE  ] true if this row has been updated already in a algorithm
@@ -177,6 +254,7 @@ object ZapCube2Row {
  *   VARIABLE SIZE DATA (changes based on cube schema)
  *   [ DIMS        | ARRAY[LONG] ] the primitive values of each of the dimensions  (up to 64 currently)
  *   [ AGGS        | ARRAY[LONG] ] the primitive values of each of the aggregations  (up to 64 currently)
+ *   [ SKETCHES    | ARRAY[BYTE] ] a SKETCH_SIZE sketch for each sketch aggregation (in aggregation order)
  * }}}
  * '''NOTE:''' we captures things like dimension and aggregation counts here even thought they are available in cube.
  * This is cause its a pain to have to gain access to parent objects in value classes.
@@ -204,6 +282,18 @@ class ZapCube2RowAnyVal(basePtr: TeslaMemoryPtr) extends AnyVal with ZapCube2Row
   @inline
   def aggNullMap_=(v: Long): Unit = offheap.putLong(basePtr + aggNullMapFieldOffset, v)
 
+  @inline override
+  def sketchMap: Long = offheap.getLong(basePtr + sketchMapFieldOffset)
+
+  @inline
+  def sketchMap_=(v: Long): Unit = offheap.putLong(basePtr + sketchMapFieldOffset, v)
+
+  @inline override
+  def sketchSize: TeslaMemorySize = offheap.getInt(basePtr + sketchSizeFieldOffset)
+
+  @inline
+  def sketchSize_=(v: TeslaMemorySize): Unit = offheap.putInt(basePtr + sketchSizeFieldOffset, v)
+
   @inline override
   def aggCount: Int = offheap.getByte(basePtr + aggCountFieldOffset).toInt
 
@@ -263,18 +353,73 @@ class ZapCube2RowAnyVal(basePtr: TeslaMemoryPtr) extends AnyVal with ZapCube2Row
     )
   }
 
+  ////////////////////////////////////////////////////////////////////////////////////////////////////
+  // SKETCHES
+  ////////////////////////////////////////////////////////////////////////////////////////////////////
+
+  @inline override
+  def aggIsSketch(aggregation: Int): Boolean = (sketchMap & (1L << aggregation)) != 0
+
+  @inline override
+  def sketch(aggregation: Int): TeslaMemoryPtr =
+    sketchesStart + (java.lang.Long.bitCount(sketchMap & ((1L << aggregation) - 1)) * sketchSize)
+
+  @inline override
+  def aggSketchWrite(semantic: FeltCubeAggSketchSemRt, aggregation: Int, item: BrioPrimitive): Unit = {
+    val wasNull = aggIsNull(aggregation)
+    if (wasNull)
+      offheap.setMemory(sketch(aggregation), sketchSize, 0)
+    if (semantic.sketchUpdate(sketch(aggregation), item) || wasNull)
+      aggWrite(aggregation, semantic.sketchValue(sketch(aggregation)))
+  }
+
+  @inline override
+  def aggSketchMerge(semantic: FeltCubeAggSketchSemRt, aggregation: Int, thatRow: ZapCube2Row): Unit = {
+    if (aggIsNull(aggregation))
+      aggSketchCopy(aggregation, thatRow)
+    else if (semantic.sketchMerge(sketch(aggregation), thatRow.sketch(aggregation)))
+      aggWrite(aggregation, semantic.sketchValue(sketch(aggregation)))
+  }
+
+  @inline override
+  def aggSketchCopy(aggregation: Int, thatRow: ZapCube2Row): Unit = {
+    offheap.copyMemory(thatRow.sketch(aggregation), sketch(aggregation), sketchSize)
+    aggWrite(aggregation, thatRow.aggRead(aggregation))
+  }
+
+  @inline override
+  def swapSketches(thatRow: ZapCube2Row): Unit = {
+    val thisStart = sketchesStart
+    val thatStart = ZapCube2RowAnyVal(thatRow.basePtr).sketchesStart
+    var offset = 0
+    while (offset < sketchesSize) {
+      val tmp = offheap.getLong(thisStart + offset)
+      offheap.putLong(thisStart + offset, offheap.getLong(thatStart + offset))
+      offheap.putLong(thatStart + offset, tmp)
+      offset += SizeOfLong
+    }
+  }
+
+  @inline private
+  def sketchesStart: TeslaMemoryPtr = basePtr + valuesFieldOffset + ((dimCount + aggCount) * SizeOfLong)
+
+  @inline private
+  def sketchesSize: TeslaMemorySize = java.lang.Long.bitCount(sketchMap) * sketchSize
+
   ////////////////////////////////////////////////////////////////////////////////////////////////////
   // INITIALIZATION
   ////////////////////////////////////////////////////////////////////////////////////////////////////
 
   @inline override
-  def initialize(dimensions: Int, aggregations: Int): Unit = {
+  def initialize(dimensions: Int, aggregations: Int, sketches: Long, sketchSize: TeslaMemorySize): Unit = {
     assert(dimensions < 64)
     //    assert(dimensions > 0 && dimensions < 64)
     dimCount = dimensions
     assert(aggregations < 64)
     //    assert(aggregations > 0 && aggregations < 64)
     aggCount = aggregations
+    sketchMap = sketches
+    this.sketchSize = sketchSize
     dirty = false
 
     var d = 0
@@ -289,6 +434,8 @@ class ZapCube2RowAnyVal(basePtr: TeslaMemoryPtr) extends AnyVal with ZapCube2Row
       a += 1
     }
 
+    offheap.setMemory(sketchesStart, sketchesSize, 0)
+
     aggNullMap = 0L
     dimNullMap = 0L
     link = EmptyLink
@@ -316,6 +463,10 @@ class ZapCube2RowAnyVal(basePtr: TeslaMemoryPtr) extends AnyVal with ZapCube2Row
       a += 1
     }
 
+    ////////////////////////////////////////////////////////////////////////////////////////////
+    // clear the sketches
+    offheap.setMemory(sketchesStart, sketchesSize, 0)
+
     ////////////////////////////////////////////////////////////////////////////////////////////
     // now clear the next row pointer to 0
     link = EmptyLink
@@ -356,6 +507,10 @@ class ZapCube2RowAnyVal(basePtr: TeslaMemoryPtr) extends AnyVal with ZapCube2Row
       a += 1
     }
 
+    ////////////////////////////////////////////////////////////////////////////////////////////
+    // copy over sketches
+    offheap.copyMemory(ZapCube2RowAnyVal(thatRow.basePtr).sketchesStart, sketchesStart, sketchesSize)
+
     ////////////////////////////////////////////////////////////////////////////////////////////
     // clear link column
     link = EmptyLink
@@ -518,7 +673,7 @@ class ZapCube2RowAnyVal(basePtr: TeslaMemoryPtr) extends AnyVal with ZapCube2Row
   override
   def toString: String = {
     if (fauxRow) return "FAUX_ROW"
-    s"ROW(basePtr=$basePtr, dirty=$dirty, link=$link, dimNullMap=$dimNullMap, dimCount=$dimCount, aggNullMap=$aggNullMap, aggCount=$aggCount, DIM(${
+    s"ROW(basePtr=$basePtr, dirty=$dirty, link=$link, dimNullMap=$dimNullMap, dimCount=$dimCount, aggNullMap=$aggNullMap, aggCount=$aggCount, sketchMap=$sketchMap, sketchSize=$sketchSize, DIM(${
       (for (d <- 0 until dimCount) yield s"${dimRead(d)}").mkString(",")
     }) AGG(${
       (for (a <- 0 until aggCount) yield s"${aggRead(a)}").mkString(",")
@@ -533,6 +688,8 @@ class ZapCube2RowAnyVal(basePtr: TeslaMemoryPtr) extends AnyVal with ZapCube2Row
   def write(k: Kryo, out: Output): Unit = {
     out writeLong dimNullMap
     out writeLong aggNullMap
+    out writeLong sketchMap
+    out writeInt sketchSize
     out writeByte dimCount
     out writeByte aggCount
     out writeBoolean dirty
@@ -553,12 +710,19 @@ class ZapCube2RowAnyVal(basePtr: TeslaMemoryPtr) extends AnyVal with ZapCube2Row
         out writeLong 0
       a += 1
     }
+    var offset = 0
+    while (offset < sketchesSize) {
+      out writeLong offheap.getLong(sketchesStart + offset)
+      offset += SizeOfLong
+    }
   }
 
   override
   def read(k: Kryo, in: Input): Unit = {
     val tDimNullMap = in.readLong
     val tAggNullMap = in.readLong
+    sketchMap = in.readLong
+    sketchSize = in.readInt
     dimCount = in.readByte
     aggCount = in.readByte
     dirty = in.readBoolean
@@ -575,6 +739,11 @@ class ZapCube2RowAnyVal(basePtr: TeslaMemoryPtr) extends AnyVal with ZapCube2Row
       a += 1
     }
     aggNullMap = tAggNullMap
+    var offset = 0
+    while (offset < sketchesSize) {
+      offheap.putLong(sketchesStart + offset, in.readLong)
+      offset += SizeOfLong
+    }
   }
 
 }
@@ -9,7 +9,11 @@ package object row {
 
   private[row] final val aggNullMapFieldOffset: TeslaMemoryOffset = dimNullMapFieldOffset + SizeOfLong // LONG
 
-  private[row] final val dimCountFieldOffset: TeslaMemoryOffset = aggNullMapFieldOffset + SizeOfLong // BYTE
+  private[row] final val sketchMapFieldOffset: TeslaMemoryOffset = aggNullMapFieldOffset + SizeOfLong // LONG
+
+  private[row] final val sketchSizeFieldOffset: TeslaMemoryOffset = sketchMapFieldOffset + SizeOfLong // INTEGER
+
+  private[row] final val dimCountFieldOffset: TeslaMemoryOffset = sketchSizeFieldOffset + SizeOfInteger // BYTE
 
   private[row] final val aggCountFieldOffset: TeslaMemoryOffset = dimCountFieldOffset + SizeOfByte // BYTE
 
@@ -3,20 +3,27 @@ package org.burstsys.zap.cube2.state
 
 import com.esotericsoftware.kryo.Kryo
 import com.esotericsoftware.kryo.io.{Input, Output}
-import org.burstsys.tesla.offheap
-import org.burstsys.tesla.TeslaTypes._
 import org.burstsys.vitals.errors.{VitalsException, safely}
 
 /**
- * Kryo serialization and deserialization for [[org.burstsys.zap.cube2.ZapCube2]]
+ * Kryo serialization and deserialization for [[org.burstsys.zap.cube2.ZapCube2]]. The stream starts with a
+ * format version byte (with its high bit set so it can never be mistaken for the dimension count that
+ * unversioned streams started with) - a cube written by a peer running a different format fails fast instead
+ * of being silently misread.
+ *
+ * The buckets are not sent - they are rebuilt from the rows on read. Rows go before the cursor and pivot since
+ * rebuilding the buckets uses the cursor as scratch.
  */
 trait ZapCube2Codec extends Any with ZapCube2State {
 
   final
   def write(k: Kryo, out: Output): Unit = {
     try {
+      out writeByte WireVersionMarker
       out writeByte dimCount
       out writeByte aggCount
+      out writeLong sketchMap
+      out writeInt sketchSize
       out writeInt bucketsStart
       out writeInt bucketsCount
       out writeInt cursorStart
@@ -31,11 +38,11 @@ trait ZapCube2Codec extends Any with ZapCube2State {
       out writeBoolean rowsLimited
       out writeInt cursorRow
 
-      // buckets
-      var b = 0
-      while (b < bucketsCount) {
-        out writeLong offheap.getLong(basePtr + bucketsStart + (b * SizeOfLong))
-        b += 1
+      // rows TODO ADD IN SNAPPY COMPRESSION FOR LARGE ROW SETS??
+      var rowIndex = 0
+      while (rowIndex < rowsCount) {
+        row(rowIndex).write(k, out)
+        rowIndex += 1
       }
 
       // cursor
@@ -43,13 +50,6 @@ trait ZapCube2Codec extends Any with ZapCube2State {
 
       // pivot
       pivot.write(k, out)
-
-      // rows TODO ADD IN SNAPPY COMPRESSION FOR LARGE ROW SETS??
-      var rowIndex = 0
-      while (rowIndex < rowsCount) {
-        row(rowIndex).write(k, out)
-        rowIndex += 1
-      }
     } catch safely {
       case t: Throwable =>
         throw VitalsException(t)
@@ -59,8 +59,13 @@ trait ZapCube2Codec extends Any with ZapCube2State {
   final
   def read(k: Kryo, in: Input): Unit = {
     try {
+      val marker = in.readByte
+      if (marker != WireVersionMarker)
+        throw VitalsException(s"ZAP_CUBE2_WIRE_VERSION_MISMATCH found=${marker & 0xFF} expected=${WireVersionMarker & 0xFF} (peer running a different cube format)")
       dimCount = in.readByte
       aggCount = in.readByte
+      sketchMap = in.readLong
+      sketchSize = in.readInt
       bucketsStart = in.readInt
       bucketsCount = in.readInt
       cursorStart = in.readInt
@@ -75,25 +80,21 @@ trait ZapCube2Codec extends Any with ZapCube2State {
       rowsLimited = in.readBoolean
       cursorRow = in.readInt
 
-      // buckets
-      var b = 0
-      while (b < bucketsCount) {
-        offheap.putLong(basePtr + bucketsStart + (b * SizeOfLong), in.readLong)
-        b += 1
+      // rows TODO ADD IN SNAPPY COMPRESSION FOR LARGE ROW SETS??
+      var rowIndex = 0
+      while (rowIndex < rowsCount) {
+        row(rowIndex).read(k, in)
+        rowIndex += 1
       }
 
+      // buckets
+      rebuildBuckets()
+
       // cursor
       cursor.read(k, in)
 
       // pivot
       pivot.read(k, in)
-
-      // rows TODO ADD IN SNAPPY COMPRESSION FOR LARGE ROW SETS??
-      var rowIndex = 0
-      while (rowIndex < rowsCount) {
-        row(rowIndex).read(k, in)
-        rowIndex += 1
-      }
     } catch safely {
       case t: Throwable =>
         throw VitalsException(t)
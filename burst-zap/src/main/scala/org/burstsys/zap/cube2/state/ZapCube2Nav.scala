@@ -2,6 +2,7 @@
 package org.burstsys.zap.cube2.state
 
 import org.burstsys.brio.types.BrioPrimitives.BrioPrimitive
+import org.burstsys.felt.model.collectors.cube.decl.column.aggregation.sketch.FeltCubeAggSketchSemRt
 import org.burstsys.zap.cube2.key.ZapCube2Key
 import org.burstsys.zap.cube2.row.{ZapCube2Row, ZapCube2RowAnyVal, limitExceededMarkerRow}
 import org.burstsys.zap.cube2.{ZapCube2, ZapCube2AggregationAxis, ZapCube2DimensionAxis}
@@ -84,6 +85,13 @@ trait ZapCube2Nav extends Any with ZapCube2State with ZapCube2DimensionAxis with
       ZapCube2RowAnyVal(basePtr + cursorRow).aggWrite(aggregation, value)
   }
 
+  @inline final override
+  def aggSketchWrite(semantic: FeltCubeAggSketchSemRt, aggregation: Int, item: BrioPrimitive): Unit = {
+    navigate()
+    if (!rowsLimited)
+      ZapCube2RowAnyVal(basePtr + cursorRow).aggSketchWrite(semantic, aggregation, item)
+  }
+
   //////////////////////////////////////////////////////////////////////////////////////////////////
   // Navigation internals
   //////////////////////////////////////////////////////////////////////////////////////////////////
@@ -105,8 +113,11 @@ trait ZapCube2Nav extends Any with ZapCube2State with ZapCube2DimensionAxis with
   }
 
   /**
-   * navigate to a row that matches the dimensional key or create a row with a matching key and insert at end of
-   * appropriate cube bucket list
+   * navigate to a row that matches the dimensional key or create a row with a matching key and place it in the
+   * first empty bucket after its home bucket. The buckets are open addressed with linear probing and each bucket
+   * holds the fingerprint of its row's key so most non matching rows are passed over without being read.
+   * The bucket count is sized off the cube memory so the buckets are never more than 3/4 full - there
+   * is always an empty bucket to end a probe.
    *
    * @param key
    * @return the row found or created
@@ -114,59 +125,34 @@ trait ZapCube2Nav extends Any with ZapCube2State with ZapCube2DimensionAxis with
   @inline final override
   def navigate(key: ZapCube2Key): ZapCube2Row = {
     // figure out which bucket this key maps to
-    val index = key.bucketIndex(bucketsCount)
-
-    // and see whats in the associated bucket list
-    bucketRead(index) match {
-      // no rows in bucket yet - we create new matching one, add to bucket and return
-      case EmptyBucket =>
-        val newRow = createNewRowFromKey(key)
-        // as always, check for a out of room condition
-        if (newRow == limitExceededMarkerRow)
+    val hash = key.keyHash
+    val fingerprint = bucketFingerprint(hash)
+    var index = bucketIndex(hash, bucketsCount)
+
+    // and probe until we find a match or an empty bucket
+    while (true) {
+      bucketRead(index) match {
+        // no match - we create new matching one, add to bucket and return
+        case EmptyBucket =>
+          val newRow = createNewRowFromKey(key)
+          // as always, check for a out of room condition
+          if (newRow == limitExceededMarkerRow)
+            return newRow
+          // update bucket with the new row
+          bucketWrite(index, rowOffset(newRow), fingerprint)
           return newRow
-        // update bucket with a valid first row in list
-        bucketWrite(index, rowOffset(newRow))
-        newRow
-
-      // we have at least one row in bucket list - scan through and see if we have a match...
-      case firstRowOffset =>
-        navigateToRowInBucket(key, ZapCube2RowAnyVal(basePtr + firstRowOffset))
-
-    }
-  }
 
-  /**
-   *
-   * @param key
-   * @param firstRow
-   * @return
-   */
-  @inline final private
-  def navigateToRowInBucket(key: ZapCube2Key, firstRow: ZapCube2Row): ZapCube2Row = {
-    // start at the beginning
-    var currentRow = firstRow
-    var more = true
-
-    // iterate down the list
-    while (more) {
-      // any joy?
-      if (currentRow.matchesKey(key))
-        return currentRow
-
-      // see if there are more in the list
-      more = !currentRow.isListEnd
-      // if so, transition to the next one in list
-      if (more)
-        currentRow = ZapCube2RowAnyVal(basePtr + currentRow.link)
+        // a row in this bucket - see if it is ours...
+        case occupiedOffset =>
+          if (bucketFingerprintRead(index) == fingerprint) {
+            val currentRow = ZapCube2RowAnyVal(basePtr + occupiedOffset)
+            if (currentRow.matchesKey(key))
+              return currentRow
+          }
+          index = nextBucket(index)
+      }
     }
-    // no match in bucket list, create a new matching one and link at end of currentRow
-    val newRow = createNewRowFromKey(key)
-
-    // link it in unless we ran out of room...
-    if (newRow != limitExceededMarkerRow)
-      currentRow.link = rowOffset(newRow)
-
-    newRow
+    limitExceededMarkerRow
   }
 
 }
@@ -28,21 +28,45 @@ trait ZapCube2Print extends Any with ZapCube2State {
   @inline final override
   def bucketListLengthMax: Int = (for (bucket <- 0 until bucketsCount) yield bucketListLength(bucket)).max
 
+  /**
+   * the buckets are open addressed so this is the length of the probe to the row in the bucket
+   * (0 for an empty bucket)
+   */
   @inline final private
   def bucketListLength(index: Int): Int = {
-    var count = 0
-    val headOffset = bucketRead(index)
-    if (headOffset ==  EmptyBucket)
-      count = 0
-    else {
-      var currentRow = ZapCube2Row(this, headOffset)
-      count += 1
-      while (!currentRow.isListEnd) {
-        currentRow = ZapCube2Row(this, currentRow.link)
-        count += 1
-      }
+    if (bucketRead(index) == EmptyBucket)
+      return 0
+    probeLength(index, ZapCube2Row(this, bucketRead(index)))
+  }
+
+  /**
+   * the length of the probe from the home bucket of the row to the bucket at the given index
+   */
+  @inline final private
+  def probeLength(index: Int, row: ZapCube2Row): Int = {
+    val home = bucketIndex(rowKeyHash(row), bucketsCount)
+    (if (index >= home) index - home else index + bucketsCount - home) + 1
+  }
+
+  /**
+   * the [[org.burstsys.zap.cube2.key.ZapCube2Key.keyHash]] of the key the row was inserted with, computed
+   * from the row itself so that printing and stats leave the cursor and pivot alone (null dimensions
+   * are zero in a key)
+   */
+  @inline final private
+  def rowKeyHash(row: ZapCube2Row): Long = {
+    val prime: Long = 92821L
+    var result: Long = 31L
+    var d = 0
+    while (d < dimCount) {
+      val code = if (row.dimIsNull(d)) 0L else row.dimRead(d)
+      result = prime * (result >>> 1) + code
+      d += 1
     }
-    count
+    result ^= result >>> 33
+    result *= 0xff51afd7ed558ccdL
+    result ^= result >>> 33
+    result
   }
 
   final override
@@ -50,7 +74,6 @@ trait ZapCube2Print extends Any with ZapCube2State {
     val bucketsSize = bucketsCount * TeslaTypes.SizeOfLong
     val cursorSize = byteSize(dimCount)
     val pivotSize = byteSize(dimCount)
-    val rowSize = ZapCube2Row.byteSize(dimCount, aggCount)
     s"""Cube2 {
        |
        |  basePtr=$basePtr
@@ -61,6 +84,8 @@ trait ZapCube2Print extends Any with ZapCube2State {
        |    poolId=$poolId
        |    dimCount=$dimCount
        |    aggCount=$aggCount
+       |    sketchMap=$sketchMap
+       |    sketchSize=$sketchSize
        |    bucketsStart=$bucketsStart
        |    bucketsCount=$bucketsCount
        |    cursorStart=$cursorStart
@@ -94,13 +119,9 @@ trait ZapCube2Print extends Any with ZapCube2State {
       builder ++= s"\t\t[b:$b]\n"
       bucketRead(b) match {
         case EmptyBucket =>
-        case bucketListHead =>
-          var currentOffset = bucketListHead
-          while (currentOffset != EmptyLink) {
-            val r = ZapCube2Row(this, currentOffset)
-            builder ++= s"\t\t\t[off:${rowOffset(r)}] $r\n"
-            currentOffset = r.link
-          }
+        case offset =>
+          val r = ZapCube2Row(this, offset)
+          builder ++= s"\t\t\t[off:$offset, probe:${probeLength(b, r)}] $r\n"
       }
     }
     s"""Cube2 {  basePtr=$basePtr
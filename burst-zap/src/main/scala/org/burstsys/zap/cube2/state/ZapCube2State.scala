@@ -5,7 +5,7 @@ import org.burstsys.brio.dictionary.flex.{BrioFlexDictionary, BrioFlexDictionary
 import org.burstsys.brio.dictionary.mutable.BrioMutableDictionary
 import org.burstsys.felt.model.collectors.cube.{FeltCubeBuilder, FeltCubeCollector}
 import org.burstsys.tesla
-import org.burstsys.tesla.TeslaTypes.{SizeOfLong, TeslaMemoryOffset, TeslaMemoryPtr, TeslaMemorySize}
+import org.burstsys.tesla.TeslaTypes.{SizeOfInteger, SizeOfLong, TeslaMemoryOffset, TeslaMemoryPtr, TeslaMemorySize}
 import org.burstsys.tesla.block.TeslaBlockAnyVal
 import org.burstsys.tesla.offheap
 import org.burstsys.tesla.pool.{TeslaPoolId, TeslaPooledResource}
@@ -41,11 +41,13 @@ import org.burstsys.zap.log
  *   [ CURSOR_ROW        | INTEGER ] the offset of the  row current cursor points at
  *
  *   [ DICTIONARY        | INTEGER ] the index for the flex dictionary
+ *   [ SKETCH_MAP        | LONG ] the aggregations that have a sketch in each row
+ *   [ SKETCH_SIZE       | INTEGER ] the byte size of each sketch in a row
  *
  * ---------- endOfFixedSizeHeader (static definition)  --------------
  *
  *   SCHEMA DEFINED LENGTH DATA  ( structure size defined by schema )
- *   [ BUCKETS           | ARRAY[LONG] ] the list of buckets
+ *   [ BUCKETS           | ARRAY[LONG] ] open addressed (linear probe) buckets - a row offset and key fingerprint each
  *   [ CURSOR            | ARRAY[LONG] ] a [[ZapCube2Key]] holding current row key
  *   [ PIVOT             | ARRAY[LONG] ] a [[ZapCube2Key]] holding a tmp join pivot key
  *
@@ -232,6 +234,22 @@ trait ZapCube2State extends Any with TeslaPooledResource with ZapCube2 {
     offheap.putInt(basePtr + dictionaryFieldOffset, d.asInstanceOf[BrioFlexDictionary].index)
   }
 
+  ////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+  // sketch map
+  ////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+  @inline final
+  def sketchMap: Long = offheap.getLong(basePtr + sketchMapFieldOffset)
+
+  @inline final
+  def sketchMap_=(w: Long): Unit = offheap.putLong(basePtr + sketchMapFieldOffset, w)
+
+  @inline final
+  def sketchSize: TeslaMemorySize = offheap.getInt(basePtr + sketchSizeFieldOffset)
+
+  @inline final
+  def sketchSize_=(w: TeslaMemorySize): Unit = offheap.putInt(basePtr + sketchSizeFieldOffset, w)
+
   ////////////////////////////////////////////////////////////////////////////////////////////////////////////////
   // Cursors
   ////////////////////////////////////////////////////////////////////////////////////////////////////////////////
@@ -264,6 +282,25 @@ trait ZapCube2State extends Any with TeslaPooledResource with ZapCube2 {
   def bucketWrite(index: Int, offset: TeslaMemoryOffset): Unit =
     offheap.putInt(basePtr + bucketsStart + (index * SizeOfLong), offset)
 
+  /**
+   * the fingerprint of the key of the row in a bucket
+   */
+  @inline final
+  def bucketFingerprintRead(index: Int): Int =
+    offheap.getInt(basePtr + bucketsStart + (index * SizeOfLong) + SizeOfInteger)
+
+  @inline final
+  def bucketWrite(index: Int, offset: TeslaMemoryOffset, fingerprint: Int): Unit = {
+    bucketWrite(index, offset)
+    offheap.putInt(basePtr + bucketsStart + (index * SizeOfLong) + SizeOfInteger, fingerprint)
+  }
+
+  /**
+   * the next bucket in a linear probe
+   */
+  @inline final
+  def nextBucket(index: Int): Int = if (index + 1 == bucketsCount) 0 else index + 1
+
   @inline final
   def resetBuckets(): Unit =
     tesla.offheap.setMemory(basePtr + bucketsStart, bucketsCount * SizeOfLong, 0)
@@ -402,7 +439,7 @@ trait ZapCube2State extends Any with TeslaPooledResource with ZapCube2 {
       rowsLimited = true
       limitExceededMarkerRow
     } else {
-      val row = ZapCube2Row(basePtr + offset, dimCount, aggCount)
+      val row = ZapCube2Row(basePtr + offset, dimCount, aggCount, sketchMap, sketchSize)
       rowsEnd += rowSize
       rowsCount += 1
       row
@@ -464,7 +501,9 @@ trait ZapCube2State extends Any with TeslaPooledResource with ZapCube2 {
     val keySize = byteSize(builder.dimensionCount)
     dimCount = builder.dimensionCount
     aggCount = builder.aggregationCount
-    rowSize = ZapCube2Row.byteSize(builder.dimensionCount, builder.aggregationCount)
+    sketchMap = builder.sketchMap
+    sketchSize = builder.sketchSize
+    rowSize = ZapCube2Row.byteSize(builder.dimensionCount, builder.aggregationCount, builder.sketchMap, builder.sketchSize)
     bucketsCount = builder.bucketCount((availableMemorySize - endOfFixedSizeHeader)/rowSize)
     bucketsStart = endOfFixedSizeHeader
     cursorStart = bucketsStart + (bucketsCount * SizeOfLong)
@@ -490,36 +529,26 @@ trait ZapCube2State extends Any with TeslaPooledResource with ZapCube2 {
 
   ////////////////// Bucket Maintenance /////////////////////////
   /**
-   * Take the existing rows and wire them up into the correct buckets
-   * and bucket lists.
+   * Take the existing rows and place them into the correct buckets
    *
    */
   @inline
   def rebuildBuckets(): Unit = {
-    // zero out the bucket list
+    // zero out the buckets
     resetBuckets()
 
-    // link the rows into the bucket lists.
+    // place each row in the first empty bucket starting at its home bucket
     var rc = 0
     while (rc < rowsCount) {
       val currentRow = row(rc)
-      // start out with this the end of any list
       currentRow.link = EmptyLink
 
-      // put the row in the bucket
       setCursorFrom(currentRow)
-      val index = cursor.bucketIndex(bucketsCount)
-
-      // and see whats in the associated bucket list
-      bucketRead(index) match {
-        // no rows in bucket yet - we create new matching one, add to bucket and return
-        case EmptyBucket =>
-          // update bucket with a valid first row in list
-          bucketWrite(index, rowOffset(rc))
-        case firstRowOffset =>
-          currentRow.link = firstRowOffset
-          bucketWrite(index, rowOffset(rc))
-      }
+      val hash = cursor.keyHash
+      var index = bucketIndex(hash, bucketsCount)
+      while (bucketRead(index) != EmptyBucket)
+        index = nextBucket(index)
+      bucketWrite(index, rowOffset(rc), bucketFingerprint(hash))
       rc += 1
     }
   }
@@ -8,6 +8,29 @@ package object state {
 
   final val EmptyLink: TeslaMemoryOffset = 0
 
+  /**
+   * the cube wire format version - bump it whenever the [[ZapCube2Codec]] layout changes. The high bit
+   * marks a versioned stream.
+   */
+  private[state] final val WireVersion: Int = 2
+
+  private[state] final val WireVersionMarker: Byte = (0x80 | WireVersion).toByte
+
+  /**
+   * the home bucket for a [[org.burstsys.zap.cube2.key.ZapCube2Key.keyHash]]
+   */
+  @inline
+  def bucketIndex(keyHash: Long, buckets: Int): Int = Math.abs(keyHash % buckets).toInt
+
+  /**
+   * the (non zero) fingerprint kept in a bucket for a [[org.burstsys.zap.cube2.key.ZapCube2Key.keyHash]]
+   */
+  @inline
+  def bucketFingerprint(keyHash: Long): Int = {
+    val fingerprint = (keyHash >>> 32).toInt
+    if (fingerprint == 0) 1 else fingerprint
+  }
+
   /**
    * return the byte size required for a key based on the number of dimensions
    *
@@ -120,10 +143,20 @@ package object state {
    */
   private[state] final val dictionaryFieldOffset: TeslaMemoryOffset = cursorRowFieldOffset + SizeOfInteger // Int
 
+  /**
+   * the aggregations that have a sketch in each row
+   */
+  private[state] final val sketchMapFieldOffset: TeslaMemoryOffset = dictionaryFieldOffset + SizeOfInteger // Long
+
+  /**
+   * the byte size of each sketch in a row
+   */
+  private[state] final val sketchSizeFieldOffset: TeslaMemoryOffset = sketchMapFieldOffset + SizeOfLong // Int
+
   /**
    * size of the fixed size header / start of variable size data
    */
-  private[state] final val endOfFixedSizeHeader: TeslaMemoryOffset = dictionaryFieldOffset + SizeOfInteger
+  private[state] final val endOfFixedSizeHeader: TeslaMemoryOffset = sketchSizeFieldOffset + SizeOfInteger
 
   final val SizeofFixedSizeHeader = endOfFixedSizeHeader
 
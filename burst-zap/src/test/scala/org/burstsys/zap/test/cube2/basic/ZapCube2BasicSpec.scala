@@ -188,6 +188,19 @@ class ZapCube2BasicSpec extends ZapCube2Spec {
         }
 
         map.size should equal(0)
+
+        // the buckets are rebuilt on read so every key navigates back to its row
+        destination.validate() should equal(true)
+        d0 = 10
+        d1 = 100
+        for (_ <- 0 until rowCount) {
+          destination.dimWrite(0, d0)
+          destination.dimWrite(1, d1)
+          destination.aggWrite(0, 1)
+          d0 += 1
+          d1 += 3
+        }
+        destination.rowsCount should be(rowCount)
       } finally cube2.factory.releaseCube2(destination)
 
 
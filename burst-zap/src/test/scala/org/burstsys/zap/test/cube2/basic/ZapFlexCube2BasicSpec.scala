@@ -69,6 +69,34 @@ class ZapFlexCube2BasicSpec extends ZapCube2Spec {
     }
   }
 
+  it should "find every row of a high cardinality cube2 across resizes" in {
+    TeslaWorkerCoupler {
+      val dictionary = flex.grabFlexDictionary()
+      val cube = cube2.flex.grabFlexCube(dictionary, builder = builder)
+      try {
+        val rows = 20000
+        for (i <- 0 until rows) {
+          cube.dimWrite(0, i)
+          cube.dimWrite(1, i % 7)
+          cube.aggWrite(0, i)
+        }
+        cube.rowsCount should equal(rows)
+        cube.resizeCount should be > 0
+        // navigating to existing keys must not create rows
+        for (i <- 0 until rows) {
+          cube.dimWrite(0, i)
+          cube.dimWrite(1, i % 7)
+          cube.aggRead(0) should equal(i.toLong)
+        }
+        cube.rowsCount should equal(rows)
+        cube.bucketListLengthMax should be < 64
+      } finally {
+        cube2.flex.releaseFlexCube(cube)
+        flex.releaseFlexDictionary(dictionary)
+      }
+    }
+  }
+
   it should "NOT add a row to a cube2 with null aggregations and no dimWrite" in {
     TeslaWorkerCoupler {
       val dictionary = flex.grabFlexDictionary()
@@ -0,0 +1,81 @@
+/* Copyright Yahoo, Licensed under the terms of the Apache 2.0 license. See LICENSE file in project root for terms. */
+package org.burstsys.zap.test.cube2.join
+
+import org.burstsys.brio.dictionary
+import org.burstsys.brio.types.BrioTypes.BrioLongKey
+import org.burstsys.felt.model.collectors.cube.decl.column.aggregation.primitive.FeltCubeAggSumSemRt
+import org.burstsys.vitals.bitmap.VitalsBitMapAnyVal
+import org.burstsys.zap
+import org.burstsys.zap.cube2
+import org.burstsys.zap.cube2.ZapCube2Builder
+import org.burstsys.zap.cube2.algorithms.ZapCube2JoinIndex
+import org.burstsys.zap.test.cube2.ZapCube2Spec
+
+//@Ignore
+class ZapFlexCube2Join4Spec extends ZapCube2Spec {
+
+  override val builder: ZapCube2Builder = cube2.ZapCube2Builder(
+    defaultStartSize = 1e6.toInt, // no resizing yet
+    dimensionCount = 2, aggregationCount = 2,
+    aggregationSemantics = Array(FeltCubeAggSumSemRt(), FeltCubeAggSumSemRt()),
+    aggregationFieldTypes = Array(BrioLongKey, BrioLongKey)
+  )
+
+  // the parent contributes d1/a1 and the child d0/a0 so many rows on each side share a projection
+  private val parentDimensionMask: VitalsBitMapAnyVal = VitalsBitMapAnyVal(0x00000002)
+  private val parentAggregationMask: VitalsBitMapAnyVal = VitalsBitMapAnyVal(0x00000002)
+  private val childDimensionMask: VitalsBitMapAnyVal = VitalsBitMapAnyVal(0x00000001)
+  private val childAggregationMask: VitalsBitMapAnyVal = VitalsBitMapAnyVal(0x00000001)
+
+  /**
+   * join parent rows (i, i % 10, i, i) and child rows (i % 7, i, i, i) and check the result is the same as that of
+   * joining every parent row with every child row
+   */
+  private def assertJoinOfDuplicateProjections(rowCount: Int): Unit = {
+    CubeTest {
+      for (i <- 0 until rowCount) {
+        cubeA.dimWrite(0, i)
+        cubeA.dimWrite(1, i % 10)
+        cubeA.aggWrite(0, i)
+        cubeA.aggWrite(1, i)
+
+        cubeB.dimWrite(0, i % 7)
+        cubeB.dimWrite(1, i)
+        cubeB.aggWrite(0, i)
+        cubeB.aggWrite(1, i)
+      }
+
+      cubeA.joinWithChildCubeIntoResultCube(
+        builder, cubeA, dictA,
+        childCube = cubeB, resultCube = cubeC,
+        parentDimensionMask = parentDimensionMask, parentAggregationMask = parentAggregationMask,
+        childDimensionMask = childDimensionMask, childAggregationMask = childAggregationMask
+      )
+
+      val dictD = dictionary.flex.grabFlexDictionary()
+      val cubeD = zap.cube2.flex.grabFlexCube(dictD, builder = builder)
+      try {
+        for (c <- 0 until cubeB.rowsCount; p <- 0 until cubeA.rowsCount)
+          cubeD.createJoinRow(
+            parentRow = cubeA.row(p), childRow = cubeB.row(c), resultCube = cubeD,
+            parentDimensionMask = parentDimensionMask, parentAggregationMask = parentAggregationMask,
+            childDimensionMask = childDimensionMask, childAggregationMask = childAggregationMask
+          )
+        cubeC.rowsCount should equal(7 * 10)
+        rowSet(cubeC).toSet should equal(rowSet(cubeD).toSet)
+      } finally {
+        zap.cube2.flex.releaseFlexCube(cubeD)
+        dictionary.flex.releaseFlexDictionary(dictD)
+      }
+    }
+  }
+
+  it should "join indexed cubes with duplicate projections the same as a full cross join" in {
+    assertJoinOfDuplicateProjections(ZapCube2JoinIndex.MinIndexedRows * 8)
+  }
+
+  it should "join cubes too small to index with duplicate projections the same as a full cross join" in {
+    assertJoinOfDuplicateProjections(ZapCube2JoinIndex.MinIndexedRows - 1)
+  }
+
+}
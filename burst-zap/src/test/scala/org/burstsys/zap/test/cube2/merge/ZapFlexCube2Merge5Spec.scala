@@ -0,0 +1,73 @@
+/* Copyright Yahoo, Licensed under the terms of the Apache 2.0 license. See LICENSE file in project root for terms. */
+package org.burstsys.zap.test.cube2.merge
+
+import org.burstsys.brio.types.BrioTypes.BrioLongKey
+import org.burstsys.felt.model.collectors.cube.decl.column.aggregation.primitive.FeltCubeAggSumSemRt
+import org.burstsys.felt.model.collectors.cube.decl.column.aggregation.sketch.FeltCubeAggApproxDistinctSemRt
+import org.burstsys.zap.cube2
+import org.burstsys.zap.cube2.ZapCube2Builder
+import org.burstsys.zap.test.cube2.ZapCube2Spec
+
+//@Ignore
+class ZapFlexCube2Merge5Spec extends ZapCube2Spec {
+
+  val approxDistinct: FeltCubeAggApproxDistinctSemRt = FeltCubeAggApproxDistinctSemRt()
+
+  val builder: ZapCube2Builder = cube2.ZapCube2Builder(
+    dimensionCount = 2, aggregationCount = 2,
+    aggregationSemantics = Array(FeltCubeAggSumSemRt(), approxDistinct),
+    aggregationFieldTypes = Array(BrioLongKey, BrioLongKey),
+    dimensionFieldTypes = Array(BrioLongKey, BrioLongKey)
+  )
+
+  private def defineDistinct(cube: cube2.ZapCube2, key: Long, from: Long, until: Long): Unit = {
+    var v = from
+    while (v < until) {
+      cube.dimWrite(0, key)
+      cube.dimWrite(1, key)
+      // count the writes (an aggregation write replaces the value and a new row reads as zero)
+      cube.aggWrite(0, cube.aggRead(0) + 1)
+      cube.aggSketchWrite(approxDistinct, 1, approxDistinct.itemLong(v))
+      v += 1
+    }
+  }
+
+  it should "merge approx distinct sketches of overlapping values" in {
+    CubeTest {
+      defineDistinct(cubeA, 0, 0, 10000)
+      defineDistinct(cubeB, 0, 5000, 15000)
+
+      cubeA.rowsCount should equal(1)
+      cubeA.row(0).aggRead(1).toDouble should equal(10000.0 +- 1000.0)
+
+      cubeA.interMerge(builder, cubeB)
+
+      cubeA.rowsCount should equal(1)
+      cubeA.row(0).aggRead(0) should equal(20000)
+      cubeA.row(0).aggRead(1).toDouble should equal(15000.0 +- 1500.0)
+    }
+  }
+
+  it should "keep approx distinct sketches across resizes" in {
+    CubeTest {
+      val rows = 2000
+      for (k <- 0 until rows)
+        defineDistinct(cubeA, k, k, k + 3)
+      cubeA.rowsCount should equal(rows)
+      cubeA.resizeCount should be > 0
+
+      defineDistinct(cubeB, 7, 0, 3)
+      cubeA.interMerge(builder, cubeB)
+
+      var r = 0
+      while (r < cubeA.rowsCount) {
+        val row = cubeA.row(r)
+        val expected = if (row.dimRead(0) == 7) 6 else 3
+        row.aggRead(0) should equal(expected)
+        row.aggRead(1).toDouble should equal(expected.toDouble +- 1.0)
+        r += 1
+      }
+    }
+  }
+
+}
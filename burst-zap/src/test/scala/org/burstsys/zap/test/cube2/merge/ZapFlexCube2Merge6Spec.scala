@@ -0,0 +1,60 @@
+/* Copyright Yahoo, Licensed under the terms of the Apache 2.0 license. See LICENSE file in project root for terms. */
+package org.burstsys.zap.test.cube2.merge
+
+import org.burstsys.brio.types.BrioPrimitives.brioPrimitiveToDouble
+import org.burstsys.brio.types.BrioTypes.{BrioDoubleKey, BrioLongKey}
+import org.burstsys.felt.model.collectors.cube.decl.column.aggregation.sketch.FeltCubeAggQuantileSemRt
+import org.burstsys.zap.cube2
+import org.burstsys.zap.cube2.ZapCube2Builder
+import org.burstsys.zap.test.cube2.ZapCube2Spec
+
+import scala.util.Random
+
+//@Ignore
+class ZapFlexCube2Merge6Spec extends ZapCube2Spec {
+
+  val median: FeltCubeAggQuantileSemRt = FeltCubeAggQuantileSemRt(0.5)
+
+  val p95: FeltCubeAggQuantileSemRt = FeltCubeAggQuantileSemRt(0.95)
+
+  val builder: ZapCube2Builder = cube2.ZapCube2Builder(
+    dimensionCount = 2, aggregationCount = 2,
+    aggregationSemantics = Array(median, p95),
+    aggregationFieldTypes = Array(BrioDoubleKey, BrioDoubleKey),
+    dimensionFieldTypes = Array(BrioLongKey, BrioLongKey)
+  )
+
+  private def defineValues(cube: cube2.ZapCube2, values: Seq[Long]): Unit = {
+    values foreach {
+      v =>
+        cube.dimWrite(0, 0)
+        cube.dimWrite(1, 0)
+        cube.aggSketchWrite(median, 0, median.itemLong(v))
+        cube.aggSketchWrite(p95, 1, p95.itemLong(v))
+    }
+  }
+
+  it should "estimate quantiles of a single cube" in {
+    CubeTest {
+      defineValues(cubeA, Random.shuffle((0L until 10000L).toVector))
+
+      cubeA.rowsCount should equal(1)
+      brioPrimitiveToDouble(cubeA.row(0).aggRead(0)) should equal(5000.0 +- 200.0)
+      brioPrimitiveToDouble(cubeA.row(0).aggRead(1)) should equal(9500.0 +- 200.0)
+    }
+  }
+
+  it should "merge quantile sketches" in {
+    CubeTest {
+      defineValues(cubeA, Random.shuffle((0L until 10000L).toVector))
+      defineValues(cubeB, Random.shuffle((10000L until 20000L).toVector))
+
+      cubeA.interMerge(builder, cubeB)
+
+      cubeA.rowsCount should equal(1)
+      brioPrimitiveToDouble(cubeA.row(0).aggRead(0)) should equal(10000.0 +- 400.0)
+      brioPrimitiveToDouble(cubeA.row(0).aggRead(1)) should equal(19000.0 +- 400.0)
+    }
+  }
+
+}
@@ -50,4 +50,19 @@ class ZapCube2TruncateSpec extends ZapCube2Spec {
   }
 
 
+  it should "truncate a large presorted row set to top k " in {
+
+    CubeTest {
+      // already in ascending order with lots of duplicates
+      val rows = (0 until 2000).map(i => (i.toLong, 0L, (i / 4).toLong, 0L))
+      defineExplicitLong(cubeA, rows: _*)
+      cubeA.truncateToTopKBasedOnAggregation(builder, cubeA, k, 0)
+
+      cubeA.itemCount shouldEqual k
+      val topK = for (i <- 0.until(cubeA.itemCount)) yield cubeA.row(i).aggRead(0)
+      topK should contain theSameElementsInOrderAs Array(499, 499, 499, 499, 498, 498, 498, 498)
+    }
+
+  }
+
 }